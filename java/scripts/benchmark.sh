@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#benchmark the query layer and append the results to a JSON lines file
+#Usage: benchmark.sh <dataset label> <threads,...> <output file> [seconds] [benchmark,...]
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" QueryBenchmark $USER"_project_phase_3_DB" $PGPORT $USER "$@"
@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#book seats on hot flight instances from many threads and check for oversell
+#Usage: booking_stress.sh <instance id,...> <threads> <bookings per thread>
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" BookingStress $USER"_project_phase_3_DB" $PGPORT $USER "$@"
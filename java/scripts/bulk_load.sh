@@ -0,0 +1,12 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#replace the table contents with the CSV files of a data directory
+#Usage: bulk_load.sh [data dir] [--threads N]
+DATA=${1:-$DIR/../../data}
+shift
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" BulkLoader $USER"_project_phase_3_DB" $PGPORT $USER $DATA "$@"
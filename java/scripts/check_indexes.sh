@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#explain every feature query and fail on sequential scans of large tables
+#Use your database name, port number and login
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" IndexCheck $USER"_project_phase_3_DB" $PGPORT $USER
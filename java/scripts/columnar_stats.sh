@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#compute the feature10 statistics of a flight from a columnar export, without the database
+#Usage: columnar_stats.sh <export dir> <flight number> <start date> <end date>
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" ColumnarReader "$@"
@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#print today's departures board every interval, until killed
+#Usage: departures_board.sh [refresh interval seconds]
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" DailyOperations $USER"_project_phase_3_DB" $PGPORT $USER "$@"
@@ -0,0 +1,13 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#benchmark the feature queries with the driver's protocol tuning turned off,
+#then with the default connection properties, appending both runs to one
+#JSON lines file
+#Usage: driver_benchmark.sh <threads,...> <output file> [seconds] [benchmark,...]
+java $JAVA_OPTS -Dairline.jdbc.prepareThreshold=0 -Dairline.jdbc.binaryTransfer=false -Dairline.jdbc.reWriteBatchedInserts=false -cp "$DIR/../target/classes:$DIR/../target/lib/*" QueryBenchmark $USER"_project_phase_3_DB" $PGPORT $USER before "$@"
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" QueryBenchmark $USER"_project_phase_3_DB" $PGPORT $USER after "$@"
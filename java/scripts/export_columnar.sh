@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#export FlightInstance, Reservation and Repair rows changed since the last export to columnar files
+#Usage: export_columnar.sh <export dir> [--full] [table,...]
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" ColumnarExport $USER"_project_phase_3_DB" $PGPORT $USER "$@"
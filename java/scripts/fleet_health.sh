@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#print the planes needing attention every interval, until killed
+#Usage: fleet_health.sh [report interval seconds] [planes]
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" FleetHealth $USER"_project_phase_3_DB" $PGPORT $USER "$@"
@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#write a scaled dataset in the data/*.csv layouts
+#Usage: generate_data.sh <output dir> [--scale N] [--days N] ...
+java $JAVA_OPTS -cp $DIR/../target/classes DataGenerator "$@"
@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#compare row-at-a-time and batched maintenance/repair ingestion
+#Usage: ingest_benchmark.sh <records> [flush size] [flush interval ms]
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" IngestBenchmark $USER"_project_phase_3_DB" $PGPORT $USER "$@"
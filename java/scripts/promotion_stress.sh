@@ -0,0 +1,11 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#book and cancel seats on hot flight instances from many threads while the
+#waitlist promoter runs, then check seat counts and waitlist order
+#Usage: promotion_stress.sh <instance id,...> <threads> <operations per thread>
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" PromotionStress $USER"_project_phase_3_DB" $PGPORT $USER "$@"
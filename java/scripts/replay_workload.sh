@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#replay a workload file through the feature queries without the menu
+#Usage: replay_workload.sh <workload file> <threads> [repeat]
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" WorkloadRunner $USER"_project_phase_3_DB" $PGPORT $USER "$@"
@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#measure trip history latency with many customers at once
+#Usage: trip_history_benchmark.sh <threads> <seconds> [pages per view]
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" TripHistoryBenchmark $USER"_project_phase_3_DB" $PGPORT $USER "$@"
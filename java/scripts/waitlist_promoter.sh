@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+
+# compile the java program
+mvn -q -f $DIR/../pom.xml package
+
+#promote waitlisted reservations as seats free up, until killed
+#Usage: waitlist_promoter.sh [report interval seconds]
+java $JAVA_OPTS -cp "$DIR/../target/classes:$DIR/../target/lib/*" WaitlistPromoter $USER"_project_phase_3_DB" $PGPORT $USER "$@"
@@ -1,640 +1,1662 @@
-/*
- * Template JAVA User Interface
- * =============================
- *
- * Database Management Systems
- * Department of Computer Science &amp; Engineering
- * University of California - Riverside
- *
- * Target DBMS: 'Postgres'
- *
- */
-
-
-import java.sql.DriverManager;
-import java.sql.Connection;
-import java.sql.Statement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.io.File;
-import java.io.FileReader;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.List;
-import java.util.ArrayList;
-import java.lang.Math;
-
-/**
- * This class defines a simple embedded SQL utility class that is designed to
- * work with PostgreSQL JDBC drivers.
- *
- */
-public class AirlineManagement {
-
-   // reference to physical database connection.
-   private Connection _connection = null;
-
-   // handling the keyboard inputs through a BufferedReader
-   // This variable can be global for convenience.
-   static BufferedReader in = new BufferedReader(
-                                new InputStreamReader(System.in));
-
-   /**
-    * Creates a new instance of AirlineManagement
-    *
-    * @param hostname the MySQL or PostgreSQL server hostname
-    * @param database the name of the database
-    * @param username the user name used to login to the database
-    * @param password the user login password
-    * @throws java.sql.SQLException when failed to make a connection.
-    */
-   public AirlineManagement(String dbname, String dbport, String user, String passwd) throws SQLException {
-
-      System.out.print("Connecting to database...");
-      try{
-         // constructs the connection URL
-         String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
-         System.out.println ("Connection URL: " + url + "\n");
-
-         // obtain a physical connection
-         this._connection = DriverManager.getConnection(url, user, passwd);
-         System.out.println("Done");
-      }catch (Exception e){
-         System.err.println("Error - Unable to Connect to Database: " + e.getMessage() );
-         System.out.println("Make sure you started postgres on this machine");
-         System.exit(-1);
-      }//end catch
-   }//end AirlineManagement
-
-   /**
-    * Method to execute an update SQL statement.  Update SQL instructions
-    * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
-    *
-    * @param sql the input SQL string
-    * @throws java.sql.SQLException when update failed
-    */
-   public void executeUpdate (String sql) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the update instruction
-      stmt.executeUpdate (sql);
-
-      // close the instruction
-      stmt.close ();
-   }//end executeUpdate
-
-   /**
-    * Method to execute an input query SQL instruction (i.e. SELECT).  This
-    * method issues the query to the DBMS and outputs the results to
-    * standard out.
-    *
-    * @param query the input query string
-    * @return the number of rows returned
-    * @throws java.sql.SQLException when failed to execute the query
-    */
-   public int executeQueryAndPrintResult (String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
-
-      /*
-       ** obtains the metadata object for the returned result set.  The metadata
-       ** contains row and column info.
-       */
-      ResultSetMetaData rsmd = rs.getMetaData ();
-      int numCol = rsmd.getColumnCount ();
-      int rowCount = 0;
-
-      // iterates through the result set and output them to standard out.
-      boolean outputHeader = true;
-      while (rs.next()){
-		 if(outputHeader){
-			for(int i = 1; i <= numCol; i++){
-			System.out.print(rsmd.getColumnName(i) + "\t");
-			}
-			System.out.println();
-			outputHeader = false;
-		 }
-         for (int i=1; i<=numCol; ++i)
-            System.out.print (rs.getString (i) + "\t");
-         System.out.println ();
-         ++rowCount;
-      }//end while
-      stmt.close();
-      return rowCount;
-   }//end executeQuery
-
-   /**
-    * Method to execute an input query SQL instruction (i.e. SELECT).  This
-    * method issues the query to the DBMS and returns the results as
-    * a list of records. Each record in turn is a list of attribute values
-    *
-    * @param query the input query string
-    * @return the query result as a list of records
-    * @throws java.sql.SQLException when failed to execute the query
-    */
-   public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
-
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
-
-      /*
-       ** obtains the metadata object for the returned result set.  The metadata
-       ** contains row and column info.
-       */
-      ResultSetMetaData rsmd = rs.getMetaData ();
-      int numCol = rsmd.getColumnCount ();
-      int rowCount = 0;
-
-      // iterates through the result set and saves the data returned by the query.
-      boolean outputHeader = false;
-      List<List<String>> result  = new ArrayList<List<String>>();
-      while (rs.next()){
-        List<String> record = new ArrayList<String>();
-		for (int i=1; i<=numCol; ++i)
-			record.add(rs.getString (i));
-        result.add(record);
-      }//end while
-      stmt.close ();
-      return result;
-   }//end executeQueryAndReturnResult
-
-   /**
-    * Method to execute an input query SQL instruction (i.e. SELECT).  This
-    * method issues the query to the DBMS and returns the number of results
-    *
-    * @param query the input query string
-    * @return the number of rows returned
-    * @throws java.sql.SQLException when failed to execute the query
-    */
-   public int executeQuery (String query) throws SQLException {
-       // creates a statement object
-       Statement stmt = this._connection.createStatement ();
-
-       // issues the query instruction
-       ResultSet rs = stmt.executeQuery (query);
-
-       int rowCount = 0;
-
-       // iterates through the result set and count nuber of results.
-       while (rs.next()){
-          rowCount++;
-       }//end while
-       stmt.close ();
-       return rowCount;
-   }
-
-   /**
-    * Method to fetch the last value from sequence. This
-    * method issues the query to the DBMS and returns the current
-    * value of sequence used for autogenerated keys
-    *
-    * @param sequence name of the DB sequence
-    * @return current value of a sequence
-    * @throws java.sql.SQLException when failed to execute the query
-    */
-   public int getCurrSeqVal(String sequence) throws SQLException {
-	Statement stmt = this._connection.createStatement ();
-
-	ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-	if (rs.next())
-		return rs.getInt(1);
-	return -1;
-   }
-
-   /**
-    * Method to close the physical connection if it is open.
-    */
-   public void cleanup(){
-      try{
-         if (this._connection != null){
-            this._connection.close ();
-         }//end if
-      }catch (SQLException e){
-         // ignored.
-      }//end try
-   }//end cleanup
-
-   /**
-    * The main execution method
-    *
-    * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
-    */
-   public static void main (String[] args) {
-      if (args.length != 3) {
-         System.err.println (
-            "Usage: " +
-            "java [-classpath <classpath>] " +
-            AirlineManagement.class.getName () +
-            " <dbname> <port> <user>");
-         return;
-      }//end if
-
-      Greeting();
-      AirlineManagement esql = null;
-      try{
-         // use postgres JDBC driver.
-         Class.forName ("org.postgresql.Driver").newInstance ();
-         // instantiate the AirlineManagement object and creates a physical
-         // connection.
-         String dbname = args[0];
-         String dbport = args[1];
-         String user = args[2];
-         esql = new AirlineManagement (dbname, dbport, user, "");
-
-         boolean keepon = true;
-         while(keepon) {
-            // These are sample SQL statements
-            System.out.println("MAIN MENU");
-            System.out.println("---------");
-            System.out.println("1. Create user");
-            System.out.println("2. Log in");
-            System.out.println("9. < EXIT");
-            String authorisedUser = null;
-            switch (readChoice()){
-               case 1: CreateUser(esql); break;
-               case 2: authorisedUser = LogIn(esql); break;
-               case 9: keepon = false; break;
-               default : System.out.println("Unrecognized choice!"); break;
-            }//end switch
-            if (authorisedUser != null) {
-              boolean usermenu = true;
-              while(usermenu) {
-                System.out.println("MAIN MENU");
-                System.out.println("---------");
-
-                //**the following functionalities should only be able to be used by Management**
-                if(authorisedUser.equals("Management")){
-                  System.out.println("1. View Flights");
-                  System.out.println("2. View Flight Seats");
-                  System.out.println("3. View Flight Status");
-                  System.out.println("4. View Flights of the day");  
-                  System.out.println("5. View Full Order ID History");
-                  System.out.println("6. View Traveler Information");
-                  System.out.println("7. View Plane Information");
-                  System.out.println("8. View Technician Repair History");
-                  System.out.println("9. View Plane Repair History");
-                  System.out.println("10. View Flight Statistics");
-                }
-                //**the following functionalities should only be able to be used by customers**
-                if(authorisedUser.equals("Customer")){
-                  System.out.println("10. Search Flights");
-                  System.out.println(".........................");
-                  System.out.println(".........................");
-                }
-                //**the following functionalities should ony be able to be used by Pilots**
-                if(authorisedUser.equals("Pilot")){
-                  System.out.println("15. Maintenace Request");
-                  System.out.println(".........................");
-                  System.out.println(".........................");
-                }
-               //**the following functionalities should ony be able to be used by Technicians**
-               if(authorisedUser.equals("Technician")){
-                System.out.println(".........................");
-                System.out.println(".........................");
-               }
-                System.out.println("20. Log out");
-                switch (readChoice()){
-                   case 1: feature1(esql); break;
-                   case 2: feature2(esql); break;
-                   case 3: feature3(esql); break;
-                   case 4: feature4(esql); break;
-                   case 5: feature5(esql); break;
-                   case 6: feature6(esql); break;
-                   case 7: feature7(esql); break;
-                   case 8: feature8(esql); break;
-                   case 9: feature9(esql); break;
-                   case 10: feature10(esql); break;
-
-
-                   case 20: usermenu = false; break;
-                   default : System.out.println("Unrecognized choice!"); break;
-                }
-              }
-            }
-         }//end while
-      }catch(Exception e) {
-         System.err.println (e.getMessage ());
-      }finally{
-         // make sure to cleanup the created table and close the connection.
-         try{
-            if(esql != null) {
-               System.out.print("Disconnecting from database...");
-               esql.cleanup ();
-               System.out.println("Done\n\nBye !");
-            }//end if
-         }catch (Exception e) {
-            // ignored.
-         }//end try
-      }//end try
-   }//end main
-
-   public static void Greeting(){
-      System.out.println(
-         "\n\n*******************************************************\n" +
-         "              User Interface      	               \n" +
-         "*******************************************************\n");
-   }//end Greeting
-
-   /*
-    * Reads the users choice given from the keyboard
-    * @int
-    **/
-   public static int readChoice() {
-      int input;
-      // returns only if a correct value is given.
-      do {
-         System.out.print("Please make your choice: ");
-         try { // read the integer, parse it and break.
-            input = Integer.parseInt(in.readLine());
-            break;
-         }catch (Exception e) {
-            System.out.println("Your input is invalid!");
-            continue;
-         }//end try
-      }while (true);
-      return input;
-   }//end readChoice
-
-   /*
-    * Creates a new user
-    **/
-   public static void CreateUser(AirlineManagement esql){
-      try{
-         System.out.print("\tCreate Username: ");
-         String username = in.readLine();
-         System.out.print("\tCreate Password: ");
-         String password = in.readLine();
-         System.out.print("\tCreate Role (Management, Customer, Pilot, Technician): ");
-         boolean isValidRole = false;
-         String role = "";
-         
-         while(!isValidRole){
-            role = in.readLine();
-            
-            // Check if the role is valid
-            if (!role.equalsIgnoreCase("Management") && 
-               !role.equalsIgnoreCase("Customer") && 
-               !role.equalsIgnoreCase("Pilot") && 
-               !role.equalsIgnoreCase("Technician")) {
-               System.out.println("Invalid role. Please enter a valid role.");
-            }
-            else {
-               isValidRole = true;
-               role = role.substring(0,1).toUpperCase() + role.substring(1).toLowerCase();
-            }
-         }
-         String query  = "INSERT INTO UserAccount (Username, Password, Role) " +
-                         "VALUES ('" + username + "', '" + password + "', '" + role + "');";
-      
-         esql.executeUpdate(query);
-         
-      }
-      catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }//end CreateUser
-
-
-   /*
-    * Check log in credentials for an existing user
-    * @return User login or null is the user does not exist
-    **/
-   public static String LogIn(AirlineManagement esql){
-       try {
-      System.out.print("\tEnter Username: ");
-      String username = in.readLine();
-
-      System.out.print("\tEnter Password: ");
-      String password = in.readLine();
-
-      String query = "SELECT Role FROM UserAccount " +
-                     "WHERE Username = '" + username + "' AND Password = '" + password + "';";
-
-      List<List<String>> result = esql.executeQueryAndReturnResult(query);
-
-      if (result.size() == 1) {
-         String role = result.get(0).get(0);
-         System.out.println("\nLogin successful! Logged in as " + role + ".");
-         return role; 
-      } else {
-         System.out.println("Login failed: Invalid username or password.");
-         return null;
-      }
-   } catch (Exception e) {
-      System.err.println("Error during login: " + e.getMessage());
-      return null;
-   }
-   }//end
-
-// Rest of the functions definition go in here
-
-   public static void feature1(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Flight Number: ");
-         String input = in.readLine();
-         String query = "SELECT * FROM Schedule WHERE FlightNumber = '" + input + "' " +
-                        "ORDER BY CASE " +
-                        "WHEN DayOfWeek = 'Monday' THEN 1 " +
-                        "WHEN DayOfWeek = 'Tuesday' THEN 2 " +
-                        "WHEN DayOfWeek = 'Wednesday' THEN 3 " +
-                        "WHEN DayOfWeek = 'Thursday' THEN 4 " +
-                        "WHEN DayOfWeek = 'Friday' THEN 5 " +
-                        "WHEN DayOfWeek = 'Saturday' THEN 6 " +
-                        "WHEN DayOfWeek = 'Sunday' THEN 7 " +
-                        "ELSE 8 END;";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-         System.out.println();
-      }
-      
-      catch (Exception e) {
-      System.err.println(e.getMessage());
-      }
-   }
-   public static void feature2(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Flight Number: ");
-         String flightNum = in.readLine();
-         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
-         String date = in.readLine();
-         String query = "SELECT SeatsTotal - SeatsSold AS SeatsAvailable, SeatsSold " +
-                        "FROM FlightInstance " +
-                        "WHERE FlightNumber = '" + flightNum + "' " +
-                        "AND FlightDate = '" + date + "';";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-         System.out.println();
-      } 
-      catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }
-   public static void feature3(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Flight Number: ");
-         String flightNum = in.readLine();
-         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
-         String date = in.readLine();
-         String query = "SELECT DepartedOnTime, ArrivedOnTime " +
-                        "FROM FlightInstance " +
-                        "WHERE FlightNumber = '" + flightNum + "' " +
-                        "AND FlightDate = '" + date + "';";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-      } catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }
-   public static void feature4(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
-         String date = in.readLine();
-         String query = "SELECT * FROM FlightInstance fi " +
-                        "JOIN Flight f ON fi.FlightNumber = f.FlightNumber " +
-                        "WHERE fi.FlightDate = '" + date + "' " +
-                        "ORDER BY fi.DepartureTime;";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-         System.out.println();
-      } catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }
-   public static void feature5(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Flight Number: ");
-         String flightNum = in.readLine();
-         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
-         String date = in.readLine();
-         String query = "SELECT C.FirstName, C.LastName, R.Status " +
-                        "FROM Reservation R " +
-                        "JOIN Customer C ON R.CustomerID = C.CustomerID " +
-                        "JOIN FlightInstance FI ON R.FlightInstanceID = FI.FlightInstanceID " +
-                        "WHERE FI.FlightNumber = '" + flightNum + "' " +
-                        "AND FI.FlightDate = '" + date + "' " +
-                        "ORDER BY CASE " +
-                        "WHEN R.Status = 'reserved' THEN 1 " +
-                        "WHEN R.Status = 'waitlist' THEN 2 " +
-                        "WHEN R.Status = 'flown' THEN 3 " +
-                        "ELSE 4 END, C.LastName, C.FirstName;";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-         System.out.println();
-      } catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }
-   public static void feature6(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Reservation ID: ");
-         String resID = in.readLine();
-         String query = "SELECT C.CustomerID, C.FirstName, C.LastName, C.Gender, " +
-                        "C.DOB, C.Address, C.Phone, C.Zip " +
-                        "FROM Reservation R " +
-                        "JOIN Customer C ON R.CustomerID = C.CustomerID " +
-                        "WHERE R.ReservationID = '" + resID + "';";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-         System.out.println();
-      } catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }
-
-   public static void feature7(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Plane ID: ");
-         String planeID = in.readLine();
-         String query = "SELECT P.Make, P.Model, " +
-                        "EXTRACT(YEAR FROM AGE(CURRENT_DATE, TO_DATE(P.Year::TEXT, 'YYYY'))) AS Age, " +
-                        "(SELECT MAX(Rp.RepairDate) FROM Repair Rp WHERE Rp.PlaneID = P.PlaneID) AS LastRepairDate " +
-                        "FROM Plane P " +
-                        "WHERE P.PlaneID = '" + planeID + "';";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-         System.out.println();
-      } catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }
-
-   public static void feature8(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Technician ID: ");
-         String techID = in.readLine();
-         String query = "SELECT R.RepairID, R.PlaneID, R.RepairCode, R.RepairDate " +
-                        "FROM Repair R " +
-                        "WHERE R.TechnicianID = '" + techID + "' " +
-                        "ORDER BY R.RepairDate DESC;";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-         System.out.println();
-      } catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }
-
-   public static void feature9(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Plane ID: ");
-         String planeID = in.readLine();
-         System.out.print("\tEnter Start Date (DD-MM-YY): ");
-         String startDate = in.readLine();
-         System.out.print("\tEnter End Date (DD-MM-YY): ");
-         String endDate = in.readLine();
-
-         String query = "SELECT R.RepairID, R.RepairCode, R.RepairDate, R.TechnicianID " +
-                        "FROM Repair R " +
-                        "WHERE R.PlaneID = '" + planeID + "' " +
-                        "AND R.RepairDate BETWEEN '" + startDate + "' AND '" + endDate + "' " +
-                        "ORDER BY R.RepairDate;";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-         System.out.println();
-      } catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }
-
-   public static void feature10(AirlineManagement esql) {
-      try {
-         System.out.print("\tEnter Flight Number: ");
-         String flightNum = in.readLine();
-         System.out.print("\tEnter Start Date (DD-MM-YY): ");
-         String startDate = in.readLine();
-         System.out.print("\tEnter End Date (DD-MM-YY): ");
-         String endDate = in.readLine();
-
-         String query = "SELECT " +
-                        "COUNT(*) FILTER (WHERE FI.DepartedOnTime = TRUE) AS NumDepartedOnTime, " +
-                        "COUNT(*) FILTER (WHERE FI.DepartedOnTime = FALSE) AS NumDepartedDelayed, " +
-                        "COUNT(*) FILTER (WHERE FI.ArrivedOnTime = TRUE) AS NumArrivedOnTime, " +
-                        "COUNT(*) FILTER (WHERE FI.ArrivedOnTime = FALSE) AS NumArrivedDelayed, " +
-                        "SUM(COALESCE(FI.SeatsSold,0)) AS TotalSeatsSold, " +
-                        "SUM(COALESCE(FI.SeatsTotal,0) - COALESCE(FI.SeatsSold,0)) AS TotalSeatsUnsold " +
-                        "FROM FlightInstance FI " +
-                        "WHERE FI.FlightNumber = '" + flightNum + "' " +
-                        "AND FI.FlightDate BETWEEN '" + startDate + "' AND '" + endDate + "';";
-         int rowCount = esql.executeQueryAndPrintResult(query);
-         System.out.println("total row(s): " + rowCount);
-         System.out.println();
-      } catch (Exception e) {
-         System.err.println(e.getMessage());
-      }
-   }
-
-
-
-
-  
-
-
-}//end AirlineManagement
-
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.io.File;
+import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.lang.Math;
+
+/**
+ * This class defines a simple embedded SQL utility class that is designed to
+ * work with PostgreSQL JDBC drivers.
+ *
+ * The query methods draw their connection from a bounded ConnectionPool and
+ * may be called from many threads at once; each call holds a connection only
+ * for the duration of the statement.
+ *
+ */
+public class AirlineManagement {
+
+   // pool of physical database connections shared by every session.
+   private final ConnectionPool _pool;
+
+   // latency and volume of every statement and feature.
+   private final Metrics _metrics;
+
+   // delivers NOTIFY events to the in-process caches; started on first use.
+   private NotificationListener _listener = null;
+
+   // cache of the reference tables; created on first use.
+   private ReferenceCache _referenceCache = null;
+
+   // logins and sessions; created on first use.
+   private Authenticator _authenticator = null;
+
+   // cache of flight manifests (feature5); created on first use.
+   private ManifestCache _manifestCache = null;
+
+   // in-memory flight search of the Customer menu; created on first use.
+   private FlightSearch _flightSearch = null;
+
+   // batched writer of maintenance requests and repairs; started on first use.
+   private MaintenanceIngestor _ingestor = null;
+
+   // executor of asynchronous queries; started on first use.
+   private AsyncExecutor _async = null;
+
+   // promoter of waitlisted reservations; started on first use.
+   private WaitlistPromoter _promoter = null;
+
+   // departures boards of today and tomorrow (feature4); built on first use.
+   private DailyOperations _operations = null;
+
+   // trip history and summaries of the Customer menu; created on first use.
+   private CustomerHistory _customerHistory = null;
+
+   // maintenance aggregates of the fleet; loaded on first use.
+   private FleetHealth _fleetHealth = null;
+
+   // whether the schema is the date-partitioned variant; looked up on
+   // first use.
+   private Boolean _partitioned = null;
+
+   // rows fetched per round trip when streaming a result through a cursor.
+   static final int DEFAULT_FETCH_SIZE = 1000;
+   private volatile int _fetchSize = DEFAULT_FETCH_SIZE;
+
+   // handling the keyboard inputs through a BufferedReader
+   // This variable can be global for convenience.
+   static BufferedReader in = new BufferedReader(
+                                new InputStreamReader(System.in));
+
+   /**
+    * Work performed on one borrowed connection, e.g. a multi-statement
+    * transaction.
+    */
+   public interface ConnectionWork<T> {
+      T run (PooledConnection conn) throws SQLException;
+   }//end ConnectionWork
+
+   /**
+    * Creates a new instance of AirlineManagement
+    *
+    * @param hostname the MySQL or PostgreSQL server hostname
+    * @param database the name of the database
+    * @param username the user name used to login to the database
+    * @param password the user login password
+    * @throws java.sql.SQLException when failed to make a connection.
+    */
+   public AirlineManagement(String dbname, String dbport, String user, String passwd) throws SQLException {
+      this(dbname, dbport, user, passwd, ConnectionPool.DEFAULT_MAX_SIZE);
+   }//end AirlineManagement
+
+   /**
+    * Creates a new instance of AirlineManagement backed by a pool of at most
+    * poolSize connections.
+    *
+    * @param dbname the name of the database
+    * @param dbport the port the PostgreSQL server listens on
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param poolSize the maximum number of open connections
+    * @throws java.sql.SQLException when failed to make a connection.
+    */
+   public AirlineManagement(String dbname, String dbport, String user, String passwd,
+                            int poolSize) throws SQLException {
+
+      System.out.print("Connecting to database...");
+      // constructs the connection URL
+      String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+      System.out.println ("Connection URL: " + url + "\n");
+
+      try {
+         // report a missing driver jar here rather than as "no suitable
+         // driver" on the first connection.
+         Class.forName("org.postgresql.Driver");
+      }catch (ClassNotFoundException e) {
+         throw new SQLException("PostgreSQL JDBC driver not on the classpath");
+      }//end try
+      Properties props = connectionProperties(user, passwd);
+      this._fetchSize = Integer.parseInt(props.getProperty("defaultRowFetchSize"));
+      this._pool = new ConnectionPool(url, props, poolSize,
+                                      ConnectionPool.DEFAULT_MAX_WAIT_MILLIS,
+                                      ConnectionPool.DEFAULT_IDLE_TIMEOUT_MILLIS);
+      this._metrics = Metrics.fromSystemProperties(this._pool);
+      try{
+         // open the first physical connection now so a bad setup fails fast
+         this._pool.release(this._pool.borrow());
+         System.out.println("Done");
+      }catch (Exception e){
+         System.err.println("Error - Unable to Connect to Database: " + e.getMessage() );
+         System.out.println("Make sure you started postgres on this machine");
+         System.exit(-1);
+      }//end catch
+   }//end AirlineManagement
+
+   // prefix of the system properties that set JDBC connection properties,
+   // e.g. -Dairline.jdbc.prepareThreshold=5
+   static final String JDBC_PROPERTY_PREFIX = "airline.jdbc.";
+
+   // connection properties used unless overridden; a driver ignores the
+   // ones it does not know.
+   static final String[][] DEFAULT_CONNECTION_PROPERTIES = {
+      // use a named server-side statement from the first execution
+      { "prepareThreshold", "1" },
+      // rows per round trip when reading through a cursor
+      { "defaultRowFetchSize", String.valueOf (DEFAULT_FETCH_SIZE) },
+      // read and send numbers, dates and timestamps in binary
+      { "binaryTransfer", "true" },
+      // turn batches of single-row INSERTs into multi-row INSERTs
+      { "reWriteBatchedInserts", "true" },
+      // notice dead servers on idle pooled connections
+      { "tcpKeepAlive", "true" },
+   };
+
+   /**
+    * Builds the JDBC connection properties: the defaults above, overridden
+    * by any airline.jdbc.* system property.
+    *
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @return the connection properties
+    */
+   static Properties connectionProperties (String user, String passwd) {
+      Properties props = new Properties ();
+      for (String[] property : DEFAULT_CONNECTION_PROPERTIES)
+         props.setProperty (property[0], property[1]);
+      for (String name : System.getProperties ().stringPropertyNames ()) {
+         if (name.startsWith (JDBC_PROPERTY_PREFIX))
+            props.setProperty (name.substring (JDBC_PROPERTY_PREFIX.length ()), System.getProperty (name));
+      }//end for
+      props.setProperty ("user", user);
+      props.setProperty ("password", passwd);
+      return props;
+   }//end connectionProperties
+
+   /**
+    * Sets the number of rows fetched per round trip by the streaming query
+    * methods.
+    *
+    * @param fetchSize rows per fetch; must be positive
+    */
+   public void setFetchSize (int fetchSize) {
+      if (fetchSize < 1)
+         throw new IllegalArgumentException ("fetch size must be positive");
+      this._fetchSize = fetchSize;
+   }//end setFetchSize
+
+   /**
+    * @return the number of rows fetched per round trip when streaming
+    */
+   public int getFetchSize () {
+      return this._fetchSize;
+   }//end getFetchSize
+
+   /**
+    * @return the listener for database notifications, started on first
+    *         use; it holds one pooled connection while running
+    */
+   public synchronized NotificationListener getNotificationListener () {
+      if (this._listener == null)
+         this._listener = new NotificationListener (this._pool);
+      return this._listener;
+   }//end getNotificationListener
+
+   /**
+    * @return the read-through cache of the reference tables
+    */
+   public synchronized ReferenceCache getReferenceCache () {
+      if (this._referenceCache == null)
+         this._referenceCache = new ReferenceCache (this, getNotificationListener ());
+      return this._referenceCache;
+   }//end getReferenceCache
+
+   /**
+    * @return the login and session manager
+    */
+   public synchronized Authenticator getAuthenticator () {
+      if (this._authenticator == null)
+         this._authenticator = new Authenticator (this);
+      return this._authenticator;
+   }//end getAuthenticator
+
+   /**
+    * @return the cache of flight manifests
+    */
+   public synchronized ManifestCache getManifestCache () {
+      if (this._manifestCache == null)
+         this._manifestCache = new ManifestCache (this, getNotificationListener ());
+      return this._manifestCache;
+   }//end getManifestCache
+
+   /**
+    * @return the in-memory flight search, loaded on first use
+    */
+   public synchronized FlightSearch getFlightSearch () {
+      if (this._flightSearch == null)
+         this._flightSearch = new FlightSearch (this, getNotificationListener ());
+      return this._flightSearch;
+   }//end getFlightSearch
+
+   /**
+    * @return the batched writer of maintenance requests and repairs,
+    *         started on first use
+    */
+   public synchronized MaintenanceIngestor getMaintenanceIngestor () {
+      if (this._ingestor == null)
+         this._ingestor = new MaintenanceIngestor (this);
+      return this._ingestor;
+   }//end getMaintenanceIngestor
+
+   /**
+    * @return the executor for asynchronous queries, started on first use
+    */
+   public synchronized AsyncExecutor getAsyncExecutor () {
+      if (this._async == null)
+         this._async = new AsyncExecutor (this);
+      return this._async;
+   }//end getAsyncExecutor
+
+   /**
+    * @return the promoter of waitlisted reservations, started on first use
+    */
+   public synchronized WaitlistPromoter getWaitlistPromoter () {
+      if (this._promoter == null)
+         this._promoter = new WaitlistPromoter (this, getNotificationListener ());
+      return this._promoter;
+   }//end getWaitlistPromoter
+
+   /**
+    * @return the departures boards, built on first use
+    */
+   public synchronized DailyOperations getDailyOperations () {
+      if (this._operations == null)
+         this._operations = new DailyOperations (this, getNotificationListener ());
+      return this._operations;
+   }//end getDailyOperations
+
+   /**
+    * @return the trip history of customers
+    */
+   public synchronized CustomerHistory getCustomerHistory () {
+      if (this._customerHistory == null)
+         this._customerHistory = new CustomerHistory (this, getNotificationListener ());
+      return this._customerHistory;
+   }//end getCustomerHistory
+
+   /**
+    * @return the maintenance aggregates of the fleet, loaded on first use
+    */
+   public synchronized FleetHealth getFleetHealth () {
+      if (this._fleetHealth == null)
+         this._fleetHealth = new FleetHealth (this, getNotificationListener ());
+      return this._fleetHealth;
+   }//end getFleetHealth
+
+   /**
+    * Tells whether the database has the schema of
+    * sql/src/create_tables_partitioned.sql, where Reservation carries the
+    * FlightDate of its instance and queries filter on it to read one
+    * partition.
+    *
+    * @return whether FlightInstance and Reservation are partitioned by date
+    * @throws java.sql.SQLException when the catalog cannot be read
+    */
+   public synchronized boolean isPartitioned () throws SQLException {
+      if (this._partitioned == null) {
+         Integer count = executeQueryForObject (PARTITIONED_SQL, Rows.intColumn ());
+         this._partitioned = Boolean.valueOf (count.intValue () > 0);
+      }//end if
+      return this._partitioned.booleanValue ();
+   }//end isPartitioned
+
+   /**
+    * @return feature5's query for the schema of the database
+    * @throws java.sql.SQLException when the catalog cannot be read
+    */
+   public String flightManifestSql () throws SQLException {
+      return isPartitioned () ? PARTITIONED_FLIGHT_MANIFEST_SQL : FLIGHT_MANIFEST_SQL;
+   }//end flightManifestSql
+
+   /**
+    * @return the statement and feature metrics of this instance
+    */
+   public Metrics getMetrics () {
+      return this._metrics;
+   }//end getMetrics
+
+   /**
+    * @return the connection pool backing this instance
+    */
+   public ConnectionPool getPool () {
+      return this._pool;
+   }//end getPool
+
+   /**
+    * Borrows a connection from the pool, runs the given work on it and
+    * returns the connection.  Failures are recorded on the connection so the
+    * pool can discard or re-validate it.
+    *
+    * @param work the work to run
+    * @return the value returned by the work
+    * @throws java.sql.SQLException when the work failed
+    */
+   public <T> T withConnection (ConnectionWork<T> work) throws SQLException {
+      PooledConnection conn = this._pool.borrow ();
+      try {
+         AsyncExecutor.attach (conn);
+         return work.run (conn);
+      }catch (SQLException e) {
+         conn.failed (e);
+         throw e;
+      }finally {
+         AsyncExecutor.detach ();
+         this._pool.release (conn);
+      }//end try
+   }//end withConnection
+
+   /*
+    * Runs the work for one statement on a pooled connection and records its
+    * latency, row count and bytes fetched, or its failure, in the metrics.
+    * The work returns the row count or the rows themselves.
+    */
+   private <T> T timed (final String sql, final Object[] params, final ConnectionWork<T> work) throws SQLException {
+      return withConnection (new ConnectionWork<T>() {
+         public T run (PooledConnection conn) throws SQLException {
+            Metrics.startFetch ();
+            long t0 = System.nanoTime ();
+            try {
+               T result = work.run (conn);
+               long rows = result instanceof Integer ? ((Integer) result).longValue ()
+                         : result instanceof List ? ((List<?>) result).size ()
+                         : result instanceof ColumnarResult ? ((ColumnarResult) result).size () : 0;
+               _metrics.statement (sql, params, System.nanoTime () - t0, rows, Metrics.fetchedSinceStart ());
+               return result;
+            }catch (SQLException e) {
+               _metrics.statementFailed (sql, e);
+               throw e;
+            }//end try
+         }
+      });
+   }//end timed
+
+   /**
+    * Method to execute an update SQL statement.  Update SQL instructions
+    * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
+    *
+    * @param sql the input SQL string
+    * @throws java.sql.SQLException when update failed
+    */
+   public void executeUpdate (final String sql) throws SQLException {
+      timed (sql, null, new ConnectionWork<Integer>() {
+         public Integer run (PooledConnection conn) throws SQLException {
+            // creates a statement object
+            Statement stmt = conn.getConnection ().createStatement ();
+            conn.track (stmt);
+            try {
+               // issues the update instruction
+               return stmt.executeUpdate (sql);
+            }finally {
+               // close the instruction
+               stmt.close ();
+            }//end try
+         }
+      });
+   }//end executeUpdate
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT).  This
+    * method issues the query to the DBMS and outputs the results to
+    * standard out.
+    *
+    * @param query the input query string
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndPrintResult (final String query) throws SQLException {
+      final RowPrinter printer = new RowPrinter ();
+      timed (query, null, new ConnectionWork<Integer>() {
+         public Integer run (PooledConnection conn) throws SQLException {
+            return stream (conn, query, null, printer);
+         }
+      });
+      printer.flush ();
+      return printer.getRowCount ();
+   }//end executeQuery
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT).  This
+    * method issues the query to the DBMS and returns the results as
+    * a list of records. Each record in turn is a list of attribute values
+    *
+    * @param query the input query string
+    * @return the query result as a list of records
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public List<List<String>> executeQueryAndReturnResult (final String query) throws SQLException {
+      return timed (query, null, new ConnectionWork<List<List<String>>>() {
+         public List<List<String>> run (PooledConnection conn) throws SQLException {
+            // creates a statement object
+            Statement stmt = conn.getConnection ().createStatement ();
+            conn.track (stmt);
+            try {
+               // issues the query instruction and saves the returned rows
+               return collectResultSet (stmt.executeQuery (query));
+            }finally {
+               stmt.close ();
+            }//end try
+         }
+      });
+   }//end executeQueryAndReturnResult
+
+   /**
+    * Binds the given values to the parameters of a prepared statement, in
+    * order, using the setter that matches each value's type.
+    *
+    * @param stmt the prepared statement
+    * @param params the parameter values; null binds an SQL NULL
+    * @throws java.sql.SQLException when a value cannot be bound
+    */
+   public static void bind (PreparedStatement stmt, Object... params) throws SQLException {
+      stmt.clearParameters ();
+      for (int i = 0; i < params.length; ++i) {
+         Object p = params[i];
+         int idx = i + 1;
+         if (p == null)
+            stmt.setNull (idx, Types.VARCHAR);
+         else if (p instanceof String)
+            stmt.setString (idx, (String) p);
+         else if (p instanceof Integer)
+            stmt.setInt (idx, ((Integer) p).intValue ());
+         else if (p instanceof Long)
+            stmt.setLong (idx, ((Long) p).longValue ());
+         else if (p instanceof Boolean)
+            stmt.setBoolean (idx, ((Boolean) p).booleanValue ());
+         else if (p instanceof BigDecimal)
+            stmt.setBigDecimal (idx, (BigDecimal) p);
+         else if (p instanceof java.sql.Date)
+            stmt.setDate (idx, (java.sql.Date) p);
+         else if (p instanceof java.sql.Time)
+            stmt.setTime (idx, (java.sql.Time) p);
+         else
+            stmt.setObject (idx, p);
+      }//end for
+   }//end bind
+
+   /**
+    * Executes a cached prepared update statement (INSERT, UPDATE, DELETE)
+    * with the given parameters.
+    *
+    * @param sql the SQL text, with '?' placeholders
+    * @param params the parameter values
+    * @return the number of affected rows
+    * @throws java.sql.SQLException when update failed
+    */
+   public int executeUpdate (final String sql, final Object... params) throws SQLException {
+      return timed (sql, params, new ConnectionWork<Integer>() {
+         public Integer run (PooledConnection conn) throws SQLException {
+            PreparedStatement stmt = conn.prepare (sql);
+            bind (stmt, params);
+            return stmt.executeUpdate ();
+         }
+      });
+   }//end executeUpdate
+
+   /**
+    * Executes a cached prepared query with the given parameters and outputs
+    * the results to standard out.
+    *
+    * @param query the SQL text, with '?' placeholders
+    * @param params the parameter values
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+      RowPrinter printer = new RowPrinter ();
+      executeQueryStreaming (query, printer, params);
+      printer.flush ();
+      return printer.getRowCount ();
+   }//end executeQueryAndPrintResult
+
+   /**
+    * Executes a cached prepared query and writes the rows as tab separated
+    * text, with a header line, to the given writer.  Rows are streamed, so
+    * results of any size are exported in constant memory.
+    *
+    * @param out the destination; it is flushed but not closed
+    * @param query the SQL text, with '?' placeholders
+    * @param params the parameter values
+    * @return the number of rows written
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int exportQuery (Writer out, String query, Object... params) throws SQLException {
+      RowPrinter printer = new RowPrinter (out);
+      executeQueryStreaming (query, printer, params);
+      printer.flush ();
+      return printer.getRowCount ();
+   }//end exportQuery
+
+   /**
+    * Executes a cached prepared query and hands each row to the handler as
+    * it arrives.  The rows are read through a server-side cursor, fetch size
+    * rows at a time, so memory use does not depend on the result size.
+    *
+    * @param query the SQL text, with '?' placeholders
+    * @param handler receives the rows
+    * @param params the parameter values
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQueryStreaming (final String query, final RowHandler handler,
+                                     final Object... params) throws SQLException {
+      return timed (query, params, new ConnectionWork<Integer>() {
+         public Integer run (PooledConnection conn) throws SQLException {
+            return stream (conn, query, params, handler);
+         }
+      });
+   }//end executeQueryStreaming
+
+   /*
+    * Runs a query on the given connection and feeds its rows to the handler.
+    * Plain SQL is used as is when params is null; otherwise the cached
+    * prepared statement is bound to params.  The driver only reads through a
+    * cursor inside a transaction, so autocommit is off while streaming; a
+    * transaction the caller already opened is left open.
+    */
+   int stream (PooledConnection conn, String query, Object[] params,
+                       RowHandler handler) throws SQLException {
+      Connection c = conn.getConnection ();
+      boolean autoCommit = c.getAutoCommit ();
+      if (autoCommit)
+         c.setAutoCommit (false);
+      Statement plain = null;
+      boolean done = false;
+      try {
+         ResultSet rs;
+         if (params == null) {
+            plain = c.createStatement ();
+            conn.track (plain);
+            plain.setFetchSize (this._fetchSize);
+            rs = plain.executeQuery (query);
+         } else {
+            PreparedStatement stmt = conn.prepare (query);
+            bind (stmt, params);
+            stmt.setFetchSize (this._fetchSize);
+            rs = stmt.executeQuery ();
+         }//end if
+
+         int rowCount = 0;
+         try {
+            handler.start (rs.getMetaData ());
+            while (rs.next ()) {
+               handler.row (rs);
+               ++rowCount;
+            }//end while
+         }finally {
+            rs.close ();
+         }//end try
+         done = true;
+         return rowCount;
+      }finally {
+         if (plain != null)
+            plain.close ();
+         if (autoCommit) {
+            if (done)
+               c.commit ();
+            else
+               c.rollback ();
+            c.setAutoCommit (true);
+         }//end if
+      }//end try
+   }//end stream
+
+   /**
+    * Executes a cached prepared query with the given parameters and returns
+    * the results as a list of records.
+    *
+    * @param query the SQL text, with '?' placeholders
+    * @param params the parameter values
+    * @return the query result as a list of records
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public List<List<String>> executeQueryAndReturnResult (final String query, final Object... params) throws SQLException {
+      return timed (query, params, new ConnectionWork<List<List<String>>>() {
+         public List<List<String>> run (PooledConnection conn) throws SQLException {
+            PreparedStatement stmt = conn.prepare (query);
+            bind (stmt, params);
+            ResultSet rs = stmt.executeQuery ();
+            try {
+               return collectResultSet (rs);
+            }finally {
+               rs.close ();
+            }//end try
+         }
+      });
+   }//end executeQueryAndReturnResult
+
+   /**
+    * Executes a cached prepared query and maps each row to an object, e.g.
+    * with one of the mappers of Rows.  Cells are read with the getter of
+    * their type rather than copied to Strings.
+    *
+    * @param query the SQL text, with '?' placeholders
+    * @param mapper turns a row into an object
+    * @param params the parameter values
+    * @return the mapped rows, in query order
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> List<T> executeQueryForList (final String query, final RowMapper<T> mapper,
+                                           final Object... params) throws SQLException {
+      return timed (query, params, new ConnectionWork<List<T>>() {
+         public List<T> run (PooledConnection conn) throws SQLException {
+            PreparedStatement stmt = conn.prepare (query);
+            bind (stmt, params);
+            ResultSet rs = stmt.executeQuery ();
+            try {
+               mapper.start (rs.getMetaData ());
+               List<T> result = new ArrayList<T>();
+               while (rs.next ())
+                  result.add (mapper.map (rs));
+               mapper.finish ();
+               return result;
+            }finally {
+               rs.close ();
+            }//end try
+         }
+      });
+   }//end executeQueryForList
+
+   /**
+    * Executes a cached prepared query and maps its first row to an object.
+    *
+    * @param query the SQL text, with '?' placeholders
+    * @param mapper turns the row into an object
+    * @param params the parameter values
+    * @return the first row's object, or null when there are no rows
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public <T> T executeQueryForObject (String query, RowMapper<T> mapper,
+                                       Object... params) throws SQLException {
+      List<T> rows = executeQueryForList (query, mapper, params);
+      return rows.isEmpty () ? null : rows.get (0);
+   }//end executeQueryForObject
+
+   /**
+    * Executes a cached prepared query and reads its rows into primitive
+    * column arrays.  The rows are streamed through a cursor like
+    * executeQueryStreaming, so only the arrays grow with the result.
+    *
+    * @param query the SQL text, with '?' placeholders
+    * @param params the parameter values
+    * @return the rows, column by column
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public ColumnarResult executeQueryColumnar (final String query, final Object... params) throws SQLException {
+      return timed (query, params, new ConnectionWork<ColumnarResult>() {
+         public ColumnarResult run (PooledConnection conn) throws SQLException {
+            ColumnarResult.Builder builder = new ColumnarResult.Builder ();
+            stream (conn, query, params, builder);
+            return builder.build ();
+         }
+      });
+   }//end executeQueryColumnar
+
+   /*
+    * Copies every row of the result set into a list of string records.
+    */
+   private static List<List<String>> collectResultSet (ResultSet rs) throws SQLException {
+      int numCol = rs.getMetaData ().getColumnCount ();
+      List<List<String>> result = new ArrayList<List<String>>();
+      long bytes = 0;
+      while (rs.next()){
+         List<String> record = new ArrayList<String>(numCol);
+         for (int i=1; i<=numCol; ++i) {
+            String value = rs.getString (i);
+            if (value != null)
+               bytes += Metrics.utf8Length (value);
+            record.add(value);
+         }//end for
+         result.add(record);
+      }//end while
+      Metrics.fetched (bytes);
+      return result;
+   }//end collectResultSet
+
+   /**
+    * Method to execute an input query SQL instruction (i.e. SELECT).  This
+    * method issues the query to the DBMS and returns the number of results
+    *
+    * @param query the input query string
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQuery (final String query) throws SQLException {
+      return timed (query, null, new ConnectionWork<Integer>() {
+         public Integer run (PooledConnection conn) throws SQLException {
+            // creates a statement object
+            Statement stmt = conn.getConnection ().createStatement ();
+            conn.track (stmt);
+            try {
+               // issues the query instruction
+               ResultSet rs = stmt.executeQuery (query);
+
+               int rowCount = 0;
+
+               // iterates through the result set and count nuber of results.
+               while (rs.next()){
+                  rowCount++;
+               }//end while
+               return rowCount;
+            }finally {
+               stmt.close ();
+            }//end try
+         }
+      });
+   }
+
+   /**
+    * Runs the query behind a menu feature and writes its rows to the
+    * printer.  The interactive menu and the headless WorkloadRunner both
+    * go through here, so a replayed workload exercises exactly the queries
+    * users run.
+    *
+    * @param feature the feature number, 1 to 10
+    * @param printer receives the rows
+    * @param params the values the feature prompts for, in prompt order
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when the feature does not exist, is given
+    *         the wrong number of parameters or its query failed
+    */
+   public int runFeature (int feature, RowPrinter printer, String... params) throws SQLException {
+      long t0 = System.nanoTime ();
+      try {
+         int rows = queryFeature (feature, printer, params);
+         this._metrics.feature ("feature" + feature, System.nanoTime () - t0, rows);
+         return rows;
+      }catch (SQLException e) {
+         this._metrics.featureFailed ("feature" + feature);
+         throw e;
+      }//end try
+   }//end runFeature
+
+   private int queryFeature (int feature, RowPrinter printer, String[] params) throws SQLException {
+      switch (feature) {
+         case 1: checkParams (feature, params, 1);
+                 return getReferenceCache ().schedule (params[0]).print (printer);
+         case 4: checkParams (feature, params, 1);
+                 return getDailyOperations ().board (params[0]).print (printer);
+         case 5: checkParams (feature, params, 2);
+                 return getManifestCache ().manifest (params[0], params[1]).print (printer);
+         case 7: checkParams (feature, params, 1);
+                 return getReferenceCache ().planeInfo (params[0]).print (printer);
+         default:
+            return executeQueryStreaming (featureSql (feature, params), printer, (Object[]) params);
+      }//end switch
+   }//end queryFeature
+
+   /**
+    * Runs the query behind a menu feature and returns a copy of its rows,
+    * for callers that combine the results of several features.
+    *
+    * @param feature the feature number, 1 to 10
+    * @param params the values the feature prompts for, in prompt order
+    * @return the feature's rows
+    * @throws java.sql.SQLException when the feature failed
+    */
+   public CachedResult featureResult (int feature, String... params) throws SQLException {
+      long t0 = System.nanoTime ();
+      try {
+         CachedResult result;
+         switch (feature) {
+            case 1: checkParams (feature, params, 1);
+                    result = getReferenceCache ().schedule (params[0]);
+                    break;
+            case 4: checkParams (feature, params, 1);
+                    result = getDailyOperations ().board (params[0]);
+                    break;
+            case 5: checkParams (feature, params, 2);
+                    result = getManifestCache ().manifest (params[0], params[1]).toResult ();
+                    break;
+            case 7: checkParams (feature, params, 1);
+                    result = getReferenceCache ().planeInfo (params[0]);
+                    break;
+            default:
+               result = CachedResult.load (this, featureSql (feature, params), (Object[]) params);
+         }//end switch
+         this._metrics.feature ("feature" + feature, System.nanoTime () - t0, result.size ());
+         return result;
+      }catch (SQLException e) {
+         this._metrics.featureFailed ("feature" + feature);
+         throw e;
+      }//end try
+   }//end featureResult
+
+   private static String featureSql (int feature, String[] params) throws SQLException {
+      if (feature < 1 || feature >= FEATURE_SQL.length)
+         throw new SQLException ("No feature " + feature);
+      checkParams (feature, params, FEATURE_PARAMS[feature]);
+      return FEATURE_SQL[feature];
+   }//end featureSql
+
+   /**
+    * Runs the query behind a menu feature and prints its rows to standard
+    * out.
+    *
+    * @param feature the feature number, 1 to 10
+    * @param params the values the feature prompts for, in prompt order
+    * @return the number of rows printed
+    * @throws java.sql.SQLException when the feature failed
+    */
+   public int printFeature (int feature, String... params) throws SQLException {
+      RowPrinter printer = new RowPrinter ();
+      runFeature (feature, printer, params);
+      printer.flush ();
+      return printer.getRowCount ();
+   }//end printFeature
+
+   private static void checkParams (int feature, String[] params, int expected) throws SQLException {
+      if (params.length != expected)
+         throw new SQLException ("feature" + feature + " expects " + expected +
+                                 " parameter(s), got " + params.length);
+   }//end checkParams
+
+   /**
+    * Checks a user's credentials and opens a session.  The password is
+    * verified on the Authenticator's pool; this thread only waits.
+    *
+    * @param username the user name
+    * @param password the password
+    * @return the session, or null when the credentials are wrong
+    * @throws java.sql.SQLException when the username is locked after too
+    *         many failures or the account cannot be read
+    */
+   public Authenticator.Session authenticate (String username, String password) throws SQLException {
+      long t0 = System.nanoTime ();
+      try {
+         Authenticator.Session session = getAuthenticator ().login (username, password).join ();
+         this._metrics.feature ("login", System.nanoTime () - t0, session == null ? 0 : 1);
+         return session;
+      }catch (CompletionException e) {
+         this._metrics.featureFailed ("login");
+         if (e.getCause () instanceof SQLException)
+            throw (SQLException) e.getCause ();
+         throw e;
+      }catch (CancellationException e) {
+         this._metrics.featureFailed ("login");
+         throw new SQLException ("login cancelled");
+      }//end try
+   }//end authenticate
+
+   /**
+    * Method to fetch the last value from sequence. This
+    * method issues the query to the DBMS and returns the current
+    * value of sequence used for autogenerated keys.  currval is per
+    * connection, so use it through withConnection on the connection that
+    * called nextval.
+    *
+    * @param conn the connection that advanced the sequence
+    * @param sequence name of the DB sequence
+    * @return current value of a sequence
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public static int getCurrSeqVal(PooledConnection conn, String sequence) throws SQLException {
+      PreparedStatement stmt = conn.prepare ("SELECT currval(?)");
+      bind (stmt, sequence);
+      ResultSet rs = stmt.executeQuery ();
+      try {
+         if (rs.next())
+            return rs.getInt(1);
+         return -1;
+      }finally {
+         rs.close ();
+      }//end try
+   }
+
+   /**
+    * Method to close the pooled connections.
+    */
+   public void cleanup(){
+      synchronized (this) {
+         if (this._ingestor != null) {
+            try {
+               this._ingestor.close ();
+            }catch (InterruptedException e) {
+               Thread.currentThread ().interrupt ();
+            }//end try
+         }//end if
+         if (this._promoter != null)
+            this._promoter.close ();
+         if (this._fleetHealth != null)
+            this._fleetHealth.close ();
+         if (this._async != null)
+            this._async.close ();
+         if (this._authenticator != null)
+            this._authenticator.close ();
+         if (this._listener != null)
+            this._listener.close ();
+      }//end synchronized
+      this._metrics.close ();
+      this._pool.close ();
+   }//end cleanup
+
+   /**
+    * The main execution method
+    *
+    * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+    */
+   public static void main (String[] args) {
+      if (args.length != 3) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            AirlineManagement.class.getName () +
+            " <dbname> <port> <user>");
+         return;
+      }//end if
+
+      Greeting();
+      AirlineManagement esql = null;
+      try{
+         // instantiate the AirlineManagement object and creates a physical
+         // connection.
+         String dbname = args[0];
+         String dbport = args[1];
+         String user = args[2];
+         esql = new AirlineManagement (dbname, dbport, user, "");
+
+         boolean keepon = true;
+         while(keepon) {
+            // These are sample SQL statements
+            System.out.println("MAIN MENU");
+            System.out.println("---------");
+            System.out.println("1. Create user");
+            System.out.println("2. Log in");
+            System.out.println("9. < EXIT");
+            Authenticator.Session session = null;
+            switch (readChoice()){
+               case 1: CreateUser(esql); break;
+               case 2: session = LogIn(esql); break;
+               case 9: keepon = false; break;
+               default : System.out.println("Unrecognized choice!"); break;
+            }//end switch
+            if (session != null) {
+              boolean usermenu = true;
+              while(usermenu) {
+                System.out.println("MAIN MENU");
+                System.out.println("---------");
+
+                //**the following functionalities should only be able to be used by Management**
+                if(session.hasRole("Management")){
+                  System.out.println("1. View Flights");
+                  System.out.println("2. View Flight Seats");
+                  System.out.println("3. View Flight Status");
+                  System.out.println("4. View Flights of the day");  
+                  System.out.println("5. View Full Order ID History");
+                  System.out.println("6. View Traveler Information");
+                  System.out.println("7. View Plane Information");
+                  System.out.println("8. View Technician Repair History");
+                  System.out.println("9. View Plane Repair History");
+                  System.out.println("10. View Flight Statistics");
+                  System.out.println("12. View Flight Dashboard");
+                  System.out.println("14. View Fleet Health");
+                  System.out.println("16. View Technician Summary");
+                }
+                //**the following functionalities should only be able to be used by customers**
+                if(session.hasRole("Customer")){
+                  System.out.println("10. Search Flights");
+                  System.out.println("11. Book a Flight");
+                  System.out.println("13. Cancel a Reservation");
+                  System.out.println("17. View Trip History");
+                }
+                //**the following functionalities should ony be able to be used by Pilots**
+                if(session.hasRole("Pilot")){
+                  System.out.println("15. Maintenace Request");
+                  System.out.println(".........................");
+                  System.out.println(".........................");
+                }
+               //**the following functionalities should ony be able to be used by Technicians**
+               if(session.hasRole("Technician")){
+                System.out.println(".........................");
+                System.out.println(".........................");
+               }
+                System.out.println("20. Log out");
+                int choice = readChoice();
+                // the session is checked on every action, so an expired
+                // session ends the menu and roles cannot reach other options
+                if (esql.getAuthenticator().session(session.token) == null) {
+                   System.out.println("Session expired. Please log in again.");
+                   usermenu = false;
+                   continue;
+                }
+                if (choice != 20 && !permitted(session, choice)) {
+                   System.out.println("Not permitted for " + session.role + "!");
+                   continue;
+                }
+                switch (choice){
+                   case 1: feature1(esql); break;
+                   case 2: feature2(esql); break;
+                   case 3: feature3(esql); break;
+                   case 4: feature4(esql); break;
+                   case 5: feature5(esql); break;
+                   case 6: feature6(esql); break;
+                   case 7: feature7(esql); break;
+                   case 8: feature8(esql); break;
+                   case 9: feature9(esql); break;
+                   case 10:
+                      // Customers search flights; Management views statistics
+                      if (session.hasRole("Customer"))
+                         SearchFlights(esql);
+                      else
+                         feature10(esql);
+                      break;
+                   case 11: BookFlight(esql); break;
+                   case 12: FlightDashboard(esql); break;
+                   case 13: CancelReservation(esql); break;
+                   case 14: FleetHealth(esql); break;
+                   case 15: MaintenanceRequest(esql); break;
+                   case 16: TechnicianSummary(esql); break;
+                   case 17: TripHistory(esql); break;
+
+
+                   case 20:
+                      esql.getAuthenticator().logout(session.token);
+                      usermenu = false;
+                      break;
+                   default : System.out.println("Unrecognized choice!"); break;
+                }
+              }
+            }
+         }//end while
+      }catch(Exception e) {
+         System.err.println (e.getMessage ());
+      }finally{
+         // make sure to cleanup the created table and close the connection.
+         try{
+            if(esql != null) {
+               System.out.print("Disconnecting from database...");
+               esql.cleanup ();
+               System.out.println("Done\n\nBye !");
+            }//end if
+         }catch (Exception e) {
+            // ignored.
+         }//end try
+      }//end try
+   }//end main
+
+   public static void Greeting(){
+      System.out.println(
+         "\n\n*******************************************************\n" +
+         "              User Interface      	               \n" +
+         "*******************************************************\n");
+   }//end Greeting
+
+   /*
+    * Reads the users choice given from the keyboard
+    * @int
+    **/
+   public static int readChoice() {
+      int input;
+      // returns only if a correct value is given.
+      do {
+         System.out.print("Please make your choice: ");
+         try { // read the integer, parse it and break.
+            input = Integer.parseInt(in.readLine());
+            break;
+         }catch (Exception e) {
+            System.out.println("Your input is invalid!");
+            continue;
+         }//end try
+      }while (true);
+      return input;
+   }//end readChoice
+
+   // SQL for the account and management features.  Dates are bound as text
+   // and cast on the server so they are parsed exactly as literals were.
+   static final String CREATE_USER_SQL =
+      "INSERT INTO UserAccount (Username, Password, Role) VALUES (?, ?, ?)";
+
+   static final String FLIGHT_SCHEDULE_SQL =
+      "SELECT * FROM Schedule WHERE FlightNumber = ? " +
+      "ORDER BY CASE " +
+      "WHEN DayOfWeek = 'Monday' THEN 1 " +
+      "WHEN DayOfWeek = 'Tuesday' THEN 2 " +
+      "WHEN DayOfWeek = 'Wednesday' THEN 3 " +
+      "WHEN DayOfWeek = 'Thursday' THEN 4 " +
+      "WHEN DayOfWeek = 'Friday' THEN 5 " +
+      "WHEN DayOfWeek = 'Saturday' THEN 6 " +
+      "WHEN DayOfWeek = 'Sunday' THEN 7 " +
+      "ELSE 8 END";
+
+   static final String FLIGHT_SEATS_SQL =
+      "SELECT SeatsTotal - SeatsSold AS SeatsAvailable, SeatsSold " +
+      "FROM FlightInstance " +
+      "WHERE FlightNumber = ? AND FlightDate = CAST(? AS DATE)";
+
+   static final String FLIGHT_STATUS_SQL =
+      "SELECT DepartedOnTime, ArrivedOnTime " +
+      "FROM FlightInstance " +
+      "WHERE FlightNumber = ? AND FlightDate = CAST(? AS DATE)";
+
+   // feature4: the departure times are those of the Schedule row for the
+   // weekday of the date; instances without one are listed last.
+   static final String FLIGHTS_OF_DAY_SQL =
+      "SELECT FI.FlightInstanceID, FI.FlightNumber, F.DepartureCity, F.ArrivalCity, " +
+      "S.DepartureTime, S.ArrivalTime, F.PlaneID, FI.DepartedOnTime, FI.ArrivedOnTime, " +
+      "COALESCE(FI.SeatsSold, 0) AS SeatsSold, COALESCE(FI.SeatsTotal, 0) AS SeatsTotal " +
+      "FROM FlightInstance FI " +
+      "JOIN Flight F ON F.FlightNumber = FI.FlightNumber " +
+      "LEFT JOIN Schedule S ON S.FlightNumber = FI.FlightNumber " +
+      "AND S.DayOfWeek = to_char(FI.FlightDate, 'FMDay') " +
+      "WHERE FI.FlightDate = CAST(? AS DATE) " +
+      "ORDER BY S.DepartureTime, FI.FlightNumber, FI.FlightInstanceID";
+
+   static final String FLIGHT_MANIFEST_SQL =
+      "SELECT C.FirstName, C.LastName, R.Status " +
+      "FROM Reservation R " +
+      "JOIN Customer C ON R.CustomerID = C.CustomerID " +
+      "JOIN FlightInstance FI ON R.FlightInstanceID = FI.FlightInstanceID " +
+      "WHERE FI.FlightNumber = ? AND FI.FlightDate = CAST(? AS DATE) " +
+      "ORDER BY CASE " +
+      "WHEN R.Status = 'reserved' THEN 1 " +
+      "WHEN R.Status = 'waitlist' THEN 2 " +
+      "WHEN R.Status = 'flown' THEN 3 " +
+      "ELSE 4 END, C.LastName, C.FirstName";
+
+   // feature5 on the partitioned schema: the reservations' FlightDate is
+   // joined to the instance's, so the date also selects the one Reservation
+   // partition to read.
+   static final String PARTITIONED_FLIGHT_MANIFEST_SQL =
+      "SELECT C.FirstName, C.LastName, R.Status " +
+      "FROM Reservation R " +
+      "JOIN Customer C ON R.CustomerID = C.CustomerID " +
+      "JOIN FlightInstance FI ON R.FlightInstanceID = FI.FlightInstanceID " +
+      "AND R.FlightDate = FI.FlightDate " +
+      "WHERE FI.FlightNumber = ? AND FI.FlightDate = CAST(? AS DATE) " +
+      "ORDER BY CASE " +
+      "WHEN R.Status = 'reserved' THEN 1 " +
+      "WHEN R.Status = 'waitlist' THEN 2 " +
+      "WHEN R.Status = 'flown' THEN 3 " +
+      "ELSE 4 END, C.LastName, C.FirstName";
+
+   static final String PARTITIONED_SQL =
+      "SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass('reservation')";
+
+   static final String TRAVELER_INFO_SQL =
+      "SELECT C.CustomerID, C.FirstName, C.LastName, C.Gender, " +
+      "C.DOB, C.Address, C.Phone, C.Zip " +
+      "FROM Reservation R " +
+      "JOIN Customer C ON R.CustomerID = C.CustomerID " +
+      "WHERE R.ReservationID = ?";
+
+   // Plane.LastRepairDate is kept at the latest repair by the triggers of
+   // create_triggers.sql, so feature7 reads one Plane row.
+   static final String PLANE_INFO_SQL =
+      "SELECT P.Make, P.Model, " +
+      "EXTRACT(YEAR FROM AGE(CURRENT_DATE, TO_DATE(P.Year::TEXT, 'YYYY'))) AS Age, " +
+      "P.LastRepairDate " +
+      "FROM Plane P " +
+      "WHERE P.PlaneID = ?";
+
+   static final String TECHNICIAN_REPAIRS_SQL =
+      "SELECT R.RepairID, R.PlaneID, R.RepairCode, R.RepairDate " +
+      "FROM Repair R " +
+      "WHERE R.TechnicianID = ? " +
+      "ORDER BY R.RepairDate DESC";
+
+   static final String PLANE_REPAIRS_SQL =
+      "SELECT R.RepairID, R.RepairCode, R.RepairDate, R.TechnicianID " +
+      "FROM Repair R " +
+      "WHERE R.PlaneID = ? " +
+      "AND R.RepairDate BETWEEN CAST(? AS DATE) AND CAST(? AS DATE) " +
+      "ORDER BY R.RepairDate";
+
+   // feature10 sums the per-day buckets of FlightDailyStats, an index range
+   // read on its primary key, instead of aggregating FlightInstance rows.
+   static final String FLIGHT_STATISTICS_SQL =
+      "SELECT " +
+      "COALESCE(SUM(S.NumDepartedOnTime),0) AS NumDepartedOnTime, " +
+      "COALESCE(SUM(S.NumDepartedDelayed),0) AS NumDepartedDelayed, " +
+      "COALESCE(SUM(S.NumArrivedOnTime),0) AS NumArrivedOnTime, " +
+      "COALESCE(SUM(S.NumArrivedDelayed),0) AS NumArrivedDelayed, " +
+      "SUM(S.SeatsSold) AS TotalSeatsSold, " +
+      "SUM(S.SeatsUnsold) AS TotalSeatsUnsold " +
+      "FROM FlightDailyStats S " +
+      "WHERE S.FlightNumber = ? " +
+      "AND S.FlightDate BETWEEN CAST(? AS DATE) AND CAST(? AS DATE)";
+
+   // query of each feature that is not served from a cache, by feature
+   // number, and the number of parameters it takes.
+   static final String[] FEATURE_SQL = {
+      null, FLIGHT_SCHEDULE_SQL, FLIGHT_SEATS_SQL, FLIGHT_STATUS_SQL,
+      FLIGHTS_OF_DAY_SQL, FLIGHT_MANIFEST_SQL, TRAVELER_INFO_SQL, PLANE_INFO_SQL,
+      TECHNICIAN_REPAIRS_SQL, PLANE_REPAIRS_SQL, FLIGHT_STATISTICS_SQL
+   };
+   static final int[] FEATURE_PARAMS = { 0, 1, 2, 2, 1, 2, 1, 1, 1, 3, 3 };
+
+   /*
+    * Creates a new user
+    **/
+   public static void CreateUser(AirlineManagement esql){
+      try{
+         System.out.print("\tCreate Username: ");
+         String username = in.readLine();
+         System.out.print("\tCreate Password: ");
+         String password = in.readLine();
+         System.out.print("\tCreate Role (Management, Customer, Pilot, Technician): ");
+         boolean isValidRole = false;
+         String role = "";
+         
+         while(!isValidRole){
+            role = in.readLine();
+            
+            // Check if the role is valid
+            for (String valid : Authenticator.ROLES) {
+               if (valid.equalsIgnoreCase(role)) {
+                  isValidRole = true;
+                  role = valid;
+               }
+            }
+            if (!isValidRole)
+               System.out.println("Invalid role. Please enter a valid role.");
+         }
+         esql.getAuthenticator().createUser(username, password, role);
+         
+      }
+      catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end CreateUser
+
+
+   /*
+    * Check log in credentials for an existing user
+    * @return the user's session, or null when the credentials are wrong
+    **/
+   public static Authenticator.Session LogIn(AirlineManagement esql){
+       try {
+      System.out.print("\tEnter Username: ");
+      String username = in.readLine();
+
+      System.out.print("\tEnter Password: ");
+      String password = in.readLine();
+
+      Authenticator.Session session = esql.authenticate(username, password);
+
+      if (session != null) {
+         System.out.println("\nLogin successful! Logged in as " + session.role + ".");
+         return session; 
+      } else {
+         System.out.println("Login failed: Invalid username or password.");
+         return null;
+      }
+   } catch (Exception e) {
+      System.err.println("Error during login: " + e.getMessage());
+      return null;
+   }
+   }//end
+
+   /*
+    * Menu choices each role may use, matching the options printed for it
+    **/
+   static boolean permitted(Authenticator.Session session, int choice) {
+      if (session.hasRole("Management"))
+         return (choice >= 1 && choice <= 10) || choice == 12 || choice == 14 || choice == 16;
+      if (session.hasRole("Customer"))
+         return choice == 10 || choice == 11 || choice == 13 || choice == 17;
+      if (session.hasRole("Pilot"))
+         return choice == 15;
+      return false;
+   }//end permitted
+
+// Rest of the functions definition go in here
+
+   public static void feature1(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Flight Number: ");
+         String input = in.readLine();
+         int rowCount = esql.printFeature(1, input);
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      }
+      
+      catch (Exception e) {
+      System.err.println(e.getMessage());
+      }
+   }
+   public static void feature2(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Flight Number: ");
+         String flightNum = in.readLine();
+         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
+         String date = in.readLine();
+         int rowCount = esql.printFeature(2, flightNum, date);
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } 
+      catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+   public static void feature3(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Flight Number: ");
+         String flightNum = in.readLine();
+         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
+         String date = in.readLine();
+         int rowCount = esql.printFeature(3, flightNum, date);
+         System.out.println("total row(s): " + rowCount);
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+   public static void feature4(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
+         String date = in.readLine();
+         int rowCount = esql.printFeature(4, date);
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+   public static void feature5(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Flight Number: ");
+         String flightNum = in.readLine();
+         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
+         String date = in.readLine();
+         int rowCount = esql.printFeature(5, flightNum, date);
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+   public static void feature6(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Reservation ID: ");
+         String resID = in.readLine();
+         int rowCount = esql.printFeature(6, resID);
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+
+   public static void feature7(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Plane ID: ");
+         String planeID = in.readLine();
+         int rowCount = esql.printFeature(7, planeID);
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+
+   public static void feature8(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Technician ID: ");
+         String techID = in.readLine();
+         int rowCount = esql.printFeature(8, techID);
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+
+   public static void feature9(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Plane ID: ");
+         String planeID = in.readLine();
+         System.out.print("\tEnter Start Date (DD-MM-YY): ");
+         String startDate = in.readLine();
+         System.out.print("\tEnter End Date (DD-MM-YY): ");
+         String endDate = in.readLine();
+
+         int rowCount = esql.printFeature(9, planeID, startDate, endDate);
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+
+   public static void feature10(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Flight Number: ");
+         String flightNum = in.readLine();
+         System.out.print("\tEnter Start Date (DD-MM-YY): ");
+         String startDate = in.readLine();
+         System.out.print("\tEnter End Date (DD-MM-YY): ");
+         String endDate = in.readLine();
+
+         int rowCount = esql.printFeature(10, flightNum, startDate, endDate);
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }
+
+   /*
+    * Searches direct and connecting flights between two cities on a date
+    **/
+   public static void SearchFlights(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Departure City: ");
+         String from = in.readLine();
+         System.out.print("\tEnter Arrival City: ");
+         String to = in.readLine();
+         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
+         String date = in.readLine();
+
+         List<FlightSearch.Itinerary> itineraries =
+            esql.getFlightSearch().search(from, to, date, FlightSearch.DEFAULT_MAX_RESULTS);
+         RowPrinter printer = new RowPrinter();
+         FlightSearch.print(itineraries, printer);
+         printer.flush();
+         System.out.println("total row(s): " + itineraries.size());
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end SearchFlights
+
+   /*
+    * Shows seats, status, plane and manifest of a flight instance, fetched
+    * concurrently
+    **/
+   public static void FlightDashboard(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Flight Number: ");
+         String flightNum = in.readLine();
+         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
+         String date = in.readLine();
+
+         AsyncExecutor.FlightView view = esql.getAsyncExecutor()
+            .flightView(flightNum, date, AsyncExecutor.DEFAULT_TIMEOUT_MILLIS).join();
+         System.out.println("Seats:");
+         view.seats.print();
+         System.out.println("Status:");
+         view.status.print();
+         System.out.println("Plane:");
+         view.plane.print();
+         System.out.println("Passengers:");
+         int rowCount = view.manifest.print();
+         System.out.println("total passenger(s): " + rowCount);
+         System.out.println();
+      } catch (CompletionException e) {
+         System.err.println(e.getCause().getMessage());
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end FlightDashboard
+
+   /*
+    * Files a maintenance request for a plane on behalf of a pilot
+    **/
+   public static void MaintenanceRequest(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Pilot ID: ");
+         String pilotID = in.readLine();
+         System.out.print("\tEnter Plane ID: ");
+         String planeID = in.readLine();
+         System.out.print("\tEnter Repair Code: ");
+         String repairCode = in.readLine();
+         System.out.print("\tEnter Request Date (DD-MM-YY): ");
+         String date = in.readLine();
+
+         if (esql.getMaintenanceIngestor().submit(
+                MaintenanceIngestor.Record.maintenanceRequest(planeID, repairCode, date, pilotID)).join())
+            System.out.println("Maintenance request filed.");
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end MaintenanceRequest
+
+   /*
+    * Books a seat for a customer, or places them on the waitlist when the
+    * flight is full
+    **/
+   public static void BookFlight(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Customer ID: ");
+         int customerID = Integer.parseInt(in.readLine().trim());
+         System.out.print("\tEnter Flight Number: ");
+         String flightNum = in.readLine();
+         System.out.print("\tEnter Flight Date (DD-MM-YY): ");
+         String date = in.readLine();
+
+         BookingEngine.Booking booking = new BookingEngine(esql).book(customerID, flightNum, date);
+         System.out.println(booking);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end BookFlight
+
+   /*
+    * Cancels a reservation; a seat it held goes to the head of the waitlist
+    **/
+   public static void CancelReservation(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Reservation ID: ");
+         String reservationID = in.readLine().trim();
+
+         if (new BookingEngine(esql).cancel(reservationID))
+            System.out.println("Reservation " + reservationID + " cancelled.");
+         else
+            System.out.println("No reservation " + reservationID + ".");
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end CancelReservation
+
+   /*
+    * Shows the maintenance health of a plane, or the planes needing
+    * attention most when no plane is given
+    **/
+   public static void FleetHealth(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Plane ID (blank for planes needing attention): ");
+         String planeID = in.readLine().trim();
+
+         FleetHealth health = esql.getFleetHealth();
+         int rowCount;
+         if (planeID.isEmpty()) {
+            rowCount = health.needingAttention(FleetHealth.DEFAULT_LIMIT).print();
+         } else {
+            health.plane(planeID).print();
+            System.out.println("By repair code:");
+            rowCount = health.planeCodes(planeID).print();
+         }
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end FleetHealth
+
+   /*
+    * Shows a technician's repairs summed up by repair code
+    **/
+   public static void TechnicianSummary(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Technician ID: ");
+         String techID = in.readLine().trim();
+
+         int rowCount = esql.getFleetHealth().technician(techID).print();
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end TechnicianSummary
+
+   /*
+    * Shows a customer's upcoming, flown and waitlisted trips, then their
+    * trips newest first, a page at a time
+    **/
+   public static void TripHistory(AirlineManagement esql) {
+      try {
+         System.out.print("\tEnter Customer ID: ");
+         int customerID = Integer.parseInt(in.readLine().trim());
+
+         CustomerHistory history = esql.getCustomerHistory();
+         history.summary(customerID).print();
+         int rowCount = 0;
+         CustomerHistory.Cursor after = null;
+         do {
+            CustomerHistory.Page page = history.trips(customerID, after, CustomerHistory.DEFAULT_PAGE_SIZE);
+            rowCount += page.trips.print();
+            after = page.next;
+            if (after != null)
+               System.out.print("\tMore trips? (y/n): ");
+         } while (after != null && in.readLine().trim().equalsIgnoreCase("y"));
+         System.out.println("total row(s): " + rowCount);
+         System.out.println();
+      } catch (Exception e) {
+         System.err.println(e.getMessage());
+      }
+   }//end TripHistory
+
+
+
+
+  
+
+
+}//end AirlineManagement
+
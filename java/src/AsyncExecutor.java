@@ -0,0 +1,380 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs queries asynchronously over the pooled connections, so independent
+ * queries overlap instead of paying one round trip after another.
+ *
+ * Each call runs on its own virtual thread when the JVM has them (Java 21
+ * and later) and on a cached pool of daemon threads otherwise.  At most as
+ * many calls run as the pool has connections; the others wait for a slot.
+ *
+ * Every call has a timeout.  A call that times out or is cancelled stops
+ * the statement it is running with Statement.cancel, or stops waiting for a
+ * connection if it has none yet.  A cancelled connection is discarded by
+ * the pool.
+ *
+ * A Query must not wait on other calls of the same executor: it holds a
+ * slot while it runs.  Combine calls with the returned futures instead, as
+ * flightView does.
+ *
+ */
+public class AsyncExecutor {
+
+   static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+   /**
+    * Work run asynchronously against the database.
+    */
+   public interface Query<T> {
+      T run (AirlineManagement esql) throws SQLException;
+   }//end Query
+
+   /**
+    * The four management views of one flight instance.
+    */
+   public static class FlightView {
+      public final CachedResult seats;
+      public final CachedResult status;
+      public final CachedResult manifest;
+      public final CachedResult plane;
+
+      FlightView (CachedResult seats, CachedResult status, CachedResult manifest, CachedResult plane) {
+         this.seats = seats;
+         this.status = status;
+         this.manifest = manifest;
+         this.plane = plane;
+      }
+   }//end FlightView
+
+   // the call running on the current thread, if any.
+   private static final ThreadLocal<Call<?>> CURRENT = new ThreadLocal<Call<?>>();
+
+   private final AirlineManagement _esql;
+   private final ExecutorService _executor;
+   private final ScheduledExecutorService _timer;
+   private final Semaphore _slots;
+
+   /**
+    * Creates an executor allowing as many concurrent calls as the pool has
+    * connections.
+    *
+    * @param esql the database
+    */
+   public AsyncExecutor (AirlineManagement esql) {
+      this (esql, esql.getPool ().getMaxSize ());
+   }//end AsyncExecutor
+
+   /**
+    * @param esql the database
+    * @param concurrency the most calls running at once
+    */
+   public AsyncExecutor (AirlineManagement esql, int concurrency) {
+      if (concurrency < 1)
+         throw new IllegalArgumentException ("concurrency must be positive");
+      this._esql = esql;
+      this._executor = newThreadPerTaskExecutor ();
+      this._slots = new Semaphore (concurrency, true);
+      this._timer = Executors.newSingleThreadScheduledExecutor (daemon ("async-timeout"));
+   }//end AsyncExecutor
+
+   /**
+    * Runs a query asynchronously.
+    *
+    * @param query the work
+    * @param timeoutMillis how long the call may take, waiting included;
+    *        0 or less for no limit
+    * @return the result; completes exceptionally with the SQLException
+    *         raised, or with a TimeoutException
+    */
+   public <T> CompletableFuture<T> submit (final Query<T> query, final long timeoutMillis) {
+      final Call<T> call = new Call<T>();
+      if (timeoutMillis > 0) {
+         final ScheduledFuture<?> timeout = this._timer.schedule (new Runnable () {
+            public void run () { call.timeOut (timeoutMillis); }
+         }, timeoutMillis, TimeUnit.MILLISECONDS);
+         call.whenComplete (new BiConsumer<T, Throwable>() {
+            public void accept (T result, Throwable failure) { timeout.cancel (false); }
+         });
+      }//end if
+      try {
+         this._executor.execute (new Runnable () {
+            public void run () { execute (call, query); }
+         });
+      }catch (RejectedExecutionException e) {
+         call.completeExceptionally (new SQLException ("executor is closed"));
+      }//end try
+      return call;
+   }//end submit
+
+   /**
+    * Runs a menu feature asynchronously and copies its rows.
+    *
+    * @param feature the feature number, 1 to 10
+    * @param timeoutMillis how long the call may take
+    * @param params the values the feature prompts for, in prompt order
+    * @return the feature's rows
+    */
+   public CompletableFuture<CachedResult> feature (final int feature, long timeoutMillis, final String... params) {
+      return submit (new Query<CachedResult>() {
+         public CachedResult run (AirlineManagement esql) throws SQLException {
+            return esql.featureResult (feature, params);
+         }
+      }, timeoutMillis);
+   }//end feature
+
+   /**
+    * Fetches seats (feature2), status (feature3), manifest (feature5) and
+    * plane (feature7) of a flight instance concurrently.  If one of them
+    * fails, the others are cancelled; cancelling the view cancels all four.
+    *
+    * @param flightNumber the flight
+    * @param date the flight date
+    * @param timeoutMillis how long each of the four may take
+    * @return the combined view
+    */
+   public CompletableFuture<FlightView> flightView (final String flightNumber, String date, long timeoutMillis) {
+      final CompletableFuture<CachedResult> seats = feature (2, timeoutMillis, flightNumber, date);
+      final CompletableFuture<CachedResult> status = feature (3, timeoutMillis, flightNumber, date);
+      final CompletableFuture<CachedResult> manifest = feature (5, timeoutMillis, flightNumber, date);
+      final CompletableFuture<CachedResult> plane = submit (new Query<CachedResult>() {
+         public CachedResult run (AirlineManagement esql) throws SQLException {
+            CachedResult flight = esql.getReferenceCache ().flight (flightNumber);
+            int col = column (flight, "planeid");
+            if (flight.size () == 0 || col < 0)
+               throw new SQLException ("No flight " + flightNumber);
+            return esql.featureResult (7, flight.get (0, col));
+         }
+      }, timeoutMillis);
+
+      return new FanIn<FlightView>(seats, status, manifest, plane) {
+         FlightView combine () {
+            return new FlightView (seats.join (), status.join (), manifest.join (), plane.join ());
+         }
+      };
+   }//end flightView
+
+   /**
+    * Stops accepting calls, cancels those waiting or running and stops the
+    * threads.
+    */
+   public void close () {
+      this._executor.shutdownNow ();
+      this._timer.shutdownNow ();
+   }//end close
+
+   private void execute (Call<?> call, Query<?> query) {
+      call.start ();
+      try {
+         if (call.isDone ())
+            return;
+         this._slots.acquire ();
+         try {
+            CURRENT.set (call);
+            call.finish (query, this._esql);
+         }finally {
+            CURRENT.remove ();
+            this._slots.release ();
+         }//end try
+      }catch (InterruptedException e) {
+         call.completeExceptionally (new SQLException ("interrupted while waiting to run"));
+      }finally {
+         call.end ();
+      }//end try
+   }//end execute
+
+   /**
+    * Called by AirlineManagement.withConnection once it holds a connection,
+    * so cancelling the call on this thread cancels statements run on it.
+    *
+    * @param conn the borrowed connection
+    * @throws java.sql.SQLException when the call was already cancelled or
+    *         timed out
+    */
+   static void attach (PooledConnection conn) throws SQLException {
+      Call<?> call = CURRENT.get ();
+      if (call != null)
+         call.attach (conn);
+   }//end attach
+
+   /**
+    * Called by AirlineManagement.withConnection before it returns the
+    * connection to the pool.
+    */
+   static void detach () {
+      Call<?> call = CURRENT.get ();
+      if (call != null)
+         call.detach ();
+   }//end detach
+
+   /*
+    * The virtual thread executor when the JVM has one, looked up
+    * reflectively so the code still compiles and runs on Java 17.
+    */
+   static ExecutorService newThreadPerTaskExecutor () {
+      try {
+         Method factory = Executors.class.getMethod ("newVirtualThreadPerTaskExecutor");
+         return (ExecutorService) factory.invoke (null);
+      }catch (Exception e) {
+         return Executors.newCachedThreadPool (daemon ("async-query"));
+      }//end try
+   }//end newThreadPerTaskExecutor
+
+   private static ThreadFactory daemon (final String name) {
+      final AtomicInteger count = new AtomicInteger ();
+      return new ThreadFactory () {
+         public Thread newThread (Runnable r) {
+            Thread t = new Thread (r, name + "-" + count.incrementAndGet ());
+            t.setDaemon (true);
+            return t;
+         }
+      };
+   }//end daemon
+
+   private static int column (CachedResult result, String name) {
+      String[] columns = result.getColumns ();
+      for (int i = 0; i < columns.length; ++i)
+         if (columns[i].equalsIgnoreCase (name))
+            return i;
+      return -1;
+   }//end column
+
+   /*
+    * One asynchronous call.  Cancelling or timing it out interrupts its
+    * thread while it waits for a slot or a connection and cancels the
+    * statement once it holds a connection.
+    */
+   private static class Call<T> extends CompletableFuture<T> {
+      private volatile Thread _thread;
+      // guarded by this, so a cancel never reaches a connection released
+      // to the pool
+      private PooledConnection _conn;
+
+      public boolean cancel (boolean mayInterruptIfRunning) {
+         boolean cancelled = super.cancel (mayInterruptIfRunning);
+         if (cancelled)
+            stop ();
+         return cancelled;
+      }//end cancel
+
+      void timeOut (long millis) {
+         if (completeExceptionally (new TimeoutException ("query timed out after " + millis + " ms")))
+            stop ();
+      }//end timeOut
+
+      void start () {
+         // a pooled thread may still carry the interrupt meant for a
+         // previous call
+         Thread.interrupted ();
+         this._thread = Thread.currentThread ();
+      }//end start
+
+      void end () {
+         this._thread = null;
+      }//end end
+
+      @SuppressWarnings ("unchecked")
+      void finish (Query<?> query, AirlineManagement esql) {
+         try {
+            complete (((Query<T>) query).run (esql));
+         }catch (Throwable e) {
+            completeExceptionally (e);
+         }//end try
+      }//end finish
+
+      // the call completes before stop takes the lock, so either attach sees
+      // the call is done or stop sees the connection
+      synchronized void attach (PooledConnection conn) throws SQLException {
+         this._conn = conn;
+         if (isDone ())
+            throw new SQLException ("query cancelled", "57014");
+      }//end attach
+
+      // runs before the connection goes back to the pool, and waits for a
+      // cancel in progress
+      synchronized void detach () {
+         this._conn = null;
+      }//end detach
+
+      private void stop () {
+         synchronized (this) {
+            if (this._conn != null) {
+               this._conn.cancel ();
+               return;
+            }//end if
+         }//end synchronized
+         Thread thread = this._thread;
+         if (thread != null)
+            thread.interrupt ();
+      }//end stop
+   }//end Call
+
+   /*
+    * Completes with combine () once all parts complete, or with the first
+    * failure, cancelling the parts still running.
+    */
+   private static abstract class FanIn<V> extends CompletableFuture<V> {
+      private final CompletableFuture<?>[] _parts;
+      private final AtomicInteger _remaining;
+
+      FanIn (CompletableFuture<?>... parts) {
+         this._parts = parts;
+         this._remaining = new AtomicInteger (parts.length);
+         for (CompletableFuture<?> part : parts) {
+            part.whenComplete (new BiConsumer<Object, Throwable>() {
+               public void accept (Object result, Throwable failure) { partDone (failure); }
+            });
+         }//end for
+      }//end FanIn
+
+      abstract V combine ();
+
+      public boolean cancel (boolean mayInterruptIfRunning) {
+         boolean cancelled = super.cancel (mayInterruptIfRunning);
+         if (cancelled)
+            cancelParts ();
+         return cancelled;
+      }//end cancel
+
+      private void partDone (Throwable failure) {
+         if (failure != null) {
+            if (completeExceptionally (failure))
+               cancelParts ();
+         } else if (this._remaining.decrementAndGet () == 0) {
+            try {
+               complete (combine ());
+            }catch (Throwable e) {
+               completeExceptionally (e);
+            }//end try
+         }//end if
+      }//end partDone
+
+      private void cancelParts () {
+         for (CompletableFuture<?> part : this._parts)
+            part.cancel (true);
+      }//end cancelParts
+   }//end FanIn
+
+}//end AsyncExecutor
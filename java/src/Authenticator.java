@@ -0,0 +1,377 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Logins, accounts and sessions.
+ *
+ * Passwords are stored in UserAccount.Password as salted PBKDF2 hashes,
+ * "pbkdf2-sha256$iterations$salt$hash".  Accounts created before hashing
+ * still hold the plain password; it is accepted once and replaced by a
+ * hash.
+ *
+ * Hashing is slow on purpose, so it runs on a pool with one thread per CPU
+ * rather than on the caller's thread.  Accounts are cached briefly, and so
+ * is the absence of one, so a login storm at shift change, or guessing at
+ * usernames that do not exist, costs CPU, not a query per attempt.  After
+ * MAX_FAILURES wrong passwords a username is locked for LOCKOUT_MILLIS from
+ * the last of them; locked attempts are refused before any hashing.  Locks
+ * are kept apart from the failure counts, so failures on other usernames
+ * cannot evict them.
+ *
+ * A successful login issues a random session token carrying the user's
+ * role.  Sessions live in memory, expire after SESSION_TTL_MILLIS and are
+ * bounded in number, the least recently used being dropped first.
+ *
+ */
+public class Authenticator {
+
+   static final String SCHEME = "pbkdf2-sha256";
+   static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+   static final int SALT_BYTES = 16;
+   static final int HASH_BITS = 256;
+   static final int TOKEN_BYTES = 32;
+
+   // iterations for new hashes; -Dairline.auth.iterations overrides.
+   // Stored hashes keep the count they were made with.
+   static final int DEFAULT_ITERATIONS = 310000;
+
+   static final int MAX_SESSIONS = 100000;
+   static final long SESSION_TTL_MILLIS = 12 * 60 * 60 * 1000;
+
+   static final int MAX_FAILURES = 5;
+   static final long LOCKOUT_MILLIS = 15 * 60 * 1000;
+
+   static final int MAX_ACCOUNTS = 10000;
+   static final long ACCOUNT_TTL_MILLIS = 60 * 1000;
+
+   static final String ACCOUNT_SQL =
+      "SELECT Password, Role FROM UserAccount WHERE Username = ?";
+   static final String UPDATE_PASSWORD_SQL =
+      "UPDATE UserAccount SET Password = ? WHERE Username = ? AND Password = ?";
+
+   static final String[] ROLES = { "Management", "Customer", "Pilot", "Technician" };
+
+   /**
+    * A logged in user.
+    */
+   public static class Session {
+      public final String token;
+      public final String username;
+      public final String role;
+      public final long expires;
+
+      Session (String token, String username, String role, long expires) {
+         this.token = token;
+         this.username = username;
+         this.role = role;
+         this.expires = expires;
+      }
+
+      public boolean hasRole (String role) {
+         return this.role.equals (role);
+      }//end hasRole
+   }//end Session
+
+   /*
+    * The stored password and role of a user.
+    */
+   private static class Account {
+      final String password;
+      final String role;
+
+      Account (String password, String role) {
+         this.password = password;
+         this.role = role;
+      }
+   }//end Account
+
+   // cached for usernames without an account
+   private static final Account NO_ACCOUNT = new Account (null, null);
+
+   /*
+    * Recent wrong passwords of a username.
+    */
+   private static class Failures {
+      int count;
+   }//end Failures
+
+   private final AirlineManagement _esql;
+   private final int _iterations;
+   private final SecureRandom _random = new SecureRandom ();
+   private final ExecutorService _verifiers;
+
+   private final LruCache<String, Session> _sessions =
+      new LruCache<String, Session>("sessions", MAX_SESSIONS, SESSION_TTL_MILLIS);
+   private final LruCache<String, Account> _accounts =
+      new LruCache<String, Account>("accounts", MAX_ACCOUNTS, ACCOUNT_TTL_MILLIS);
+   private final LruCache<String, Failures> _failures =
+      new LruCache<String, Failures>("loginFailures", MAX_ACCOUNTS, LOCKOUT_MILLIS);
+   // username -> end of its lock; expired locks are pruned as others are added
+   private final ConcurrentHashMap<String, Long> _locks = new ConcurrentHashMap<String, Long>();
+
+   // hashed for unknown users, so they take as long as wrong passwords;
+   // made on first use
+   private volatile String _dummyHash;
+
+   /**
+    * @param esql the database
+    */
+   public Authenticator (AirlineManagement esql) {
+      this._esql = esql;
+      this._iterations = Integer.getInteger ("airline.auth.iterations", DEFAULT_ITERATIONS);
+      final AtomicInteger count = new AtomicInteger ();
+      this._verifiers = Executors.newFixedThreadPool (
+         Runtime.getRuntime ().availableProcessors (), new ThreadFactory () {
+            public Thread newThread (Runnable r) {
+               Thread t = new Thread (r, "password-verifier-" + count.incrementAndGet ());
+               t.setDaemon (true);
+               return t;
+            }
+         });
+   }//end Authenticator
+
+   /**
+    * Checks a user's credentials on the verifier pool and opens a session.
+    *
+    * @param username the user name
+    * @param password the password
+    * @return the session, or null when the credentials are wrong; completes
+    *         exceptionally with an SQLException when the username is locked
+    *         or the account cannot be read
+    */
+   public CompletableFuture<Session> login (final String username, final String password) {
+      Long lockedUntil = this._locks.get (username);
+      long wait = lockedUntil == null ? 0 : lockedUntil.longValue () - System.currentTimeMillis ();
+      if (wait > 0) {
+         CompletableFuture<Session> locked = new CompletableFuture<Session>();
+         locked.completeExceptionally (new SQLException (
+            "Too many failed logins for " + username + "; try again in " + (wait / 1000 + 1) + " s", "28000"));
+         return locked;
+      }//end if
+      return CompletableFuture.supplyAsync (new Supplier<Session>() {
+         public Session get () {
+            try {
+               return verify (username, password);
+            }catch (SQLException e) {
+               throw new CompletionException (e);
+            }//end try
+         }
+      }, this._verifiers);
+   }//end login
+
+   /**
+    * Returns a live session.
+    *
+    * @param token the session token
+    * @return the session, or null when unknown, expired or logged out
+    */
+   public Session session (String token) {
+      return token == null ? null : this._sessions.get (token);
+   }//end session
+
+   /**
+    * Ends a session.
+    *
+    * @param token the session token
+    */
+   public void logout (String token) {
+      this._sessions.invalidate (token);
+   }//end logout
+
+   /**
+    * Creates an account with a hashed password.
+    *
+    * @param username the user name
+    * @param password the password
+    * @param role one of ROLES
+    * @throws java.sql.SQLException when the account cannot be created, e.g.
+    *         the username is taken
+    */
+   public void createUser (String username, String password, String role) throws SQLException {
+      String stored = hash (password);
+      this._esql.executeUpdate (AirlineManagement.CREATE_USER_SQL, username, stored, role);
+      this._accounts.invalidate (username);
+   }//end createUser
+
+   /**
+    * Stops the verifier threads.
+    */
+   public void close () {
+      this._verifiers.shutdownNow ();
+   }//end close
+
+   /**
+    * @return one line of statistics per cache
+    */
+   public String stats () {
+      return this._sessions + "\n" + this._accounts + "\n" + this._failures + "\n" +
+             "loginLocks: " + this._locks.size () + " usernames";
+   }//end stats
+
+   /*
+    * Runs on a verifier thread.
+    */
+   private Session verify (String username, String password) throws SQLException {
+      Account account = account (username);
+      boolean ok;
+      if (account == null) {
+         if (this._dummyHash == null)
+            this._dummyHash = hash ("");
+         matches (password, this._dummyHash);
+         ok = false;
+      } else if (account.password.startsWith (SCHEME + "$")) {
+         ok = matches (password, account.password);
+      } else {
+         ok = MessageDigest.isEqual (account.password.getBytes (StandardCharsets.UTF_8),
+                                     password.getBytes (StandardCharsets.UTF_8));
+         if (ok)
+            upgrade (username, account);
+      }//end if
+      if (!ok) {
+         failed (username);
+         return null;
+      }//end if
+      this._failures.invalidate (username);
+
+      Session session = new Session (token (), username, account.role,
+                                     System.currentTimeMillis () + SESSION_TTL_MILLIS);
+      this._sessions.put (session.token, session);
+      return session;
+   }//end verify
+
+   private Account account (String username) throws SQLException {
+      Account account = this._accounts.get (username);
+      if (account != null)
+         return account == NO_ACCOUNT ? null : account;
+      Rows.UserAccount row = this._esql.executeQueryForObject (ACCOUNT_SQL, Rows.UserAccount.mapper (), username);
+      if (row == null) {
+         this._accounts.put (username, NO_ACCOUNT);
+         return null;
+      }//end if
+      account = new Account (row.password (), row.role ());
+      this._accounts.put (username, account);
+      return account;
+   }//end account
+
+   /*
+    * Replaces a plain password by its hash, unless it changed meanwhile.
+    */
+   private void upgrade (String username, Account account) {
+      try {
+         this._esql.executeUpdate (UPDATE_PASSWORD_SQL, hash (account.password), username, account.password);
+      }catch (SQLException e) {
+         // the plain password keeps working; try again next login.
+      }//end try
+      this._accounts.invalidate (username);
+   }//end upgrade
+
+   private void failed (String username) {
+      Failures failures;
+      synchronized (this._failures) {
+         failures = this._failures.get (username);
+         if (failures == null) {
+            failures = new Failures ();
+            this._failures.put (username, failures);
+         }//end if
+      }//end synchronized
+      synchronized (failures) {
+         if (++failures.count >= MAX_FAILURES) {
+            failures.count = 0;
+            lock (username);
+         }//end if
+      }//end synchronized
+   }//end failed
+
+   /*
+    * Locks a username for LOCKOUT_MILLIS from now.
+    */
+   private void lock (String username) {
+      long now = System.currentTimeMillis ();
+      if (this._locks.size () >= MAX_ACCOUNTS) {
+         Iterator<Map.Entry<String, Long>> it = this._locks.entrySet ().iterator ();
+         while (it.hasNext ())
+            if (it.next ().getValue ().longValue () <= now)
+               it.remove ();
+      }//end if
+      this._locks.put (username, now + LOCKOUT_MILLIS);
+   }//end lock
+
+   private String token () {
+      byte[] bytes = new byte[TOKEN_BYTES];
+      this._random.nextBytes (bytes);
+      return Base64.getUrlEncoder ().withoutPadding ().encodeToString (bytes);
+   }//end token
+
+   /**
+    * Hashes a password with a new random salt.
+    *
+    * @param password the password
+    * @return "pbkdf2-sha256$iterations$salt$hash", salt and hash in base 64
+    */
+   String hash (String password) {
+      byte[] salt = new byte[SALT_BYTES];
+      this._random.nextBytes (salt);
+      Base64.Encoder b64 = Base64.getEncoder ().withoutPadding ();
+      return SCHEME + "$" + this._iterations + "$" + b64.encodeToString (salt) + "$" +
+             b64.encodeToString (pbkdf2 (password, salt, this._iterations, HASH_BITS));
+   }//end hash
+
+   /**
+    * @param password the password to check
+    * @param stored a hash made by hash
+    * @return whether the password is the one hashed
+    */
+   static boolean matches (String password, String stored) {
+      String[] parts = stored.split ("\\$");
+      if (parts.length != 4 || !parts[0].equals (SCHEME))
+         return false;
+      try {
+         Base64.Decoder b64 = Base64.getDecoder ();
+         byte[] expected = b64.decode (parts[3]);
+         byte[] actual = pbkdf2 (password, b64.decode (parts[2]), Integer.parseInt (parts[1]), expected.length * 8);
+         return MessageDigest.isEqual (expected, actual);
+      }catch (IllegalArgumentException e) {
+         return false;
+      }//end try
+   }//end matches
+
+   private static byte[] pbkdf2 (String password, byte[] salt, int iterations, int bits) {
+      PBEKeySpec spec = new PBEKeySpec (password.toCharArray (), salt, iterations, bits);
+      try {
+         return SecretKeyFactory.getInstance (ALGORITHM).generateSecret (spec).getEncoded ();
+      }catch (GeneralSecurityException e) {
+         // every Java 8+ runtime provides PBKDF2WithHmacSHA256
+         throw new IllegalStateException (ALGORITHM + " unavailable", e);
+      }finally {
+         spec.clearPassword ();
+      }//end try
+   }//end pbkdf2
+
+}//end Authenticator
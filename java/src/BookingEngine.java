@@ -0,0 +1,365 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Books seats on flight instances.  A booking inserts a Reservation and
+ * increments FlightInstance.SeatsSold in one transaction; when the instance
+ * is full, or anyone is already on its waitlist, the reservation is placed
+ * on the waitlist instead, so nobody gets ahead of those waiting.
+ *
+ * No table locks are taken.  The seat is claimed with a conditional UPDATE
+ * (SeatsSold &lt; SeatsTotal) that holds only the instance's row lock until
+ * commit, so concurrent bookings on a hot flight queue on one row and can
+ * never oversell it.  Transactions aborted by a serialization failure or a
+ * deadlock are retried.
+ *
+ * Cancelling a reserved reservation gives its seat back; WaitlistPromoter
+ * then promotes the head of the instance's waitlist.
+ *
+ */
+public class BookingEngine {
+
+   /**
+    * The outcome of a booking.
+    */
+   public static class Booking {
+      public final String reservationID;
+      public final int flightInstanceID;
+      public final String status;
+
+      Booking (String reservationID, int flightInstanceID, String status) {
+         this.reservationID = reservationID;
+         this.flightInstanceID = flightInstanceID;
+         this.status = status;
+      }
+
+      public boolean isReserved () {
+         return "reserved".equals (this.status);
+      }
+
+      public String toString () {
+         return "Reservation " + this.reservationID + " on flight instance " +
+                this.flightInstanceID + ": " + this.status;
+      }
+   }//end Booking
+
+   static final int MAX_ATTEMPTS = 5;
+
+   // no seat is claimed while anyone is waitlisted: a seat given back
+   // belongs to the head of the waitlist, whom WaitlistPromoter moves up
+   static final String CLAIM_SEAT_SQL =
+      "UPDATE FlightInstance FI SET SeatsSold = COALESCE(FI.SeatsSold, 0) + 1 " +
+      "WHERE FI.FlightInstanceID = ? AND COALESCE(FI.SeatsSold, 0) < FI.SeatsTotal " +
+      "AND NOT EXISTS (SELECT 1 FROM Reservation R " +
+      "WHERE R.FlightInstanceID = FI.FlightInstanceID AND R.Status = 'waitlist')";
+
+   static final String INSTANCE_EXISTS_SQL =
+      "SELECT 1 FROM FlightInstance WHERE FlightInstanceID = ?";
+
+   // on the partitioned schema an instance is its ID and date, and the date
+   // picks the partition
+   static final String PARTITIONED_CLAIM_SEAT_SQL =
+      "UPDATE FlightInstance FI SET SeatsSold = COALESCE(FI.SeatsSold, 0) + 1 " +
+      "WHERE FI.FlightInstanceID = ? AND FI.FlightDate = CAST(? AS DATE) " +
+      "AND COALESCE(FI.SeatsSold, 0) < FI.SeatsTotal " +
+      "AND NOT EXISTS (SELECT 1 FROM Reservation R " +
+      "WHERE R.FlightInstanceID = FI.FlightInstanceID AND R.FlightDate = FI.FlightDate " +
+      "AND R.Status = 'waitlist')";
+
+   static final String PARTITIONED_INSTANCE_EXISTS_SQL =
+      INSTANCE_EXISTS_SQL + " AND FlightDate = CAST(? AS DATE)";
+
+   // at most two rows: more than one date means the ID alone is ambiguous
+   static final String INSTANCE_DATES_SQL =
+      "SELECT to_char(FlightDate, 'YYYY-MM-DD') FROM FlightInstance WHERE FlightInstanceID = ? LIMIT 2";
+
+   static final String FIND_INSTANCE_SQL =
+      "SELECT FlightInstanceID FROM FlightInstance " +
+      "WHERE FlightNumber = ? AND FlightDate = CAST(? AS DATE)";
+
+   // ReservationIDs continue the R0001 numbering of the data files.
+   static final String INSERT_RESERVATION_SQL =
+      "INSERT INTO Reservation (ReservationID, CustomerID, FlightInstanceID, Status) " +
+      "SELECT 'R' || lpad(n::text, GREATEST(4, length(n::text)), '0'), " +
+      "CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS TEXT) " +
+      "FROM nextval('ReservationID_seq') AS n " +
+      "RETURNING ReservationID";
+
+   // the same on the partitioned schema, where a reservation also holds the
+   // FlightDate of its instance, which routes it to its partition.
+   static final String PARTITIONED_INSERT_RESERVATION_SQL =
+      "INSERT INTO Reservation (ReservationID, CustomerID, FlightInstanceID, Status, FlightDate) " +
+      "SELECT 'R' || lpad(n::text, GREATEST(4, length(n::text)), '0'), " +
+      "CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS TEXT), CAST(? AS DATE) " +
+      "FROM nextval('ReservationID_seq') AS n " +
+      "RETURNING ReservationID";
+
+   // a cancelled reservation that held a seat gives it back, which the
+   // WaitlistPromoter hears of through instance_changed
+   static final String CANCEL_SQL =
+      "DELETE FROM Reservation WHERE ReservationID = ? " +
+      "RETURNING FlightInstanceID, Status, NULL::DATE";
+
+   static final String PARTITIONED_CANCEL_SQL =
+      "DELETE FROM Reservation WHERE ReservationID = ? " +
+      "RETURNING FlightInstanceID, Status, FlightDate";
+
+   static final String RELEASE_SEAT_SQL =
+      "UPDATE FlightInstance SET SeatsSold = SeatsSold - 1 " +
+      "WHERE FlightInstanceID = ? AND SeatsSold > 0";
+
+   static final String PARTITIONED_RELEASE_SEAT_SQL =
+      RELEASE_SEAT_SQL + " AND FlightDate = ?";
+
+   private final AirlineManagement _esql;
+
+   public BookingEngine (AirlineManagement esql) {
+      this._esql = esql;
+   }//end BookingEngine
+
+   /**
+    * Books a seat on the instance of a flight on a date.
+    *
+    * @param customerID the customer
+    * @param flightNumber the flight
+    * @param date the flight date, in any format PostgreSQL accepts
+    * @return the reservation that was made
+    * @throws java.sql.SQLException when the flight does not operate on that
+    *         date or the booking failed
+    */
+   public Booking book (int customerID, String flightNumber, String date) throws SQLException {
+      Integer id = this._esql.executeQueryForObject (FIND_INSTANCE_SQL, Rows.intColumn (), flightNumber, date);
+      if (id == null)
+         throw new SQLException ("Flight " + flightNumber + " does not operate on " + date);
+      return book (customerID, id.intValue (), date);
+   }//end book
+
+   /**
+    * Books a seat on a flight instance, or places the customer on its
+    * waitlist when every seat is sold.  On the partitioned schema the
+    * instance's date is looked up first; an ID used on more than one date
+    * must be booked by flight number and date.
+    *
+    * @param customerID the customer
+    * @param flightInstanceID the flight instance
+    * @return the reservation that was made
+    * @throws java.sql.SQLException when the instance does not exist or the
+    *         booking failed
+    */
+   public Booking book (int customerID, int flightInstanceID) throws SQLException {
+      String date = null;
+      if (this._esql.isPartitioned ()) {
+         List<List<String>> dates = this._esql.executeQueryAndReturnResult (INSTANCE_DATES_SQL, flightInstanceID);
+         if (dates.isEmpty ())
+            throw new SQLException ("No flight instance " + flightInstanceID);
+         if (dates.size () > 1)
+            throw new SQLException ("Flight instance " + flightInstanceID + " is on more than one date");
+         date = dates.get (0).get (0);
+      }//end if
+      return book (customerID, flightInstanceID, date);
+   }//end book
+
+   /*
+    * Books a seat on the instance with the given ID and, on the partitioned
+    * schema, date.
+    */
+   private Booking book (final int customerID, final int flightInstanceID, final String date) throws SQLException {
+      long t0 = System.nanoTime ();
+      try {
+         Booking booking = attempt (customerID, flightInstanceID, date);
+         this._esql.getMetrics ().feature ("book", System.nanoTime () - t0, 1);
+         return booking;
+      }catch (SQLException e) {
+         this._esql.getMetrics ().featureFailed ("book");
+         throw e;
+      }//end try
+   }//end book
+
+   /*
+    * Books in as many transactions as serialization failures require.
+    */
+   private Booking attempt (final int customerID, final int flightInstanceID, final String date)
+         throws SQLException {
+      // looked up before borrowing, as the lookup needs a connection too
+      final boolean partitioned = this._esql.isPartitioned ();
+      return this._esql.withConnection (new AirlineManagement.ConnectionWork<Booking>() {
+         public Booking run (PooledConnection conn) throws SQLException {
+            for (int attempt = 1; ; ++attempt) {
+               try {
+                  return book (conn, partitioned, customerID, flightInstanceID, date);
+               }catch (SQLException e) {
+                  if (attempt >= MAX_ATTEMPTS || !isRetryable (e))
+                     throw e;
+                  backoff (attempt);
+               }//end try
+            }//end for
+         }
+      });
+   }//end attempt
+
+   /*
+    * One booking attempt in its own transaction.
+    */
+   private static Booking book (PooledConnection conn, boolean partitioned, int customerID,
+                                int flightInstanceID, String date) throws SQLException {
+      Connection c = conn.getConnection ();
+      c.setAutoCommit (false);
+      try {
+         PreparedStatement claim = conn.prepare (partitioned ? PARTITIONED_CLAIM_SEAT_SQL : CLAIM_SEAT_SQL);
+         if (partitioned)
+            AirlineManagement.bind (claim, flightInstanceID, date);
+         else
+            AirlineManagement.bind (claim, flightInstanceID);
+         String status = "reserved";
+         if (claim.executeUpdate () == 0) {
+            if (!exists (conn, partitioned, flightInstanceID, date))
+               throw new SQLException ("No flight instance " + flightInstanceID);
+            status = "waitlist";
+         }//end if
+
+         PreparedStatement insert = conn.prepare (partitioned ? PARTITIONED_INSERT_RESERVATION_SQL
+                                                              : INSERT_RESERVATION_SQL);
+         if (partitioned)
+            AirlineManagement.bind (insert, customerID, flightInstanceID, status, date);
+         else
+            AirlineManagement.bind (insert, customerID, flightInstanceID, status);
+         ResultSet rs = insert.executeQuery ();
+         String reservationID;
+         try {
+            rs.next ();
+            reservationID = rs.getString (1);
+         }finally {
+            rs.close ();
+         }//end try
+         c.commit ();
+         return new Booking (reservationID, flightInstanceID, status);
+      }catch (SQLException e) {
+         c.rollback ();
+         throw e;
+      }finally {
+         c.setAutoCommit (true);
+      }//end try
+   }//end book
+
+   private static boolean exists (PooledConnection conn, boolean partitioned, int flightInstanceID, String date)
+         throws SQLException {
+      PreparedStatement stmt = conn.prepare (partitioned ? PARTITIONED_INSTANCE_EXISTS_SQL : INSTANCE_EXISTS_SQL);
+      if (partitioned)
+         AirlineManagement.bind (stmt, flightInstanceID, date);
+      else
+         AirlineManagement.bind (stmt, flightInstanceID);
+      ResultSet rs = stmt.executeQuery ();
+      try {
+         return rs.next ();
+      }finally {
+         rs.close ();
+      }//end try
+   }//end exists
+
+   /**
+    * Cancels a reservation.  A reserved seat is given back to its flight
+    * instance in the same transaction.
+    *
+    * @param reservationID the reservation
+    * @return whether the reservation existed
+    * @throws java.sql.SQLException when the cancellation failed
+    */
+   public boolean cancel (final String reservationID) throws SQLException {
+      long t0 = System.nanoTime ();
+      try {
+         final boolean partitioned = this._esql.isPartitioned ();
+         boolean found = this._esql.withConnection (new AirlineManagement.ConnectionWork<Boolean>() {
+            public Boolean run (PooledConnection conn) throws SQLException {
+               for (int attempt = 1; ; ++attempt) {
+                  try {
+                     return cancel (conn, partitioned, reservationID);
+                  }catch (SQLException e) {
+                     if (attempt >= MAX_ATTEMPTS || !isRetryable (e))
+                        throw e;
+                     backoff (attempt);
+                  }//end try
+               }//end for
+            }
+         });
+         this._esql.getMetrics ().feature ("cancel", System.nanoTime () - t0, found ? 1 : 0);
+         return found;
+      }catch (SQLException e) {
+         this._esql.getMetrics ().featureFailed ("cancel");
+         throw e;
+      }//end try
+   }//end cancel
+
+   /*
+    * One cancellation attempt in its own transaction.
+    */
+   private static boolean cancel (PooledConnection conn, boolean partitioned, String reservationID)
+         throws SQLException {
+      Connection c = conn.getConnection ();
+      c.setAutoCommit (false);
+      try {
+         PreparedStatement delete = conn.prepare (partitioned ? PARTITIONED_CANCEL_SQL : CANCEL_SQL);
+         AirlineManagement.bind (delete, reservationID);
+         ResultSet rs = delete.executeQuery ();
+         boolean found;
+         int flightInstanceID = 0;
+         String status = null;
+         java.sql.Date date = null;
+         try {
+            found = rs.next ();
+            if (found) {
+               flightInstanceID = rs.getInt (1);
+               status = rs.getString (2);
+               date = rs.getDate (3);
+            }//end if
+         }finally {
+            rs.close ();
+         }//end try
+         if ("reserved".equals (status)) {
+            PreparedStatement release = conn.prepare (partitioned ? PARTITIONED_RELEASE_SEAT_SQL : RELEASE_SEAT_SQL);
+            if (partitioned)
+               AirlineManagement.bind (release, flightInstanceID, date);
+            else
+               AirlineManagement.bind (release, flightInstanceID);
+            release.executeUpdate ();
+         }//end if
+         c.commit ();
+         return found;
+      }catch (SQLException e) {
+         c.rollback ();
+         throw e;
+      }finally {
+         c.setAutoCommit (true);
+      }//end try
+   }//end cancel
+
+   /*
+    * Serialization failures (40001) and deadlocks (40P01) succeed when the
+    * transaction is simply run again.
+    */
+   static boolean isRetryable (SQLException e) {
+      String state = e.getSQLState ();
+      return "40001".equals (state) || "40P01".equals (state);
+   }//end isRetryable
+
+   static void backoff (int attempt) {
+      try {
+         Thread.sleep ((long) (Math.random () * (1 << attempt)));
+      }catch (InterruptedException e) {
+         Thread.currentThread ().interrupt ();
+      }//end try
+   }//end backoff
+
+}//end BookingEngine
@@ -0,0 +1,150 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress test for BookingEngine.  Many threads book seats on a few hot
+ * flight instances at once; afterwards the tool checks that no instance was
+ * oversold and that SeatsSold grew by exactly the number of bookings that
+ * were confirmed, and reports bookings per second per flight.
+ *
+ * The test writes real reservations, so run it against a scratch database.
+ * It exits with status 1 when a check fails.
+ *
+ */
+public class BookingStress {
+
+   static final String SEATS_SQL =
+      "SELECT COALESCE(SeatsSold, 0), SeatsTotal FROM FlightInstance WHERE FlightInstanceID = ?";
+
+   static final String RESERVED_SQL =
+      "SELECT COUNT(*) FROM Reservation WHERE FlightInstanceID = ? AND Status = 'reserved'";
+
+   public static void main (String[] args) {
+      if (args.length != 6) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            BookingStress.class.getName () +
+            " <dbname> <port> <user> <instance id,...> <threads> <bookings per thread>");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      boolean ok = false;
+      try {
+         String[] ids = args[3].split (",");
+         int[] instances = new int[ids.length];
+         for (int i = 0; i < ids.length; ++i)
+            instances[i] = Integer.parseInt (ids[i].trim ());
+         int threads = Integer.parseInt (args[4]);
+         int perThread = Integer.parseInt (args[5]);
+
+         esql = new AirlineManagement (args[0], args[1], args[2], "", threads);
+         ok = run (esql, instances, threads, perThread);
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+      System.exit (ok ? 0 : 1);
+   }//end main
+
+   /**
+    * Runs the stress test and prints the results.
+    *
+    * @return true when no instance was oversold and the seat counts match
+    * @throws java.lang.Exception when the database cannot be read
+    */
+   public static boolean run (final AirlineManagement esql, final int[] instances,
+                              int threads, final int perThread) throws Exception {
+      int n = instances.length;
+      int[] soldBefore = new int[n];
+      int[] reservedBefore = new int[n];
+      for (int i = 0; i < n; ++i) {
+         soldBefore[i] = Integer.parseInt (esql.executeQueryAndReturnResult (SEATS_SQL, instances[i]).get (0).get (0));
+         reservedBefore[i] = Integer.parseInt (esql.executeQueryAndReturnResult (RESERVED_SQL, instances[i]).get (0).get (0));
+      }//end for
+      final int customers = Integer.parseInt (
+         esql.executeQueryAndReturnResult ("SELECT COUNT(*) FROM Customer").get (0).get (0));
+
+      final AtomicInteger[] confirmed = new AtomicInteger[n];
+      final AtomicInteger[] waitlisted = new AtomicInteger[n];
+      for (int i = 0; i < n; ++i) {
+         confirmed[i] = new AtomicInteger ();
+         waitlisted[i] = new AtomicInteger ();
+      }//end for
+      final AtomicInteger errors = new AtomicInteger ();
+      final BookingEngine engine = new BookingEngine (esql);
+      final CountDownLatch start = new CountDownLatch (1);
+      final CountDownLatch done = new CountDownLatch (threads);
+
+      for (int t = 0; t < threads; ++t) {
+         final long seed = t;
+         Thread worker = new Thread (new Runnable () {
+            public void run () {
+               Random rnd = new Random (seed);
+               try {
+                  start.await ();
+                  for (int b = 0; b < perThread; ++b) {
+                     int i = rnd.nextInt (instances.length);
+                     try {
+                        BookingEngine.Booking booking =
+                           engine.book (1 + rnd.nextInt (Math.max (1, customers)), instances[i]);
+                        (booking.isReserved () ? confirmed[i] : waitlisted[i]).incrementAndGet ();
+                     }catch (Exception e) {
+                        errors.incrementAndGet ();
+                     }//end try
+                  }//end for
+               }catch (InterruptedException e) {
+                  Thread.currentThread ().interrupt ();
+               }finally {
+                  done.countDown ();
+               }//end try
+            }
+         });
+         worker.start ();
+      }//end for
+
+      long t0 = System.nanoTime ();
+      start.countDown ();
+      done.await ();
+      double seconds = (System.nanoTime () - t0) / 1e9;
+
+      boolean ok = true;
+      System.out.println ("Instance\tConfirmed\tWaitlisted\tBookings/s\tSeatsSold\tSeatsTotal\tCheck");
+      for (int i = 0; i < n; ++i) {
+         List<String> seats = esql.executeQueryAndReturnResult (SEATS_SQL, instances[i]).get (0);
+         int sold = Integer.parseInt (seats.get (0));
+         int total = Integer.parseInt (seats.get (1));
+         int reserved = Integer.parseInt (esql.executeQueryAndReturnResult (RESERVED_SQL, instances[i]).get (0).get (0));
+
+         String check = "OK";
+         if (sold > total)
+            check = "OVERSOLD";
+         else if (sold - soldBefore[i] != confirmed[i].get ()
+                  || reserved - reservedBefore[i] != confirmed[i].get ())
+            check = "SEAT COUNT MISMATCH";
+         ok &= check.equals ("OK");
+
+         int bookings = confirmed[i].get () + waitlisted[i].get ();
+         System.out.println (instances[i] + "\t" + confirmed[i].get () + "\t" + waitlisted[i].get () + "\t" +
+                             Math.round (bookings / seconds) + "\t" + sold + "\t" + total + "\t" + check);
+      }//end for
+      System.out.println ("Errors: " + errors.get () + ", elapsed " + seconds + " s");
+      return ok && errors.get () == 0;
+   }//end run
+
+}//end BookingStress
@@ -0,0 +1,483 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Bulk loads the data/*.csv files into an existing schema, replacing what
+ * sql/src/load_data.sql does with psql \copy.
+ *
+ * Foreign keys and secondary indexes are dropped before the load and
+ * recreated afterwards, so every table is independent during the load and
+ * the tables are streamed in parallel, each on its own pooled connection.
+ * User triggers are disabled while loading; TRUNCATE still notifies the
+ * caches that the tables changed.  A load that fails puts the dropped
+ * foreign keys and indexes back, leaving the tables partly loaded.
+ * Rows go through the driver's COPY API.  Rows per second are reported per
+ * table.
+ *
+ * On the partitioned schema (sql/src/create_tables_partitioned.sql)
+ * FlightInstance and Reservation are loaded into staging tables and moved
+ * from there, once the partitions of the loaded months exist, with each
+ * reservation given the FlightDate of its instance.
+ *
+ */
+public class BulkLoader {
+
+   // tables in the order of load_data.sql; the CSV file is <table>.csv.
+   static final String[] TABLES = {
+      "Plane", "Flight", "Schedule", "FlightInstance", "Customer",
+      "Reservation", "Technician", "Repair", "Pilot", "MaintenanceRequest",
+      "UserAccount"
+   };
+
+   // continues ReservationID numbering after the loaded reservations,
+   // as load_data.sql does.
+   static final String RESET_RESERVATION_SEQ_SQL =
+      "SELECT setval('ReservationID_seq', " +
+      "COALESCE((SELECT MAX(substring(ReservationID FROM 2)::BIGINT) " +
+      "FROM Reservation WHERE ReservationID ~ '^R[0-9]+$'), 0) + 1, false)";
+
+   static final String RESET_REPAIR_SEQ_SQL =
+      "SELECT setval('RepairID_seq', COALESCE((SELECT MAX(RepairID) FROM Repair), 0) + 1, false)";
+
+   static final String RESET_REQUEST_SEQ_SQL =
+      "SELECT setval('MaintenanceRequestID_seq', " +
+      "COALESCE((SELECT MAX(RequestID) FROM MaintenanceRequest), 0) + 1, false)";
+
+   // staging tables of the partitioned schema, named <table>_load, with the
+   // columns of the CSV files
+   static final String[] STAGED_TABLES = { "FlightInstance", "Reservation" };
+   static final String STAGING_SUFFIX = "_load";
+   static final String[] STAGING_SQL = {
+      "CREATE UNLOGGED TABLE FlightInstance_load AS " +
+      "SELECT * FROM FlightInstance WITH NO DATA",
+      "CREATE UNLOGGED TABLE Reservation_load AS " +
+      "SELECT ReservationID, CustomerID, FlightInstanceID, Status FROM Reservation WITH NO DATA"
+   };
+   static final String[] UNSTAGING_SQL = {
+      "INSERT INTO FlightInstance SELECT * FROM FlightInstance_load",
+      // a reservation without an instance has no partition and fails the load
+      "INSERT INTO Reservation (ReservationID, CustomerID, FlightInstanceID, Status, FlightDate) " +
+      "SELECT R.ReservationID, R.CustomerID, R.FlightInstanceID, R.Status, FI.FlightDate " +
+      "FROM Reservation_load R LEFT JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID"
+   };
+   static final String CREATE_PARTITIONS_SQL =
+      "SELECT create_flight_partitions(MIN(FlightDate), MAX(FlightDate)) FROM FlightInstance_load";
+
+   private final AirlineManagement _esql;
+   private final File _dataDir;
+   private final int _threads;
+
+   /**
+    * A DDL statement dropped before the load and re-run after it.
+    */
+   static class Deferred {
+      final String table;
+      final String name;
+      final String createSql;
+
+      Deferred (String table, String name, String createSql) {
+         this.table = table;
+         this.name = name;
+         this.createSql = createSql;
+      }
+   }//end Deferred
+
+   /**
+    * Outcome of loading one table.
+    */
+   static class TableLoad {
+      final String table;
+      final long rows;
+      final long millis;
+
+      TableLoad (String table, long rows, long millis) {
+         this.table = table;
+         this.rows = rows;
+         this.millis = millis;
+      }
+   }//end TableLoad
+
+   public BulkLoader (AirlineManagement esql, File dataDir, int threads) {
+      this._esql = esql;
+      this._dataDir = dataDir;
+      this._threads = threads;
+   }//end BulkLoader
+
+   public static void main (String[] args) {
+      if (args.length != 4 && args.length != 6) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            BulkLoader.class.getName () +
+            " <dbname> <port> <user> <data dir> [--threads N]");
+         return;
+      }//end if
+
+      int threads = 4;
+      if (args.length == 6 && args[4].equals ("--threads"))
+         threads = Integer.parseInt (args[5]);
+
+      AirlineManagement esql = null;
+      try {
+         Class.forName ("org.postgresql.Driver");
+         esql = new AirlineManagement (args[0], args[1], args[2], "", threads + 1);
+         new BulkLoader (esql, new File (args[3]), threads).load ();
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+         System.exit (1);
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+   }//end main
+
+   /**
+    * Replaces the contents of every table that has a CSV file in the data
+    * directory.
+    *
+    * @throws java.lang.Exception when a phase of the load failed
+    */
+   public void load () throws Exception {
+      List<String> tables = new ArrayList<String>();
+      for (String table : TABLES) {
+         File file = csvFile (table);
+         if (file.isFile () && file.length () > 0)
+            tables.add (table);
+      }//end for
+
+      long start = System.currentTimeMillis ();
+      final boolean partitioned = this._esql.isPartitioned ();
+      List<Deferred> foreignKeys = foreignKeys (tables);
+      List<Deferred> indexes = secondaryIndexes (tables);
+      System.out.println ("Deferring " + foreignKeys.size () + " foreign keys and " +
+                          indexes.size () + " indexes");
+      // dropped and not recreated yet, put back when the load fails
+      List<Deferred> droppedKeys = new ArrayList<Deferred>();
+      final List<Deferred> droppedIndexes = Collections.synchronizedList (new ArrayList<Deferred>());
+      ExecutorService pool = Executors.newFixedThreadPool (this._threads);
+      boolean loaded = false;
+      try {
+         for (Deferred fk : foreignKeys) {
+            this._esql.executeUpdate ("ALTER TABLE " + fk.table + " DROP CONSTRAINT " + fk.name);
+            droppedKeys.add (fk);
+         }//end for
+         for (Deferred idx : indexes) {
+            this._esql.executeUpdate ("DROP INDEX " + idx.name);
+            droppedIndexes.add (idx);
+         }//end for
+         this._esql.executeUpdate ("TRUNCATE " + join (tables));
+         // row triggers (cache notifications) would fire once per loaded row
+         for (String table : tables)
+            this._esql.executeUpdate ("ALTER TABLE " + table + " DISABLE TRIGGER USER");
+         if (partitioned)
+            stage (tables);
+
+         List<Future<TableLoad>> loads = new ArrayList<Future<TableLoad>>();
+         for (final String table : tables) {
+            loads.add (pool.submit (new Callable<TableLoad>() {
+               public TableLoad call () throws SQLException {
+                  return loadTable (table, partitioned && staged (table) ? table + STAGING_SUFFIX : table);
+               }
+            }));
+         }//end for
+         System.out.println ("Table\tRows\tSeconds\tRows/s");
+         for (Future<TableLoad> f : loads) {
+            TableLoad r = get (f);
+            System.out.println (r.table + "\t" + r.rows + "\t" + (r.millis / 1000.0) + "\t" +
+                                (r.millis == 0 ? r.rows : r.rows * 1000 / r.millis));
+         }//end for
+         if (partitioned)
+            unstage (tables);
+
+         long indexStart = System.currentTimeMillis ();
+         List<Future<Void>> ddl = new ArrayList<Future<Void>>();
+         for (final Deferred idx : indexes) {
+            ddl.add (pool.submit (new Callable<Void>() {
+               public Void call () throws SQLException {
+                  BulkLoader.this._esql.executeUpdate (idx.createSql);
+                  droppedIndexes.remove (idx);
+                  return null;
+               }
+            }));
+         }//end for
+         for (Future<Void> f : ddl)
+            get (f);
+         System.out.println ("Recreated indexes in " + (System.currentTimeMillis () - indexStart) + " ms");
+
+         long fkStart = System.currentTimeMillis ();
+         for (Deferred fk : foreignKeys) {
+            this._esql.executeUpdate ("ALTER TABLE " + fk.table + " ADD CONSTRAINT " + fk.name + " " + fk.createSql);
+            droppedKeys.remove (fk);
+         }//end for
+         System.out.println ("Validated foreign keys in " + (System.currentTimeMillis () - fkStart) + " ms");
+         loaded = true;
+      }finally {
+         pool.shutdown ();
+         if (!loaded) {
+            // let the other tables' loads end before putting keys back
+            try {
+               pool.awaitTermination (Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }catch (InterruptedException e) {
+               Thread.currentThread ().interrupt ();
+            }//end try
+         }//end if
+         for (String table : tables)
+            this._esql.executeUpdate ("ALTER TABLE " + table + " ENABLE TRIGGER USER");
+         if (!loaded)
+            restore (droppedIndexes, droppedKeys);
+      }//end try
+
+      if (tables.contains ("Reservation"))
+         this._esql.executeQuery (RESET_RESERVATION_SEQ_SQL);
+      if (tables.contains ("Repair"))
+         this._esql.executeQuery (RESET_REPAIR_SEQ_SQL);
+      if (tables.contains ("MaintenanceRequest"))
+         this._esql.executeQuery (RESET_REQUEST_SEQ_SQL);
+      // FlightDailyStats and Plane.LastRepairDate are trigger-maintained,
+      // and triggers were off
+      if (tables.contains ("FlightInstance"))
+         this._esql.executeQuery ("SELECT rebuild_flight_daily_stats()");
+      if (tables.contains ("Repair") || tables.contains ("Plane"))
+         this._esql.executeQuery ("SELECT rebuild_last_repair_dates()");
+      // no row announced itself, so have FleetHealth reread both tables
+      if (tables.contains ("Repair") || tables.contains ("MaintenanceRequest"))
+         this._esql.executeQuery ("SELECT pg_notify('" + FleetHealth.CHANNEL + "', '')");
+      this._esql.executeUpdate ("ANALYZE " + join (tables));
+      System.out.println ("Loaded " + tables.size () + " tables in " +
+                          (System.currentTimeMillis () - start) + " ms");
+   }//end load
+
+   /*
+    * Puts back the indexes and foreign keys a failed load dropped.  A key
+    * the partly loaded rows violate is added NOT VALID, so it still checks
+    * new rows; whatever cannot be put back is reported.
+    */
+   void restore (List<Deferred> indexes, List<Deferred> foreignKeys) {
+      for (Deferred idx : new ArrayList<Deferred>(indexes)) {
+         try {
+            this._esql.executeUpdate (idx.createSql);
+         }catch (SQLException e) {
+            System.err.println ("Cannot restore index " + idx.name + ": " + e.getMessage ());
+         }//end try
+      }//end for
+      for (Deferred fk : foreignKeys) {
+         String add = "ALTER TABLE " + fk.table + " ADD CONSTRAINT " + fk.name + " " + fk.createSql;
+         try {
+            this._esql.executeUpdate (add);
+         }catch (SQLException e) {
+            try {
+               this._esql.executeUpdate (add + " NOT VALID");
+               System.err.println ("Restored foreign key " + fk.name + " NOT VALID: " + e.getMessage ());
+            }catch (SQLException e2) {
+               System.err.println ("Cannot restore foreign key " + fk.name + ": " + e2.getMessage ());
+            }//end try
+         }//end try
+      }//end for
+   }//end restore
+
+   /*
+    * Creates the staging tables of the tables to load, replacing those left
+    * by a failed load.
+    */
+   void stage (List<String> tables) throws SQLException {
+      for (int i = 0; i < STAGED_TABLES.length; ++i) {
+         if (!tables.contains (STAGED_TABLES[i]))
+            continue;
+         this._esql.executeUpdate ("DROP TABLE IF EXISTS " + STAGED_TABLES[i] + STAGING_SUFFIX);
+         this._esql.executeUpdate (STAGING_SQL[i]);
+      }//end for
+   }//end stage
+
+   /*
+    * Creates the partitions of the staged instances' months, then moves the
+    * staged rows into the partitioned tables, instances first.
+    */
+   void unstage (List<String> tables) throws SQLException {
+      long start = System.currentTimeMillis ();
+      if (tables.contains ("FlightInstance"))
+         this._esql.executeQuery (CREATE_PARTITIONS_SQL);
+      for (int i = 0; i < STAGED_TABLES.length; ++i) {
+         if (!tables.contains (STAGED_TABLES[i]))
+            continue;
+         this._esql.executeUpdate (UNSTAGING_SQL[i]);
+         this._esql.executeUpdate ("DROP TABLE " + STAGED_TABLES[i] + STAGING_SUFFIX);
+      }//end for
+      System.out.println ("Moved staged rows into partitions in " + (System.currentTimeMillis () - start) + " ms");
+   }//end unstage
+
+   static boolean staged (String table) {
+      for (String t : STAGED_TABLES)
+         if (t.equals (table))
+            return true;
+      return false;
+   }//end staged
+
+   /*
+    * Streams one CSV file into a table on a connection of its own.
+    */
+   TableLoad loadTable (final String table, final String target) throws SQLException {
+      final File file = csvFile (table);
+      return this._esql.withConnection (new AirlineManagement.ConnectionWork<TableLoad>() {
+         public TableLoad run (PooledConnection conn) throws SQLException {
+            long start = System.currentTimeMillis ();
+            try {
+               long rows = copy (conn.getConnection (), target, file);
+               return new TableLoad (table, rows, System.currentTimeMillis () - start);
+            }catch (IOException e) {
+               throw new SQLException ("cannot read " + file + ": " + e.getMessage ());
+            }//end try
+         }
+      });
+   }//end loadTable
+
+   static long copy (Connection conn, String table, File file) throws SQLException, IOException {
+      CopyManager copyManager = conn.unwrap (PGConnection.class).getCopyAPI ();
+      Reader reader = open (file);
+      try {
+         return copyManager.copyIn ("COPY " + table + " FROM STDIN WITH CSV HEADER", reader);
+      }finally {
+         reader.close ();
+      }//end try
+   }//end copy
+
+   /*
+    * Splits one CSV record into fields.  Quoted fields may contain commas,
+    * doubled quotes and line breaks; continuation lines are read from the
+    * reader.  An empty unquoted field is returned as null.
+    */
+   static List<String> parseCsv (String line, BufferedReader reader) throws IOException {
+      List<String> fields = new ArrayList<String>();
+      StringBuilder field = new StringBuilder ();
+      boolean quoted = false, wasQuoted = false;
+      int i = 0;
+      while (true) {
+         if (i == line.length ()) {
+            if (quoted) {
+               // a quoted field spans lines
+               String next = reader.readLine ();
+               if (next == null)
+                  throw new IOException ("unterminated quoted field");
+               field.append ('\n');
+               line = next;
+               i = 0;
+               continue;
+            }//end if
+            fields.add (field.length () == 0 && !wasQuoted ? null : field.toString ());
+            return fields;
+         }//end if
+         char c = line.charAt (i++);
+         if (quoted) {
+            if (c == '"') {
+               if (i < line.length () && line.charAt (i) == '"') {
+                  field.append ('"');
+                  ++i;
+               } else {
+                  quoted = false;
+               }//end if
+            } else {
+               field.append (c);
+            }//end if
+         } else if (c == '"') {
+            quoted = wasQuoted = true;
+         } else if (c == ',') {
+            fields.add (field.length () == 0 && !wasQuoted ? null : field.toString ());
+            field.setLength (0);
+            wasQuoted = false;
+         } else {
+            field.append (c);
+         }//end if
+      }//end while
+   }//end parseCsv
+
+   /*
+    * Foreign keys declared on, or pointing at, any of the given tables.
+    * The copies of a partitioned table's keys on its partitions go and come
+    * back with the key itself.
+    */
+   List<Deferred> foreignKeys (List<String> tables) throws SQLException {
+      List<Deferred> result = new ArrayList<Deferred>();
+      List<List<String>> rows = this._esql.executeQueryAndReturnResult (
+         "SELECT conrelid::regclass::text, conname, pg_get_constraintdef(oid) " +
+         "FROM pg_constraint WHERE contype = 'f' AND conparentid = 0 " +
+         "AND (lower(conrelid::regclass::text) = ANY (string_to_array(?, ',')) " +
+         "OR lower(confrelid::regclass::text) = ANY (string_to_array(?, ',')))",
+         join (tables).toLowerCase ().replace (", ", ","),
+         join (tables).toLowerCase ().replace (", ", ","));
+      for (List<String> row : rows)
+         result.add (new Deferred (row.get (0), row.get (1), row.get (2)));
+      return result;
+   }//end foreignKeys
+
+   /*
+    * Indexes on the given tables that do not back a constraint.
+    */
+   List<Deferred> secondaryIndexes (List<String> tables) throws SQLException {
+      List<Deferred> result = new ArrayList<Deferred>();
+      List<List<String>> rows = this._esql.executeQueryAndReturnResult (
+         "SELECT i.indrelid::regclass::text, i.indexrelid::regclass::text, pg_get_indexdef(i.indexrelid) " +
+         "FROM pg_index i " +
+         "WHERE lower(i.indrelid::regclass::text) = ANY (string_to_array(?, ',')) " +
+         "AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = i.indexrelid)",
+         join (tables).toLowerCase ().replace (", ", ","));
+      // an index of a partitioned table is defined ON ONLY the table, which
+      // would recreate it without the indexes of its partitions
+      for (List<String> row : rows)
+         result.add (new Deferred (row.get (0), row.get (1), row.get (2).replace (" ON ONLY ", " ON ")));
+      return result;
+   }//end secondaryIndexes
+
+   File csvFile (String table) {
+      return new File (this._dataDir, table + ".csv");
+   }//end csvFile
+
+   static BufferedReader open (File file) throws IOException {
+      return new BufferedReader (new InputStreamReader (
+         new FileInputStream (file), StandardCharsets.UTF_8), 1 << 16);
+   }//end open
+
+   static String join (List<String> values) {
+      StringBuilder sb = new StringBuilder ();
+      for (String v : values)
+         sb.append (sb.length () > 0 ? ", " : "").append (v);
+      return sb.toString ();
+   }//end join
+
+   static <T> T get (Future<T> f) throws Exception {
+      try {
+         return f.get ();
+      }catch (ExecutionException e) {
+         Throwable cause = e.getCause ();
+         throw cause instanceof Exception ? (Exception) cause : e;
+      }//end try
+   }//end get
+
+}//end BulkLoader
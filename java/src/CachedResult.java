@@ -0,0 +1,108 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable copy of a small query result, kept by the in-process caches
+ * and printed in the same format as AirlineManagement's printing methods.
+ *
+ */
+public class CachedResult {
+
+   private final String[] _columns;
+   private final String[][] _rows;
+
+   CachedResult (String[] columns, String[][] rows) {
+      this._columns = columns;
+      this._rows = rows;
+   }//end CachedResult
+
+   /**
+    * Runs a prepared query and copies its result.
+    *
+    * @param esql the database
+    * @param query the SQL text, with '?' placeholders
+    * @param params the parameter values
+    * @return the copied result
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public static CachedResult load (AirlineManagement esql, String query, Object... params) throws SQLException {
+      final List<String[]> rows = new ArrayList<String[]>();
+      final String[][] columns = new String[1][];
+      esql.executeQueryStreaming (query, new RowHandler () {
+         public void start (ResultSetMetaData rsmd) throws SQLException {
+            columns[0] = new String[rsmd.getColumnCount ()];
+            for (int i = 0; i < columns[0].length; ++i)
+               columns[0][i] = rsmd.getColumnName (i + 1);
+         }
+         public void row (ResultSet rs) throws SQLException {
+            String[] row = new String[columns[0].length];
+            long bytes = 0;
+            for (int i = 0; i < row.length; ++i) {
+               row[i] = rs.getString (i + 1);
+               if (row[i] != null)
+                  bytes += Metrics.utf8Length (row[i]);
+            }//end for
+            Metrics.fetched (bytes);
+            rows.add (row);
+         }
+      }, params);
+      return new CachedResult (columns[0], rows.toArray (new String[rows.size ()][]));
+   }//end load
+
+   public String[] getColumns () {
+      return this._columns;
+   }//end getColumns
+
+   public int size () {
+      return this._rows.length;
+   }//end size
+
+   /**
+    * @param row the row index
+    * @param col the column index, starting at 0
+    * @return the value, or null for SQL NULL
+    */
+   public String get (int row, int col) {
+      return this._rows[row][col];
+   }//end get
+
+   /**
+    * Prints the rows to standard out like executeQueryAndPrintResult.
+    *
+    * @return the number of rows printed
+    * @throws java.sql.SQLException when the output cannot be written
+    */
+   public int print () throws SQLException {
+      RowPrinter printer = new RowPrinter ();
+      print (printer);
+      printer.flush ();
+      return this._rows.length;
+   }//end print
+
+   /**
+    * Writes the rows to a printer, without flushing it.
+    *
+    * @param printer the destination
+    * @return the number of rows written
+    * @throws java.sql.SQLException when the output cannot be written
+    */
+   public int print (RowPrinter printer) throws SQLException {
+      for (String[] row : this._rows)
+         printer.row (this._columns, row);
+      return this._rows.length;
+   }//end print
+
+}//end CachedResult
@@ -0,0 +1,423 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Exports FlightInstance, Reservation and Repair to columnar files (see
+ * ColumnarFile) for analytics, so range aggregations run on the files
+ * (see ColumnarReader) instead of on the database.
+ *
+ * Each table is streamed through a cursor in date order and cut into
+ * blocks of at most BLOCK_ROWS rows, one file per block, under
+ * <dir>/<table>/date=YYYY-MM-DD/part-NNNNNNNN.acol; rows without a date go
+ * to date=null.  Part numbers grow across exports, so of two copies of a
+ * row the one in the higher numbered part is the newer.
+ *
+ * An export is incremental: it writes only the rows inserted or updated
+ * since the previous one, found by their xmin, the transaction that wrote
+ * them.  The watermark is the oldest transaction still running when the
+ * export's snapshot was taken; every row written later has an xmin at or
+ * above it.  All tables are exported from that one snapshot.  Rows may be
+ * exported twice, never missed.  A full export (--full, the first export,
+ * or after the transaction counter wrapped) rewrites the table and then
+ * deletes its older parts.
+ *
+ * Deleted rows are not detected; a full export drops them.
+ *
+ */
+public class ColumnarExport {
+
+   // rows per part file
+   static final int BLOCK_ROWS = 65536;
+
+   static final String WATERMARK_FILE = "_watermarks.properties";
+   static final String PART_SUFFIX = ".acol";
+   static final String NULL_DATE = "null";
+   static final Pattern PART_NAME = Pattern.compile ("part-(\\d+)\\" + PART_SUFFIX);
+
+   // the oldest transaction running when the snapshot was taken, without
+   // the epoch, as it compares with xmin
+   static final String SNAPSHOT_XMIN_SQL =
+      "SELECT txid_snapshot_xmin(txid_current_snapshot()) % 4294967296";
+
+   /**
+    * An exported table: its query, whose first column is the key, and the
+    * column, formatted YYYY-MM-DD, that partitions it.
+    */
+   static class Table {
+      final String name;
+      final String sql;
+      final String dateColumn;
+
+      Table (String name, String sql, String dateColumn) {
+         this.name = name;
+         this.sql = sql;
+         this.dateColumn = dateColumn;
+      }
+   }//end Table
+
+   static final Table FLIGHT_INSTANCE = new Table ("FlightInstance",
+      "SELECT FI.FlightInstanceID, FI.FlightNumber, " +
+      "to_char(FI.FlightDate, 'YYYY-MM-DD') AS FlightDate, " +
+      "FI.DepartedOnTime, FI.ArrivedOnTime, FI.SeatsTotal, FI.SeatsSold, FI.NumOfStops, " +
+      "CAST(FI.TicketCost * 100 AS BIGINT) AS TicketCostCents " +
+      "FROM FlightInstance FI " +
+      "WHERE CAST(CAST(FI.xmin AS TEXT) AS BIGINT) >= ? " +
+      "ORDER BY FI.FlightDate",
+      "flightdate");
+
+   // partitioned by the date of the flight; a reservation whose flight
+   // instance moves to another date keeps its old partition until it is
+   // updated or a full export runs
+   static final Table RESERVATION = new Table ("Reservation",
+      "SELECT R.ReservationID, R.CustomerID, R.FlightInstanceID, R.Status, " +
+      "to_char(FI.FlightDate, 'YYYY-MM-DD') AS FlightDate " +
+      "FROM Reservation R LEFT JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID " +
+      "WHERE CAST(CAST(R.xmin AS TEXT) AS BIGINT) >= ? " +
+      "ORDER BY FI.FlightDate",
+      "flightdate");
+
+   static final Table REPAIR = new Table ("Repair",
+      "SELECT R.RepairID, R.PlaneID, R.RepairCode, " +
+      "to_char(R.RepairDate, 'YYYY-MM-DD') AS RepairDate, R.TechnicianID " +
+      "FROM Repair R " +
+      "WHERE CAST(CAST(R.xmin AS TEXT) AS BIGINT) >= ? " +
+      "ORDER BY R.RepairDate",
+      "repairdate");
+
+   static final Table[] TABLES = { FLIGHT_INSTANCE, RESERVATION, REPAIR };
+
+   private final AirlineManagement _esql;
+   private final File _dir;
+
+   /**
+    * @param esql the database
+    * @param dir the export directory
+    */
+   public ColumnarExport (AirlineManagement esql, File dir) {
+      this._esql = esql;
+      this._dir = dir;
+   }//end ColumnarExport
+
+   /**
+    * Exports tables to the directory of files given on the command line.
+    *
+    * @param args the command line arguments: database, port, user, export
+    *        directory, then optionally --full and a comma separated list of
+    *        tables
+    */
+   public static void main (String[] args) {
+      if (args.length < 4) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            ColumnarExport.class.getName () +
+            " <dbname> <port> <user> <export dir> [--full] [table,...]");
+         return;
+      }//end if
+
+      boolean full = false;
+      List<Table> tables = new ArrayList<Table>(Arrays.asList (TABLES));
+      for (int i = 4; i < args.length; ++i) {
+         if (args[i].equals ("--full")) {
+            full = true;
+            continue;
+         }//end if
+         tables.clear ();
+         for (String name : args[i].split (",")) {
+            Table table = table (name.trim ());
+            if (table == null) {
+               System.err.println ("Unknown table " + name);
+               return;
+            }//end if
+            tables.add (table);
+         }//end for
+      }//end for
+
+      AirlineManagement esql = null;
+      try {
+         Class.forName ("org.postgresql.Driver");
+         esql = new AirlineManagement (args[0], args[1], args[2], "", 1);
+         new ColumnarExport (esql, new File (args[3])).export (tables, full);
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+         System.exit (1);
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+   }//end main
+
+   static Table table (String name) {
+      for (Table table : TABLES)
+         if (table.name.equalsIgnoreCase (name))
+            return table;
+      return null;
+   }//end table
+
+   /**
+    * Exports the rows of the given tables changed since their previous
+    * export, or all their rows, in one repeatable read transaction, and
+    * records the new watermarks.
+    *
+    * @param tables the tables
+    * @param full whether to rewrite the tables entirely
+    * @throws java.sql.SQLException when a table cannot be read
+    * @throws java.io.IOException when a file cannot be written
+    */
+   public void export (final List<Table> tables, final boolean full) throws SQLException, IOException {
+      if (!this._dir.isDirectory () && !this._dir.mkdirs ())
+         throw new IOException ("cannot create " + this._dir);
+      final Properties marks = loadWatermarks ();
+      final IOException[] failure = new IOException[1];
+
+      this._esql.withConnection (new AirlineManagement.ConnectionWork<Void>() {
+         public Void run (PooledConnection conn) throws SQLException {
+            Connection c = conn.getConnection ();
+            int isolation = c.getTransactionIsolation ();
+            c.setAutoCommit (false);
+            c.setTransactionIsolation (Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+               long watermark = snapshotXmin (conn);
+               for (Table table : tables) {
+                  String previous = marks.getProperty (table.name + ".xmin");
+                  long since = previous == null ? -1 : Long.parseLong (previous);
+                  // a watermark below the previous one means xids wrapped
+                  boolean rewrite = full || since < 0 || since > watermark;
+                  exportTable (conn, table, rewrite ? 0 : since, rewrite);
+                  marks.setProperty (table.name + ".xmin", Long.toString (watermark));
+               }//end for
+               c.commit ();
+            }catch (IOException e) {
+               c.rollback ();
+               failure[0] = e;
+            }catch (SQLException e) {
+               c.rollback ();
+               throw e;
+            }finally {
+               c.setAutoCommit (true);
+               c.setTransactionIsolation (isolation);
+            }//end try
+            return null;
+         }
+      });
+      if (failure[0] != null)
+         throw failure[0];
+      saveWatermarks (marks);
+   }//end export
+
+   private long snapshotXmin (PooledConnection conn) throws SQLException {
+      final long[] xmin = new long[1];
+      this._esql.stream (conn, SNAPSHOT_XMIN_SQL, new Object[0], new RowHandler () {
+         public void start (ResultSetMetaData rsmd) {
+         }
+         public void row (ResultSet rs) throws SQLException {
+            xmin[0] = rs.getLong (1);
+         }
+      });
+      return xmin[0];
+   }//end snapshotXmin
+
+   /*
+    * Streams one table into new parts.  A rewrite then deletes the parts
+    * that were there before.
+    */
+   private void exportTable (PooledConnection conn, Table table, long since, boolean rewrite)
+         throws SQLException, IOException {
+      long start = System.currentTimeMillis ();
+      File tableDir = new File (this._dir, table.name);
+      List<File> old = rewrite ? parts (tableDir) : new ArrayList<File>();
+      PartWriter writer = new PartWriter (tableDir, table.dateColumn, nextPart (tableDir));
+      this._esql.stream (conn, table.sql, new Object[] { Long.valueOf (since) }, writer);
+      writer.flush ();
+      for (File file : old)
+         if (!file.delete ())
+            throw new IOException ("cannot delete " + file);
+
+      System.out.println (table.name + ": " + writer.rows + " rows in " + writer.parts + " parts" +
+                          (rewrite ? " (full)" : "") + " in " +
+                          (System.currentTimeMillis () - start) + " ms");
+   }//end exportTable
+
+   /**
+    * @param tableDir the directory of an exported table
+    * @return the part files of every partition of the table
+    */
+   static List<File> parts (File tableDir) {
+      List<File> parts = new ArrayList<File>();
+      File[] partitions = tableDir.listFiles ();
+      if (partitions == null)
+         return parts;
+      for (File partition : partitions) {
+         File[] files = partition.isDirectory () ? partition.listFiles () : null;
+         if (files == null)
+            continue;
+         for (File file : files)
+            if (partNumber (file) >= 0)
+               parts.add (file);
+      }//end for
+      return parts;
+   }//end parts
+
+   /**
+    * @param file a file of an exported table
+    * @return its part number, or -1 if it is not a part
+    */
+   static int partNumber (File file) {
+      Matcher m = PART_NAME.matcher (file.getName ());
+      return m.matches () ? Integer.parseInt (m.group (1)) : -1;
+   }//end partNumber
+
+   /*
+    * One past the highest part number on disk, so parts left by an export
+    * that failed before saving its watermark are superseded, not reused.
+    */
+   private static int nextPart (File tableDir) {
+      int next = 0;
+      for (File file : parts (tableDir))
+         next = Math.max (next, partNumber (file) + 1);
+      return next;
+   }//end nextPart
+
+   private Properties loadWatermarks () throws IOException {
+      Properties marks = new Properties ();
+      File file = new File (this._dir, WATERMARK_FILE);
+      if (file.isFile ()) {
+         InputStream in = new FileInputStream (file);
+         try {
+            marks.load (in);
+         }finally {
+            in.close ();
+         }//end try
+      }//end if
+      return marks;
+   }//end loadWatermarks
+
+   private void saveWatermarks (Properties marks) throws IOException {
+      File file = new File (this._dir, WATERMARK_FILE);
+      OutputStream out = new FileOutputStream (file);
+      try {
+         marks.store (out, "xmin watermarks of the last export of each table");
+      }finally {
+         out.close ();
+      }//end try
+   }//end saveWatermarks
+
+   /*
+    * Buffers the rows of one partition and writes a part whenever the block
+    * is full or the partition changes.  Rows arrive in date order, so each
+    * partition is written once per export, in as few parts as possible.
+    */
+   private static class PartWriter implements RowHandler {
+      private final File _tableDir;
+      private final String _dateColumn;
+      private int _next;
+      private ColumnarFile.Column[] _columns;
+      private int _dateIndex = -1;
+      private String _date;
+      int rows = 0;
+      int parts = 0;
+
+      PartWriter (File tableDir, String dateColumn, int next) {
+         this._tableDir = tableDir;
+         this._dateColumn = dateColumn;
+         this._next = next;
+      }
+
+      public void start (ResultSetMetaData rsmd) throws SQLException {
+         this._columns = new ColumnarFile.Column[rsmd.getColumnCount ()];
+         for (int i = 0; i < this._columns.length; ++i) {
+            String name = rsmd.getColumnLabel (i + 1).toLowerCase ();
+            if (name.equals (this._dateColumn))
+               this._dateIndex = i;
+            this._columns[i] = new ColumnarFile.Column (name, type (rsmd.getColumnType (i + 1)), BLOCK_ROWS);
+         }//end for
+         if (this._dateIndex < 0)
+            throw new SQLException ("query has no column " + this._dateColumn);
+      }//end start
+
+      public void row (ResultSet rs) throws SQLException {
+         String date = rs.getString (this._dateIndex + 1);
+         if (date == null)
+            date = NULL_DATE;
+         if (!date.equals (this._date) || this._columns[0].size >= BLOCK_ROWS) {
+            flush ();
+            this._date = date;
+         }//end if
+
+         for (int i = 0; i < this._columns.length; ++i) {
+            ColumnarFile.Column column = this._columns[i];
+            if (column.type == ColumnarFile.TEXT) {
+               column.addText (rs.getString (i + 1));
+               continue;
+            }//end if
+            long value = column.type == ColumnarFile.BOOL ? (rs.getBoolean (i + 1) ? 1 : 0) : rs.getLong (i + 1);
+            if (rs.wasNull ())
+               column.addNull ();
+            else
+               column.addLong (value);
+         }//end for
+         ++this.rows;
+      }//end row
+
+      /*
+       * Writes the buffered rows as the next part of their partition.
+       */
+      void flush () throws SQLException {
+         if (this._columns == null || this._columns[0].size == 0)
+            return;
+         File partition = new File (this._tableDir, "date=" + this._date);
+         File file = new File (partition, String.format ("part-%08d%s", this._next, PART_SUFFIX));
+         try {
+            if (!partition.isDirectory () && !partition.mkdirs ())
+               throw new IOException ("cannot create " + partition);
+            ColumnarFile.write (file, this._columns);
+         }catch (IOException e) {
+            throw new SQLException ("cannot write " + file + ": " + e.getMessage ());
+         }//end try
+         ++this._next;
+         ++this.parts;
+         for (ColumnarFile.Column column : this._columns)
+            column.clear ();
+      }//end flush
+
+      private static byte type (int sqlType) {
+         switch (sqlType) {
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+               return ColumnarFile.LONG;
+            case Types.BIT:
+            case Types.BOOLEAN:
+               return ColumnarFile.BOOL;
+            default:
+               return ColumnarFile.TEXT;
+         }//end switch
+      }//end type
+   }//end PartWriter
+
+}//end ColumnarExport
@@ -0,0 +1,356 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A compressed columnar file holding one block of rows of one table.
+ *
+ * Layout: a plain header (magic, version, row count, then name, type and
+ * compressed length of each column) followed by each column compressed on
+ * its own with GZIP, so a reader decompresses only the columns it needs.
+ *
+ * Within a column, nulls are a bitmap; integers are stored as zigzag
+ * varints of the difference to the previous value, which makes sorted IDs
+ * and repeated values nearly free; booleans are a bitmap; text is
+ * dictionary encoded.
+ *
+ */
+public class ColumnarFile {
+
+   static final int MAGIC = 0x41434f4c; // "ACOL"
+   static final int VERSION = 1;
+
+   // column types
+   static final byte LONG = 1;
+   static final byte BOOL = 2;
+   static final byte TEXT = 3;
+
+   /**
+    * The values of one column: numbers and booleans (0 or 1) in longs,
+    * text in texts, nulls marked in a bitmap.
+    */
+   public static class Column {
+      final String name;
+      final byte type;
+      long[] longs;
+      String[] texts;
+      final BitSet nulls = new BitSet ();
+      int size = 0;
+
+      Column (String name, byte type, int capacity) {
+         this.name = name;
+         this.type = type;
+         if (type == TEXT)
+            this.texts = new String[Math.max (capacity, 16)];
+         else
+            this.longs = new long[Math.max (capacity, 16)];
+      }
+
+      public boolean isNull (int row) {
+         return this.nulls.get (row);
+      }//end isNull
+
+      public long getLong (int row) {
+         return this.longs[row];
+      }//end getLong
+
+      public boolean getBoolean (int row) {
+         return this.longs[row] != 0;
+      }//end getBoolean
+
+      public String getText (int row) {
+         return this.texts[row];
+      }//end getText
+
+      void addNull () {
+         grow ();
+         this.nulls.set (this.size++);
+      }//end addNull
+
+      void addLong (long value) {
+         grow ();
+         this.longs[this.size++] = value;
+      }//end addLong
+
+      void addText (String value) {
+         if (value == null) {
+            addNull ();
+            return;
+         }//end if
+         grow ();
+         this.texts[this.size++] = value;
+      }//end addText
+
+      void clear () {
+         this.nulls.clear ();
+         this.size = 0;
+         if (this.texts != null)
+            Arrays.fill (this.texts, null);
+      }//end clear
+
+      private void grow () {
+         if (this.type == TEXT) {
+            if (this.size == this.texts.length)
+               this.texts = Arrays.copyOf (this.texts, this.size * 2);
+         } else if (this.size == this.longs.length) {
+            this.longs = Arrays.copyOf (this.longs, this.size * 2);
+         }//end if
+      }//end grow
+   }//end Column
+
+   /**
+    * Writes columns of equal size to a file.  The file is written under a
+    * temporary name and renamed, so readers never see a partial file.
+    *
+    * @param file the destination
+    * @param columns the columns
+    * @throws java.io.IOException when the file cannot be written
+    */
+   public static void write (File file, Column[] columns) throws IOException {
+      int rows = columns.length == 0 ? 0 : columns[0].size;
+      byte[][] blobs = new byte[columns.length][];
+      for (int c = 0; c < columns.length; ++c)
+         blobs[c] = encode (columns[c], rows);
+
+      File tmp = new File (file.getPath () + ".tmp");
+      DataOutputStream out = new DataOutputStream (new FileOutputStream (tmp));
+      try {
+         out.writeInt (MAGIC);
+         out.writeInt (VERSION);
+         out.writeInt (rows);
+         out.writeInt (columns.length);
+         for (int c = 0; c < columns.length; ++c) {
+            out.writeUTF (columns[c].name);
+            out.writeByte (columns[c].type);
+            out.writeInt (blobs[c].length);
+         }//end for
+         for (byte[] blob : blobs)
+            out.write (blob);
+      }finally {
+         out.close ();
+      }//end try
+      Files.move (tmp.toPath (), file.toPath (), StandardCopyOption.REPLACE_EXISTING,
+                  StandardCopyOption.ATOMIC_MOVE);
+   }//end write
+
+   /**
+    * An open file, from which columns are read by name.
+    */
+   public static class Reader {
+      private final File _file;
+      private final int _rows;
+      private final Map<String, Integer> _index = new HashMap<String, Integer>();
+      private final byte[] _types;
+      private final long[] _offsets;
+      private final int[] _lengths;
+
+      /**
+       * Reads the header of a file.
+       *
+       * @param file the file
+       * @throws java.io.IOException when the file cannot be read or is not a
+       *         columnar file
+       */
+      public Reader (File file) throws IOException {
+         this._file = file;
+         RandomAccessFile in = new RandomAccessFile (file, "r");
+         try {
+            if (in.readInt () != MAGIC || in.readInt () != VERSION)
+               throw new IOException (file + " is not a columnar file");
+            this._rows = in.readInt ();
+            int n = in.readInt ();
+            this._types = new byte[n];
+            this._offsets = new long[n];
+            this._lengths = new int[n];
+            for (int c = 0; c < n; ++c) {
+               this._index.put (in.readUTF (), Integer.valueOf (c));
+               this._types[c] = in.readByte ();
+               this._lengths[c] = in.readInt ();
+            }//end for
+            long offset = in.getFilePointer ();
+            for (int c = 0; c < n; ++c) {
+               this._offsets[c] = offset;
+               offset += this._lengths[c];
+            }//end for
+         }finally {
+            in.close ();
+         }//end try
+      }//end Reader
+
+      public int rows () {
+         return this._rows;
+      }//end rows
+
+      /**
+       * Decompresses one column.
+       *
+       * @param name the column name, as exported
+       * @return the column
+       * @throws java.io.IOException when the file cannot be read or has no
+       *         such column
+       */
+      public Column column (String name) throws IOException {
+         Integer c = this._index.get (name);
+         if (c == null)
+            throw new IOException (this._file + " has no column " + name);
+         byte[] blob = new byte[this._lengths[c]];
+         RandomAccessFile in = new RandomAccessFile (this._file, "r");
+         try {
+            in.seek (this._offsets[c]);
+            in.readFully (blob);
+         }finally {
+            in.close ();
+         }//end try
+         return decode (name, this._types[c], this._rows, blob);
+      }//end column
+   }//end Reader
+
+   private static byte[] encode (Column column, int rows) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+      DataOutputStream out = new DataOutputStream (new GZIPOutputStream (bytes));
+      boolean hasNulls = !column.nulls.isEmpty ();
+      out.writeBoolean (hasNulls);
+      if (hasNulls)
+         writeBitmap (out, column.nulls, rows);
+
+      if (column.type == BOOL) {
+         BitSet set = new BitSet (rows);
+         for (int r = 0; r < rows; ++r)
+            if (!column.nulls.get (r) && column.longs[r] != 0)
+               set.set (r);
+         writeBitmap (out, set, rows);
+      } else if (column.type == LONG) {
+         long previous = 0;
+         for (int r = 0; r < rows; ++r) {
+            if (column.nulls.get (r))
+               continue;
+            writeVarLong (out, zigzag (column.longs[r] - previous));
+            previous = column.longs[r];
+         }//end for
+      } else {
+         Map<String, Integer> codes = new HashMap<String, Integer>();
+         int[] rowCodes = new int[rows];
+         String[] dictionary = new String[rows];
+         for (int r = 0; r < rows; ++r) {
+            if (column.nulls.get (r))
+               continue;
+            Integer code = codes.get (column.texts[r]);
+            if (code == null) {
+               code = Integer.valueOf (codes.size ());
+               dictionary[code] = column.texts[r];
+               codes.put (column.texts[r], code);
+            }//end if
+            rowCodes[r] = code;
+         }//end for
+         writeVarLong (out, codes.size ());
+         for (int i = 0; i < codes.size (); ++i)
+            out.writeUTF (dictionary[i]);
+         for (int r = 0; r < rows; ++r)
+            if (!column.nulls.get (r))
+               writeVarLong (out, rowCodes[r]);
+      }//end if
+      out.close ();
+      return bytes.toByteArray ();
+   }//end encode
+
+   private static Column decode (String name, byte type, int rows, byte[] blob) throws IOException {
+      DataInputStream in = new DataInputStream (new GZIPInputStream (new ByteArrayInputStream (blob)));
+      try {
+         Column column = new Column (name, type, rows);
+         column.size = rows;
+         if (in.readBoolean ())
+            column.nulls.or (readBitmap (in, rows));
+
+         if (type == BOOL) {
+            BitSet set = readBitmap (in, rows);
+            for (int r = 0; r < rows; ++r)
+               column.longs[r] = set.get (r) ? 1 : 0;
+         } else if (type == LONG) {
+            long previous = 0;
+            for (int r = 0; r < rows; ++r) {
+               if (column.nulls.get (r))
+                  continue;
+               previous += unzigzag (readVarLong (in));
+               column.longs[r] = previous;
+            }//end for
+         } else {
+            String[] dictionary = new String[(int) readVarLong (in)];
+            for (int i = 0; i < dictionary.length; ++i)
+               dictionary[i] = in.readUTF ();
+            for (int r = 0; r < rows; ++r)
+               if (!column.nulls.get (r))
+                  column.texts[r] = dictionary[(int) readVarLong (in)];
+         }//end if
+         return column;
+      }finally {
+         in.close ();
+      }//end try
+   }//end decode
+
+   private static void writeBitmap (OutputStream out, BitSet bits, int rows) throws IOException {
+      byte[] bytes = Arrays.copyOf (bits.toByteArray (), (rows + 7) / 8);
+      out.write (bytes);
+   }//end writeBitmap
+
+   private static BitSet readBitmap (DataInputStream in, int rows) throws IOException {
+      byte[] bytes = new byte[(rows + 7) / 8];
+      in.readFully (bytes);
+      return BitSet.valueOf (bytes);
+   }//end readBitmap
+
+   private static void writeVarLong (OutputStream out, long value) throws IOException {
+      while ((value & ~0x7FL) != 0) {
+         out.write ((int) ((value & 0x7F) | 0x80));
+         value >>>= 7;
+      }//end while
+      out.write ((int) value);
+   }//end writeVarLong
+
+   private static long readVarLong (InputStream in) throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+         int b = in.read ();
+         if (b < 0)
+            throw new EOFException ();
+         value |= (long) (b & 0x7F) << shift;
+         if ((b & 0x80) == 0)
+            return value;
+      }//end for
+      throw new IOException ("malformed varint");
+   }//end readVarLong
+
+   private static long zigzag (long value) {
+      return (value << 1) ^ (value >> 63);
+   }//end zigzag
+
+   private static long unzigzag (long value) {
+      return (value >>> 1) ^ -(value & 1);
+   }//end unzigzag
+
+}//end ColumnarFile
@@ -0,0 +1,259 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers analytics queries from the files written by ColumnarExport,
+ * without a database connection.
+ *
+ * Queries read only the partitions of their date range and, within each
+ * part, only the columns they use.  A row exported more than once counts
+ * only in the highest numbered part holding it; the key column of every
+ * part is read once to know which that is, and again only for the parts
+ * added by later exports.  The index keeps the keys in sorted primitive
+ * arrays, about 12 bytes per exported row.
+ *
+ */
+public class ColumnarReader {
+
+   static final String[] FLIGHT_STATISTICS_COLUMNS = {
+      "numdepartedontime", "numdeparteddelayed", "numarrivedontime",
+      "numarriveddelayed", "totalseatssold", "totalseatsunsold"
+   };
+
+   /*
+    * A part file and the partition holding it.
+    */
+   private static class Part {
+      final File file;
+      final String date;
+      final int number;
+
+      Part (File file) {
+         this.file = file;
+         this.date = file.getParentFile ().getName ().substring ("date=".length ());
+         this.number = ColumnarExport.partNumber (file);
+      }
+   }//end Part
+
+   /*
+    * The parts of a table and, per key, the number of the newest part
+    * holding the key: keys ascending, and newest[i] the part of keys[i].
+    */
+   private static class TableIndex {
+      final List<Part> parts = new ArrayList<Part>();
+      long[] keys = new long[0];
+      int[] newest = new int[0];
+
+      // the number of the newest part holding the key, or -1
+      int newest (long key) {
+         int i = Arrays.binarySearch (this.keys, key);
+         return i < 0 ? -1 : this.newest[i];
+      }
+
+      // merges the keys of a part newer than every part added so far
+      void add (Part part, long[] partKeys) {
+         Arrays.sort (partKeys);
+         long[] keys = new long[this.keys.length + partKeys.length];
+         int[] newest = new int[keys.length];
+         int i = 0, j = 0, n = 0;
+         while (i < this.keys.length || j < partKeys.length) {
+            if (j == partKeys.length || (i < this.keys.length && this.keys[i] < partKeys[j])) {
+               keys[n] = this.keys[i];
+               newest[n++] = this.newest[i++];
+               continue;
+            }//end if
+            long key = partKeys[j++];
+            // an older copy of the row is superseded
+            if (i < this.keys.length && this.keys[i] == key)
+               ++i;
+            if (n > 0 && keys[n - 1] == key)
+               continue;
+            keys[n] = key;
+            newest[n++] = part.number;
+         }//end while
+         this.keys = n == keys.length ? keys : Arrays.copyOf (keys, n);
+         this.newest = n == newest.length ? newest : Arrays.copyOf (newest, n);
+         this.parts.add (part);
+      }
+   }//end TableIndex
+
+   private final File _dir;
+   private final Map<String, TableIndex> _indexes = new HashMap<String, TableIndex>();
+
+   /**
+    * @param dir the export directory
+    */
+   public ColumnarReader (File dir) {
+      this._dir = dir;
+   }//end ColumnarReader
+
+   /**
+    * Prints the feature10 statistics of a flight computed from an export.
+    *
+    * @param args the command line arguments: export directory, flight
+    *        number, first and last date (YYYY-MM-DD)
+    */
+   public static void main (String[] args) {
+      if (args.length != 4) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            ColumnarReader.class.getName () +
+            " <export dir> <flight number> <start date> <end date>");
+         return;
+      }//end if
+      try {
+         long start = System.nanoTime ();
+         CachedResult stats = new ColumnarReader (new File (args[0])).flightStatistics (args[1], args[2], args[3]);
+         stats.print ();
+         System.out.println ("computed in " + (System.nanoTime () - start) / 1000000 + " ms");
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+         System.exit (1);
+      }//end try
+   }//end main
+
+   /**
+    * Computes what feature10 (AirlineManagement.FLIGHT_STATISTICS_SQL)
+    * returns, from the exported FlightInstance rows.
+    *
+    * @param flightNumber the flight
+    * @param startDate the first date, YYYY-MM-DD
+    * @param endDate the last date, YYYY-MM-DD
+    * @return one row: departures and arrivals on time and delayed, seats
+    *         sold and unsold; the seat totals are null when the flight has
+    *         no instance in the range
+    * @throws java.sql.SQLException when a date is malformed or the export
+    *         cannot be read
+    */
+   public CachedResult flightStatistics (String flightNumber, String startDate, String endDate) throws SQLException {
+      String first, last;
+      try {
+         first = LocalDate.parse (startDate.trim ()).toString ();
+         last = LocalDate.parse (endDate.trim ()).toString ();
+      }catch (DateTimeParseException e) {
+         throw new SQLException ("invalid date: " + e.getParsedString (), "22007");
+      }//end try
+
+      long departedOnTime = 0, departedDelayed = 0, arrivedOnTime = 0, arrivedDelayed = 0;
+      long seatsSold = 0, seatsUnsold = 0, instances = 0;
+      try {
+         TableIndex index = index (ColumnarExport.FLIGHT_INSTANCE.name, "flightinstanceid");
+         for (Part part : index.parts) {
+            // partitions compare as text, "null" after every date
+            if (part.date.equals (ColumnarExport.NULL_DATE) ||
+                part.date.compareTo (first) < 0 || part.date.compareTo (last) > 0)
+               continue;
+            ColumnarFile.Reader reader = new ColumnarFile.Reader (part.file);
+            ColumnarFile.Column flights = reader.column ("flightnumber");
+            List<Integer> rows = new ArrayList<Integer>();
+            for (int r = 0; r < reader.rows (); ++r)
+               if (!flights.isNull (r) && flights.getText (r).equals (flightNumber))
+                  rows.add (r);
+            if (rows.isEmpty ())
+               continue;
+
+            ColumnarFile.Column ids = reader.column ("flightinstanceid");
+            ColumnarFile.Column departed = reader.column ("departedontime");
+            ColumnarFile.Column arrived = reader.column ("arrivedontime");
+            ColumnarFile.Column total = reader.column ("seatstotal");
+            ColumnarFile.Column sold = reader.column ("seatssold");
+            for (int r : rows) {
+               if (index.newest (ids.getLong (r)) != part.number)
+                  continue;
+               if (!departed.isNull (r)) {
+                  if (departed.getBoolean (r))
+                     ++departedOnTime;
+                  else
+                     ++departedDelayed;
+               }//end if
+               if (!arrived.isNull (r)) {
+                  if (arrived.getBoolean (r))
+                     ++arrivedOnTime;
+                  else
+                     ++arrivedDelayed;
+               }//end if
+               long s = sold.isNull (r) ? 0 : sold.getLong (r);
+               seatsSold += s;
+               seatsUnsold += (total.isNull (r) ? 0 : total.getLong (r)) - s;
+               ++instances;
+            }//end for
+         }//end for
+      }catch (IOException e) {
+         throw new SQLException ("cannot read export: " + e.getMessage ());
+      }//end try
+
+      String[] row = {
+         Long.toString (departedOnTime), Long.toString (departedDelayed),
+         Long.toString (arrivedOnTime), Long.toString (arrivedDelayed),
+         instances == 0 ? null : Long.toString (seatsSold),
+         instances == 0 ? null : Long.toString (seatsUnsold)
+      };
+      return new CachedResult (FLIGHT_STATISTICS_COLUMNS, new String[][] { row });
+   }//end flightStatistics
+
+   /*
+    * The index of a table, brought up to date with the parts on disk.  New
+    * parts only add to it; when a part disappeared, as after a full export,
+    * it is rebuilt.
+    */
+   private synchronized TableIndex index (String table, String keyColumn) throws IOException {
+      List<Part> parts = new ArrayList<Part>();
+      for (File file : ColumnarExport.parts (new File (this._dir, table)))
+         parts.add (new Part (file));
+      Collections.sort (parts, new Comparator<Part>() {
+         public int compare (Part a, Part b) { return Integer.compare (a.number, b.number); }
+      });
+
+      TableIndex index = this._indexes.get (table);
+      if (index == null || !known (index, parts)) {
+         index = new TableIndex ();
+         this._indexes.put (table, index);
+      }//end if
+      for (int i = index.parts.size (); i < parts.size (); ++i) {
+         Part part = parts.get (i);
+         ColumnarFile.Column keys = new ColumnarFile.Reader (part.file).column (keyColumn);
+         if (keys.type != ColumnarFile.LONG)
+            throw new IOException ("key column " + keyColumn + " of " + part.file + " is not an integer");
+         long[] partKeys = new long[keys.size];
+         for (int r = 0; r < keys.size; ++r)
+            partKeys[r] = keys.getLong (r);
+         index.add (part, partKeys);
+      }//end for
+      return index;
+   }//end index
+
+   /*
+    * Whether the indexed parts are the first parts on disk, i.e. parts were
+    * only added since the index was built.
+    */
+   private static boolean known (TableIndex index, List<Part> parts) {
+      if (index.parts.size () > parts.size ())
+         return false;
+      for (int i = 0; i < index.parts.size (); ++i)
+         if (!index.parts.get (i).file.equals (parts.get (i).file))
+            return false;
+      return true;
+   }//end known
+
+}//end ColumnarReader
@@ -0,0 +1,354 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * A query result held column by column in primitive arrays, for bulk reads
+ * of many rows.
+ *
+ * Each column is stored by its SQL type: integers in an int[] or long[],
+ * booleans in a boolean[], DECIMAL with a scale of at most 6 as unscaled
+ * longs (TicketCost as cents), other numbers in a double[], dates as epoch
+ * days and times as seconds of the day in an int[]; only text columns hold
+ * Strings.  NULLs are kept in a bitmap per column and read as 0.  A result
+ * of n rows thus costs a handful of arrays instead of n lists of boxed
+ * strings.
+ *
+ * Built by AirlineManagement.executeQueryColumnar, or by streaming a query
+ * through a Builder.
+ *
+ */
+public class ColumnarResult {
+
+   // how each column is stored
+   static final byte INT = 0;
+   static final byte LONG = 1;
+   static final byte DOUBLE = 2;
+   static final byte DECIMAL = 3;
+   static final byte BOOLEAN = 4;
+   static final byte DATE = 5;
+   static final byte TIME = 6;
+   static final byte TEXT = 7;
+
+   // DECIMALs with a larger scale are stored as doubles
+   static final int MAX_DECIMAL_SCALE = 6;
+
+   static final int INITIAL_CAPACITY = 64;
+
+   static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern ("HH:mm:ss");
+
+   private final String[] _names;
+   private final byte[] _kinds;
+   private final int[] _scales;
+   // per column one of int[], long[], double[], boolean[] or String[]
+   private final Object[] _values;
+   // per column a bitmap of the rows that are NULL
+   private final long[][] _nulls;
+   private final int _size;
+
+   private ColumnarResult (String[] names, byte[] kinds, int[] scales, Object[] values,
+                           long[][] nulls, int size) {
+      this._names = names;
+      this._kinds = kinds;
+      this._scales = scales;
+      this._values = values;
+      this._nulls = nulls;
+      this._size = size;
+   }//end ColumnarResult
+
+   /**
+    * RowHandler that collects the rows of a query into a ColumnarResult.
+    */
+   public static class Builder implements RowHandler {
+      private String[] _names;
+      private byte[] _kinds;
+      private int[] _scales;
+      private Object[] _values;
+      private long[][] _nulls;
+      private int _size = 0;
+      private int _capacity = INITIAL_CAPACITY;
+      private long _bytes = 0;
+
+      public void start (ResultSetMetaData rsmd) throws SQLException {
+         int numCol = rsmd.getColumnCount ();
+         this._names = new String[numCol];
+         this._kinds = new byte[numCol];
+         this._scales = new int[numCol];
+         this._values = new Object[numCol];
+         this._nulls = new long[numCol][];
+         for (int c = 0; c < numCol; ++c) {
+            this._names[c] = rsmd.getColumnLabel (c + 1);
+            this._kinds[c] = kind (rsmd.getColumnType (c + 1), rsmd.getScale (c + 1));
+            this._scales[c] = this._kinds[c] == DECIMAL ? rsmd.getScale (c + 1) : 0;
+            this._values[c] = allocate (this._kinds[c], this._capacity);
+            this._nulls[c] = new long[(this._capacity + 63) >>> 6];
+         }//end for
+      }//end start
+
+      public void row (ResultSet rs) throws SQLException {
+         if (this._size == this._capacity)
+            grow ();
+         int r = this._size;
+         for (int c = 0; c < this._kinds.length; ++c) {
+            int i = c + 1;
+            boolean isNull;
+            switch (this._kinds[c]) {
+               case INT:
+                  ((int[]) this._values[c])[r] = rs.getInt (i);
+                  isNull = rs.wasNull ();
+                  this._bytes += 4;
+                  break;
+               case LONG:
+                  ((long[]) this._values[c])[r] = rs.getLong (i);
+                  isNull = rs.wasNull ();
+                  this._bytes += 8;
+                  break;
+               case DOUBLE:
+                  ((double[]) this._values[c])[r] = rs.getDouble (i);
+                  isNull = rs.wasNull ();
+                  this._bytes += 8;
+                  break;
+               case DECIMAL:
+                  ((long[]) this._values[c])[r] =
+                     Math.round (rs.getDouble (i) * POWERS_OF_TEN[this._scales[c]]);
+                  isNull = rs.wasNull ();
+                  this._bytes += 8;
+                  break;
+               case BOOLEAN:
+                  ((boolean[]) this._values[c])[r] = rs.getBoolean (i);
+                  isNull = rs.wasNull ();
+                  this._bytes += 1;
+                  break;
+               case DATE: {
+                  LocalDate d = rs.getObject (i, LocalDate.class);
+                  isNull = d == null;
+                  ((int[]) this._values[c])[r] = isNull ? 0 : (int) d.toEpochDay ();
+                  this._bytes += 4;
+                  break;
+               }
+               case TIME: {
+                  LocalTime t = rs.getObject (i, LocalTime.class);
+                  isNull = t == null;
+                  ((int[]) this._values[c])[r] = isNull ? 0 : t.toSecondOfDay ();
+                  this._bytes += 4;
+                  break;
+               }
+               default: {
+                  String s = rs.getString (i);
+                  isNull = s == null;
+                  ((String[]) this._values[c])[r] = s;
+                  if (s != null)
+                     this._bytes += Metrics.utf8Length (s);
+               }
+            }//end switch
+            if (isNull)
+               this._nulls[c][r >>> 6] |= 1L << r;
+         }//end for
+         ++this._size;
+      }//end row
+
+      /**
+       * @return the rows collected so far; the builder must not be used
+       *         afterwards
+       */
+      public ColumnarResult build () {
+         Metrics.fetched (this._bytes);
+         this._bytes = 0;
+         if (this._names == null)
+            return new ColumnarResult (new String[0], new byte[0], new int[0], new Object[0],
+                                       new long[0][], 0);
+         return new ColumnarResult (this._names, this._kinds, this._scales, this._values,
+                                    this._nulls, this._size);
+      }//end build
+
+      private void grow () {
+         this._capacity *= 2;
+         for (int c = 0; c < this._kinds.length; ++c) {
+            Object old = this._values[c];
+            Object grown = allocate (this._kinds[c], this._capacity);
+            System.arraycopy (old, 0, grown, 0, this._size);
+            this._values[c] = grown;
+            this._nulls[c] = Arrays.copyOf (this._nulls[c], (this._capacity + 63) >>> 6);
+         }//end for
+      }//end grow
+   }//end Builder
+
+   static final long[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+
+   /*
+    * The storage of a column of the given java.sql.Types type and scale.
+    */
+   static byte kind (int type, int scale) {
+      switch (type) {
+         case Types.TINYINT:
+         case Types.SMALLINT:
+         case Types.INTEGER:
+            return INT;
+         case Types.BIGINT:
+            return LONG;
+         case Types.REAL:
+         case Types.FLOAT:
+         case Types.DOUBLE:
+            return DOUBLE;
+         case Types.NUMERIC:
+         case Types.DECIMAL:
+            // unconstrained NUMERIC reports a scale of 0 or less, or a huge one
+            return scale > 0 && scale <= MAX_DECIMAL_SCALE ? DECIMAL : DOUBLE;
+         case Types.BIT:
+         case Types.BOOLEAN:
+            return BOOLEAN;
+         case Types.DATE:
+            return DATE;
+         case Types.TIME:
+            return TIME;
+         default:
+            return TEXT;
+      }//end switch
+   }//end kind
+
+   private static Object allocate (byte kind, int capacity) {
+      switch (kind) {
+         case INT: case DATE: case TIME: return new int[capacity];
+         case LONG: case DECIMAL: return new long[capacity];
+         case DOUBLE: return new double[capacity];
+         case BOOLEAN: return new boolean[capacity];
+         default: return new String[capacity];
+      }//end switch
+   }//end allocate
+
+   /**
+    * @return the number of rows
+    */
+   public int size () {
+      return this._size;
+   }//end size
+
+   /**
+    * @return the number of columns
+    */
+   public int columnCount () {
+      return this._names.length;
+   }//end columnCount
+
+   /**
+    * @param col the column index, starting at 0
+    * @return the column's name
+    */
+   public String columnName (int col) {
+      return this._names[col];
+   }//end columnName
+
+   /**
+    * @param name a column name, in any case
+    * @return the column's index, or -1 when there is no such column
+    */
+   public int columnIndex (String name) {
+      for (int c = 0; c < this._names.length; ++c)
+         if (this._names[c].equalsIgnoreCase (name))
+            return c;
+      return -1;
+   }//end columnIndex
+
+   public boolean isNull (int row, int col) {
+      return (this._nulls[col][row >>> 6] & (1L << row)) != 0;
+   }//end isNull
+
+   /**
+    * @return an integer column's value, a date's epoch day or a time's
+    *         second of the day; 0 for NULL
+    */
+   public int getInt (int row, int col) {
+      switch (this._kinds[col]) {
+         case INT: case DATE: case TIME: return ((int[]) this._values[col])[row];
+         default: return (int) getLong (row, col);
+      }//end switch
+   }//end getInt
+
+   /**
+    * @return an integer column's value, or a DECIMAL's unscaled value (i.e.
+    *         cents for TicketCost); 0 for NULL
+    */
+   public long getLong (int row, int col) {
+      switch (this._kinds[col]) {
+         case INT: case DATE: case TIME: return ((int[]) this._values[col])[row];
+         case LONG: case DECIMAL: return ((long[]) this._values[col])[row];
+         case DOUBLE: return (long) ((double[]) this._values[col])[row];
+         case BOOLEAN: return ((boolean[]) this._values[col])[row] ? 1 : 0;
+         default: throw new IllegalArgumentException ("column " + this._names[col] + " is text");
+      }//end switch
+   }//end getLong
+
+   public double getDouble (int row, int col) {
+      switch (this._kinds[col]) {
+         case DOUBLE: return ((double[]) this._values[col])[row];
+         case DECIMAL: return (double) ((long[]) this._values[col])[row] / POWERS_OF_TEN[this._scales[col]];
+         default: return getLong (row, col);
+      }//end switch
+   }//end getDouble
+
+   public boolean getBoolean (int row, int col) {
+      return getLong (row, col) != 0;
+   }//end getBoolean
+
+   /**
+    * @return the scale of a DECIMAL column, i.e. the power of ten getLong's
+    *         value is scaled by; 0 for the other columns
+    */
+   public int scale (int col) {
+      return this._scales[col];
+   }//end scale
+
+   /**
+    * Renders a value as text, as getString of the result set would.  Meant
+    * for printing; it makes a String for every call.
+    *
+    * @return the value, or null for NULL
+    */
+   public String getString (int row, int col) {
+      if (isNull (row, col))
+         return null;
+      switch (this._kinds[col]) {
+         case INT: case LONG: return String.valueOf (getLong (row, col));
+         case DOUBLE: return String.valueOf (getDouble (row, col));
+         case DECIMAL: return BigDecimal.valueOf (getLong (row, col), this._scales[col]).toPlainString ();
+         case BOOLEAN: return getBoolean (row, col) ? "t" : "f";
+         case DATE: return LocalDate.ofEpochDay (getInt (row, col)).toString ();
+         case TIME: return LocalTime.ofSecondOfDay (getInt (row, col)).format (TIME_FORMAT);
+         default: return ((String[]) this._values[col])[row];
+      }//end switch
+   }//end getString
+
+   /**
+    * Writes the rows to a printer, without flushing it.
+    *
+    * @param printer the destination
+    * @return the number of rows written
+    * @throws java.sql.SQLException when the output cannot be written
+    */
+   public int print (RowPrinter printer) throws SQLException {
+      String[] row = new String[this._names.length];
+      for (int r = 0; r < this._size; ++r) {
+         for (int c = 0; c < row.length; ++c)
+            row[c] = getString (r, c);
+         printer.row (this._names, row);
+      }//end for
+      return this._size;
+   }//end print
+
+}//end ColumnarResult
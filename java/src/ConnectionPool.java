@@ -0,0 +1,332 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of physical PostgreSQL connections.  Threads borrow a
+ * connection, use it exclusively and release it again; when every connection
+ * is in use, borrow waits up to the configured maximum wait time.  Idle
+ * connections are validated before they are handed out and closed by a
+ * background evictor once they have been idle for too long.
+ *
+ */
+public class ConnectionPool {
+
+   // default pool settings, used by AirlineManagement.
+   static final int DEFAULT_MAX_SIZE = 10;
+   static final long DEFAULT_MAX_WAIT_MILLIS = 30000;
+   static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 300000;
+
+   // connections idle for less than this are handed out without validation.
+   static final long VALIDATION_BYPASS_MILLIS = 500;
+
+   static final String VALIDATION_QUERY = "SELECT 1";
+
+   private final String _url;
+   private final Properties _props;
+   private final int _maxSize;
+   private final long _maxWaitMillis;
+   private final long _idleTimeoutMillis;
+
+   // connections not currently borrowed; the most recently released is last.
+   private final ArrayDeque<PooledConnection> _idle = new ArrayDeque<PooledConnection>();
+
+   // number of open connections, borrowed or idle.
+   private int _open = 0;
+   private boolean _closed = false;
+
+   private final ReentrantLock _lock = new ReentrantLock ();
+   private final Condition _available = _lock.newCondition ();
+   private final Thread _evictor;
+
+   // time spent in borrow, including opening or validating the connection.
+   private final LatencyHistogram _waitTimes = new LatencyHistogram ();
+
+   /**
+    * Creates a new pool.  No connection is opened until the first borrow.
+    *
+    * @param url the JDBC connection URL
+    * @param props the connection properties (user, password, driver options)
+    * @param maxSize the maximum number of open connections
+    * @param maxWaitMillis how long borrow waits for a free connection
+    * @param idleTimeoutMillis how long a connection may stay idle before it
+    *        is closed
+    */
+   public ConnectionPool (String url, Properties props, int maxSize,
+                          long maxWaitMillis, long idleTimeoutMillis) {
+      if (maxSize < 1)
+         throw new IllegalArgumentException ("pool size must be at least 1");
+      this._url = url;
+      this._props = props;
+      this._maxSize = maxSize;
+      this._maxWaitMillis = maxWaitMillis;
+      this._idleTimeoutMillis = idleTimeoutMillis;
+
+      this._evictor = new Thread (new Runnable () {
+         public void run () { evictLoop (); }
+      }, "connection-pool-evictor");
+      this._evictor.setDaemon (true);
+      this._evictor.start ();
+   }//end ConnectionPool
+
+   /**
+    * @return the maximum number of open connections
+    */
+   public int getMaxSize () {
+      return this._maxSize;
+   }//end getMaxSize
+
+   /**
+    * @return the time each successful borrow took to return a connection
+    */
+   public LatencyHistogram getWaitTimes () {
+      return this._waitTimes;
+   }//end getWaitTimes
+
+   /**
+    * @return the number of open connections, borrowed or idle
+    */
+   public int getOpenCount () {
+      this._lock.lock ();
+      try {
+         return this._open;
+      }finally {
+         this._lock.unlock ();
+      }//end try
+   }//end getOpenCount
+
+   /**
+    * @return the number of open connections not currently borrowed
+    */
+   public int getIdleCount () {
+      this._lock.lock ();
+      try {
+         return this._idle.size ();
+      }finally {
+         this._lock.unlock ();
+      }//end try
+   }//end getIdleCount
+
+   /**
+    * Borrows a connection, waiting up to the maximum wait time when every
+    * connection is in use.  The caller must hand it back with release.
+    *
+    * @return a validated connection
+    * @throws java.sql.SQLException when no connection became available in
+    *         time or a new connection could not be opened
+    */
+   public PooledConnection borrow () throws SQLException {
+      long t0 = System.nanoTime ();
+      PooledConnection conn = acquire ();
+      this._waitTimes.record (System.nanoTime () - t0);
+      return conn;
+   }//end borrow
+
+   private PooledConnection acquire () throws SQLException {
+      long deadline = System.nanoTime () + TimeUnit.MILLISECONDS.toNanos (this._maxWaitMillis);
+      while (true) {
+         PooledConnection conn = null;
+         boolean create = false;
+         this._lock.lock ();
+         try {
+            while (true) {
+               if (this._closed)
+                  throw new SQLException ("connection pool is closed");
+               conn = this._idle.pollLast ();
+               if (conn != null)
+                  break;
+               if (this._open < this._maxSize) {
+                  ++this._open;
+                  create = true;
+                  break;
+               }//end if
+               long remaining = deadline - System.nanoTime ();
+               if (remaining <= 0)
+                  throw new SQLException ("timed out after " + this._maxWaitMillis +
+                                          " ms waiting for a database connection");
+               try {
+                  this._available.awaitNanos (remaining);
+               }catch (InterruptedException e) {
+                  Thread.currentThread ().interrupt ();
+                  throw new SQLException ("interrupted while waiting for a database connection");
+               }//end try
+            }//end while
+         }finally {
+            this._lock.unlock ();
+         }//end try
+
+         if (create)
+            return open ();
+         if (validate (conn))
+            return conn;
+         discard (conn);
+      }//end while
+   }//end acquire
+
+   /**
+    * Hands a borrowed connection back to the pool.  Broken connections are
+    * closed instead of being reused.
+    *
+    * @param conn the connection obtained from borrow
+    */
+   public void release (PooledConnection conn) {
+      if (conn == null)
+         return;
+      try {
+         // never hand out a connection in the middle of a transaction
+         if (!conn.broken && !conn.getConnection ().getAutoCommit ()) {
+            conn.getConnection ().rollback ();
+            conn.getConnection ().setAutoCommit (true);
+         }//end if
+      }catch (SQLException e) {
+         conn.broken = true;
+      }//end try
+      if (conn.broken) {
+         discard (conn);
+         return;
+      }//end if
+
+      conn.lastReleased = System.currentTimeMillis ();
+      this._lock.lock ();
+      try {
+         if (this._closed) {
+            --this._open;
+         } else {
+            this._idle.addLast (conn);
+            this._available.signal ();
+            return;
+         }//end if
+      }finally {
+         this._lock.unlock ();
+      }//end try
+      conn.close ();
+   }//end release
+
+   /**
+    * Closes every idle connection and stops the evictor.  Connections still
+    * borrowed are closed as they are released.
+    */
+   public void close () {
+      this._lock.lock ();
+      try {
+         this._closed = true;
+         for (PooledConnection conn : this._idle) {
+            conn.close ();
+            --this._open;
+         }//end for
+         this._idle.clear ();
+         this._available.signalAll ();
+      }finally {
+         this._lock.unlock ();
+      }//end try
+      this._evictor.interrupt ();
+   }//end close
+
+   /*
+    * Opens a new physical connection for a slot already counted in _open.
+    */
+   private PooledConnection open () throws SQLException {
+      try {
+         return new PooledConnection (DriverManager.getConnection (this._url, this._props));
+      }catch (SQLException e) {
+         releaseSlot ();
+         throw e;
+      }catch (RuntimeException e) {
+         releaseSlot ();
+         throw e;
+      }//end try
+   }//end open
+
+   /*
+    * Checks that an idle connection still works.  Recently used connections
+    * are trusted unless a statement on them failed.
+    */
+   private boolean validate (PooledConnection conn) {
+      if (conn.broken)
+         return false;
+      long idle = System.currentTimeMillis () - conn.lastReleased;
+      if (!conn.suspect && idle < VALIDATION_BYPASS_MILLIS)
+         return true;
+      try {
+         Statement stmt = conn.getConnection ().createStatement ();
+         try {
+            stmt.executeQuery (VALIDATION_QUERY).close ();
+         }finally {
+            stmt.close ();
+         }//end try
+         conn.suspect = false;
+         return true;
+      }catch (SQLException e) {
+         return false;
+      }//end try
+   }//end validate
+
+   private void discard (PooledConnection conn) {
+      conn.close ();
+      releaseSlot ();
+   }//end discard
+
+   private void releaseSlot () {
+      this._lock.lock ();
+      try {
+         --this._open;
+         this._available.signal ();
+      }finally {
+         this._lock.unlock ();
+      }//end try
+   }//end releaseSlot
+
+   /*
+    * Periodically closes connections that have been idle longer than the
+    * idle timeout.
+    */
+   private void evictLoop () {
+      long period = Math.max (1000, this._idleTimeoutMillis / 4);
+      while (true) {
+         try {
+            Thread.sleep (period);
+         }catch (InterruptedException e) {
+            return;
+         }//end try
+
+         ArrayDeque<PooledConnection> expired = new ArrayDeque<PooledConnection>();
+         long now = System.currentTimeMillis ();
+         this._lock.lock ();
+         try {
+            if (this._closed)
+               return;
+            // the oldest connections are at the head of the deque
+            Iterator<PooledConnection> it = this._idle.iterator ();
+            while (it.hasNext ()) {
+               PooledConnection conn = it.next ();
+               if (now - conn.lastReleased < this._idleTimeoutMillis)
+                  break;
+               it.remove ();
+               --this._open;
+               expired.add (conn);
+            }//end while
+         }finally {
+            this._lock.unlock ();
+         }//end try
+         for (PooledConnection conn : expired)
+            conn.close ();
+      }//end while
+   }//end evictLoop
+
+}//end ConnectionPool
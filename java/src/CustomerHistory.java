@@ -0,0 +1,302 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * The trips of a customer for the Customer menu: their reservations with
+ * the date and route of each flight, newest first, a page at a time, and
+ * how many trips are upcoming, flown and waitlisted.
+ *
+ * Pages are read by keyset: each page ends with a cursor, the FlightDate
+ * and ReservationID of its last trip, and the next page starts strictly
+ * after it, so reading page n costs no more than reading page 1.  The
+ * reservations are found through the CustomerID index of
+ * sql/src/create_indexes.sql; on the partitioned schema its key is
+ * (CustomerID, FlightDate), so a page is one range of it.
+ *
+ * Summaries are cached per customer.  The triggers in
+ * sql/src/create_triggers.sql send NOTIFY trips_changed with the
+ * CustomerID of every reservation written, which drops that customer's
+ * summary.  A summary read while its customer's trips changed is not kept;
+ * changes are counted per customer, so booking load on other customers
+ * does not keep the cache from filling.  Entries also expire after
+ * SUMMARY_TTL_MILLIS, so upcoming trips become flown soon after their date
+ * passes.
+ *
+ */
+public class CustomerHistory {
+
+   static final String CHANNEL = "trips_changed";
+
+   static final int DEFAULT_PAGE_SIZE = 10;
+   static final int MAX_PAGE_SIZE = 1000;
+
+   static final int MAX_SUMMARIES = 10000;
+   static final long SUMMARY_TTL_MILLIS = 60 * 1000;
+
+   static final String FIRST_PAGE_SQL =
+      "SELECT R.ReservationID, FI.FlightDate, FI.FlightNumber, F.DepartureCity, F.ArrivalCity, R.Status " +
+      "FROM Reservation R " +
+      "JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID " +
+      "LEFT JOIN Flight F ON F.FlightNumber = FI.FlightNumber " +
+      "WHERE R.CustomerID = ? " +
+      "ORDER BY FI.FlightDate DESC, R.ReservationID DESC " +
+      "LIMIT ?";
+
+   static final String NEXT_PAGE_SQL =
+      "SELECT R.ReservationID, FI.FlightDate, FI.FlightNumber, F.DepartureCity, F.ArrivalCity, R.Status " +
+      "FROM Reservation R " +
+      "JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID " +
+      "LEFT JOIN Flight F ON F.FlightNumber = FI.FlightNumber " +
+      "WHERE R.CustomerID = ? " +
+      "AND (FI.FlightDate, R.ReservationID) < (CAST(? AS DATE), ?) " +
+      "ORDER BY FI.FlightDate DESC, R.ReservationID DESC " +
+      "LIMIT ?";
+
+   // on the partitioned schema the reservation's own FlightDate orders the
+   // page, which Reservation_CustomerID_FlightDate_idx returns in order
+   static final String PARTITIONED_FIRST_PAGE_SQL =
+      "SELECT R.ReservationID, R.FlightDate, FI.FlightNumber, F.DepartureCity, F.ArrivalCity, R.Status " +
+      "FROM Reservation R " +
+      "JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID " +
+      "AND FI.FlightDate = R.FlightDate " +
+      "LEFT JOIN Flight F ON F.FlightNumber = FI.FlightNumber " +
+      "WHERE R.CustomerID = ? " +
+      "ORDER BY R.FlightDate DESC, R.ReservationID DESC " +
+      "LIMIT ?";
+
+   static final String PARTITIONED_NEXT_PAGE_SQL =
+      "SELECT R.ReservationID, R.FlightDate, FI.FlightNumber, F.DepartureCity, F.ArrivalCity, R.Status " +
+      "FROM Reservation R " +
+      "JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID " +
+      "AND FI.FlightDate = R.FlightDate " +
+      "LEFT JOIN Flight F ON F.FlightNumber = FI.FlightNumber " +
+      "WHERE R.CustomerID = ? " +
+      "AND (R.FlightDate, R.ReservationID) < (CAST(? AS DATE), ?) " +
+      "ORDER BY R.FlightDate DESC, R.ReservationID DESC " +
+      "LIMIT ?";
+
+   // reserved trips count as flown once their date has passed; waitlisted
+   // ones on a past date are not counted
+   static final String SUMMARY_SQL =
+      "SELECT " +
+      "COUNT(*) FILTER (WHERE R.Status = 'reserved' AND FI.FlightDate >= CURRENT_DATE) AS Upcoming, " +
+      "COUNT(*) FILTER (WHERE R.Status = 'flown' " +
+      "OR (R.Status = 'reserved' AND FI.FlightDate < CURRENT_DATE)) AS Flown, " +
+      "COUNT(*) FILTER (WHERE R.Status = 'waitlist' AND FI.FlightDate >= CURRENT_DATE) AS Waitlisted " +
+      "FROM Reservation R " +
+      "JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID " +
+      "WHERE R.CustomerID = ?";
+
+   static final String PARTITIONED_SUMMARY_SQL =
+      SUMMARY_SQL + " AND FI.FlightDate = R.FlightDate";
+
+   /**
+    * Where a page of trips ended: the next page starts after this trip.
+    */
+   public record Cursor (String flightDate, String reservationID) {
+   }//end Cursor
+
+   /**
+    * One page of trips and the cursor of the page after it.
+    */
+   public static class Page {
+      public final CachedResult trips;
+      // null on the last page
+      public final Cursor next;
+
+      Page (CachedResult trips, Cursor next) {
+         this.trips = trips;
+         this.next = next;
+      }
+   }//end Page
+
+   /*
+    * The summary reads in flight for one customer, and how often the
+    * customer's trips changed since the first of them started.  Only
+    * changed under the map's lock of the customer.
+    */
+   private static class Loading {
+      int loads = 0;
+      long generation = 0;
+   }//end Loading
+
+   private final AirlineManagement _esql;
+   private final LruCache<Integer, CachedResult> _summaries =
+      new LruCache<Integer, CachedResult>("tripSummary", MAX_SUMMARIES, SUMMARY_TTL_MILLIS);
+   // customers whose summary is being read; an entry lives as long as its reads
+   private final ConcurrentHashMap<Integer, Loading> _loading = new ConcurrentHashMap<Integer, Loading>();
+
+   /**
+    * Creates the history and subscribes its summary cache to reservation
+    * changes.
+    *
+    * @param esql the database
+    * @param listener the listener delivering trips_changed events
+    */
+   public CustomerHistory (AirlineManagement esql, NotificationListener listener) {
+      this._esql = esql;
+      listener.listen (CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            tripsChanged (payload);
+         }
+      });
+   }//end CustomerHistory
+
+   /**
+    * Reads one page of a customer's trips, newest flight first.
+    *
+    * @param customerID the customer
+    * @param after the cursor of the previous page, or null for the first
+    * @param pageSize the most trips to return, 1 to MAX_PAGE_SIZE
+    * @return the trips and the cursor of the next page
+    * @throws java.sql.SQLException when the query failed
+    */
+   public Page trips (int customerID, Cursor after, int pageSize) throws SQLException {
+      if (pageSize < 1 || pageSize > MAX_PAGE_SIZE)
+         throw new SQLException ("Page size must be between 1 and " + MAX_PAGE_SIZE);
+      long t0 = System.nanoTime ();
+      try {
+         boolean partitioned = this._esql.isPartitioned ();
+         // one trip more than the page tells whether there is a next page
+         CachedResult rows;
+         if (after == null)
+            rows = CachedResult.load (this._esql, partitioned ? PARTITIONED_FIRST_PAGE_SQL : FIRST_PAGE_SQL,
+                                      customerID, pageSize + 1);
+         else
+            rows = CachedResult.load (this._esql, partitioned ? PARTITIONED_NEXT_PAGE_SQL : NEXT_PAGE_SQL,
+                                      customerID, after.flightDate (), after.reservationID (), pageSize + 1);
+
+         Page page;
+         if (rows.size () <= pageSize) {
+            page = new Page (rows, null);
+         } else {
+            String[][] kept = new String[pageSize][];
+            for (int r = 0; r < pageSize; ++r) {
+               kept[r] = new String[rows.getColumns ().length];
+               for (int c = 0; c < kept[r].length; ++c)
+                  kept[r][c] = rows.get (r, c);
+            }//end for
+            page = new Page (new CachedResult (rows.getColumns (), kept),
+                             new Cursor (kept[pageSize - 1][1], kept[pageSize - 1][0]));
+         }//end if
+         this._esql.getMetrics ().feature ("tripHistory", System.nanoTime () - t0, page.trips.size ());
+         return page;
+      }catch (SQLException e) {
+         this._esql.getMetrics ().featureFailed ("tripHistory");
+         throw e;
+      }//end try
+   }//end trips
+
+   /**
+    * @param customerID the customer
+    * @return one row with the customer's upcoming, flown and waitlisted
+    *         trips
+    * @throws java.sql.SQLException when the summary was not cached and its
+    *         query failed
+    */
+   public CachedResult summary (int customerID) throws SQLException {
+      long t0 = System.nanoTime ();
+      try {
+         Integer key = customerID;
+         CachedResult summary = this._summaries.get (key);
+         if (summary == null) {
+            long generation = startLoad (key);
+            try {
+               summary = CachedResult.load (this._esql,
+                                            this._esql.isPartitioned () ? PARTITIONED_SUMMARY_SQL : SUMMARY_SQL,
+                                            customerID);
+            }finally {
+               finishLoad (key, generation, summary);
+            }//end try
+         }//end if
+         this._esql.getMetrics ().feature ("tripSummary", System.nanoTime () - t0, summary.size ());
+         return summary;
+      }catch (SQLException e) {
+         this._esql.getMetrics ().featureFailed ("tripSummary");
+         throw e;
+      }//end try
+   }//end summary
+
+   /**
+    * @return hit/miss statistics of the summary cache
+    */
+   public String stats () {
+      return this._summaries.toString ();
+   }//end stats
+
+   /*
+    * Applies a trips_changed payload, the CustomerID whose reservations
+    * changed; any other, or a missing one, drops every summary.
+    */
+   void tripsChanged (String payload) {
+      Integer key;
+      try {
+         key = Integer.valueOf (payload);
+      }catch (NumberFormatException e) {
+         for (Integer k : this._loading.keySet ())
+            changed (k);
+         this._summaries.invalidateAll ();
+         return;
+      }//end try
+      changed (key);
+   }//end tripsChanged
+
+   /*
+    * Counts a change of the customer's trips against the reads in flight
+    * and drops the cached summary, atomically with finishLoad's put.
+    */
+   private void changed (final Integer key) {
+      this._loading.compute (key, new BiFunction<Integer, Loading, Loading>() {
+         public Loading apply (Integer k, Loading l) {
+            if (l != null)
+               ++l.generation;
+            _summaries.invalidate (k);
+            return l;
+         }
+      });
+   }//end changed
+
+   /*
+    * Registers a summary read and returns the customer's change count, to
+    * be compared when it ends.
+    */
+   private long startLoad (Integer key) {
+      final long[] generation = new long[1];
+      this._loading.compute (key, new BiFunction<Integer, Loading, Loading>() {
+         public Loading apply (Integer k, Loading l) {
+            if (l == null)
+               l = new Loading ();
+            ++l.loads;
+            generation[0] = l.generation;
+            return l;
+         }
+      });
+      return generation[0];
+   }//end startLoad
+
+   /*
+    * Ends a summary read, caching what it read unless the customer's trips
+    * changed meanwhile.
+    */
+   private void finishLoad (Integer key, final long generation, final CachedResult summary) {
+      this._loading.compute (key, new BiFunction<Integer, Loading, Loading>() {
+         public Loading apply (Integer k, Loading l) {
+            if (summary != null && l.generation == generation)
+               _summaries.put (k, summary);
+            return --l.loads == 0 ? null : l;
+         }
+      });
+   }//end finishLoad
+
+}//end CustomerHistory
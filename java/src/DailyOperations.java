@@ -0,0 +1,355 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The departures board of a date (feature4): every flight instance of the
+ * date with its route, scheduled times, plane, on-time flags and seats,
+ * in departure order.
+ *
+ * A board is built by one query joining FlightInstance, Flight and the
+ * Schedule of the date's weekday, and held as parallel arrays.  The boards
+ * of today and tomorrow are kept in memory; other dates are built on each
+ * request and not kept.
+ *
+ * Kept boards are patched in place: the triggers in
+ * sql/src/create_triggers.sql send NOTIFY operations_changed with the
+ * on-time flags and seats of every changed FlightInstance.  Changes that
+ * add or move an instance, and flight or schedule changes, drop the boards
+ * affected, which are rebuilt on the next request.  An ops screen
+ * refreshing every few seconds thus never reaches the database.
+ *
+ */
+public class DailyOperations {
+
+   static final String CHANNEL = "operations_changed";
+
+   static final String[] COLUMNS = {
+      "flightinstanceid", "flightnumber", "departurecity", "arrivalcity", "departuretime",
+      "arrivaltime", "planeid", "departedontime", "arrivedontime", "seatssold", "seatstotal"
+   };
+
+   // on-time flags, as stored in the boards
+   static final byte UNKNOWN = 0;
+   static final byte ON_TIME = 1;
+   static final byte LATE = 2;
+
+   // times of day that are NULL
+   static final int NO_TIME = -1;
+
+   // boards kept: today and tomorrow
+   static final int DAYS_KEPT = 2;
+
+   /*
+    * The instances of one date, in departure order.  The flags and seats
+    * are patched in place, under the lock of the DailyOperations.
+    */
+   private static class Board {
+      final int[] ids;
+      final String[] flights;
+      final String[] from;
+      final String[] to;
+      final int[] departs;
+      final int[] arrives;
+      final String[] planes;
+      final byte[] departed;
+      final byte[] arrived;
+      final int[] sold;
+      final int[] total;
+      // row of each FlightInstanceID
+      final Map<Integer, Integer> rows;
+      // what board() returns until the next patch
+      CachedResult result = null;
+
+      Board (int n) {
+         this.ids = new int[n];
+         this.flights = new String[n];
+         this.from = new String[n];
+         this.to = new String[n];
+         this.departs = new int[n];
+         this.arrives = new int[n];
+         this.planes = new String[n];
+         this.departed = new byte[n];
+         this.arrived = new byte[n];
+         this.sold = new int[n];
+         this.total = new int[n];
+         this.rows = new HashMap<Integer, Integer>(n * 2);
+      }
+
+      CachedResult toResult () {
+         if (this.result != null)
+            return this.result;
+         String[][] rows = new String[this.ids.length][];
+         for (int i = 0; i < rows.length; ++i)
+            rows[i] = new String[] {
+               String.valueOf (this.ids[i]), this.flights[i], this.from[i], this.to[i],
+               time (this.departs[i]), time (this.arrives[i]), this.planes[i],
+               flag (this.departed[i]), flag (this.arrived[i]),
+               String.valueOf (this.sold[i]), String.valueOf (this.total[i])
+            };
+         this.result = new CachedResult (COLUMNS, rows);
+         return this.result;
+      }//end toResult
+   }//end Board
+
+   private final AirlineManagement _esql;
+
+   // guarded by this; boards by epoch day
+   private final Map<Long, Board> _boards = new HashMap<Long, Board>();
+   // changes seen per day, so a board built meanwhile is not kept stale
+   private final DayChanges _dayChanges = new DayChanges (DAYS_KEPT);
+   private final AtomicLong _generation = new AtomicLong ();
+   // dates as typed, normalized by the server
+   private final LruCache<String, String> _dates =
+      new LruCache<String, String>("operationsDate", 1000, 24 * 60 * 60 * 1000L);
+   private long _hits = 0;
+   private long _builds = 0;
+   private long _patches = 0;
+
+   /**
+    * Creates the snapshot builder and subscribes it to instance and
+    * reference changes.  Boards are built on first request.
+    *
+    * @param esql the database
+    * @param listener the listener delivering operations_changed and
+    *        reference_changed events
+    */
+   public DailyOperations (AirlineManagement esql, NotificationListener listener) {
+      this._esql = esql;
+      listener.listen (CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            operationsChanged (payload);
+         }
+      });
+      listener.listen (ReferenceCache.CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            referenceChanged (payload);
+         }
+      });
+   }//end DailyOperations
+
+   /**
+    * Prints today's departures board every interval, until the process is
+    * killed.
+    *
+    * @param args dbname, port, user and optionally the interval in seconds
+    */
+   public static void main (String[] args) {
+      if (args.length < 3) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            DailyOperations.class.getName () +
+            " <dbname> <port> <user> [refresh interval seconds]");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      try {
+         long seconds = args.length > 3 ? Long.parseLong (args[3]) : 5;
+         esql = new AirlineManagement (args[0], args[1], args[2], "");
+         DailyOperations operations = esql.getDailyOperations ();
+         while (true) {
+            System.out.println ("Departures " + LocalDate.now ());
+            operations.board (LocalDate.now ().toString ()).print ();
+            System.out.println (operations.stats ());
+            System.out.println ();
+            Thread.sleep (seconds * 1000);
+         }//end while
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+   }//end main
+
+   /**
+    * The departures board of a date.
+    *
+    * @param date the date, in any format PostgreSQL accepts
+    * @return one row per flight instance, in departure order
+    * @throws java.sql.SQLException when the board had to be built and its
+    *         query failed
+    */
+   public CachedResult board (String date) throws SQLException {
+      long day = FlightSearch.normalize (this._esql, this._dates, date).toEpochDay ();
+      synchronized (this) {
+         Board board = this._boards.get (day);
+         if (board != null) {
+            ++this._hits;
+            return board.toResult ();
+         }//end if
+      }//end synchronized
+      Board board = build (day);
+      synchronized (this) {
+         return board.toResult ();
+      }//end synchronized
+   }//end board
+
+   /**
+    * @return one line of statistics
+    */
+   public synchronized String stats () {
+      return "departures board: " + this._boards.size () + " days kept, " + this._hits + " hits, " +
+             this._builds + " builds, " + this._patches + " patches";
+   }//end stats
+
+   /*
+    * Builds the board of a date, and keeps it if the date is today or
+    * tomorrow and nothing changed while it was read.
+    */
+   private Board build (long day) throws SQLException {
+      long generation = this._generation.get ();
+      long changes = this._dayChanges.version (day);
+      final List<Object[]> rows = new ArrayList<Object[]>();
+      this._esql.executeQueryStreaming (AirlineManagement.FLIGHTS_OF_DAY_SQL, new RowHandler () {
+         final Map<String, String> strings = new HashMap<String, String>();
+         public void start (ResultSetMetaData rsmd) {
+         }
+         public void row (ResultSet rs) throws SQLException {
+            LocalTime departs = rs.getObject (5, LocalTime.class);
+            LocalTime arrives = rs.getObject (6, LocalTime.class);
+            rows.add (new Object[] {
+               rs.getInt (1), share (rs.getString (2)), share (rs.getString (3)), share (rs.getString (4)),
+               departs == null ? NO_TIME : departs.toSecondOfDay (),
+               arrives == null ? NO_TIME : arrives.toSecondOfDay (),
+               share (rs.getString (7)), flag (rs, 8), flag (rs, 9), rs.getInt (10), rs.getInt (11)
+            });
+         }
+         // the same flights, cities and planes recur all day
+         private String share (String s) {
+            if (s == null)
+               return null;
+            String shared = this.strings.putIfAbsent (s, s);
+            return shared == null ? s : shared;
+         }
+      }, LocalDate.ofEpochDay (day).toString ());
+
+      Board board = new Board (rows.size ());
+      for (int i = 0; i < rows.size (); ++i) {
+         Object[] r = rows.get (i);
+         board.ids[i] = (Integer) r[0];
+         board.flights[i] = (String) r[1];
+         board.from[i] = (String) r[2];
+         board.to[i] = (String) r[3];
+         board.departs[i] = (Integer) r[4];
+         board.arrives[i] = (Integer) r[5];
+         board.planes[i] = (String) r[6];
+         board.departed[i] = (Byte) r[7];
+         board.arrived[i] = (Byte) r[8];
+         board.sold[i] = (Integer) r[9];
+         board.total[i] = (Integer) r[10];
+         board.rows.put (board.ids[i], i);
+      }//end for
+
+      synchronized (this) {
+         ++this._builds;
+         long today = LocalDate.now ().toEpochDay ();
+         // the date rolled over: yesterday's board is no longer needed
+         this._boards.keySet ().retainAll (Arrays.asList (today, today + 1));
+         if (day >= today && day < today + DAYS_KEPT &&
+             generation == this._generation.get () && changes == this._dayChanges.version (day))
+            this._boards.put (day, board);
+      }//end synchronized
+      return board;
+   }//end build
+
+   /*
+    * Applies an operations_changed payload:
+    *    id:date:departed:arrived:sold:total   the instance's current state
+    *    id:date                               the instance left this date
+    *    empty or null                         anything may have changed
+    */
+   void operationsChanged (String payload) {
+      if (payload == null || payload.isEmpty ()) {
+         dropAll ();
+         return;
+      }//end if
+      String[] f = payload.split (":", -1);
+      Long key;
+      int id;
+      try {
+         id = Integer.parseInt (f[0]);
+         key = LocalDate.parse (f[1]).toEpochDay ();
+      }catch (RuntimeException e) {
+         dropAll ();
+         return;
+      }//end try
+
+      long today = LocalDate.now ().toEpochDay ();
+      if (key < today || key >= today + DAYS_KEPT)
+         return;
+      synchronized (this) {
+         this._dayChanges.changed (key);
+         Board board = this._boards.get (key);
+         if (board == null)
+            return;
+         Integer row = board.rows.get (id);
+         if (f.length != 6 || row == null) {
+            // an instance added to or gone from the date
+            this._boards.remove (key);
+            return;
+         }//end if
+         try {
+            board.departed[row] = flag (f[2]);
+            board.arrived[row] = flag (f[3]);
+            board.sold[row] = f[4].isEmpty () ? 0 : Integer.parseInt (f[4]);
+            board.total[row] = f[5].isEmpty () ? 0 : Integer.parseInt (f[5]);
+            board.result = null;
+            ++this._patches;
+         }catch (NumberFormatException e) {
+            this._boards.remove (key);
+         }//end try
+      }//end synchronized
+   }//end operationsChanged
+
+   /*
+    * Flights and schedules decide the routes, planes and times shown.
+    */
+   void referenceChanged (String payload) {
+      if (payload == null || payload.startsWith ("flight:") || payload.startsWith ("schedule:"))
+         dropAll ();
+   }//end referenceChanged
+
+   private synchronized void dropAll () {
+      this._generation.incrementAndGet ();
+      this._boards.clear ();
+   }//end dropAll
+
+   private static byte flag (ResultSet rs, int col) throws SQLException {
+      boolean value = rs.getBoolean (col);
+      return rs.wasNull () ? UNKNOWN : value ? ON_TIME : LATE;
+   }//end flag
+
+   private static byte flag (String value) {
+      return value.equals ("t") ? ON_TIME : value.equals ("f") ? LATE : UNKNOWN;
+   }//end flag
+
+   private static String flag (byte value) {
+      return value == ON_TIME ? "t" : value == LATE ? "f" : null;
+   }//end flag
+
+   private static String time (int seconds) {
+      return seconds == NO_TIME ? null : LocalTime.ofSecondOfDay (seconds).format (ColumnarResult.TIME_FORMAT);
+   }//end time
+
+}//end DailyOperations
@@ -0,0 +1,438 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates a synthetic dataset in the CSV layouts of data/*.csv, scaled up
+ * from the size of the fixtures, for load testing.
+ *
+ * Every foreign key of sql/src/create_tables.sql is satisfied: flights fly
+ * generated planes, schedules and instances belong to generated flights,
+ * reservations reference generated customers and instances, and repairs and
+ * maintenance requests reference generated planes, technicians and pilots.
+ * Flight instances exist only on the weekdays their flight is scheduled, and
+ * SeatsSold equals the number of 'reserved' and 'flown' reservations.
+ *
+ * Popularity is skewed: a few hub cities take most departures, a few hot
+ * flights take most reservations, and frequent flyers book more often.  Rows
+ * are written as they are generated, so memory use does not grow with the
+ * number of instances or reservations.
+ *
+ */
+public class DataGenerator {
+
+   // sizes of the data/ fixtures; scale multiplies these.
+   static final int BASE_PLANES = 6;
+   static final int BASE_FLIGHTS = 10;
+   static final int BASE_CUSTOMERS = 500;
+   static final int BASE_TECHNICIANS = 10;
+   static final int BASE_PILOTS = 10;
+
+   static final DateTimeFormatter ISO_DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+   // FlightInstance.csv writes dates as M/d/yy, e.g. 5/5/25
+   static final DateTimeFormatter SHORT_DATE = DateTimeFormatter.ofPattern ("M/d/yy");
+
+   static final String[] CITIES = {
+      "New York", "Los Angeles", "Chicago", "Atlanta", "Dallas", "Denver",
+      "San Francisco", "Seattle", "Miami", "Boston", "Houston", "Phoenix",
+      "Las Vegas", "Orlando", "Charlotte", "Minneapolis", "Detroit",
+      "Philadelphia", "Washington", "Salt Lake City", "San Diego", "Portland",
+      "Tampa", "Nashville", "Austin", "St. Louis", "Baltimore", "Kansas City",
+      "Raleigh", "Sacramento", "San Jose", "Cleveland", "Pittsburgh",
+      "Indianapolis", "Columbus", "New Orleans", "Honolulu", "Anchorage",
+      "Albuquerque", "Milwaukee"
+   };
+
+   static final String[][] MODELS = {
+      // make, model, seats
+      { "Boeing", "737", "160" },
+      { "Airbus", "A320", "180" },
+      { "Embraer", "E195", "120" },
+      { "Bombardier", "CRJ900", "90" },
+      { "Boeing", "787", "250" },
+      { "Airbus", "A321", "200" }
+   };
+
+   static final String[] FIRST_NAMES = {
+      "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael",
+      "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan",
+      "Joseph", "Jessica", "Thomas", "Sarah", "Kevin", "Karen", "Peter",
+      "Margaret", "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Betty"
+   };
+
+   static final String[] LAST_NAMES = {
+      "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+      "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez",
+      "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin",
+      "Lee", "Thompson", "White", "Harris", "Hawkins", "Callahan", "Hall"
+   };
+
+   static final String[] STREETS = {
+      "Lewis Parks", "Rice Plaza", "Cabrera Trace", "Joshua Oval", "Main St",
+      "Oak Ave", "Maple Dr", "Cedar Ln", "Pine Rd", "Elm Ct"
+   };
+
+   static final String[] STATES = {
+      "CA", "NY", "TX", "FL", "IL", "WA", "KS", "NH", "NE", "OK", "GA", "CO"
+   };
+
+   static final String[] DAYS = {
+      "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"
+   };
+
+   // number of distinct repair codes (RC001, RC002, ...).
+   static final int REPAIR_CODES = 10;
+
+   // generation parameters, set from the command line.
+   int scale = 1000;
+   int days = 24;
+   LocalDate startDate = LocalDate.of (2025, 5, 5);
+   // reservations before this date are 'flown', later ones 'reserved'.
+   LocalDate today = null;
+   double reservationsPerInstance = 12.5;
+   // exponents > 1 concentrate picks on the first (hub / hot) entries.
+   double citySkew = 2.0;
+   double flightSkew = 1.0;
+   double customerSkew = 1.5;
+   double repairsPerPlane = 2.5;
+   double requestsPerPlane = 3.5;
+   long seed = 166;
+
+   private final Random rnd = new Random ();
+
+   public static void main (String[] args) {
+      if (args.length < 1) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            DataGenerator.class.getName () +
+            " <output dir> [--scale N] [--days N] [--start YYYY-MM-DD]" +
+            " [--today YYYY-MM-DD] [--reservations-per-instance X]" +
+            " [--city-skew X] [--flight-skew X] [--customer-skew X] [--seed N]");
+         return;
+      }//end if
+
+      DataGenerator gen = new DataGenerator ();
+      try {
+         for (int i = 1; i < args.length; i += 2) {
+            String opt = args[i];
+            if (i + 1 >= args.length)
+               throw new IllegalArgumentException ("missing value for " + opt);
+            String val = args[i + 1];
+            if (opt.equals ("--scale")) gen.scale = Integer.parseInt (val);
+            else if (opt.equals ("--days")) gen.days = Integer.parseInt (val);
+            else if (opt.equals ("--start")) gen.startDate = LocalDate.parse (val);
+            else if (opt.equals ("--today")) gen.today = LocalDate.parse (val);
+            else if (opt.equals ("--reservations-per-instance")) gen.reservationsPerInstance = Double.parseDouble (val);
+            else if (opt.equals ("--city-skew")) gen.citySkew = Double.parseDouble (val);
+            else if (opt.equals ("--flight-skew")) gen.flightSkew = Double.parseDouble (val);
+            else if (opt.equals ("--customer-skew")) gen.customerSkew = Double.parseDouble (val);
+            else if (opt.equals ("--seed")) gen.seed = Long.parseLong (val);
+            else throw new IllegalArgumentException ("unknown option " + opt);
+         }//end for
+
+         long start = System.currentTimeMillis ();
+         gen.generate (new File (args[0]));
+         System.out.println ("Done in " + (System.currentTimeMillis () - start) + " ms");
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+         System.exit (1);
+      }//end try
+   }//end main
+
+   /**
+    * Writes every table's CSV file into the given directory.
+    *
+    * @param dir the output directory, created if needed
+    * @throws java.io.IOException when a file cannot be written
+    */
+   public void generate (File dir) throws IOException {
+      if (!dir.isDirectory () && !dir.mkdirs ())
+         throw new IOException ("cannot create " + dir);
+      if (this.today == null)
+         this.today = this.startDate.plusDays (this.days / 2);
+      this.rnd.setSeed (this.seed);
+
+      int planes = BASE_PLANES * this.scale;
+      int flights = BASE_FLIGHTS * this.scale;
+      int customers = BASE_CUSTOMERS * this.scale;
+      int technicians = BASE_TECHNICIANS * this.scale;
+      int pilots = BASE_PILOTS * this.scale;
+
+      writePeople (new File (dir, "Technician.csv"), "TechnicianID,Name", "T", technicians);
+      writePeople (new File (dir, "Pilot.csv"), "PilotID,Name", "P", pilots);
+      int[] seats = writePlanesAndMaintenance (dir, planes, technicians, pilots);
+      writeCustomers (new File (dir, "Customer.csv"), customers);
+      writeFlightsAndInstances (dir, flights, planes, seats, customers);
+   }//end generate
+
+   /*
+    * Writes Technician.csv or Pilot.csv: an ID and a full name.
+    */
+   void writePeople (File file, String header, String prefix, int count) throws IOException {
+      Writer out = open (file, header);
+      try {
+         for (int i = 1; i <= count; ++i) {
+            out.write (id (prefix, i));
+            out.write (',');
+            out.write (pick (FIRST_NAMES) + " " + pick (LAST_NAMES));
+            out.write ('\n');
+         }//end for
+      }finally {
+         out.close ();
+      }//end try
+      System.out.println (file.getName () + ": " + count + " rows");
+   }//end writePeople
+
+   /*
+    * Writes Plane.csv together with each plane's MaintenanceRequest and
+    * Repair rows, so Plane.LastRepairDate matches the latest repair.  Most
+    * requests are followed by a repair with the same code; the rest stay
+    * open.  Returns the seat count of every plane, indexed by plane number.
+    */
+   int[] writePlanesAndMaintenance (File dir, int planes, int technicians, int pilots) throws IOException {
+      int[] seats = new int[planes + 1];
+      Writer planeOut = open (new File (dir, "Plane.csv"), "PlaneID,Make,Model,Year,LastRepairDate");
+      Writer requestOut = open (new File (dir, "MaintenanceRequest.csv"), "RequestID,PlaneID,RepairCode,RequestDate,PilotID");
+      Writer repairOut = open (new File (dir, "Repair.csv"), "RepairID,PlaneID,RepairCode,RepairDate,TechnicianID");
+      int requestID = 0, repairID = 0;
+      try {
+         for (int p = 1; p <= planes; ++p) {
+            String planeID = id ("PL", p);
+            String[] model = MODELS[this.rnd.nextInt (MODELS.length)];
+            seats[p] = Integer.parseInt (model[2]);
+            LocalDate lastRepair = null;
+
+            int requests = poisson (this.requestsPerPlane);
+            for (int r = 0; r < requests; ++r) {
+               String code = id ("RC", 1 + this.rnd.nextInt (REPAIR_CODES));
+               LocalDate requested = this.today.minusDays (1 + this.rnd.nextInt (365));
+               ++requestID;
+               requestOut.write (requestID + "," + planeID + "," + code + "," +
+                                 ISO_DATE.format (requested) + "," +
+                                 id ("P", 1 + this.rnd.nextInt (pilots)) + "\n");
+
+               // most requests are repaired within two weeks
+               if (this.rnd.nextDouble () * this.requestsPerPlane < this.repairsPerPlane) {
+                  LocalDate repaired = requested.plusDays (this.rnd.nextInt (14));
+                  if (repaired.isAfter (this.today))
+                     repaired = this.today;
+                  ++repairID;
+                  repairOut.write (repairID + "," + planeID + "," + code + "," +
+                                   ISO_DATE.format (repaired) + "," +
+                                   id ("T", 1 + this.rnd.nextInt (technicians)) + "\n");
+                  if (lastRepair == null || repaired.isAfter (lastRepair))
+                     lastRepair = repaired;
+               }//end if
+            }//end for
+
+            planeOut.write (planeID + "," + model[0] + "," + model[1] + "," +
+                            (2000 + this.rnd.nextInt (25)) + "," +
+                            (lastRepair == null ? "" : ISO_DATE.format (lastRepair)) + "\n");
+         }//end for
+      }finally {
+         planeOut.close ();
+         requestOut.close ();
+         repairOut.close ();
+      }//end try
+      System.out.println ("Plane.csv: " + planes + " rows");
+      System.out.println ("MaintenanceRequest.csv: " + requestID + " rows");
+      System.out.println ("Repair.csv: " + repairID + " rows");
+      return seats;
+   }//end writePlanesAndMaintenance
+
+   /*
+    * Writes Customer.csv.
+    */
+   void writeCustomers (File file, int customers) throws IOException {
+      Writer out = open (file, "CustomerID,FirstName,LastName,Gender,DOB,Address,Phone,Zip");
+      try {
+         for (int c = 1; c <= customers; ++c) {
+            LocalDate dob = LocalDate.of (1940 + this.rnd.nextInt (65), 1, 1)
+                                     .plusDays (this.rnd.nextInt (365));
+            String zip = String.format ("%05d", this.rnd.nextInt (100000));
+            out.write (c + "," + pick (FIRST_NAMES) + "," + pick (LAST_NAMES) + "," +
+                       (this.rnd.nextBoolean () ? "F" : "M") + "," + ISO_DATE.format (dob) +
+                       ",\"" + (1 + this.rnd.nextInt (99999)) + " " + pick (STREETS) + ", " +
+                       pick (CITIES) + ", " + pick (STATES) + " " + zip + "\"," +
+                       (200 + this.rnd.nextInt (800)) + "." + (100 + this.rnd.nextInt (900)) +
+                       "." + (1000 + this.rnd.nextInt (9000)) + "," + zip + "\n");
+         }//end for
+      }finally {
+         out.close ();
+      }//end try
+      System.out.println (file.getName () + ": " + customers + " rows");
+   }//end writeCustomers
+
+   /*
+    * Writes Flight.csv, Schedule.csv, FlightInstance.csv and Reservation.csv.
+    * Flights are ranked by popularity: flight i gets a share of the
+    * reservations proportional to 1 / i^flightSkew.
+    */
+   void writeFlightsAndInstances (File dir, int flights, int planes, int[] seats,
+                                  int customers) throws IOException {
+      // per-flight state kept in primitive arrays; O(flights), not O(rows)
+      int[] plane = new int[flights + 1];
+      int[] departMinute = new int[(flights + 1) * 7];
+      boolean[] flies = new boolean[(flights + 1) * 7];
+      double[] popularity = new double[flights + 1];
+      double totalWeight = 0;
+      for (int f = 1; f <= flights; ++f)
+         totalWeight += 1.0 / Math.pow (f, this.flightSkew);
+      for (int f = 1; f <= flights; ++f)
+         popularity[f] = flights / Math.pow (f, this.flightSkew) / totalWeight;
+
+      Writer flightOut = open (new File (dir, "Flight.csv"), "FlightNumber,PlaneID,DepartureCity,ArrivalCity");
+      Writer scheduleOut = open (new File (dir, "Schedule.csv"), "ScheduleID,FlightNumber,DayOfWeek,DepartureTime,ArrivalTime");
+      int scheduleID = 0;
+      try {
+         for (int f = 1; f <= flights; ++f) {
+            plane[f] = 1 + this.rnd.nextInt (planes);
+            int from = skewed (CITIES.length, this.citySkew);
+            int to = skewed (CITIES.length, this.citySkew);
+            while (to == from)
+               to = this.rnd.nextInt (CITIES.length);
+            flightOut.write (flightNumber (f) + "," + id ("PL", plane[f]) + "," +
+                             CITIES[from] + "," + CITIES[to] + "\n");
+
+            int duration = 60 + 30 * this.rnd.nextInt (10);
+            for (int d = 0; d < 7; ++d) {
+               // every flight operates at least on Monday
+               if (d > 0 && this.rnd.nextInt (7) == 0)
+                  continue;
+               int depart = 6 * 60 + 30 * this.rnd.nextInt (30);
+               flies[f * 7 + d] = true;
+               departMinute[f * 7 + d] = depart;
+               ++scheduleID;
+               scheduleOut.write (scheduleID + "," + flightNumber (f) + "," + DAYS[d] + "," +
+                                  time (depart) + "," + time ((depart + duration) % (24 * 60)) + "\n");
+            }//end for
+         }//end for
+      }finally {
+         flightOut.close ();
+         scheduleOut.close ();
+      }//end try
+      System.out.println ("Flight.csv: " + flights + " rows");
+      System.out.println ("Schedule.csv: " + scheduleID + " rows");
+
+      Writer instanceOut = open (new File (dir, "FlightInstance.csv"),
+         "FlightInstanceID,FlightNumber,FlightDate,DepartedOnTime,ArrivedOnTime,SeatsTotal,SeatsSold,NumOfStops,TicketCost");
+      Writer reservationOut = open (new File (dir, "Reservation.csv"),
+         "ReservationID,CustomerID,FlightInstanceID,Status");
+      int instanceID = 0;
+      long reservationID = 0;
+      try {
+         for (int day = 0; day < this.days; ++day) {
+            LocalDate date = this.startDate.plusDays (day);
+            int dow = date.getDayOfWeek ().getValue () - 1;
+            boolean past = date.isBefore (this.today);
+            for (int f = 1; f <= flights; ++f) {
+               if (!flies[f * 7 + dow])
+                  continue;
+               ++instanceID;
+               int total = seats[plane[f]];
+               int wanted = poisson (this.reservationsPerInstance * popularity[f]);
+               // demand beyond 120% of capacity is turned away entirely
+               wanted = Math.min (wanted, total + total / 5);
+               int sold = Math.min (wanted, total);
+               double cost = 80 + this.rnd.nextInt (500) + this.rnd.nextInt (100) / 100.0;
+               if (popularity[f] > 1)
+                  cost *= 1 + Math.min (1.0, Math.log (popularity[f]) / 4);
+
+               instanceOut.write (instanceID + "," + flightNumber (f) + "," + SHORT_DATE.format (date) + "," +
+                                  (past ? (this.rnd.nextInt (5) > 0 ? "1" : "0") : "") + "," +
+                                  (past ? (this.rnd.nextInt (5) > 0 ? "1" : "0") : "") + "," +
+                                  total + "," + sold + "," + (this.rnd.nextInt (10) == 0 ? 1 : 0) + "," +
+                                  String.format (Locale.ROOT, "%.2f", cost) + "\n");
+
+               for (int r = 0; r < wanted; ++r) {
+                  String status = r >= sold ? "waitlist" : (past ? "flown" : "reserved");
+                  ++reservationID;
+                  reservationOut.write (reservationId (reservationID) + "," +
+                                        (1 + skewed (customers, this.customerSkew)) + "," +
+                                        instanceID + "," + status + "\n");
+               }//end for
+            }//end for
+         }//end for
+      }finally {
+         instanceOut.close ();
+         reservationOut.close ();
+      }//end try
+      System.out.println ("FlightInstance.csv: " + instanceID + " rows");
+      System.out.println ("Reservation.csv: " + reservationID + " rows");
+   }//end writeFlightsAndInstances
+
+   /*
+    * Returns an index in [0, n) where exponent 1 is uniform and larger
+    * exponents increasingly favour the low indices.
+    */
+   int skewed (int n, double exponent) {
+      int idx = (int) (n * Math.pow (this.rnd.nextDouble (), exponent));
+      return Math.min (idx, n - 1);
+   }//end skewed
+
+   /*
+    * Draws a Poisson-distributed count with the given mean; large means use
+    * the normal approximation.
+    */
+   int poisson (double mean) {
+      if (mean <= 0)
+         return 0;
+      if (mean > 30)
+         return Math.max (0, (int) Math.round (mean + Math.sqrt (mean) * this.rnd.nextGaussian ()));
+      double limit = Math.exp (-mean), p = 1;
+      int k = 0;
+      do {
+         ++k;
+         p *= this.rnd.nextDouble ();
+      } while (p > limit);
+      return k - 1;
+   }//end poisson
+
+   String pick (String[] values) {
+      return values[this.rnd.nextInt (values.length)];
+   }//end pick
+
+   static String id (String prefix, int n) {
+      return prefix + String.format ("%03d", n);
+   }//end id
+
+   static String flightNumber (int f) {
+      return "F" + (99 + f);
+   }//end flightNumber
+
+   static String reservationId (long n) {
+      return "R" + String.format ("%04d", n);
+   }//end reservationId
+
+   static String time (int minute) {
+      return (minute / 60) + ":" + String.format ("%02d", minute % 60);
+   }//end time
+
+   static Writer open (File file, String header) throws IOException {
+      Writer out = new BufferedWriter (new OutputStreamWriter (
+         new FileOutputStream (file), StandardCharsets.UTF_8), 1 << 16);
+      out.write (header);
+      out.write ('\n');
+      return out;
+   }//end open
+
+}//end DataGenerator
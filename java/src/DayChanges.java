@@ -0,0 +1,87 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the dates whose flights changed, so that a cache loading a
+ * date can tell whether the date changed while it was read: the version
+ * taken before the load must equal the one taken after it.
+ *
+ * Each change takes the next number of one sequence as its date's version.
+ * At most maxDays dates are remembered, and none before today; a
+ * forgotten date reads as the highest version forgotten so far, which is
+ * never below its own last version, so forgetting a date can only make a
+ * load look raced, never hide a change.
+ *
+ */
+public class DayChanges {
+
+   private final int _maxDays;
+   private final ConcurrentSkipListMap<Long, Long> _versions = new ConcurrentSkipListMap<Long, Long>();
+   private final AtomicLong _sequence = new AtomicLong ();
+   // version of every date not in _versions
+   private volatile long _floor = 0;
+
+   /**
+    * @param maxDays the most dates remembered
+    */
+   public DayChanges (int maxDays) {
+      this._maxDays = maxDays;
+   }//end DayChanges
+
+   /**
+    * @param day the epoch day
+    * @return the date's current version
+    */
+   public long version (long day) {
+      Long version = this._versions.get (day);
+      return version != null ? version : this._floor;
+   }//end version
+
+   /**
+    * Records a change of a date.
+    *
+    * @param day the epoch day
+    */
+   public void changed (long day) {
+      this._versions.put (day, this._sequence.incrementAndGet ());
+      long today = LocalDate.now ().toEpochDay ();
+      Map.Entry<Long, Long> first = this._versions.firstEntry ();
+      if (this._versions.size () > this._maxDays || (first != null && first.getKey () < today))
+         prune (today);
+   }//end changed
+
+   /*
+    * Forgets the dates before today, and every date if too many remain.
+    */
+   private synchronized void prune (long today) {
+      forget (this._versions.headMap (today));
+      if (this._versions.size () > this._maxDays)
+         forget (this._versions);
+   }//end prune
+
+   /*
+    * The floor is raised to a date's version before the date is dropped,
+    * so a date never reads lower than its last version.
+    */
+   private void forget (Map<Long, Long> versions) {
+      for (Map.Entry<Long, Long> e : versions.entrySet ()) {
+         if (e.getValue () > this._floor)
+            this._floor = e.getValue ();
+         // a date changed again meanwhile is kept
+         this._versions.remove (e.getKey (), e.getValue ());
+      }//end for
+   }//end forget
+
+}//end DayChanges
@@ -0,0 +1,675 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Per-plane and per-technician maintenance aggregates, kept in memory and
+ * updated as Repair and MaintenanceRequest rows arrive.
+ *
+ * Both tables are read once when the service starts.  After that the
+ * fleet_changed trigger of sql/src/create_triggers.sql announces every
+ * inserted row by its ID, and a refresher thread reads the new rows in
+ * batches of up to MAX_IDS_PER_FETCH and folds them into the aggregates.
+ * Updates, deletes and TRUNCATE cannot be folded in, so they reread both
+ * tables.  The IDs applied are kept in a bitmap, so a row announced while
+ * the tables were being read is not counted twice.
+ *
+ * A repair closes the oldest open maintenance request for the same plane
+ * and repair code filed on or before its date; the days between the two
+ * make up the mean request-to-repair time.  Requests still open are the
+ * plane's backlog.  A request filed after the repair that would have
+ * closed it was applied stays open.
+ *
+ * Every view is answered from the aggregates, without reading Repair.
+ *
+ */
+public class FleetHealth {
+
+   static final String CHANNEL = "fleet_changed";
+
+   static final int MAX_IDS_PER_FETCH = 1000;
+
+   static final long RETRY_MILLIS = 1000;
+   static final long IDLE_WAIT_MILLIS = 1000;
+
+   // planes listed by needingAttention when no limit is given
+   static final int DEFAULT_LIMIT = 10;
+
+   // epoch day of "never"
+   static final int NONE = Integer.MIN_VALUE;
+
+   // repairs in plane and date order, so each closes the oldest request
+   static final String REPAIRS_SQL =
+      "SELECT RepairID, PlaneID, RepairCode, RepairDate, TechnicianID FROM Repair " +
+      "ORDER BY PlaneID, RepairDate, RepairID";
+
+   static final String REQUESTS_SQL =
+      "SELECT RequestID, PlaneID, RepairCode, RequestDate, PilotID FROM MaintenanceRequest";
+
+   static final String NEW_REPAIRS_SQL =
+      "SELECT RepairID, PlaneID, RepairCode, RepairDate, TechnicianID FROM Repair " +
+      "WHERE RepairID = ANY (CAST(? AS INTEGER[])) ORDER BY RepairDate, RepairID";
+
+   static final String NEW_REQUESTS_SQL =
+      REQUESTS_SQL + " WHERE RequestID = ANY (CAST(? AS INTEGER[]))";
+
+   static final String[] PLANE_COLUMNS = {
+      "planeid", "lastrepairdate", "repairs", "openrequests", "oldestopenrequest", "meandaystorepair"
+   };
+   static final String[] CODE_COLUMNS = {
+      "repaircode", "repairs", "lastrepairdate", "openrequests", "oldestopenrequest", "meandaystorepair"
+   };
+   static final String[] TECHNICIAN_COLUMNS = {
+      "repaircode", "repairs", "planes", "lastrepairdate"
+   };
+   static final String[] ATTENTION_COLUMNS = {
+      "planeid", "openrequests", "oldestopenrequest", "dayswaiting", "lastrepairdate", "meandaystorepair"
+   };
+
+   /*
+    * Repairs and requests of one plane and repair code.
+    */
+   private static class CodeHealth {
+      int repairs = 0;
+      int lastRepair = NONE;
+      // open requests by request day
+      final TreeMap<Integer, Integer> open = new TreeMap<Integer, Integer>();
+      int openCount = 0;
+      // sum of the request days of the open requests
+      long openDays = 0;
+      int matched = 0;
+      long matchedDays = 0;
+   }//end CodeHealth
+
+   /*
+    * The aggregates of one plane, the sums of its codes.
+    */
+   private static class PlaneHealth {
+      final String planeID;
+      final TreeMap<String, CodeHealth> codes = new TreeMap<String, CodeHealth>();
+      int repairs = 0;
+      int lastRepair = NONE;
+      int openCount = 0;
+      long openDays = 0;
+      int matched = 0;
+      long matchedDays = 0;
+
+      PlaneHealth (String planeID) {
+         this.planeID = planeID;
+      }
+
+      int oldestOpen () {
+         int oldest = NONE;
+         for (CodeHealth c : this.codes.values ())
+            if (c.openCount > 0 && (oldest == NONE || c.open.firstKey () < oldest))
+               oldest = c.open.firstKey ();
+         return oldest;
+      }//end oldestOpen
+
+      // total days the open requests have waited as of the given day
+      long daysWaiting (int today) {
+         return (long) this.openCount * today - this.openDays;
+      }//end daysWaiting
+   }//end PlaneHealth
+
+   /*
+    * The repairs of one technician and repair code.
+    */
+   private static class TechnicianCode {
+      int repairs = 0;
+      int lastRepair = NONE;
+      final Set<String> planes = new HashSet<String>();
+   }//end TechnicianCode
+
+   /*
+    * Everything read from the two tables; replaced whole by a reread.
+    */
+   private static class State {
+      final Map<String, PlaneHealth> planes = new HashMap<String, PlaneHealth>();
+      final Map<String, TreeMap<String, TechnicianCode>> technicians =
+         new HashMap<String, TreeMap<String, TechnicianCode>>();
+      final BitSet repairIDs = new BitSet ();
+      final BitSet requestIDs = new BitSet ();
+      long repairs = 0;
+      long requests = 0;
+
+      PlaneHealth plane (String planeID) {
+         PlaneHealth p = this.planes.get (planeID);
+         if (p == null)
+            this.planes.put (planeID, p = new PlaneHealth (planeID));
+         return p;
+      }//end plane
+
+      void request (int id, String planeID, String code, LocalDate date) {
+         if (id < 0 || this.requestIDs.get (id) || planeID == null || date == null)
+            return;
+         this.requestIDs.set (id);
+         ++this.requests;
+         PlaneHealth p = plane (planeID);
+         CodeHealth c = code (p, code);
+         int day = (int) date.toEpochDay ();
+         Integer waiting = c.open.get (day);
+         c.open.put (day, waiting == null ? 1 : waiting.intValue () + 1);
+         ++c.openCount;
+         c.openDays += day;
+         ++p.openCount;
+         p.openDays += day;
+      }//end request
+
+      void repair (int id, String planeID, String code, LocalDate date, String technicianID) {
+         if (id < 0 || this.repairIDs.get (id) || planeID == null || date == null)
+            return;
+         this.repairIDs.set (id);
+         ++this.repairs;
+         PlaneHealth p = plane (planeID);
+         CodeHealth c = code (p, code);
+         int day = (int) date.toEpochDay ();
+         ++c.repairs;
+         c.lastRepair = Math.max (c.lastRepair, day);
+         ++p.repairs;
+         p.lastRepair = Math.max (p.lastRepair, day);
+
+         // close the oldest open request filed on or before the repair
+         if (c.openCount > 0 && c.open.firstKey () <= day) {
+            int requested = c.open.firstKey ();
+            int waiting = c.open.get (requested).intValue ();
+            if (waiting == 1)
+               c.open.remove (requested);
+            else
+               c.open.put (requested, waiting - 1);
+            --c.openCount;
+            c.openDays -= requested;
+            ++c.matched;
+            c.matchedDays += day - requested;
+            --p.openCount;
+            p.openDays -= requested;
+            ++p.matched;
+            p.matchedDays += day - requested;
+         }//end if
+
+         if (technicianID != null) {
+            TreeMap<String, TechnicianCode> codes = this.technicians.get (technicianID);
+            if (codes == null)
+               this.technicians.put (technicianID, codes = new TreeMap<String, TechnicianCode>());
+            TechnicianCode t = codes.get (key (code));
+            if (t == null)
+               codes.put (key (code), t = new TechnicianCode ());
+            ++t.repairs;
+            t.lastRepair = Math.max (t.lastRepair, day);
+            t.planes.add (planeID);
+         }//end if
+      }//end repair
+
+      private static CodeHealth code (PlaneHealth p, String code) {
+         CodeHealth c = p.codes.get (key (code));
+         if (c == null)
+            p.codes.put (key (code), c = new CodeHealth ());
+         return c;
+      }//end code
+   }//end State
+
+   private final AirlineManagement _esql;
+   private final Thread _thread;
+
+   // guarded by this
+   private State _state = new State ();
+   private final BitSet _newRepairs = new BitSet ();
+   private final BitSet _newRequests = new BitSet ();
+   private boolean _reread = true;
+   private boolean _loaded = false;
+   private boolean _busy = true;
+   private long _rereads = 0;
+   private volatile boolean _closed = false;
+
+   /**
+    * Creates the service, subscribes it to fleet_changed and starts its
+    * thread, which first reads both tables.
+    *
+    * @param esql the database
+    * @param listener the listener delivering fleet_changed events
+    */
+   public FleetHealth (AirlineManagement esql, NotificationListener listener) {
+      this._esql = esql;
+      listener.listen (CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            changed (payload);
+         }
+      });
+      this._thread = new Thread (new Runnable () {
+         public void run () { loop (); }
+      }, "fleet-health");
+      this._thread.setDaemon (true);
+      this._thread.start ();
+   }//end FleetHealth
+
+   /**
+    * Prints the planes needing attention every interval, until the process
+    * is killed.
+    *
+    * @param args dbname, port, user and optionally the interval in seconds
+    *        and the number of planes
+    */
+   public static void main (String[] args) {
+      if (args.length < 3) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            FleetHealth.class.getName () +
+            " <dbname> <port> <user> [report interval seconds] [planes]");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      try {
+         long seconds = args.length > 3 ? Long.parseLong (args[3]) : 10;
+         int limit = args.length > 4 ? Integer.parseInt (args[4]) : DEFAULT_LIMIT;
+         esql = new AirlineManagement (args[0], args[1], args[2], "");
+         FleetHealth health = esql.getFleetHealth ();
+         while (true) {
+            health.needingAttention (limit).print ();
+            System.out.println (health.stats ());
+            System.out.println ();
+            Thread.sleep (seconds * 1000);
+         }//end while
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+   }//end main
+
+   /**
+    * Stops the refresher thread.
+    */
+   public void close () {
+      synchronized (this) {
+         this._closed = true;
+         notifyAll ();
+      }//end synchronized
+      try {
+         this._thread.join (RETRY_MILLIS);
+      }catch (InterruptedException e) {
+         Thread.currentThread ().interrupt ();
+      }//end try
+   }//end close
+
+   /**
+    * Waits until every row announced so far has been applied.
+    *
+    * @param millis the longest time to wait
+    * @return whether the service caught up in time
+    * @throws java.lang.InterruptedException when interrupted while waiting
+    */
+   public synchronized boolean awaitIdle (long millis) throws InterruptedException {
+      long deadline = System.currentTimeMillis () + millis;
+      while (this._busy || this._reread || !this._newRepairs.isEmpty () || !this._newRequests.isEmpty ()) {
+         long left = deadline - System.currentTimeMillis ();
+         if (left <= 0)
+            return false;
+         wait (left);
+      }//end while
+      return true;
+   }//end awaitIdle
+
+   /**
+    * The health of one plane, like feature7: its last repair, number of
+    * repairs, open requests and mean days from request to repair.
+    *
+    * @param planeID the plane
+    * @return one row, or none for a plane without repairs or requests
+    * @throws java.sql.SQLException when the tables could not be read yet
+    */
+   public CachedResult plane (String planeID) throws SQLException {
+      List<String[]> rows = new ArrayList<String[]>();
+      synchronized (this) {
+         PlaneHealth p = state ().planes.get (planeID);
+         if (p != null)
+            rows.add (new String[] { p.planeID, date (p.lastRepair), String.valueOf (p.repairs),
+                                     String.valueOf (p.openCount), date (p.oldestOpen ()),
+                                     mean (p.matchedDays, p.matched) });
+      }//end synchronized
+      return result (PLANE_COLUMNS, rows);
+   }//end plane
+
+   /**
+    * The repairs and requests of one plane by repair code, like feature9
+    * over the plane's whole history.
+    *
+    * @param planeID the plane
+    * @return one row per repair code, in code order
+    * @throws java.sql.SQLException when the tables could not be read yet
+    */
+   public CachedResult planeCodes (String planeID) throws SQLException {
+      List<String[]> rows = new ArrayList<String[]>();
+      synchronized (this) {
+         PlaneHealth p = state ().planes.get (planeID);
+         if (p != null) {
+            for (Map.Entry<String, CodeHealth> e : p.codes.entrySet ()) {
+               CodeHealth c = e.getValue ();
+               rows.add (new String[] { code (e.getKey ()), String.valueOf (c.repairs), date (c.lastRepair),
+                                        String.valueOf (c.openCount),
+                                        date (c.openCount > 0 ? c.open.firstKey () : NONE),
+                                        mean (c.matchedDays, c.matched) });
+            }//end for
+         }//end if
+      }//end synchronized
+      return result (CODE_COLUMNS, rows);
+   }//end planeCodes
+
+   /**
+    * The repairs of one technician by repair code, like feature8 summed up.
+    *
+    * @param technicianID the technician
+    * @return one row per repair code, in code order
+    * @throws java.sql.SQLException when the tables could not be read yet
+    */
+   public CachedResult technician (String technicianID) throws SQLException {
+      List<String[]> rows = new ArrayList<String[]>();
+      synchronized (this) {
+         TreeMap<String, TechnicianCode> codes = state ().technicians.get (technicianID);
+         if (codes != null) {
+            for (Map.Entry<String, TechnicianCode> e : codes.entrySet ()) {
+               TechnicianCode t = e.getValue ();
+               rows.add (new String[] { code (e.getKey ()), String.valueOf (t.repairs),
+                                        String.valueOf (t.planes.size ()), date (t.lastRepair) });
+            }//end for
+         }//end if
+      }//end synchronized
+      return result (TECHNICIAN_COLUMNS, rows);
+   }//end technician
+
+   /**
+    * Ranks the planes with open maintenance requests by the days those
+    * requests have waited in total, then by their number.
+    *
+    * @param limit the most planes to list
+    * @return one row per plane, the one needing attention most first
+    * @throws java.sql.SQLException when the tables could not be read yet
+    */
+   public CachedResult needingAttention (int limit) throws SQLException {
+      final int today = (int) LocalDate.now ().toEpochDay ();
+      final Comparator<PlaneHealth> urgency = new Comparator<PlaneHealth>() {
+         public int compare (PlaneHealth a, PlaneHealth b) {
+            int c = Long.compare (a.daysWaiting (today), b.daysWaiting (today));
+            if (c == 0)
+               c = Integer.compare (a.openCount, b.openCount);
+            return c != 0 ? c : b.planeID.compareTo (a.planeID);
+         }
+      };
+      List<String[]> rows = new ArrayList<String[]>();
+      synchronized (this) {
+         // the least urgent of the planes kept is at the head
+         PriorityQueue<PlaneHealth> top = new PriorityQueue<PlaneHealth>(Math.max (1, limit), urgency);
+         for (PlaneHealth p : state ().planes.values ()) {
+            if (p.openCount == 0 || limit <= 0)
+               continue;
+            if (top.size () < limit) {
+               top.add (p);
+            } else if (urgency.compare (p, top.peek ()) > 0) {
+               top.poll ();
+               top.add (p);
+            }//end if
+         }//end for
+         List<PlaneHealth> ranked = new ArrayList<PlaneHealth>(top);
+         ranked.sort (urgency.reversed ());
+         for (PlaneHealth p : ranked)
+            rows.add (new String[] { p.planeID, String.valueOf (p.openCount), date (p.oldestOpen ()),
+                                     String.valueOf (p.daysWaiting (today)), date (p.lastRepair),
+                                     mean (p.matchedDays, p.matched) });
+      }//end synchronized
+      return result (ATTENTION_COLUMNS, rows);
+   }//end needingAttention
+
+   /**
+    * @return one line of statistics
+    */
+   public synchronized String stats () {
+      long open = 0;
+      for (PlaneHealth p : this._state.planes.values ())
+         open += p.openCount;
+      return "fleet health: " + this._state.planes.size () + " planes, " + this._state.technicians.size () +
+             " technicians, " + this._state.repairs + " repairs, " + this._state.requests + " requests (" +
+             open + " open), " + this._rereads + " rereads";
+   }//end stats
+
+   /*
+    * Applies a fleet_changed payload, "repair:id" or "request:id"; any
+    * other, or a missing one, rereads both tables.
+    */
+   synchronized void changed (String payload) {
+      int colon = payload == null ? -1 : payload.indexOf (':');
+      Integer id = colon < 0 ? null : parse (payload.substring (colon + 1));
+      String table = colon < 0 ? "" : payload.substring (0, colon);
+      if (id != null && id.intValue () >= 0 && table.equals ("repair"))
+         this._newRepairs.set (id.intValue ());
+      else if (id != null && id.intValue () >= 0 && table.equals ("request"))
+         this._newRequests.set (id.intValue ());
+      else
+         this._reread = true;
+      notifyAll ();
+   }//end changed
+
+   /*
+    * The current aggregates, waiting for the first read of the tables.
+    */
+   private State state () throws SQLException {
+      long deadline = System.currentTimeMillis () + AsyncExecutor.DEFAULT_TIMEOUT_MILLIS;
+      try {
+         while (!this._loaded) {
+            long left = deadline - System.currentTimeMillis ();
+            if (left <= 0 || this._closed)
+               throw new SQLException ("Fleet health is not loaded yet");
+            wait (left);
+         }//end while
+      }catch (InterruptedException e) {
+         Thread.currentThread ().interrupt ();
+         throw new SQLException ("Interrupted while loading fleet health");
+      }//end try
+      return this._state;
+   }//end state
+
+   private void loop () {
+      while (!this._closed) {
+         int[] repairs = null;
+         int[] requests = null;
+         boolean reread;
+         try {
+            synchronized (this) {
+               while (this._newRepairs.isEmpty () && this._newRequests.isEmpty () &&
+                      !this._reread && !this._closed) {
+                  this._busy = false;
+                  notifyAll ();
+                  wait (IDLE_WAIT_MILLIS);
+               }//end while
+               if (this._closed)
+                  break;
+               this._busy = true;
+               reread = this._reread;
+               if (!reread) {
+                  requests = take (this._newRequests);
+                  repairs = take (this._newRepairs);
+               }//end if
+            }//end synchronized
+            if (reread)
+               reread ();
+            else
+               apply (requests, repairs);
+         }catch (InterruptedException e) {
+            break;
+         }catch (SQLException e) {
+            if (this._closed)
+               break;
+            System.err.println ("Fleet health: " + e.getMessage ());
+            synchronized (this) {
+               // the rows of a failed read are read again
+               if (requests != null)
+                  for (int id : requests)
+                     this._newRequests.set (id);
+               if (repairs != null)
+                  for (int id : repairs)
+                     this._newRepairs.set (id);
+            }//end synchronized
+            try {
+               Thread.sleep (RETRY_MILLIS);
+            }catch (InterruptedException ie) {
+               break;
+            }//end try
+         }//end try
+      }//end while
+      synchronized (this) {
+         this._busy = false;
+         notifyAll ();
+      }//end synchronized
+   }//end loop
+
+   /*
+    * Reads both tables into new aggregates, requests first so each repair
+    * finds the requests it closes.  Rows announced meanwhile stay queued
+    * and are skipped when the read already had them.
+    */
+   private void reread () throws SQLException {
+      synchronized (this) {
+         this._reread = false;
+         this._newRepairs.clear ();
+         this._newRequests.clear ();
+      }//end synchronized
+      final State state = new State ();
+      boolean loaded = false;
+      long t0 = System.nanoTime ();
+      try {
+         this._esql.executeQueryStreaming (REQUESTS_SQL, new RowHandler () {
+            final RowMapper<Rows.MaintenanceRequest> mapper = Rows.MaintenanceRequest.mapper ();
+            public void start (ResultSetMetaData rsmd) throws SQLException {
+               this.mapper.start (rsmd);
+            }
+            public void row (ResultSet rs) throws SQLException {
+               Rows.MaintenanceRequest r = this.mapper.map (rs);
+               state.request (r.requestID (), r.planeID (), r.repairCode (), r.requestDate ());
+            }
+         });
+         this._esql.executeQueryStreaming (REPAIRS_SQL, new RowHandler () {
+            final RowMapper<Rows.Repair> mapper = Rows.Repair.mapper ();
+            public void start (ResultSetMetaData rsmd) throws SQLException {
+               this.mapper.start (rsmd);
+            }
+            public void row (ResultSet rs) throws SQLException {
+               Rows.Repair r = this.mapper.map (rs);
+               state.repair (r.repairID (), r.planeID (), r.repairCode (), r.repairDate (), r.technicianID ());
+            }
+         });
+         loaded = true;
+      }catch (SQLException e) {
+         this._esql.getMetrics ().featureFailed ("fleetReread");
+         throw e;
+      }finally {
+         synchronized (this) {
+            if (loaded) {
+               this._state = state;
+               this._loaded = true;
+               ++this._rereads;
+            } else {
+               this._reread = true;
+            }//end if
+            notifyAll ();
+         }//end synchronized
+      }//end try
+      this._esql.getMetrics ().feature ("fleetReread", System.nanoTime () - t0, state.repairs + state.requests);
+   }//end reread
+
+   /*
+    * Reads the announced rows and folds them in, requests first.
+    */
+   private void apply (int[] requests, int[] repairs) throws SQLException {
+      long t0 = System.nanoTime ();
+      final List<Rows.MaintenanceRequest> newRequests = requests.length == 0
+         ? new ArrayList<Rows.MaintenanceRequest>()
+         : this._esql.executeQueryForList (NEW_REQUESTS_SQL, Rows.MaintenanceRequest.mapper (), array (requests));
+      final List<Rows.Repair> newRepairs = repairs.length == 0
+         ? new ArrayList<Rows.Repair>()
+         : this._esql.executeQueryForList (NEW_REPAIRS_SQL, Rows.Repair.mapper (), array (repairs));
+      synchronized (this) {
+         // a reread that ran meanwhile has these rows already
+         State state = this._state;
+         for (Rows.MaintenanceRequest r : newRequests)
+            state.request (r.requestID (), r.planeID (), r.repairCode (), r.requestDate ());
+         for (Rows.Repair r : newRepairs)
+            state.repair (r.repairID (), r.planeID (), r.repairCode (), r.repairDate (), r.technicianID ());
+      }//end synchronized
+      this._esql.getMetrics ().feature ("fleetApply", System.nanoTime () - t0,
+                                        newRequests.size () + newRepairs.size ());
+   }//end apply
+
+   /*
+    * Removes up to MAX_IDS_PER_FETCH of the lowest IDs from a set.
+    */
+   private static int[] take (BitSet ids) {
+      int n = Math.min (MAX_IDS_PER_FETCH, ids.cardinality ());
+      int[] taken = new int[n];
+      for (int i = 0, id = ids.nextSetBit (0); i < n; ++i, id = ids.nextSetBit (id + 1)) {
+         taken[i] = id;
+         ids.clear (id);
+      }//end for
+      return taken;
+   }//end take
+
+   // an INTEGER[] literal
+   private static String array (int[] ids) {
+      StringBuilder sb = new StringBuilder ("{");
+      for (int i = 0; i < ids.length; ++i)
+         sb.append (i > 0 ? "," : "").append (ids[i]);
+      return sb.append ('}').toString ();
+   }//end array
+
+   private static CachedResult result (String[] columns, List<String[]> rows) {
+      return new CachedResult (columns, rows.toArray (new String[rows.size ()][]));
+   }//end result
+
+   // map keys cannot be null, so a NULL RepairCode is kept as ""
+   private static String key (String code) {
+      return code == null ? "" : code;
+   }//end key
+
+   private static String code (String key) {
+      return key.isEmpty () ? null : key;
+   }//end code
+
+   private static String date (int day) {
+      return day == NONE ? null : LocalDate.ofEpochDay (day).toString ();
+   }//end date
+
+   private static String mean (long days, int count) {
+      return count == 0 ? null : String.format (Locale.ROOT, "%.1f", (double) days / count);
+   }//end mean
+
+   private static Integer parse (String number) {
+      try {
+         return Integer.valueOf (number);
+      }catch (NumberFormatException e) {
+         return null;
+      }//end try
+   }//end parse
+
+}//end FleetHealth
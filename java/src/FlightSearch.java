@@ -0,0 +1,643 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory flight search for the Customer menu.  Finds direct, one stop
+ * and two stop itineraries between two cities departing on a date, with
+ * a seat free on every leg, cheapest first.
+ *
+ * The route graph (Flight) is held as city IDs in primitive arrays.  The
+ * legs flying on a date (FlightInstance joined with the Schedule of its
+ * weekday) are loaded once per date into a day table: parallel int arrays
+ * sorted by departure, indexed by origin city and by (origin, destination)
+ * pair.  A search scans those arrays forward in time from the origin,
+ * keeping only connections of at least MIN_CONNECTION_MINUTES and at most
+ * MAX_LAYOVER_MINUTES, and never touches the database once the day tables
+ * are loaded.
+ *
+ * Day tables are kept current without reloading: the triggers in
+ * sql/src/create_triggers.sql send NOTIFY instance_changed with the seats
+ * and fare of every changed FlightInstance, which are patched into place.
+ * Changes that move a leg (a new instance, another date or flight, a
+ * schedule or route change) drop the affected tables, which are reloaded on
+ * the next search.
+ *
+ */
+public class FlightSearch {
+
+   static final String CHANNEL = "instance_changed";
+
+   static final int MINUTES_PER_DAY = 24 * 60;
+   static final int MIN_CONNECTION_MINUTES = 45;
+   static final int MAX_LAYOVER_MINUTES = 12 * 60;
+   static final int DEFAULT_MAX_RESULTS = 20;
+
+   // day tables kept in memory.
+   static final int MAX_DAYS = 400;
+   static final long DAY_TTL_MILLIS = 60 * 60 * 1000;
+
+   static final String FLIGHTS_SQL =
+      "SELECT FlightNumber, DepartureCity, ArrivalCity FROM Flight";
+
+   // legs without a fare cannot be sold and are left out.
+   static final String LEGS_SQL =
+      "SELECT FI.FlightInstanceID, FI.FlightNumber, " +
+      "COALESCE(FI.SeatsTotal, 0) - COALESCE(FI.SeatsSold, 0), " +
+      "CAST(FI.TicketCost * 100 AS BIGINT), " +
+      "CAST(EXTRACT(EPOCH FROM S.DepartureTime) / 60 AS INTEGER), " +
+      "CAST(EXTRACT(EPOCH FROM S.ArrivalTime) / 60 AS INTEGER) " +
+      "FROM FlightInstance FI " +
+      "JOIN Schedule S ON S.FlightNumber = FI.FlightNumber " +
+      "AND S.DayOfWeek = to_char(FI.FlightDate, 'FMDay') " +
+      "WHERE FI.FlightDate = CAST(? AS DATE) AND FI.TicketCost IS NOT NULL";
+
+   static final String NORMALIZE_DATE_SQL =
+      "SELECT to_char(CAST(? AS DATE), 'YYYY-MM-DD')";
+
+   /**
+    * One way to fly from the origin to the destination.  Times are minutes
+    * after midnight of the search date, so a leg on the next day is at
+    * 1440 or later.
+    */
+   public static class Itinerary {
+      public final int[] instanceIDs;
+      public final String[] flightNumbers;
+      // cities[i] to cities[i + 1] is leg i
+      public final String[] cities;
+      public final int[] departs;
+      public final int[] arrives;
+      public final long costCents;
+      public final int seatsAvailable;
+
+      Itinerary (int[] instanceIDs, String[] flightNumbers, String[] cities,
+                 int[] departs, int[] arrives, long costCents, int seatsAvailable) {
+         this.instanceIDs = instanceIDs;
+         this.flightNumbers = flightNumbers;
+         this.cities = cities;
+         this.departs = departs;
+         this.arrives = arrives;
+         this.costCents = costCents;
+         this.seatsAvailable = seatsAvailable;
+      }
+
+      public int stops () {
+         return this.instanceIDs.length - 1;
+      }
+
+      public BigDecimal getTotalCost () {
+         return BigDecimal.valueOf (this.costCents, 2);
+      }
+
+      public String[] toRow () {
+         StringBuilder flights = new StringBuilder ();
+         StringBuilder route = new StringBuilder (this.cities[0]);
+         for (int i = 0; i < this.flightNumbers.length; ++i) {
+            flights.append (i > 0 ? " > " : "").append (this.flightNumbers[i])
+                   .append (" (").append (clock (this.departs[i])).append (')');
+            route.append (" > ").append (this.cities[i + 1]);
+         }//end for
+         return new String[] {
+            flights.toString (), route.toString (), clock (this.departs[0]),
+            clock (this.arrives[this.arrives.length - 1]), String.valueOf (stops ()),
+            String.valueOf (this.seatsAvailable), getTotalCost ().toString ()
+         };
+      }
+
+      public String toString () {
+         return Arrays.toString (toRow ());
+      }
+   }//end Itinerary
+
+   static final String[] COLUMNS = {
+      "Flights", "Route", "Departs", "Arrives", "Stops", "SeatsAvailable", "TotalCost"
+   };
+
+   /*
+    * The route graph: cities and flights by dense integer ID.
+    */
+   static class Graph {
+      final String[] cities;
+      final Map<String, Integer> cityIDs;
+      final Map<String, Integer> flightIDs;
+      final String[] flightNumbers;
+      final int[] flightFrom;
+      final int[] flightTo;
+
+      Graph (List<String[]> flights) {
+         this.cityIDs = new HashMap<String, Integer>();
+         this.flightIDs = new HashMap<String, Integer>();
+         List<String> cities = new ArrayList<String>();
+         int n = flights.size ();
+         this.flightNumbers = new String[n];
+         this.flightFrom = new int[n];
+         this.flightTo = new int[n];
+         for (int f = 0; f < n; ++f) {
+            String[] row = flights.get (f);
+            this.flightNumbers[f] = row[0];
+            this.flightIDs.put (row[0], f);
+            this.flightFrom[f] = city (row[1], cities);
+            this.flightTo[f] = city (row[2], cities);
+         }//end for
+         this.cities = cities.toArray (new String[cities.size ()]);
+      }
+
+      private int city (String name, List<String> cities) {
+         Integer id = this.cityIDs.get (name);
+         if (id == null) {
+            id = cities.size ();
+            cities.add (name);
+            this.cityIDs.put (name, id);
+         }//end if
+         return id;
+      }
+   }//end Graph
+
+   /*
+    * The legs flying on one date.  Everything but the seat counts and the
+    * fares is immutable.
+    */
+   static class Day {
+      final Graph graph;
+      final int[] instance;
+      final int[] flight;
+      final int[] dep;
+      final int[] arr;
+      final AtomicLongArray cost;
+      final AtomicIntegerArray seats;
+      // legs from city c are byFrom[fromStart[c] .. fromStart[c + 1]),
+      // ordered by departure
+      final int[] fromStart;
+      final int[] byFrom;
+      // legs from one city to another, ordered by departure
+      final Map<Long, int[]> byPair;
+      final Map<Integer, Integer> slots;
+
+      Day (Graph graph, List<long[]> legs) {
+         this.graph = graph;
+         int n = legs.size ();
+         this.instance = new int[n];
+         this.flight = new int[n];
+         this.dep = new int[n];
+         this.arr = new int[n];
+         this.cost = new AtomicLongArray (n);
+         this.seats = new AtomicIntegerArray (n);
+         this.slots = new HashMap<Integer, Integer>(n * 2);
+         long[] keys = new long[n];
+         for (int i = 0; i < n; ++i) {
+            long[] leg = legs.get (i);
+            this.instance[i] = (int) leg[0];
+            this.flight[i] = (int) leg[1];
+            this.seats.set (i, (int) leg[2]);
+            this.cost.set (i, leg[3]);
+            this.dep[i] = (int) leg[4];
+            // an arrival before the departure lands the next day
+            this.arr[i] = (int) (leg[5] < leg[4] ? leg[5] + MINUTES_PER_DAY : leg[5]);
+            this.slots.put (this.instance[i], i);
+            keys[i] = ((long) graph.flightFrom[this.flight[i]] << 40) | (leg[4] << 24) | i;
+         }//end for
+         Arrays.sort (keys);
+
+         int cities = graph.cities.length;
+         this.fromStart = new int[cities + 1];
+         this.byFrom = new int[n];
+         Map<Long, List<Integer>> pairs = new HashMap<Long, List<Integer>>();
+         for (int k = 0; k < n; ++k) {
+            int i = (int) (keys[k] & 0xFFFFFF);
+            this.byFrom[k] = i;
+            int from = graph.flightFrom[this.flight[i]];
+            ++this.fromStart[from + 1];
+            Long pair = pair (from, graph.flightTo[this.flight[i]]);
+            List<Integer> list = pairs.get (pair);
+            if (list == null)
+               pairs.put (pair, list = new ArrayList<Integer>());
+            list.add (i);
+         }//end for
+         for (int c = 0; c < cities; ++c)
+            this.fromStart[c + 1] += this.fromStart[c];
+         this.byPair = new HashMap<Long, int[]>(pairs.size () * 2);
+         for (Map.Entry<Long, List<Integer>> e : pairs.entrySet ()) {
+            int[] list = new int[e.getValue ().size ()];
+            for (int k = 0; k < list.length; ++k)
+               list[k] = e.getValue ().get (k);
+            this.byPair.put (e.getKey (), list);
+         }//end for
+      }
+
+      int from (int leg) {
+         return this.graph.flightFrom[this.flight[leg]];
+      }
+
+      int to (int leg) {
+         return this.graph.flightTo[this.flight[leg]];
+      }
+
+      // first position in legs[lo, hi) departing at or after minute
+      int firstDeparting (int[] legs, int lo, int hi, int minute) {
+         while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.dep[legs[mid]] < minute)
+               lo = mid + 1;
+            else
+               hi = mid;
+         }//end while
+         return lo;
+      }
+   }//end Day
+
+   static Long pair (int from, int to) {
+      return ((long) from << 32) | to;
+   }//end pair
+
+   private final AirlineManagement _esql;
+   private volatile Graph _graph = null;
+   private final LruCache<Long, Day> _days =
+      new LruCache<Long, Day>("searchDays", MAX_DAYS, DAY_TTL_MILLIS);
+   // search date as typed -> YYYY-MM-DD, for dates that are not ISO
+   private final LruCache<String, String> _dates =
+      new LruCache<String, String>("searchDates", 1000, DAY_TTL_MILLIS);
+   // bumped whenever everything is dropped, and per date when a date
+   // changes, so a load that raced with a change does not store what it read
+   private final AtomicLong _generation = new AtomicLong ();
+   private final DayChanges _dayChanges = new DayChanges (MAX_DAYS);
+
+   /**
+    * Creates the search and subscribes it to change notifications.
+    *
+    * @param esql the database
+    * @param listener the listener delivering instance_changed and
+    *        reference_changed events
+    */
+   public FlightSearch (AirlineManagement esql, NotificationListener listener) {
+      this._esql = esql;
+      listener.listen (CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            instanceChanged (payload);
+         }
+      });
+      listener.listen (ReferenceCache.CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            referenceChanged (payload);
+         }
+      });
+   }//end FlightSearch
+
+   /**
+    * Finds the cheapest itineraries departing on a date.
+    *
+    * @param from the departure city
+    * @param to the arrival city
+    * @param date the departure date, in any format PostgreSQL accepts
+    * @param maxResults how many itineraries to return at most
+    * @return the itineraries, cheapest first, then earliest arrival
+    * @throws java.sql.SQLException when the flights of the date cannot be
+    *         loaded
+    */
+   public List<Itinerary> search (String from, String to, String date, int maxResults) throws SQLException {
+      long t0 = System.nanoTime ();
+      try {
+         List<Itinerary> result = find (from.trim (), to.trim (), normalize (this._esql, this._dates, date), maxResults);
+         this._esql.getMetrics ().feature ("search", System.nanoTime () - t0, result.size ());
+         return result;
+      }catch (SQLException e) {
+         this._esql.getMetrics ().featureFailed ("search");
+         throw e;
+      }//end try
+   }//end search
+
+   private List<Itinerary> find (String from, String to, LocalDate date, int maxResults) throws SQLException {
+      Graph graph = graph ();
+      Integer o = graph.cityIDs.get (from);
+      Integer dst = graph.cityIDs.get (to);
+      if (o == null || dst == null || o.equals (dst))
+         return new ArrayList<Itinerary>();
+
+      Day[] days = { day (graph, date), day (graph, date.plusDays (1)) };
+      return search (days, o, dst, maxResults);
+   }//end find
+
+   /*
+    * Scans the legs of the search date, days[0], and of the next day,
+    * days[1], from origin o to destination dst.
+    */
+   static List<Itinerary> search (Day[] days, int o, int dst, int maxResults) {
+      Collector out = new Collector (maxResults);
+      Day d0 = days[0];
+      Day[] legDay = new Day[3];
+      int[] legSlot = new int[3];
+      int[] legOffset = new int[3];
+
+      for (int k = d0.fromStart[o]; k < d0.fromStart[o + 1]; ++k) {
+         int a = d0.byFrom[k];
+         if (d0.seats.get (a) <= 0)
+            continue;
+         long cost1 = d0.cost.get (a);
+         if (out.prunes (cost1))
+            continue;
+         legDay[0] = d0; legSlot[0] = a; legOffset[0] = 0;
+         int c1 = d0.to (a);
+         if (c1 == dst) {
+            out.add (legDay, legSlot, legOffset, 1, cost1);
+            continue;
+         }//end if
+         if (c1 == o)
+            continue;
+
+         // one stop
+         lastLeg (days, c1, dst, d0.arr[a], cost1, legDay, legSlot, legOffset, 1, out);
+
+         // two stops
+         int t1 = d0.arr[a];
+         for (int j = 0; j < days.length; ++j) {
+            Day d = days[j];
+            int offset = j * MINUTES_PER_DAY;
+            int hi = d.fromStart[c1 + 1];
+            for (int m = d.firstDeparting (d.byFrom, d.fromStart[c1], hi, t1 + MIN_CONNECTION_MINUTES - offset);
+                 m < hi && d.dep[d.byFrom[m]] + offset <= t1 + MAX_LAYOVER_MINUTES; ++m) {
+               int b = d.byFrom[m];
+               int c2 = d.to (b);
+               if (c2 == o || c2 == c1 || c2 == dst || d.seats.get (b) <= 0)
+                  continue;
+               long cost2 = cost1 + d.cost.get (b);
+               if (out.prunes (cost2))
+                  continue;
+               legDay[1] = d; legSlot[1] = b; legOffset[1] = offset;
+               lastLeg (days, c2, dst, d.arr[b] + offset, cost2, legDay, legSlot, legOffset, 2, out);
+            }//end for
+         }//end for
+      }//end for
+      return out.sorted ();
+   }//end search
+
+   /*
+    * Completes an itinerary with a leg from city c to dst that connects
+    * with an arrival at minute t.
+    */
+   private static void lastLeg (Day[] days, int c, int dst, int t, long cost,
+                                Day[] legDay, int[] legSlot, int[] legOffset, int n, Collector out) {
+      for (int j = 0; j < days.length; ++j) {
+         Day d = days[j];
+         int[] legs = d.byPair.get (pair (c, dst));
+         if (legs == null)
+            continue;
+         int offset = j * MINUTES_PER_DAY;
+         for (int m = d.firstDeparting (legs, 0, legs.length, t + MIN_CONNECTION_MINUTES - offset);
+              m < legs.length && d.dep[legs[m]] + offset <= t + MAX_LAYOVER_MINUTES; ++m) {
+            int leg = legs[m];
+            if (d.seats.get (leg) <= 0)
+               continue;
+            long total = cost + d.cost.get (leg);
+            if (out.prunes (total))
+               continue;
+            legDay[n] = d; legSlot[n] = leg; legOffset[n] = offset;
+            out.add (legDay, legSlot, legOffset, n + 1, total);
+         }//end for
+      }//end for
+   }//end lastLeg
+
+   /*
+    * Keeps the best maxResults itineraries; the worst is at the head.
+    */
+   static class Collector {
+      static final Comparator<Itinerary> ORDER = new Comparator<Itinerary>() {
+         public int compare (Itinerary a, Itinerary b) {
+            if (a.costCents != b.costCents)
+               return a.costCents < b.costCents ? -1 : 1;
+            int arrA = a.arrives[a.arrives.length - 1], arrB = b.arrives[b.arrives.length - 1];
+            if (arrA != arrB)
+               return arrA < arrB ? -1 : 1;
+            return a.instanceIDs.length - b.instanceIDs.length;
+         }
+      };
+
+      final int max;
+      final PriorityQueue<Itinerary> heap;
+
+      Collector (int max) {
+         this.max = max;
+         this.heap = new PriorityQueue<Itinerary>(Math.max (1, max), Collections.reverseOrder (ORDER));
+      }
+
+      // true when no itinerary costing at least this much can get in
+      boolean prunes (long cost) {
+         return this.max <= 0 || (this.heap.size () >= this.max && cost > this.heap.peek ().costCents);
+      }
+
+      void add (Day[] legDay, int[] legSlot, int[] legOffset, int n, long cost) {
+         int[] ids = new int[n];
+         String[] flights = new String[n];
+         String[] cities = new String[n + 1];
+         int[] departs = new int[n];
+         int[] arrives = new int[n];
+         int seats = Integer.MAX_VALUE;
+         for (int i = 0; i < n; ++i) {
+            Day d = legDay[i];
+            int leg = legSlot[i];
+            ids[i] = d.instance[leg];
+            flights[i] = d.graph.flightNumbers[d.flight[leg]];
+            cities[i] = d.graph.cities[d.from (leg)];
+            cities[i + 1] = d.graph.cities[d.to (leg)];
+            departs[i] = d.dep[leg] + legOffset[i];
+            arrives[i] = d.arr[leg] + legOffset[i];
+            seats = Math.min (seats, d.seats.get (leg));
+         }//end for
+         Itinerary it = new Itinerary (ids, flights, cities, departs, arrives, cost, seats);
+         if (this.heap.size () < this.max) {
+            this.heap.add (it);
+         } else if (ORDER.compare (it, this.heap.peek ()) < 0) {
+            this.heap.poll ();
+            this.heap.add (it);
+         }//end if
+      }
+
+      List<Itinerary> sorted () {
+         List<Itinerary> result = new ArrayList<Itinerary>(this.heap);
+         Collections.sort (result, ORDER);
+         return result;
+      }
+   }//end Collector
+
+   /**
+    * Prints itineraries as a table, like the other Customer features.
+    *
+    * @param itineraries the itineraries
+    * @param printer the destination
+    * @throws java.sql.SQLException when the output cannot be written
+    */
+   public static void print (List<Itinerary> itineraries, RowPrinter printer) throws SQLException {
+      for (Itinerary it : itineraries)
+         printer.row (COLUMNS, it.toRow ());
+   }//end print
+
+   static String clock (int minutes) {
+      int day = minutes / MINUTES_PER_DAY;
+      int m = minutes % MINUTES_PER_DAY;
+      return String.format ("%02d:%02d", m / 60, m % 60) + (day > 0 ? " +" + day : "");
+   }//end clock
+
+   /*
+    * Parses ISO dates locally; other formats are parsed once by the server,
+    * exactly as the SQL features would, and kept in dates.
+    */
+   static LocalDate normalize (AirlineManagement esql, LruCache<String, String> dates,
+                               String date) throws SQLException {
+      String text = date.trim ();
+      try {
+         return LocalDate.parse (text);
+      }catch (DateTimeParseException e) {
+         // not ISO
+      }//end try
+      String iso = dates.get (text);
+      if (iso == null) {
+         iso = esql.executeQueryAndReturnResult (NORMALIZE_DATE_SQL, text).get (0).get (0);
+         dates.put (text, iso);
+      }//end if
+      return LocalDate.parse (iso);
+   }//end normalize
+
+   private Graph graph () throws SQLException {
+      Graph graph = this._graph;
+      if (graph == null) {
+         long generation = this._generation.get ();
+         final List<String[]> flights = new ArrayList<String[]>();
+         this._esql.executeQueryStreaming (FLIGHTS_SQL, new RowHandler () {
+            public void start (ResultSetMetaData rsmd) {
+            }
+            public void row (ResultSet rs) throws SQLException {
+               flights.add (new String[] { rs.getString (1), rs.getString (2), rs.getString (3) });
+            }
+         });
+         graph = new Graph (flights);
+         synchronized (this) {
+            if (generation == this._generation.get ())
+               this._graph = graph;
+         }//end synchronized
+      }//end if
+      return graph;
+   }//end graph
+
+   private Day day (final Graph graph, LocalDate date) throws SQLException {
+      Long key = date.toEpochDay ();
+      Day day = this._days.get (key);
+      if (day != null && day.graph == graph)
+         return day;
+
+      long generation = this._generation.get ();
+      long changes = this._dayChanges.version (key);
+      final List<long[]> legs = new ArrayList<long[]>();
+      this._esql.executeQueryStreaming (LEGS_SQL, new RowHandler () {
+         public void start (ResultSetMetaData rsmd) {
+         }
+         public void row (ResultSet rs) throws SQLException {
+            Integer flight = graph.flightIDs.get (rs.getString (2));
+            if (flight != null)
+               legs.add (new long[] { rs.getInt (1), flight, rs.getInt (3), rs.getLong (4), rs.getInt (5), rs.getInt (6) });
+         }
+      }, date.toString ());
+      day = new Day (graph, legs);
+      synchronized (this) {
+         if (generation == this._generation.get () && changes == this._dayChanges.version (key))
+            this._days.put (key, day);
+      }//end synchronized
+      return day;
+   }//end day
+
+   /*
+    * Applies an instance_changed payload:
+    *    id:date:seats:cents:flight   the instance's current seats and fare
+    *    id:date                      the instance left this date
+    *    empty or null                anything may have changed
+    */
+   void instanceChanged (String payload) {
+      if (payload == null || payload.isEmpty ()) {
+         dropAll ();
+         return;
+      }//end if
+      String[] f = payload.split (":", 5);
+      Long key;
+      int id;
+      try {
+         id = Integer.parseInt (f[0]);
+         key = LocalDate.parse (f[1]).toEpochDay ();
+      }catch (RuntimeException e) {
+         dropAll ();
+         return;
+      }//end try
+
+      synchronized (this) {
+         this._dayChanges.changed (key);
+         Day day = this._days.get (key);
+         if (day == null)
+            return;
+         Integer slot = day.slots.get (id);
+         if (f.length < 5) {
+            // gone from this date: no longer bookable
+            if (slot != null)
+               day.seats.set (slot, 0);
+            return;
+         }//end if
+         if (slot == null || !f[4].equals (day.graph.flightNumbers[day.flight[slot]]) || f[3].isEmpty ()) {
+            // a leg this table does not have, or one that moved
+            this._days.invalidate (key);
+            return;
+         }//end if
+         try {
+            day.seats.set (slot, Integer.parseInt (f[2]));
+            day.cost.set (slot, Long.parseLong (f[3]));
+         }catch (NumberFormatException e) {
+            this._days.invalidate (key);
+         }//end try
+      }//end synchronized
+   }//end instanceChanged
+
+   /*
+    * Flights and schedules decide which legs exist and when they fly.
+    */
+   void referenceChanged (String payload) {
+      if (payload == null || payload.startsWith ("flight:")) {
+         synchronized (this) {
+            this._graph = null;
+            dropAll ();
+         }//end synchronized
+      } else if (payload.startsWith ("schedule:")) {
+         dropAll ();
+      }//end if
+   }//end referenceChanged
+
+   private synchronized void dropAll () {
+      this._generation.incrementAndGet ();
+      this._days.invalidateAll ();
+   }//end dropAll
+
+   /**
+    * @return hit/miss statistics of the day tables
+    */
+   public String stats () {
+      return this._days.toString ();
+   }//end stats
+
+}//end FlightSearch
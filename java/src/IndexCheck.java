@@ -0,0 +1,304 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Regression check for sql/src/create_indexes.sql.  Runs EXPLAIN on every
+ * feature query with parameters sampled from the loaded data and fails when
+ * a plan falls back to a sequential scan on one of the large tables.
+ *
+ * Run it against a scaled dataset: on the small fixtures in data/ the
+ * planner rightly prefers sequential scans, so tables with fewer than
+ * MIN_ROWS estimated rows are not checked.
+ *
+ * On the partitioned schema (sql/src/create_tables_partitioned.sql) a
+ * table's rows are those of its partitions, and a scan of a partition
+ * counts as a scan of its table.  The queries filtering on FlightDate must
+ * also touch only the monthly partitions of their dates: a plan scanning
+ * any other partition fails, whether it was pruned when planned or when
+ * the executor started.
+ *
+ */
+public class IndexCheck {
+
+   // tables that grow with traffic and must never be scanned sequentially.
+   static final String[] LARGE_TABLES = {
+      "FlightInstance", "Reservation", "Customer", "Repair", "MaintenanceRequest"
+   };
+
+   // tables with fewer estimated rows than this are not treated as large.
+   static final long MIN_ROWS = 10000;
+
+   // estimated rows of a table and its partitions; reltuples is -1 until
+   // a table is first analyzed
+   static final String TABLE_ROWS_SQL =
+      "SELECT COALESCE(SUM(GREATEST(c.reltuples, 0)), 0)::bigint FROM pg_class c " +
+      "WHERE c.oid = to_regclass(?) " +
+      "OR c.oid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = to_regclass(?))";
+
+   // partitions of the partitioned tables, with their parent
+   static final String PARTITIONS_SQL =
+      "SELECT c.relname, p.relname FROM pg_inherits i " +
+      "JOIN pg_class c ON c.oid = i.inhrelid " +
+      "JOIN pg_class p ON p.oid = i.inhparent " +
+      "JOIN pg_partitioned_table pt ON pt.partrelid = p.oid";
+
+   static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern ("yyyy_MM");
+
+   // the relation a plan line scans: "Seq Scan on x", "Index Scan using i
+   // on x", "Bitmap Heap Scan on x", ...
+   static final Pattern SCAN = Pattern.compile ("(Seq|Index|Index Only|Bitmap Heap) Scan (?:using \\S+ )?on (\\S+)");
+
+   /**
+    * A feature query together with the parameters to explain it with.
+    */
+   static class Check {
+      final String name;
+      final String sql;
+      final Object[] params;
+      // the FlightDate range the query filters on, or null
+      LocalDate firstDate = null;
+      LocalDate lastDate = null;
+
+      Check (String name, String sql, Object... params) {
+         this.name = name;
+         this.sql = sql;
+         this.params = params;
+      }
+
+      // the query must only touch the partitions of these dates
+      Check dated (String first, String last) {
+         this.firstDate = LocalDate.parse (first);
+         this.lastDate = LocalDate.parse (last);
+         return this;
+      }
+   }//end Check
+
+   public static void main (String[] args) {
+      if (args.length != 3) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            IndexCheck.class.getName () +
+            " <dbname> <port> <user>");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      int failures = 0;
+      try {
+         esql = new AirlineManagement (args[0], args[1], args[2], "");
+         failures = run (esql);
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+         failures = 1;
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+      System.exit (failures == 0 ? 0 : 1);
+   }//end main
+
+   /**
+    * Explains every feature query and prints a PASS/FAIL line for each.
+    *
+    * @param esql the database to check
+    * @return the number of failing queries
+    * @throws java.sql.SQLException when the sample parameters cannot be read
+    */
+   public static int run (AirlineManagement esql) throws SQLException {
+      List<String> large = largeTables (esql);
+      System.out.println ("Large tables checked: " + large);
+      Map<String, String> parents = partitionParents (esql);
+      if (!parents.isEmpty ())
+         System.out.println ("Partition pruning checked on " + new TreeSet<String>(parents.values ()));
+
+      int failures = 0;
+      for (Check check : checks (esql)) {
+         List<String> plan;
+         try {
+            plan = explain (esql, check);
+         }catch (SQLException e) {
+            System.out.println ("FAIL " + check.name + ": " + e.getMessage ());
+            ++failures;
+            continue;
+         }//end try
+
+         List<String> scanned = seqScans (plan, large, parents);
+         List<String> unpruned = unprunedPartitions (plan, check, parents);
+         if (scanned.isEmpty () && unpruned.isEmpty ()) {
+            System.out.println ("PASS " + check.name);
+         } else {
+            if (!scanned.isEmpty ())
+               System.out.println ("FAIL " + check.name + ": sequential scan on " + scanned);
+            if (!unpruned.isEmpty ())
+               System.out.println ("FAIL " + check.name + ": partitions outside " + check.firstDate +
+                                   ".." + check.lastDate + " scanned: " + unpruned);
+            for (String line : plan)
+               System.out.println ("\t" + line);
+            ++failures;
+         }//end if
+      }//end for
+      System.out.println (failures + " failing quer" + (failures == 1 ? "y" : "ies"));
+      return failures;
+   }//end run
+
+   /*
+    * Builds the list of feature queries, with parameters taken from rows
+    * that exist in the database so the planner sees realistic selectivity.
+    */
+   static List<Check> checks (AirlineManagement esql) throws SQLException {
+      List<String> instance = firstRow (esql,
+         "SELECT FlightNumber, FlightDate::text FROM FlightInstance " +
+         "ORDER BY FlightInstanceID LIMIT 1");
+      List<String> repair = firstRow (esql,
+         "SELECT PlaneID, TechnicianID, MIN(RepairDate)::text, MAX(RepairDate)::text " +
+         "FROM Repair GROUP BY PlaneID, TechnicianID LIMIT 1");
+      List<String> reservation = firstRow (esql,
+         "SELECT ReservationID, CustomerID FROM Reservation LIMIT 1");
+
+      String flight = instance.get (0);
+      String date = instance.get (1);
+      List<Check> checks = new ArrayList<Check>();
+      checks.add (new Check ("feature1", AirlineManagement.FLIGHT_SCHEDULE_SQL, flight));
+      checks.add (new Check ("feature2", AirlineManagement.FLIGHT_SEATS_SQL, flight, date).dated (date, date));
+      checks.add (new Check ("feature3", AirlineManagement.FLIGHT_STATUS_SQL, flight, date).dated (date, date));
+      checks.add (new Check ("feature4", AirlineManagement.FLIGHTS_OF_DAY_SQL, date).dated (date, date));
+      checks.add (new Check ("feature5", esql.flightManifestSql (), flight, date).dated (date, date));
+      checks.add (new Check ("feature6", AirlineManagement.TRAVELER_INFO_SQL, reservation.get (0)));
+      checks.add (new Check ("feature7", AirlineManagement.PLANE_INFO_SQL, repair.get (0)));
+      checks.add (new Check ("feature8", AirlineManagement.TECHNICIAN_REPAIRS_SQL, repair.get (1)));
+      checks.add (new Check ("feature9", AirlineManagement.PLANE_REPAIRS_SQL,
+                             repair.get (0), repair.get (2), repair.get (3)));
+      checks.add (new Check ("feature10", AirlineManagement.FLIGHT_STATISTICS_SQL,
+                             flight, date, date).dated (date, date));
+      checks.add (new Check ("tripHistory", esql.isPartitioned () ? CustomerHistory.PARTITIONED_FIRST_PAGE_SQL
+                                                                   : CustomerHistory.FIRST_PAGE_SQL,
+                             Integer.valueOf (reservation.get (1)), CustomerHistory.DEFAULT_PAGE_SIZE + 1));
+      return checks;
+   }//end checks
+
+   /*
+    * Returns the names of the large tables holding at least MIN_ROWS rows
+    * according to the planner statistics, in lower case as EXPLAIN prints
+    * them.  A partitioned table holds the rows of its partitions.
+    */
+   static List<String> largeTables (AirlineManagement esql) throws SQLException {
+      List<String> large = new ArrayList<String>();
+      for (String table : LARGE_TABLES) {
+         String name = table.toLowerCase (Locale.ROOT);
+         List<List<String>> rows = esql.executeQueryAndReturnResult (TABLE_ROWS_SQL, name, name);
+         if (!rows.isEmpty () && Long.parseLong (rows.get (0).get (0)) >= MIN_ROWS)
+            large.add (name);
+      }//end for
+      return large;
+   }//end largeTables
+
+   /*
+    * Returns the parent table of every partition, in lower case.  Empty
+    * when no table is partitioned.
+    */
+   static Map<String, String> partitionParents (AirlineManagement esql) throws SQLException {
+      Map<String, String> parents = new HashMap<String, String>();
+      for (List<String> row : esql.executeQueryAndReturnResult (PARTITIONS_SQL))
+         parents.put (row.get (0).toLowerCase (Locale.ROOT), row.get (1).toLowerCase (Locale.ROOT));
+      return parents;
+   }//end partitionParents
+
+   /*
+    * Returns the lines of the EXPLAIN output for a check.
+    */
+   static List<String> explain (AirlineManagement esql, final Check check) throws SQLException {
+      return esql.withConnection (new AirlineManagement.ConnectionWork<List<String>>() {
+         public List<String> run (PooledConnection conn) throws SQLException {
+            PreparedStatement stmt = conn.getConnection ().prepareStatement ("EXPLAIN " + check.sql);
+            try {
+               AirlineManagement.bind (stmt, check.params);
+               ResultSet rs = stmt.executeQuery ();
+               List<String> plan = new ArrayList<String>();
+               while (rs.next ())
+                  plan.add (rs.getString (1));
+               return plan;
+            }finally {
+               stmt.close ();
+            }//end try
+         }
+      });
+   }//end explain
+
+   /*
+    * Returns the large tables that appear under a "Seq Scan on" node, a
+    * partition standing for its table.
+    */
+   static List<String> seqScans (List<String> plan, List<String> large, Map<String, String> parents) {
+      List<String> scanned = new ArrayList<String>();
+      for (String line : plan) {
+         Matcher m = SCAN.matcher (line);
+         if (!m.find () || !m.group (1).equals ("Seq"))
+            continue;
+         String table = m.group (2).toLowerCase (Locale.ROOT);
+         if (parents.containsKey (table))
+            table = parents.get (table);
+         if (large.contains (table) && !scanned.contains (table))
+            scanned.add (table);
+      }//end for
+      return scanned;
+   }//end seqScans
+
+   /*
+    * Returns the partitions a dated check scans that hold none of its
+    * dates.  Partitions are monthly and named <table>_pYYYY_MM.
+    */
+   static List<String> unprunedPartitions (List<String> plan, Check check, Map<String, String> parents) {
+      List<String> unpruned = new ArrayList<String>();
+      if (check.firstDate == null || parents.isEmpty ())
+         return unpruned;
+      Set<String> months = new HashSet<String>();
+      for (LocalDate month = check.firstDate.withDayOfMonth (1); !month.isAfter (check.lastDate);
+           month = month.plusMonths (1))
+         months.add (month.format (PARTITION_MONTH));
+      for (String line : plan) {
+         Matcher m = SCAN.matcher (line);
+         if (!m.find ())
+            continue;
+         String partition = m.group (2).toLowerCase (Locale.ROOT);
+         String parent = parents.get (partition);
+         if (parent == null || unpruned.contains (partition))
+            continue;
+         if (!partition.startsWith (parent + "_p") ||
+             !months.contains (partition.substring (parent.length () + 2)))
+            unpruned.add (partition);
+      }//end for
+      return unpruned;
+   }//end unprunedPartitions
+
+   private static List<String> firstRow (AirlineManagement esql, String query) throws SQLException {
+      List<List<String>> rows = esql.executeQueryAndReturnResult (query);
+      if (rows.isEmpty ())
+         throw new SQLException ("no sample row for: " + query);
+      return rows.get (0);
+   }//end firstRow
+
+}//end IndexCheck
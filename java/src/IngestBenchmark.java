@@ -0,0 +1,111 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares writing maintenance requests and repairs one autocommit INSERT
+ * at a time, as executeUpdate does, with the batched MaintenanceIngestor.
+ * Half of the records are repairs, which also advance Plane.LastRepairDate.
+ *
+ * The benchmark writes real rows, so run it against a scratch database.
+ *
+ */
+public class IngestBenchmark {
+
+   static final String ROW_REQUEST_SQL =
+      "INSERT INTO MaintenanceRequest (RequestID, PlaneID, RepairCode, RequestDate, PilotID) " +
+      "VALUES (nextval('MaintenanceRequestID_seq'), ?, ?, CAST(? AS DATE), ?)";
+
+   static final String ROW_REPAIR_SQL =
+      "INSERT INTO Repair (RepairID, PlaneID, RepairCode, RepairDate, TechnicianID) " +
+      "VALUES (nextval('RepairID_seq'), ?, ?, CAST(? AS DATE), ?)";
+
+   static final String ROW_LAST_REPAIR_SQL =
+      "UPDATE Plane SET LastRepairDate = GREATEST(LastRepairDate, CAST(? AS DATE)) WHERE PlaneID = ?";
+
+   public static void main (String[] args) {
+      if (args.length < 4) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            IngestBenchmark.class.getName () +
+            " <dbname> <port> <user> <records> [flush size] [flush interval ms]");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      try {
+         int records = Integer.parseInt (args[3]);
+         int flushSize = args.length > 4 ? Integer.parseInt (args[4]) : MaintenanceIngestor.DEFAULT_FLUSH_SIZE;
+         long interval = args.length > 5 ? Long.parseLong (args[5]) : MaintenanceIngestor.DEFAULT_FLUSH_INTERVAL_MILLIS;
+         esql = new AirlineManagement (args[0], args[1], args[2], "");
+         MaintenanceIngestor.Record[] data = records (esql, records);
+
+         long t0 = System.nanoTime ();
+         for (MaintenanceIngestor.Record r : data) {
+            if (r.repair) {
+               // without a transaction, like two executeUpdate calls
+               esql.executeUpdate (ROW_REPAIR_SQL, r.planeID, r.repairCode, r.date, r.personID);
+               esql.executeUpdate (ROW_LAST_REPAIR_SQL, r.date, r.planeID);
+            } else {
+               esql.executeUpdate (ROW_REQUEST_SQL, r.planeID, r.repairCode, r.date, r.personID);
+            }//end if
+         }//end for
+         double rowSeconds = (System.nanoTime () - t0) / 1e9;
+
+         MaintenanceIngestor ingestor = new MaintenanceIngestor (
+            esql, MaintenanceIngestor.DEFAULT_CAPACITY, flushSize, interval);
+         t0 = System.nanoTime ();
+         for (MaintenanceIngestor.Record r : data)
+            ingestor.submit (r);
+         ingestor.close ();
+         double batchSeconds = (System.nanoTime () - t0) / 1e9;
+
+         System.out.println ("Method\tRecords\tSeconds\tRecords/s\tFailed");
+         System.out.println ("row-at-a-time\t" + records + "\t" + rowSeconds + "\t" +
+                             Math.round (records / rowSeconds) + "\t0");
+         System.out.println ("batched\t" + records + "\t" + batchSeconds + "\t" +
+                             Math.round (records / batchSeconds) + "\t" + ingestor.getFailed ());
+         System.out.println ("Speedup " + String.format ("%.1f", rowSeconds / batchSeconds) + "x in " +
+                             ingestor.getBatches () + " batch(es)");
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+   }//end main
+
+   /*
+    * Random records over the existing planes, pilots and technicians.
+    */
+   static MaintenanceIngestor.Record[] records (AirlineManagement esql, int n) throws Exception {
+      List<List<String>> planes = esql.executeQueryAndReturnResult ("SELECT PlaneID FROM Plane");
+      List<List<String>> pilots = esql.executeQueryAndReturnResult ("SELECT PilotID FROM Pilot");
+      List<List<String>> technicians = esql.executeQueryAndReturnResult ("SELECT TechnicianID FROM Technician");
+      if (planes.isEmpty () || pilots.isEmpty () || technicians.isEmpty ())
+         throw new IllegalStateException ("load planes, pilots and technicians first");
+
+      Random rnd = new Random (166);
+      MaintenanceIngestor.Record[] data = new MaintenanceIngestor.Record[n];
+      for (int i = 0; i < n; ++i) {
+         String plane = planes.get (rnd.nextInt (planes.size ())).get (0);
+         String code = String.format ("RC%03d", 1 + rnd.nextInt (10));
+         String date = String.format ("2025-%02d-%02d", 1 + rnd.nextInt (12), 1 + rnd.nextInt (28));
+         data[i] = rnd.nextBoolean ()
+            ? MaintenanceIngestor.Record.repair (plane, code, date, technicians.get (rnd.nextInt (technicians.size ())).get (0))
+            : MaintenanceIngestor.Record.maintenanceRequest (plane, code, date, pilots.get (rnd.nextInt (pilots.size ())).get (0));
+      }//end for
+      return data;
+   }//end records
+
+}//end IngestBenchmark
@@ -0,0 +1,150 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram in the style of HdrHistogram: values are
+ * counted in log-linear buckets, 32 per power of two, so any recorded value
+ * is reported within about 3% while the histogram stays a fixed 16 KB no
+ * matter how many values it holds.  Values are nanoseconds.
+ *
+ */
+public class LatencyHistogram {
+
+   // sub-buckets per power of two, as a power of two.
+   static final int SUB_BITS = 5;
+   static final int SUB_COUNT = 1 << SUB_BITS;
+   static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+   private final AtomicLongArray _counts = new AtomicLongArray (BUCKETS);
+   private final AtomicLong _total = new AtomicLong ();
+   private final AtomicLong _sum = new AtomicLong ();
+   private final AtomicLong _max = new AtomicLong ();
+
+   /**
+    * Records one value.
+    *
+    * @param nanos the latency in nanoseconds; negative values count as 0
+    */
+   public void record (long nanos) {
+      if (nanos < 0)
+         nanos = 0;
+      this._counts.incrementAndGet (index (nanos));
+      this._total.incrementAndGet ();
+      this._sum.addAndGet (nanos);
+      long max;
+      while (nanos > (max = this._max.get ()) && !this._max.compareAndSet (max, nanos))
+         ;
+   }//end record
+
+   /**
+    * @return the number of recorded values
+    */
+   public long count () {
+      return this._total.get ();
+   }//end count
+
+   /**
+    * @return the sum of the recorded values
+    */
+   public long sum () {
+      return this._sum.get ();
+   }//end sum
+
+   /**
+    * @return the mean of the recorded values, 0 when empty
+    */
+   public double mean () {
+      long n = count ();
+      return n == 0 ? 0 : (double) sum () / n;
+   }//end mean
+
+   /**
+    * @return the largest recorded value
+    */
+   public long max () {
+      return this._max.get ();
+   }//end max
+
+   /**
+    * Returns the value at a percentile, as the upper bound of the bucket
+    * holding it.
+    *
+    * @param percentile between 0 and 100
+    * @return the value, 0 when the histogram is empty
+    */
+   public long percentile (double percentile) {
+      long n = count ();
+      if (n == 0)
+         return 0;
+      long rank = Math.max (1, (long) Math.ceil (n * percentile / 100.0));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; ++i) {
+         seen += this._counts.get (i);
+         if (seen >= rank)
+            return Math.min (upperBound (i), max ());
+      }//end for
+      return max ();
+   }//end percentile
+
+   /**
+    * Adds every value of another histogram to this one.
+    *
+    * @param other the histogram to add
+    */
+   public void add (LatencyHistogram other) {
+      for (int i = 0; i < BUCKETS; ++i) {
+         long c = other._counts.get (i);
+         if (c != 0)
+            this._counts.addAndGet (i, c);
+      }//end for
+      this._total.addAndGet (other._total.get ());
+      this._sum.addAndGet (other._sum.get ());
+      long max, omax = other.max ();
+      while (omax > (max = this._max.get ()) && !this._max.compareAndSet (max, omax))
+         ;
+   }//end add
+
+   /**
+    * Counts the recorded values at or below a bound, for cumulative
+    * histogram exports.
+    *
+    * @param bound the upper bound, inclusive
+    * @return the number of values whose bucket lies at or below it
+    */
+   public long countAtOrBelow (long bound) {
+      long seen = 0;
+      for (int i = 0; i < BUCKETS && upperBound (i) <= bound; ++i)
+         seen += this._counts.get (i);
+      return seen;
+   }//end countAtOrBelow
+
+   /*
+    * Values below SUB_COUNT map to themselves; larger values keep their top
+    * SUB_BITS + 1 bits.
+    */
+   static int index (long value) {
+      if (value < SUB_COUNT)
+         return (int) value;
+      int shift = 63 - Long.numberOfLeadingZeros (value) - SUB_BITS;
+      return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+   }//end index
+
+   static long upperBound (int index) {
+      if (index < SUB_COUNT)
+         return index;
+      int shift = index / SUB_COUNT - 1;
+      long base = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+      return base + (1L << shift) - 1;
+   }//end upperBound
+
+}//end LatencyHistogram
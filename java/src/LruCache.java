@@ -0,0 +1,131 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe, size-bounded cache with least-recently-used eviction and a
+ * time to live per entry.  Hits, misses, evictions and invalidations are
+ * counted for monitoring.
+ *
+ */
+public class LruCache<K, V> {
+
+   private static class Entry<V> {
+      final V value;
+      final long expires;
+
+      Entry (V value, long expires) {
+         this.value = value;
+         this.expires = expires;
+      }
+   }//end Entry
+
+   private final String _name;
+   private final int _maxSize;
+   private final long _ttlMillis;
+   private final LinkedHashMap<K, Entry<V>> _map;
+
+   private long _hits = 0;
+   private long _misses = 0;
+   private long _evictions = 0;
+   private long _invalidations = 0;
+
+   /**
+    * @param name the cache name used in statistics
+    * @param maxSize the maximum number of entries
+    * @param ttlMillis how long an entry stays valid after it is stored
+    */
+   public LruCache (String name, int maxSize, long ttlMillis) {
+      this._name = name;
+      this._maxSize = maxSize;
+      this._ttlMillis = ttlMillis;
+      this._map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+   }//end LruCache
+
+   /**
+    * @param key the key to look up
+    * @return the cached value, or null when absent or expired
+    */
+   public synchronized V get (K key) {
+      Entry<V> e = this._map.get (key);
+      if (e != null && e.expires <= System.currentTimeMillis ()) {
+         this._map.remove (key);
+         e = null;
+      }//end if
+      if (e == null) {
+         ++this._misses;
+         return null;
+      }//end if
+      ++this._hits;
+      return e.value;
+   }//end get
+
+   /**
+    * Stores a value, evicting the least recently used entry when full.
+    *
+    * @param key the key
+    * @param value the value; null values are not cached
+    */
+   public synchronized void put (K key, V value) {
+      if (value == null)
+         return;
+      this._map.put (key, new Entry<V>(value, System.currentTimeMillis () + this._ttlMillis));
+      if (this._map.size () > this._maxSize) {
+         Iterator<Map.Entry<K, Entry<V>>> it = this._map.entrySet ().iterator ();
+         it.next ();
+         it.remove ();
+         ++this._evictions;
+      }//end if
+   }//end put
+
+   /**
+    * Drops the entry for a key, if present.
+    *
+    * @param key the key
+    */
+   public synchronized void invalidate (K key) {
+      if (this._map.remove (key) != null)
+         ++this._invalidations;
+   }//end invalidate
+
+   /**
+    * Drops every entry.
+    */
+   public synchronized void invalidateAll () {
+      this._invalidations += this._map.size ();
+      this._map.clear ();
+   }//end invalidateAll
+
+   public synchronized int size () {
+      return this._map.size ();
+   }//end size
+
+   public synchronized long getHits () {
+      return this._hits;
+   }//end getHits
+
+   public synchronized long getMisses () {
+      return this._misses;
+   }//end getMisses
+
+   public String getName () {
+      return this._name;
+   }//end getName
+
+   public synchronized String toString () {
+      return this._name + ": size=" + this._map.size () + " hits=" + this._hits +
+             " misses=" + this._misses + " evictions=" + this._evictions +
+             " invalidations=" + this._invalidations;
+   }//end toString
+
+}//end LruCache
@@ -0,0 +1,411 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batched ingestion of maintenance requests and repairs, which arrive from
+ * line stations in bursts.
+ *
+ * Callers submit records to a bounded queue and return immediately with a
+ * future of the record's outcome; when the queue is full, submit blocks
+ * until the writer catches up.  A writer
+ * thread drains the queue into batches of up to flushSize records, or
+ * whatever arrived within flushIntervalMillis, and writes each batch in one
+ * transaction with multi-row INSERT ... VALUES statements.  The triggers of
+ * create_triggers.sql advance Plane.LastRepairDate once per statement.
+ *
+ * A batch that fails is written again record by record, so one bad record
+ * (e.g. an unknown PlaneID) is counted as failed without losing the rest.
+ * Should the writer stop for any other reason, the records it held or that
+ * are still queued fail, and flush and close no longer wait for it.
+ *
+ */
+public class MaintenanceIngestor {
+
+   /**
+    * A maintenance request or a repair.  Dates are text in any format
+    * PostgreSQL accepts.
+    */
+   public static class Record {
+      final boolean repair;
+      final String planeID;
+      final String repairCode;
+      final String date;
+      // PilotID of a request, TechnicianID of a repair
+      final String personID;
+
+      private Record (boolean repair, String planeID, String repairCode, String date, String personID) {
+         this.repair = repair;
+         this.planeID = planeID;
+         this.repairCode = repairCode;
+         this.date = date;
+         this.personID = personID;
+      }
+
+      public static Record maintenanceRequest (String planeID, String repairCode, String requestDate, String pilotID) {
+         return new Record (false, planeID, repairCode, requestDate, pilotID);
+      }
+
+      public static Record repair (String planeID, String repairCode, String repairDate, String technicianID) {
+         return new Record (true, planeID, repairCode, repairDate, technicianID);
+      }
+   }//end Record
+
+   /*
+    * A queued record and its outcome: true once written, false once failed.
+    */
+   private static class Entry {
+      final Record record;
+      final CompletableFuture<Boolean> result = new CompletableFuture<Boolean>();
+
+      Entry (Record record) {
+         this.record = record;
+      }
+   }//end Entry
+
+   static final int DEFAULT_CAPACITY = 10000;
+   static final int DEFAULT_FLUSH_SIZE = 500;
+   static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+
+   // rows per INSERT; a batch is split greedily into statements of these
+   // sizes, so only a few distinct statements are ever prepared.
+   static final int[] ROWS_PER_STATEMENT = { 64, 16, 4, 1 };
+
+   // how often waits for the writer check that it is still running
+   static final long WRITER_CHECK_MILLIS = 1000;
+
+   // marks the end of the queue.
+   private static final Entry CLOSE = new Entry (null);
+
+   private final AirlineManagement _esql;
+   private final BlockingQueue<Entry> _queue;
+   private final int _flushSize;
+   private final long _flushIntervalMillis;
+   private final Thread _writer;
+   private volatile boolean _closed = false;
+
+   // records submitted but not yet written or failed
+   private long _pending = 0;
+   private final Object _pendingLock = new Object ();
+
+   private final AtomicLong _written = new AtomicLong ();
+   private final AtomicLong _failed = new AtomicLong ();
+   private final AtomicLong _batches = new AtomicLong ();
+
+   /**
+    * Creates an ingestor with the default queue capacity, flush size and
+    * flush interval.
+    *
+    * @param esql the database
+    */
+   public MaintenanceIngestor (AirlineManagement esql) {
+      this (esql, DEFAULT_CAPACITY, DEFAULT_FLUSH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+   }//end MaintenanceIngestor
+
+   /**
+    * Creates an ingestor and starts its writer thread.
+    *
+    * @param esql the database
+    * @param capacity the most records queued before submit blocks
+    * @param flushSize the most records written per transaction
+    * @param flushIntervalMillis how long the writer waits for a batch to
+    *        fill before writing what it has
+    */
+   public MaintenanceIngestor (AirlineManagement esql, int capacity, int flushSize, long flushIntervalMillis) {
+      if (capacity < 1 || flushSize < 1)
+         throw new IllegalArgumentException ("capacity and flush size must be positive");
+      this._esql = esql;
+      this._queue = new ArrayBlockingQueue<Entry>(capacity);
+      this._flushSize = flushSize;
+      this._flushIntervalMillis = flushIntervalMillis;
+      this._writer = new Thread (new Runnable () {
+         public void run () { writeLoop (); }
+      }, "maintenance-ingestor");
+      this._writer.setDaemon (true);
+      this._writer.start ();
+   }//end MaintenanceIngestor
+
+   /**
+    * Queues a record, waiting while the queue is full.
+    *
+    * @param record the record
+    * @return completes with true once the record is written, or false when
+    *         it failed
+    * @throws java.lang.InterruptedException when interrupted while waiting
+    * @throws java.lang.IllegalStateException when the ingestor is closed or
+    *         its writer stopped
+    */
+   public CompletableFuture<Boolean> submit (Record record) throws InterruptedException {
+      if (this._closed || !this._writer.isAlive ())
+         throw new IllegalStateException ("ingestor is closed");
+      Entry entry = new Entry (record);
+      synchronized (this._pendingLock) {
+         ++this._pending;
+      }//end synchronized
+      try {
+         while (!this._queue.offer (entry, WRITER_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!this._writer.isAlive ())
+               throw new IllegalStateException ("ingestor writer stopped");
+         }//end while
+      }catch (InterruptedException e) {
+         done (1);
+         throw e;
+      }catch (IllegalStateException e) {
+         done (1);
+         throw e;
+      }//end try
+      // the writer may have stopped while this waited for room
+      if (!this._writer.isAlive ())
+         drain ();
+      return entry.result;
+   }//end submit
+
+   /**
+    * Waits until every record submitted so far has been written or has
+    * failed.
+    *
+    * @throws java.lang.InterruptedException when interrupted while waiting
+    */
+   public void flush () throws InterruptedException {
+      synchronized (this._pendingLock) {
+         while (this._pending > 0) {
+            if (!this._writer.isAlive ()) {
+               // nothing will write what is left
+               drain ();
+               return;
+            }//end if
+            this._pendingLock.wait (WRITER_CHECK_MILLIS);
+         }//end while
+      }//end synchronized
+   }//end flush
+
+   /**
+    * Writes what is queued and stops the writer.
+    *
+    * @throws java.lang.InterruptedException when interrupted while waiting
+    */
+   public void close () throws InterruptedException {
+      if (this._closed)
+         return;
+      this._closed = true;
+      while (this._writer.isAlive () && !this._queue.offer (CLOSE, WRITER_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+         // the writer is still draining a full queue
+      }//end while
+      this._writer.join ();
+   }//end close
+
+   public long getWritten () {
+      return this._written.get ();
+   }//end getWritten
+
+   public long getFailed () {
+      return this._failed.get ();
+   }//end getFailed
+
+   public long getBatches () {
+      return this._batches.get ();
+   }//end getBatches
+
+   private void done (int records) {
+      synchronized (this._pendingLock) {
+         this._pending -= records;
+         if (this._pending <= 0)
+            this._pendingLock.notifyAll ();
+      }//end synchronized
+   }//end done
+
+   private void writeLoop () {
+      List<Entry> batch = new ArrayList<Entry>(this._flushSize);
+      boolean closing = false;
+      try {
+         while (!closing) {
+            try {
+               Entry first = this._queue.take ();
+               if (first == CLOSE)
+                  break;
+               batch.add (first);
+               long deadline = System.nanoTime () + TimeUnit.MILLISECONDS.toNanos (this._flushIntervalMillis);
+               while (batch.size () < this._flushSize) {
+                  long remaining = deadline - System.nanoTime ();
+                  Entry next = remaining > 0 ? this._queue.poll (remaining, TimeUnit.NANOSECONDS) : this._queue.poll ();
+                  if (next == null)
+                     break;
+                  if (next == CLOSE) {
+                     closing = true;
+                     break;
+                  }//end if
+                  batch.add (next);
+               }//end while
+            }catch (InterruptedException e) {
+               closing = true;
+            }//end try
+            if (!batch.isEmpty ()) {
+               write (batch);
+               done (batch.size ());
+               batch.clear ();
+            }//end if
+         }//end while
+      }finally {
+         // whatever the writer still holds, or is queued, is never written
+         abandon (batch);
+         drain ();
+      }//end try
+   }//end writeLoop
+
+   /*
+    * Fails the queued records, once the writer has stopped.
+    */
+   private void drain () {
+      List<Entry> left = new ArrayList<Entry>();
+      this._queue.drainTo (left);
+      List<Entry> records = new ArrayList<Entry>(left.size ());
+      for (Entry entry : left)
+         if (entry != CLOSE)
+            records.add (entry);
+      abandon (records);
+   }//end drain
+
+   /*
+    * Fails the records of the list that have no outcome yet, and counts
+    * them all as no longer pending.
+    */
+   private void abandon (List<Entry> entries) {
+      if (entries.isEmpty ())
+         return;
+      for (Entry entry : entries)
+         if (!entry.result.isDone ())
+            fail (entry, "the ingestor stopped");
+      done (entries.size ());
+   }//end abandon
+
+   /*
+    * Writes a batch in one transaction, or record by record if that fails.
+    */
+   private void write (List<Entry> batch) {
+      try {
+         writeInTransaction (batch);
+         this._written.addAndGet (batch.size ());
+         this._batches.incrementAndGet ();
+         for (Entry entry : batch)
+            entry.result.complete (Boolean.TRUE);
+         return;
+      }catch (SQLException e) {
+         if (batch.size () == 1) {
+            fail (batch.get (0), e.getMessage ());
+            return;
+         }//end if
+      }//end try
+      for (Entry entry : batch) {
+         List<Entry> one = new ArrayList<Entry>(1);
+         one.add (entry);
+         try {
+            writeInTransaction (one);
+            this._written.incrementAndGet ();
+            entry.result.complete (Boolean.TRUE);
+         }catch (SQLException e) {
+            fail (entry, e.getMessage ());
+         }//end try
+      }//end for
+   }//end write
+
+   private void fail (Entry entry, String reason) {
+      if (!entry.result.complete (Boolean.FALSE))
+         return;
+      this._failed.incrementAndGet ();
+      System.err.println ("Cannot ingest " + (entry.record.repair ? "repair" : "maintenance request") +
+                          " for plane " + entry.record.planeID + ": " + reason);
+   }//end fail
+
+   private void writeInTransaction (final List<Entry> batch) throws SQLException {
+      final List<Record> requests = new ArrayList<Record>();
+      final List<Record> repairs = new ArrayList<Record>();
+      for (Entry entry : batch)
+         (entry.record.repair ? repairs : requests).add (entry.record);
+
+      this._esql.withConnection (new AirlineManagement.ConnectionWork<Void>() {
+         public Void run (PooledConnection conn) throws SQLException {
+            for (int attempt = 1; ; ++attempt) {
+               Connection c = conn.getConnection ();
+               c.setAutoCommit (false);
+               try {
+                  insert (conn, requests, false);
+                  insert (conn, repairs, true);
+                  c.commit ();
+                  return null;
+               }catch (SQLException e) {
+                  c.rollback ();
+                  if (attempt >= BookingEngine.MAX_ATTEMPTS || !BookingEngine.isRetryable (e))
+                     throw e;
+                  BookingEngine.backoff (attempt);
+               }finally {
+                  c.setAutoCommit (true);
+               }//end try
+            }//end for
+         }
+      });
+   }//end writeInTransaction
+
+   /*
+    * Inserts the records with as few statements as ROWS_PER_STATEMENT
+    * allows; statements of the same size go to the server as one JDBC batch.
+    */
+   private static void insert (PooledConnection conn, List<Record> records, boolean repair) throws SQLException {
+      int next = 0;
+      for (int rows : ROWS_PER_STATEMENT) {
+         int statements = (records.size () - next) / rows;
+         if (statements == 0)
+            continue;
+         PreparedStatement stmt = conn.prepare (repair ? repairSql (rows) : requestSql (rows));
+         for (int s = 0; s < statements; ++s) {
+            Object[] params = new Object[rows * 4];
+            for (int r = 0; r < rows; ++r) {
+               Record record = records.get (next++);
+               params[r * 4] = record.planeID;
+               params[r * 4 + 1] = record.repairCode;
+               params[r * 4 + 2] = record.date;
+               params[r * 4 + 3] = record.personID;
+            }//end for
+            AirlineManagement.bind (stmt, params);
+            stmt.addBatch ();
+         }//end for
+         stmt.executeBatch ();
+      }//end for
+   }//end insert
+
+   static String requestSql (int rows) {
+      return "INSERT INTO MaintenanceRequest (RequestID, PlaneID, RepairCode, RequestDate, PilotID) " +
+             "SELECT nextval('MaintenanceRequestID_seq'), v.PlaneID, v.RepairCode, CAST(v.Day AS DATE), v.PersonID " +
+             "FROM (VALUES " + values (rows) + ") AS v (PlaneID, RepairCode, Day, PersonID)";
+   }//end requestSql
+
+   static String repairSql (int rows) {
+      return "INSERT INTO Repair (RepairID, PlaneID, RepairCode, RepairDate, TechnicianID) " +
+             "SELECT nextval('RepairID_seq'), v.PlaneID, v.RepairCode, CAST(v.Day AS DATE), v.PersonID " +
+             "FROM (VALUES " + values (rows) + ") AS v (PlaneID, RepairCode, Day, PersonID)";
+   }//end repairSql
+
+   private static String values (int rows) {
+      StringBuilder sql = new StringBuilder ();
+      for (int r = 0; r < rows; ++r)
+         sql.append (r > 0 ? ", " : "").append ("(?, ?, ?, ?)");
+      return sql.toString ();
+   }//end values
+
+}//end MaintenanceIngestor
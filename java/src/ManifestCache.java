@@ -0,0 +1,467 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of flight manifests (feature5), which gate agents view over and
+ * over for the few flights about to leave.
+ *
+ * A manifest is kept per FlightInstanceID as parallel arrays of passenger
+ * names and statuses, already in feature5's order: reserved, waitlist,
+ * flown, then by last and first name.  Repeated views print the arrays
+ * without going to the database.
+ *
+ * The triggers in sql/src/create_triggers.sql send NOTIFY
+ * reservation_changed with payload "instance:status:reservation" for every
+ * Reservation written and "instance:deleted:reservation" for every
+ * reservation leaving an instance.  A status change of a reservation that is
+ * cached is patched into the manifest in place; any other change drops the
+ * manifest, which is reloaded on the next view.
+ *
+ * Which instances a (FlightNumber, date) pair has is cached as well, and
+ * dropped when instance_changed reports an instance joining or leaving a
+ * cached pair.
+ *
+ */
+public class ManifestCache {
+
+   static final String CHANNEL = "reservation_changed";
+
+   static final int MAX_MANIFESTS = 2000;
+   static final int MAX_LOOKUPS = 10000;
+   static final long TTL_MILLIS = 10 * 60 * 1000;
+
+   // always one row: the normalized date, with the instance IDs or a NULL
+   static final String INSTANCES_SQL =
+      "SELECT to_char(D.Day, 'YYYY-MM-DD'), FI.FlightInstanceID " +
+      "FROM (SELECT CAST(? AS DATE) AS Day) D " +
+      "LEFT JOIN FlightInstance FI ON FI.FlightNumber = ? AND FI.FlightDate = D.Day " +
+      "ORDER BY FI.FlightInstanceID";
+
+   // sorted by name only; the status order is applied here, so a status
+   // patch can re-place a row without comparing names
+   static final String PASSENGERS_SQL =
+      "SELECT R.ReservationID, C.FirstName, C.LastName, R.Status " +
+      "FROM Reservation R " +
+      "JOIN Customer C ON R.CustomerID = C.CustomerID " +
+      "WHERE R.FlightInstanceID = ? " +
+      "ORDER BY C.LastName, C.FirstName";
+
+   // the same on the partitioned schema, where the date picks the partition
+   static final String PARTITIONED_PASSENGERS_SQL =
+      "SELECT R.ReservationID, C.FirstName, C.LastName, R.Status " +
+      "FROM Reservation R " +
+      "JOIN Customer C ON R.CustomerID = C.CustomerID " +
+      "WHERE R.FlightInstanceID = ? AND R.FlightDate = CAST(? AS DATE) " +
+      "ORDER BY C.LastName, C.FirstName";
+
+   // feature5's columns
+   static final String[] COLUMNS = { "firstname", "lastname", "status" };
+
+   // in feature5's order; anything else (i.e. NULL) sorts last
+   static final String[] STATUSES = { "reserved", "waitlist", "flown" };
+
+   /**
+    * The passengers of one flight instance, in feature5's order.  Immutable;
+    * a patch makes a new manifest.
+    */
+   public static class Manifest {
+      final String[] reservationIDs;
+      final String[] firstNames;
+      final String[] lastNames;
+      // index into STATUSES, or STATUSES.length for NULL
+      final byte[] statuses;
+      // position in name order, which breaks ties within a status
+      final int[] nameRanks;
+
+      Manifest (String[] reservationIDs, String[] firstNames, String[] lastNames,
+                byte[] statuses, int[] nameRanks) {
+         this.reservationIDs = reservationIDs;
+         this.firstNames = firstNames;
+         this.lastNames = lastNames;
+         this.statuses = statuses;
+         this.nameRanks = nameRanks;
+      }
+
+      public int size () {
+         return this.reservationIDs.length;
+      }//end size
+
+      /**
+       * Writes the passengers to a printer like feature5, without flushing
+       * it.
+       *
+       * @param printer the destination
+       * @return the number of rows written
+       * @throws java.sql.SQLException when the output cannot be written
+       */
+      public int print (RowPrinter printer) throws SQLException {
+         String[] row = new String[COLUMNS.length];
+         for (int i = 0; i < this.reservationIDs.length; ++i) {
+            row[0] = this.firstNames[i];
+            row[1] = this.lastNames[i];
+            row[2] = status (this.statuses[i]);
+            printer.row (COLUMNS, row);
+         }//end for
+         return this.reservationIDs.length;
+      }//end print
+
+      /**
+       * @return a copy of the rows in feature5's shape
+       */
+      public CachedResult toResult () {
+         String[][] rows = new String[this.reservationIDs.length][];
+         for (int i = 0; i < rows.length; ++i)
+            rows[i] = new String[] { this.firstNames[i], this.lastNames[i], status (this.statuses[i]) };
+         return new CachedResult (COLUMNS, rows);
+      }//end toResult
+
+      int indexOf (String reservationID) {
+         for (int i = 0; i < this.reservationIDs.length; ++i)
+            if (this.reservationIDs[i].equals (reservationID))
+               return i;
+         return -1;
+      }//end indexOf
+
+      /*
+       * A copy with row i given a new status and moved to its place.
+       */
+      Manifest withStatus (int i, byte status) {
+         int n = this.reservationIDs.length;
+         // position of the row among the others, once it has the new status
+         int to = 0;
+         for (int j = 0; j < n; ++j) {
+            if (j != i && before (this.statuses[j], this.nameRanks[j], status, this.nameRanks[i]))
+               ++to;
+         }//end for
+         Manifest m = new Manifest (new String[n], new String[n], new String[n], new byte[n], new int[n]);
+         for (int j = 0, k = 0; j < n; ++j) {
+            if (j == i)
+               continue;
+            if (k == to)
+               ++k;
+            m.copy (k++, this, j);
+         }//end for
+         m.copy (to, this, i);
+         m.statuses[to] = status;
+         return m;
+      }//end withStatus
+
+      private void copy (int to, Manifest from, int i) {
+         this.reservationIDs[to] = from.reservationIDs[i];
+         this.firstNames[to] = from.firstNames[i];
+         this.lastNames[to] = from.lastNames[i];
+         this.statuses[to] = from.statuses[i];
+         this.nameRanks[to] = from.nameRanks[i];
+      }//end copy
+
+      private static boolean before (byte status, int nameRank, byte otherStatus, int otherNameRank) {
+         return status != otherStatus ? status < otherStatus : nameRank < otherNameRank;
+      }//end before
+   }//end Manifest
+
+   /*
+    * The instances of a (FlightNumber, date) pair.
+    */
+   private static class Lookup {
+      final String flightDate;
+      final int[] instanceIDs;
+
+      Lookup (String flightDate, int[] instanceIDs) {
+         this.flightDate = flightDate;
+         this.instanceIDs = instanceIDs;
+      }
+   }//end Lookup
+
+   private final AirlineManagement _esql;
+
+   private final LruCache<Integer, Manifest> _manifests =
+      new LruCache<Integer, Manifest>("manifest", MAX_MANIFESTS, TTL_MILLIS);
+   private final LruCache<String, Lookup> _lookups =
+      new LruCache<String, Lookup>("manifestLookup", MAX_LOOKUPS, TTL_MILLIS);
+
+   // instance IDs by "flight|date" of the cached lookups; an instance
+   // joining or leaving one of them drops the lookups.
+   private final Map<String, int[]> _lookedUp = new HashMap<String, int[]>();
+   // bumped whenever the lookups are dropped
+   private final AtomicLong _lookupGeneration = new AtomicLong ();
+
+   // manifests being loaded: {loads in flight, changed meanwhile}.  A load
+   // is only stored if its instance did not change while it ran.
+   private final Map<Integer, int[]> _loading = new HashMap<Integer, int[]>();
+
+   /**
+    * Creates the cache and subscribes it to reservation and instance
+    * changes.
+    *
+    * @param esql the database
+    * @param listener the listener delivering reservation_changed and
+    *        instance_changed events
+    */
+   public ManifestCache (AirlineManagement esql, NotificationListener listener) {
+      this._esql = esql;
+      listener.listen (CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            reservationChanged (payload);
+         }
+      });
+      listener.listen (FlightSearch.CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            instanceChanged (payload);
+         }
+      });
+   }//end ManifestCache
+
+   /**
+    * Returns the passengers of a flight on a date, as feature5 prints them.
+    * A flight with several instances on the date is read from the database
+    * every time, since its passengers are sorted together.
+    *
+    * @param flightNumber the flight
+    * @param date the flight date
+    * @return the manifest
+    * @throws java.sql.SQLException when the manifest cannot be read
+    */
+   public Manifest manifest (String flightNumber, String date) throws SQLException {
+      int[] ids = instances (flightNumber, date);
+      if (ids.length == 0)
+         return new Manifest (new String[0], new String[0], new String[0], new byte[0], new int[0]);
+      if (ids.length > 1)
+         return load (this._esql.flightManifestSql (), false, flightNumber, date);
+
+      Integer id = Integer.valueOf (ids[0]);
+      Manifest m = this._manifests.get (id);
+      if (m != null)
+         return m;
+      startLoad (id);
+      boolean loaded = false;
+      try {
+         m = this._esql.isPartitioned () ? load (PARTITIONED_PASSENGERS_SQL, true, id, date)
+                                         : load (PASSENGERS_SQL, true, id);
+         loaded = true;
+      }finally {
+         finishLoad (id, loaded ? m : null);
+      }//end try
+      return m;
+   }//end manifest
+
+   /**
+    * Drops every manifest and lookup.
+    */
+   public synchronized void invalidateAll () {
+      for (int[] state : this._loading.values ())
+         state[1] = 1;
+      this._manifests.invalidateAll ();
+      dropLookups ();
+   }//end invalidateAll
+
+   /**
+    * @return one line of hit/miss statistics per cache
+    */
+   public String stats () {
+      return this._manifests + "\n" + this._lookups;
+   }//end stats
+
+   private int[] instances (String flightNumber, String date) throws SQLException {
+      String key = flightNumber + "\u0000" + date;
+      Lookup lookup = this._lookups.get (key);
+      if (lookup != null)
+         return lookup.instanceIDs;
+
+      long generation = this._lookupGeneration.get ();
+      List<List<String>> rows = this._esql.executeQueryAndReturnResult (INSTANCES_SQL, date, flightNumber);
+      int[] ids = new int[rows.get (0).get (1) == null ? 0 : rows.size ()];
+      for (int i = 0; i < ids.length; ++i)
+         ids[i] = Integer.parseInt (rows.get (i).get (1));
+      lookup = new Lookup (flightDate (flightNumber, rows.get (0).get (0)), ids);
+      synchronized (this) {
+         // evicted lookups leave their IDs behind; start over now and then
+         if (this._lookedUp.size () >= MAX_LOOKUPS)
+            dropLookups ();
+         else if (generation == this._lookupGeneration.get ()) {
+            this._lookups.put (key, lookup);
+            this._lookedUp.put (lookup.flightDate, ids);
+         }//end if
+      }//end synchronized
+      return ids;
+   }//end instances
+
+   /*
+    * Reads a manifest.  The rows come sorted by name, or fully sorted when
+    * byName is false; they are stably sorted by status here.
+    */
+   private Manifest load (String sql, final boolean byName, Object... params) throws SQLException {
+      final List<String[]> rows = new ArrayList<String[]>();
+      this._esql.executeQueryStreaming (sql, new RowHandler () {
+         public void start (ResultSetMetaData rsmd) {
+         }
+         public void row (ResultSet rs) throws SQLException {
+            // feature5's query has no ReservationID; its rows are never patched
+            String[] row = byName
+               ? new String[] { rs.getString (1), rs.getString (2), rs.getString (3), rs.getString (4) }
+               : new String[] { "", rs.getString (1), rs.getString (2), rs.getString (3) };
+            Metrics.fetched ((row[1] == null ? 0 : Metrics.utf8Length (row[1])) +
+                             (row[2] == null ? 0 : Metrics.utf8Length (row[2])));
+            rows.add (row);
+         }
+      }, params);
+
+      int n = rows.size ();
+      Manifest m = new Manifest (new String[n], new String[n], new String[n], new byte[n], new int[n]);
+      // counting sort by status keeps name order within a status
+      int[] start = new int[STATUSES.length + 2];
+      byte[] codes = new byte[n];
+      for (int i = 0; i < n; ++i) {
+         codes[i] = code (rows.get (i)[3]);
+         ++start[codes[i] + 1];
+      }//end for
+      for (int s = 1; s < start.length; ++s)
+         start[s] += start[s - 1];
+      for (int i = 0; i < n; ++i) {
+         String[] row = rows.get (i);
+         int to = start[codes[i]]++;
+         m.reservationIDs[to] = row[0];
+         m.firstNames[to] = row[1];
+         m.lastNames[to] = row[2];
+         m.statuses[to] = codes[i];
+         m.nameRanks[to] = i;
+      }//end for
+      return m;
+   }//end load
+
+   private synchronized void startLoad (Integer id) {
+      int[] state = this._loading.get (id);
+      if (state == null)
+         this._loading.put (id, state = new int[2]);
+      ++state[0];
+   }//end startLoad
+
+   private synchronized void finishLoad (Integer id, Manifest m) {
+      int[] state = this._loading.get (id);
+      if (m != null && state[1] == 0)
+         this._manifests.put (id, m);
+      if (--state[0] == 0)
+         this._loading.remove (id);
+   }//end finishLoad
+
+   /**
+    * Applies a reservation_changed payload.  A null or empty payload drops
+    * every manifest.
+    *
+    * @param payload "instance:status:reservation", where status is
+    *        "deleted" for a reservation that left the instance, or null
+    */
+   synchronized void reservationChanged (String payload) {
+      int first = payload == null ? -1 : payload.indexOf (':');
+      int second = first < 0 ? -1 : payload.indexOf (':', first + 1);
+      if (second < 0) {
+         invalidateAll ();
+         return;
+      }//end if
+      Integer id;
+      try {
+         id = Integer.valueOf (payload.substring (0, first));
+      }catch (NumberFormatException e) {
+         invalidateAll ();
+         return;
+      }//end try
+      String status = payload.substring (first + 1, second);
+      String reservationID = payload.substring (second + 1);
+
+      int[] state = this._loading.get (id);
+      if (state != null)
+         state[1] = 1;
+      Manifest m = this._manifests.get (id);
+      if (m == null)
+         return;
+      int i = m.indexOf (reservationID);
+      if (i < 0 || status.equals ("deleted")) {
+         // a new passenger needs names the payload does not carry
+         this._manifests.invalidate (id);
+         return;
+      }//end if
+      byte code = code (status.isEmpty () ? null : status);
+      if (code != m.statuses[i])
+         this._manifests.put (id, m.withStatus (i, code));
+   }//end reservationChanged
+
+   /*
+    * Applies an instance_changed payload: "id:date:seats:cents:flight" for
+    * an instance written, "id:date" for one that left the date, empty or
+    * null for every instance.  Drops the lookups when an instance joins or
+    * leaves a cached (flight, date) pair.
+    */
+   synchronized void instanceChanged (String payload) {
+      if (payload == null || payload.isEmpty ()) {
+         dropLookups ();
+         return;
+      }//end if
+      String[] fields = payload.split (":", 5);
+      int id;
+      try {
+         id = Integer.parseInt (fields[0]);
+      }catch (NumberFormatException e) {
+         dropLookups ();
+         return;
+      }//end try
+      if (fields.length < 5) {
+         // left its date: drop if a cached pair had it
+         for (int[] ids : this._lookedUp.values ()) {
+            if (contains (ids, id)) {
+               dropLookups ();
+               return;
+            }//end if
+         }//end for
+      } else {
+         // written: drop if it joined a cached pair; seat and fare updates
+         // of instances already in the pair keep the lookups
+         int[] ids = this._lookedUp.get (flightDate (fields[4], fields[1]));
+         if (ids != null && !contains (ids, id))
+            dropLookups ();
+      }//end if
+   }//end instanceChanged
+
+   private static boolean contains (int[] ids, int id) {
+      for (int i : ids)
+         if (i == id)
+            return true;
+      return false;
+   }//end contains
+
+   private void dropLookups () {
+      this._lookupGeneration.incrementAndGet ();
+      this._lookups.invalidateAll ();
+      this._lookedUp.clear ();
+   }//end dropLookups
+
+   private static String flightDate (String flightNumber, String isoDate) {
+      return flightNumber + "|" + isoDate;
+   }//end flightDate
+
+   static byte code (String status) {
+      for (int s = 0; s < STATUSES.length; ++s)
+         if (STATUSES[s].equals (status))
+            return (byte) s;
+      return (byte) STATUSES.length;
+   }//end code
+
+   static String status (byte code) {
+      return code < STATUSES.length ? STATUSES[code] : null;
+   }//end status
+
+}//end ManifestCache
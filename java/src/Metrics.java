@@ -0,0 +1,457 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Latency and volume metrics of the query layer: a latency histogram, row
+ * count, bytes fetched and error count for every distinct statement and for
+ * every feature, plus the connection pool's wait times and the hits and
+ * misses of the caches registered with it.
+ *
+ * Statements slower than the slow query threshold are logged to standard
+ * error, with the number of their parameters but not the values.  The
+ * metrics are rendered in the Prometheus text format, and can be served
+ * over HTTP and/or written to a file periodically.  All of it is
+ * configured with system properties:
+ *
+ *    airline.slowQueryMillis      slow query threshold, default 1000; -1 disables
+ *    airline.metrics.port         serve GET /metrics on this port
+ *    airline.metrics.file         rewrite this file every interval
+ *    airline.metrics.intervalSeconds   file dump interval, default 60
+ *
+ */
+public class Metrics {
+
+   static final long DEFAULT_SLOW_QUERY_MILLIS = 1000;
+   static final long DEFAULT_DUMP_INTERVAL_SECONDS = 60;
+
+   // upper bounds of the exported histogram buckets, in seconds.
+   static final double[] BUCKETS = {
+      0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+   };
+
+   // longest statement text used as a label, hash included.
+   static final int MAX_LABEL_LENGTH = 100;
+
+   /**
+    * Latency, rows, bytes and errors of one statement or feature.
+    */
+   static class Series {
+      final LatencyHistogram latency = new LatencyHistogram ();
+      final AtomicLong rows = new AtomicLong ();
+      final AtomicLong bytes = new AtomicLong ();
+      final AtomicLong errors = new AtomicLong ();
+   }//end Series
+
+   // bytes fetched by the statement running on this thread; the result
+   // readers add to it as they copy values out of a ResultSet.
+   private static final ThreadLocal<long[]> FETCHED = new ThreadLocal<long[]>() {
+      protected long[] initialValue () {
+         return new long[1];
+      }
+   };
+
+   private final ConnectionPool _pool;
+   private final long _slowQueryNanos;
+   private final Map<String, Series> _statements = new ConcurrentHashMap<String, Series>();
+   private final Map<String, Series> _features = new ConcurrentHashMap<String, Series>();
+   // statement label and SQLSTATE -> errors
+   private final Map<String, AtomicLong> _errorStates = new ConcurrentHashMap<String, AtomicLong>();
+   // SQL text -> label, so labels are computed once per statement
+   private final Map<String, String> _labels = new ConcurrentHashMap<String, String>();
+   // caches whose hits and misses are exported
+   private final List<LruCache<?, ?>> _caches = new CopyOnWriteArrayList<LruCache<?, ?>>();
+
+   private HttpServer _server = null;
+   private Thread _dumper = null;
+
+   /**
+    * @param pool the pool whose wait times are exported
+    * @param slowQueryMillis statements taking longer are logged; negative
+    *        disables the log
+    */
+   public Metrics (ConnectionPool pool, long slowQueryMillis) {
+      this._pool = pool;
+      this._slowQueryNanos = slowQueryMillis < 0 ? Long.MAX_VALUE : slowQueryMillis * 1000000L;
+   }//end Metrics
+
+   /**
+    * Creates the metrics configured by the airline.* system properties and
+    * starts their exporters.  A port that cannot be bound is reported and
+    * otherwise ignored.
+    *
+    * @param pool the pool whose wait times are exported
+    * @return the metrics
+    */
+   public static Metrics fromSystemProperties (ConnectionPool pool) {
+      Metrics metrics = new Metrics (pool, Long.getLong ("airline.slowQueryMillis", DEFAULT_SLOW_QUERY_MILLIS));
+      Integer port = Integer.getInteger ("airline.metrics.port");
+      if (port != null) {
+         try {
+            metrics.serve (port);
+         }catch (IOException e) {
+            System.err.println ("Cannot serve metrics on port " + port + ": " + e.getMessage ());
+         }//end try
+      }//end if
+      String file = System.getProperty ("airline.metrics.file");
+      if (file != null)
+         metrics.dumpEvery (new File (file),
+                            Long.getLong ("airline.metrics.intervalSeconds", DEFAULT_DUMP_INTERVAL_SECONDS));
+      return metrics;
+   }//end fromSystemProperties
+
+   /**
+    * Clears the fetched byte count of the calling thread, before a statement
+    * runs.
+    */
+   static void startFetch () {
+      FETCHED.get ()[0] = 0;
+   }//end startFetch
+
+   /**
+    * Counts bytes copied out of a result by the calling thread.
+    *
+    * @param bytes the number of bytes fetched
+    */
+   static void fetched (long bytes) {
+      FETCHED.get ()[0] += bytes;
+   }//end fetched
+
+   /**
+    * @param value a text value
+    * @return the length of its UTF-8 encoding, as the driver received it,
+    *         counted without encoding it
+    */
+   static long utf8Length (String value) {
+      long n = value.length ();
+      for (int i = 0; i < value.length (); ++i) {
+         char c = value.charAt (i);
+         // 2 bytes up to U+07FF, 3 up to U+FFFF, 4 for a surrogate pair
+         if (c >= 0x800)
+            n += Character.isSurrogate (c) ? 1 : 2;
+         else if (c >= 0x80)
+            n += 1;
+      }//end for
+      return n;
+   }//end utf8Length
+
+   /**
+    * @return the bytes fetched by the calling thread since startFetch
+    */
+   static long fetchedSinceStart () {
+      return FETCHED.get ()[0];
+   }//end fetchedSinceStart
+
+   /**
+    * Records a statement that completed.
+    *
+    * @param sql the SQL text
+    * @param params the parameter values; only their number is logged, as
+    *        they may be passwords or password hashes
+    * @param nanos how long the statement took
+    * @param rows rows returned or updated
+    * @param bytes bytes fetched
+    */
+   public void statement (String sql, Object[] params, long nanos, long rows, long bytes) {
+      String label = label (sql);
+      Series s = series (this._statements, label);
+      s.latency.record (nanos);
+      s.rows.addAndGet (rows);
+      s.bytes.addAndGet (bytes);
+      if (nanos > this._slowQueryNanos)
+         System.err.println ("slow query: " + nanos / 1000000 + " ms, " + rows + " row(s): " +
+                             label + (params == null ? "" : " [" + params.length + " parameter(s)]"));
+   }//end statement
+
+   /**
+    * Records a statement that failed.
+    *
+    * @param sql the SQL text
+    * @param e the failure
+    */
+   public void statementFailed (String sql, SQLException e) {
+      String label = label (sql);
+      series (this._statements, label).errors.incrementAndGet ();
+      String key = label + "\u0000" + (e.getSQLState () == null ? "" : e.getSQLState ());
+      AtomicLong count = this._errorStates.get (key);
+      if (count == null) {
+         this._errorStates.putIfAbsent (key, new AtomicLong ());
+         count = this._errorStates.get (key);
+      }//end if
+      count.incrementAndGet ();
+   }//end statementFailed
+
+   /**
+    * Records a feature call that completed.
+    *
+    * @param feature the feature name, e.g. feature5
+    * @param nanos how long the call took
+    * @param rows rows it returned
+    */
+   public void feature (String feature, long nanos, long rows) {
+      Series s = series (this._features, feature);
+      s.latency.record (nanos);
+      s.rows.addAndGet (rows);
+   }//end feature
+
+   /**
+    * Records a feature call that failed.
+    *
+    * @param feature the feature name
+    */
+   public void featureFailed (String feature) {
+      series (this._features, feature).errors.incrementAndGet ();
+   }//end featureFailed
+
+   private static Series series (Map<String, Series> map, String key) {
+      Series s = map.get (key);
+      if (s == null) {
+         map.putIfAbsent (key, new Series ());
+         s = map.get (key);
+      }//end if
+      return s;
+   }//end series
+
+   /*
+    * The SQL text with whitespace collapsed.  Longer texts are cut to
+    * MAX_LABEL_LENGTH and end with a hash of the whole text, so statements
+    * that only differ after the cut remain separate series.
+    */
+   private String label (String sql) {
+      String label = this._labels.get (sql);
+      if (label == null) {
+         label = sql.trim ().replaceAll ("\\s+", " ");
+         if (label.length () > MAX_LABEL_LENGTH) {
+            String hash = String.format ("%08x", label.hashCode ());
+            label = label.substring (0, MAX_LABEL_LENGTH - hash.length () - 5) + "... #" + hash;
+         }//end if
+         this._labels.put (sql, label);
+      }//end if
+      return label;
+   }//end label
+
+   /**
+    * Exports the hits and misses of a cache, labelled with its name.
+    *
+    * @param cache the cache
+    */
+   public void cache (LruCache<?, ?> cache) {
+      this._caches.add (cache);
+   }//end cache
+
+   /**
+    * Renders every metric in the Prometheus text exposition format.
+    *
+    * @return the metrics text
+    */
+   public String prometheus () {
+      StringBuilder out = new StringBuilder ();
+      family (out, "airline_statement", "statement", this._statements);
+      family (out, "airline_feature", "feature", this._features);
+
+      out.append ("# HELP airline_statement_errors_by_state_total Failed statements by SQLSTATE.\n");
+      out.append ("# TYPE airline_statement_errors_by_state_total counter\n");
+      for (Map.Entry<String, AtomicLong> e : new TreeMap<String, AtomicLong>(this._errorStates).entrySet ()) {
+         int sep = e.getKey ().indexOf ('\u0000');
+         out.append ("airline_statement_errors_by_state_total{statement=\"")
+            .append (escape (e.getKey ().substring (0, sep))).append ("\",sqlstate=\"")
+            .append (escape (e.getKey ().substring (sep + 1))).append ("\"} ")
+            .append (e.getValue ().get ()).append ('\n');
+      }//end for
+
+      if (this._pool != null) {
+         out.append ("# HELP airline_pool_wait_seconds Time to borrow a pooled connection.\n");
+         out.append ("# TYPE airline_pool_wait_seconds histogram\n");
+         histogram (out, "airline_pool_wait_seconds", "", this._pool.getWaitTimes ());
+         out.append ("# TYPE airline_pool_open_connections gauge\n");
+         out.append ("airline_pool_open_connections ").append (this._pool.getOpenCount ()).append ('\n');
+         out.append ("# TYPE airline_pool_idle_connections gauge\n");
+         out.append ("airline_pool_idle_connections ").append (this._pool.getIdleCount ()).append ('\n');
+      }//end if
+
+      if (!this._caches.isEmpty ()) {
+         out.append ("# HELP airline_cache_hits_total Lookups answered by a cache.\n");
+         out.append ("# TYPE airline_cache_hits_total counter\n");
+         for (LruCache<?, ?> c : this._caches)
+            out.append ("airline_cache_hits_total{cache=\"").append (escape (c.getName ())).append ("\"} ")
+               .append (c.getHits ()).append ('\n');
+         out.append ("# HELP airline_cache_misses_total Lookups a cache could not answer.\n");
+         out.append ("# TYPE airline_cache_misses_total counter\n");
+         for (LruCache<?, ?> c : this._caches)
+            out.append ("airline_cache_misses_total{cache=\"").append (escape (c.getName ())).append ("\"} ")
+               .append (c.getMisses ()).append ('\n');
+      }//end if
+      return out.toString ();
+   }//end prometheus
+
+   private static void family (StringBuilder out, String prefix, String labelName, Map<String, Series> map) {
+      Map<String, Series> sorted = new TreeMap<String, Series>(map);
+      out.append ("# HELP ").append (prefix).append ("_seconds Latency by ").append (labelName).append (".\n");
+      out.append ("# TYPE ").append (prefix).append ("_seconds histogram\n");
+      for (Map.Entry<String, Series> e : sorted.entrySet ())
+         histogram (out, prefix + "_seconds", labelName + "=\"" + escape (e.getKey ()) + "\"", e.getValue ().latency);
+
+      out.append ("# TYPE ").append (prefix).append ("_quantile_seconds gauge\n");
+      for (Map.Entry<String, Series> e : sorted.entrySet ()) {
+         String labels = labelName + "=\"" + escape (e.getKey ()) + "\"";
+         LatencyHistogram h = e.getValue ().latency;
+         quantile (out, prefix, labels, "0.5", h.percentile (50));
+         quantile (out, prefix, labels, "0.99", h.percentile (99));
+         quantile (out, prefix, labels, "0.999", h.percentile (99.9));
+      }//end for
+
+      counters (out, prefix + "_rows_total", labelName, sorted, 0);
+      counters (out, prefix + "_fetched_bytes_total", labelName, sorted, 1);
+      counters (out, prefix + "_errors_total", labelName, sorted, 2);
+   }//end family
+
+   private static void quantile (StringBuilder out, String prefix, String labels, String q, long nanos) {
+      out.append (prefix).append ("_quantile_seconds{").append (labels).append (",quantile=\"")
+         .append (q).append ("\"} ").append (nanos / 1e9).append ('\n');
+   }//end quantile
+
+   private static void counters (StringBuilder out, String name, String labelName,
+                                 Map<String, Series> sorted, int which) {
+      out.append ("# TYPE ").append (name).append (" counter\n");
+      for (Map.Entry<String, Series> e : sorted.entrySet ()) {
+         Series s = e.getValue ();
+         long value = which == 0 ? s.rows.get () : which == 1 ? s.bytes.get () : s.errors.get ();
+         out.append (name).append ('{').append (labelName).append ("=\"").append (escape (e.getKey ()))
+            .append ("\"} ").append (value).append ('\n');
+      }//end for
+   }//end counters
+
+   private static void histogram (StringBuilder out, String name, String labels, LatencyHistogram h) {
+      String sep = labels.isEmpty () ? "" : labels + ",";
+      for (double bound : BUCKETS)
+         out.append (name).append ("_bucket{").append (sep).append ("le=\"").append (bound).append ("\"} ")
+            .append (h.countAtOrBelow ((long) (bound * 1e9))).append ('\n');
+      out.append (name).append ("_bucket{").append (sep).append ("le=\"+Inf\"} ").append (h.count ()).append ('\n');
+      String braces = labels.isEmpty () ? "" : "{" + labels + "}";
+      out.append (name).append ("_sum").append (braces).append (' ').append (h.sum () / 1e9).append ('\n');
+      out.append (name).append ("_count").append (braces).append (' ').append (h.count ()).append ('\n');
+   }//end histogram
+
+   static String escape (String value) {
+      return value.replace ("\\", "\\\\").replace ("\"", "\\\"").replace ("\n", "\\n");
+   }//end escape
+
+   /**
+    * Serves the metrics at http://localhost:port/metrics, on the loopback
+    * interface only.
+    *
+    * @param port the port to listen on
+    * @throws java.io.IOException when the port cannot be bound
+    */
+   public synchronized void serve (int port) throws IOException {
+      this._server = HttpServer.create (new InetSocketAddress (InetAddress.getLoopbackAddress (), port), 0);
+      this._server.createContext ("/metrics", new HttpHandler () {
+         public void handle (HttpExchange exchange) throws IOException {
+            byte[] body = prometheus ().getBytes (StandardCharsets.UTF_8);
+            exchange.getResponseHeaders ().set ("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders (200, body.length);
+            OutputStream out = exchange.getResponseBody ();
+            try {
+               out.write (body);
+            }finally {
+               out.close ();
+            }//end try
+         }
+      });
+      this._server.start ();
+   }//end serve
+
+   /**
+    * Rewrites a file with the metrics every interval, on a daemon thread.
+    * The file is replaced atomically, so readers never see half of it.
+    *
+    * @param file the destination
+    * @param seconds the interval
+    */
+   public synchronized void dumpEvery (final File file, final long seconds) {
+      this._dumper = new Thread (new Runnable () {
+         public void run () {
+            while (true) {
+               try {
+                  Thread.sleep (seconds * 1000);
+               }catch (InterruptedException e) {
+                  break;
+               }//end try
+               dump (file);
+            }//end while
+            dump (file);
+         }
+      }, "metrics-dump");
+      this._dumper.setDaemon (true);
+      this._dumper.start ();
+   }//end dumpEvery
+
+   /**
+    * Writes the metrics to a file.
+    *
+    * @param file the destination
+    */
+   public void dump (File file) {
+      File tmp = new File (file.getPath () + ".tmp");
+      try {
+         Writer out = new OutputStreamWriter (new FileOutputStream (tmp), StandardCharsets.UTF_8);
+         try {
+            out.write (prometheus ());
+         }finally {
+            out.close ();
+         }//end try
+         if (!tmp.renameTo (file))
+            throw new IOException ("cannot rename " + tmp + " to " + file);
+      }catch (IOException e) {
+         System.err.println ("Cannot write metrics: " + e.getMessage ());
+      }//end try
+   }//end dump
+
+   /**
+    * Stops the HTTP endpoint and the file dump, writing the file one last
+    * time.
+    */
+   public synchronized void close () {
+      if (this._server != null) {
+         this._server.stop (0);
+         this._server = null;
+      }//end if
+      if (this._dumper != null) {
+         this._dumper.interrupt ();
+         try {
+            this._dumper.join (5000);
+         }catch (InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+         }//end try
+         this._dumper = null;
+      }//end if
+   }//end close
+
+}//end Metrics
@@ -0,0 +1,216 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Receives PostgreSQL NOTIFY events on a dedicated pooled connection and
+ * dispatches them to the handlers registered for each channel.  Registering
+ * a channel returns once LISTEN is active on it, so a cache subscribed
+ * before its first load misses no change made after that load started.
+ *
+ * If the connection is lost, the listener reconnects, issues LISTEN again
+ * and calls every handler with a null payload, because notifications sent
+ * in between are lost.  Handlers treat a null payload as "anything on this
+ * channel may have changed".
+ *
+ */
+public class NotificationListener {
+
+   /**
+    * Receives the notifications of one channel.  Handlers run on the
+    * listener thread and should return quickly.
+    */
+   public interface Handler {
+      /**
+       * @param channel the channel the notification was sent on
+       * @param payload the payload, or null when it is unknown
+       */
+      void notified (String channel, String payload);
+   }//end Handler
+
+   // how long one poll waits for notifications.
+   static final int POLL_MILLIS = 20;
+
+   // delay before reconnecting after the connection failed.
+   static final long RETRY_MILLIS = 1000;
+
+   private final ConnectionPool _pool;
+   private final ConcurrentHashMap<String, List<Handler>> _handlers =
+      new ConcurrentHashMap<String, List<Handler>>();
+   // channels registered but not yet LISTENed on the current connection.
+   private final CopyOnWriteArrayList<String> _pending = new CopyOnWriteArrayList<String>();
+   private final Thread _thread;
+   private volatile boolean _closed = false;
+
+   /**
+    * Creates a listener and starts its thread.  The thread holds one
+    * connection of the pool for as long as the listener runs.
+    *
+    * @param pool the pool to take the listening connection from
+    */
+   public NotificationListener (ConnectionPool pool) {
+      this._pool = pool;
+      this._thread = new Thread (new Runnable () {
+         public void run () { loop (); }
+      }, "notification-listener");
+      this._thread.setDaemon (true);
+      this._thread.start ();
+   }//end NotificationListener
+
+   /**
+    * Registers a handler for a channel and starts listening on it, waiting
+    * until LISTEN has been issued.
+    *
+    * @param channel the channel name
+    * @param handler the handler to call for every notification
+    */
+   public void listen (String channel, Handler handler) {
+      List<Handler> list = this._handlers.get (channel);
+      if (list == null) {
+         list = new CopyOnWriteArrayList<Handler>();
+         List<Handler> prev = this._handlers.putIfAbsent (channel, list);
+         if (prev != null)
+            list = prev;
+         else
+            this._pending.addIfAbsent (channel);
+      }//end if
+      list.add (handler);
+      awaitSubscribed (channel);
+   }//end listen
+
+   /*
+    * Waits until the listener thread issued LISTEN for the channel, or
+    * stopped.  Handlers registering from the listener thread do not wait.
+    */
+   private void awaitSubscribed (String channel) {
+      if (Thread.currentThread () == this._thread)
+         return;
+      boolean interrupted = false;
+      synchronized (this) {
+         while (this._pending.contains (channel) && !this._closed && this._thread.isAlive ()) {
+            try {
+               wait (RETRY_MILLIS);
+            }catch (InterruptedException e) {
+               interrupted = true;
+               break;
+            }//end try
+         }//end while
+      }//end synchronized
+      if (interrupted)
+         Thread.currentThread ().interrupt ();
+   }//end awaitSubscribed
+
+   /**
+    * Stops the listener thread and returns its connection to the pool.
+    */
+   public void close () {
+      this._closed = true;
+      this._thread.interrupt ();
+      try {
+         this._thread.join (RETRY_MILLIS);
+      }catch (InterruptedException e) {
+         Thread.currentThread ().interrupt ();
+      }//end try
+   }//end close
+
+   private void loop () {
+      PooledConnection conn = null;
+      boolean resync = false;
+      while (!this._closed) {
+         try {
+            if (conn == null) {
+               conn = this._pool.borrow ();
+               this._pending.addAllAbsent (this._handlers.keySet ());
+               subscribe (conn);
+               // notifications sent while nothing listened are lost; tell
+               // the handlers once LISTEN is active again
+               if (resync)
+                  dispatchAll ();
+               resync = true;
+            }//end if
+            subscribe (conn);
+            for (PGNotification n : poll (conn))
+               dispatch (n.getName (), n.getParameter ());
+         }catch (Exception e) {
+            if (this._closed)
+               break;
+            if (conn != null) {
+               conn.broken = true;
+               this._pool.release (conn);
+               conn = null;
+            }//end if
+            System.err.println ("Notification listener: " + e.getMessage ());
+            try {
+               Thread.sleep (RETRY_MILLIS);
+            }catch (InterruptedException ie) {
+               break;
+            }//end try
+         }//end try
+      }//end while
+      if (conn != null)
+         this._pool.release (conn);
+   }//end loop
+
+   /*
+    * Issues LISTEN for every channel registered since the last call.
+    */
+   private void subscribe (PooledConnection conn) throws SQLException {
+      if (this._pending.isEmpty ())
+         return;
+      Statement stmt = conn.getConnection ().createStatement ();
+      try {
+         for (String channel : this._pending) {
+            stmt.execute ("LISTEN " + channel);
+            this._pending.remove (channel);
+         }//end for
+      }finally {
+         stmt.close ();
+      }//end try
+      synchronized (this) {
+         notifyAll ();
+      }//end synchronized
+   }//end subscribe
+
+   /*
+    * Waits up to POLL_MILLIS for notifications.
+    */
+   private PGNotification[] poll (PooledConnection conn) throws SQLException {
+      PGConnection pg = conn.getConnection ().unwrap (PGConnection.class);
+      PGNotification[] found = pg.getNotifications (POLL_MILLIS);
+      return found == null ? new PGNotification[0] : found;
+   }//end poll
+
+   private void dispatch (String channel, String payload) {
+      List<Handler> list = this._handlers.get (channel);
+      if (list == null)
+         return;
+      for (Handler h : list) {
+         try {
+            h.notified (channel, payload);
+         }catch (RuntimeException e) {
+            System.err.println ("Notification handler for " + channel + " failed: " + e);
+         }//end try
+      }//end for
+   }//end dispatch
+
+   private void dispatchAll () {
+      for (String channel : this._handlers.keySet ())
+         dispatch (channel, null);
+   }//end dispatchAll
+
+}//end NotificationListener
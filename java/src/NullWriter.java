@@ -0,0 +1,32 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.Writer;
+
+/**
+ * Writer that discards its output, so printing can be measured or driven
+ * without a terminal.
+ *
+ */
+public class NullWriter extends Writer {
+
+   public void write (char[] buf, int off, int len) {
+   }//end write
+
+   public void write (String str, int off, int len) {
+   }//end write
+
+   public void flush () {
+   }//end flush
+
+   public void close () {
+   }//end close
+
+}//end NullWriter
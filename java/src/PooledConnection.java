@@ -0,0 +1,153 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A physical connection owned by a ConnectionPool, together with the cache
+ * of prepared statements that were prepared on it.  A PooledConnection is
+ * used by one thread at a time: between ConnectionPool.borrow and
+ * ConnectionPool.release.
+ *
+ */
+public class PooledConnection {
+
+   // upper bound on the number of cached prepared statements per connection.
+   static final int STATEMENT_CACHE_SIZE = 64;
+
+   // the physical database connection.
+   private final Connection _connection;
+
+   // prepared statements keyed by their SQL text, kept in LRU order.
+   private final LinkedHashMap<String, PreparedStatement> _statements =
+      new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+
+   // time the connection was last handed back to the pool.
+   long lastReleased = System.currentTimeMillis ();
+
+   // set when the connection failed in a way that makes it unusable.
+   volatile boolean broken = false;
+
+   // set when a statement failed; forces validation on the next borrow.
+   boolean suspect = false;
+
+   // the statement most recently handed out, which cancel interrupts.
+   private volatile Statement _current;
+
+   PooledConnection (Connection connection) {
+      this._connection = connection;
+   }//end PooledConnection
+
+   /**
+    * @return the underlying physical connection
+    */
+   public Connection getConnection () {
+      return this._connection;
+   }//end getConnection
+
+   /**
+    * Returns the cached prepared statement for the given SQL text, preparing
+    * it on first use.  The driver prepares a statement server side after
+    * prepareThreshold executions, so repeated calls reuse the parsed and
+    * planned statement.  The least recently used statement is closed once
+    * the cache is full.
+    *
+    * @param sql the SQL text, with '?' placeholders for parameters
+    * @return the prepared statement
+    * @throws java.sql.SQLException when the statement cannot be prepared
+    */
+   public PreparedStatement prepare (String sql) throws SQLException {
+      PreparedStatement stmt = this._statements.get (sql);
+      if (stmt != null) {
+         this._current = stmt;
+         return stmt;
+      }//end if
+
+      stmt = this._connection.prepareStatement (sql);
+      this._statements.put (sql, stmt);
+
+      // evict the least recently used statement when over capacity
+      if (this._statements.size () > STATEMENT_CACHE_SIZE) {
+         Iterator<PreparedStatement> it = this._statements.values ().iterator ();
+         PreparedStatement eldest = it.next ();
+         it.remove ();
+         eldest.close ();
+      }//end if
+      this._current = stmt;
+      return stmt;
+   }//end prepare
+
+   /**
+    * Makes a statement created outside the cache the one cancel interrupts.
+    *
+    * @param stmt the statement about to run
+    */
+   public void track (Statement stmt) {
+      this._current = stmt;
+   }//end track
+
+   /**
+    * Asks the server to stop the statement running on this connection.  May
+    * be called from any thread.  The connection is marked broken, so the
+    * pool discards it instead of risking a late cancel hitting the next
+    * statement run on it.
+    */
+   public void cancel () {
+      Statement stmt = this._current;
+      this.broken = true;
+      if (stmt == null)
+         return;
+      try {
+         stmt.cancel ();
+      }catch (SQLException e) {
+         // the statement may have finished meanwhile.
+      }//end try
+   }//end cancel
+
+   /**
+    * Records a failure seen while using this connection.  Connection-level
+    * errors (SQLState class 08) mark it broken so the pool discards it; any
+    * other failure makes the pool validate it before handing it out again.
+    *
+    * @param e the exception raised while using the connection
+    */
+   public void failed (SQLException e) {
+      String state = e.getSQLState ();
+      if (state != null && state.startsWith ("08"))
+         this.broken = true;
+      else
+         this.suspect = true;
+   }//end failed
+
+   /*
+    * Closes every cached statement and the physical connection.
+    */
+   void close () {
+      for (PreparedStatement stmt : this._statements.values ()) {
+         try {
+            stmt.close ();
+         }catch (SQLException e) {
+            // ignored.
+         }//end try
+      }//end for
+      this._statements.clear ();
+      try {
+         this._connection.close ();
+      }catch (SQLException e) {
+         // ignored.
+      }//end try
+   }//end close
+
+}//end PooledConnection
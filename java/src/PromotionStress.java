@@ -0,0 +1,267 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress test for WaitlistPromoter.  The given flight instances are first
+ * booked full; then many threads book and cancel seats on them at once,
+ * while the promoter moves waitlisted passengers into the seats that
+ * cancellations give back.  Once the promoter is idle the tool checks, for
+ * every instance, that
+ *
+ *    it was not oversold,
+ *    SeatsSold grew by exactly as much as the reserved reservations,
+ *    no one is left on the waitlist while a seat is free, and
+ *    the waitlist was served in order: no reservation still waiting had
+ *    been waitlisted before one that was promoted was even booked,
+ *
+ * and reports the promotion lag.
+ *
+ * The test writes real reservations, so run it against a scratch database.
+ * It exits with status 1 when a check fails.
+ *
+ */
+public class PromotionStress {
+
+   static final String SEATS_SQL =
+      "SELECT COALESCE(SeatsSold, 0), COALESCE(SeatsTotal, 0) FROM FlightInstance WHERE FlightInstanceID = ?";
+
+   static final String COUNTS_SQL =
+      "SELECT COUNT(*) FILTER (WHERE Status = 'reserved'), COUNT(*) FILTER (WHERE Status = 'waitlist') " +
+      "FROM Reservation WHERE FlightInstanceID = ?";
+
+   static final String RESERVATIONS_SQL =
+      "SELECT ReservationID, Status FROM Reservation WHERE FlightInstanceID = ?";
+
+   // how long the promoter must stay idle before the checks run
+   static final long QUIET_MILLIS = 500;
+   static final long IDLE_TIMEOUT_MILLIS = 60000;
+
+   /*
+    * A booking made by the test, stamped with the test clock when it was
+    * started and when it returned.
+    */
+   private static class Booked {
+      final String reservationID;
+      final int instance;
+      final boolean waitlisted;
+      final long started;
+      final long finished;
+
+      Booked (String reservationID, int instance, boolean waitlisted, long started, long finished) {
+         this.reservationID = reservationID;
+         this.instance = instance;
+         this.waitlisted = waitlisted;
+         this.started = started;
+         this.finished = finished;
+      }
+   }//end Booked
+
+   public static void main (String[] args) {
+      if (args.length != 6) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            PromotionStress.class.getName () +
+            " <dbname> <port> <user> <instance id,...> <threads> <operations per thread>");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      boolean ok = false;
+      try {
+         String[] ids = args[3].split (",");
+         int[] instances = new int[ids.length];
+         for (int i = 0; i < ids.length; ++i)
+            instances[i] = Integer.parseInt (ids[i].trim ());
+         int threads = Integer.parseInt (args[4]);
+         int perThread = Integer.parseInt (args[5]);
+
+         // the promoter and the notification listener hold a connection each
+         esql = new AirlineManagement (args[0], args[1], args[2], "", threads + 2);
+         ok = run (esql, instances, threads, perThread);
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+      System.exit (ok ? 0 : 1);
+   }//end main
+
+   /**
+    * Runs the stress test and prints the results.
+    *
+    * @return true when every check passed
+    * @throws java.lang.Exception when the database cannot be read
+    */
+   public static boolean run (final AirlineManagement esql, final int[] instances,
+                              int threads, final int perThread) throws Exception {
+      final WaitlistPromoter promoter = esql.getWaitlistPromoter ();
+      quiesce (promoter);
+
+      final BookingEngine engine = new BookingEngine (esql);
+      final int customers = esql.executeQueryForObject ("SELECT COUNT(*) FROM Customer", Rows.intColumn ()).intValue ();
+      final Random setup = new Random (-1);
+      // book every instance full, so cancellations free seats and new
+      // bookings join the waitlist
+      for (int instance : instances) {
+         while (engine.book (1 + setup.nextInt (Math.max (1, customers)), instance).isReserved ())
+            ;
+      }//end for
+      quiesce (promoter);
+
+      int n = instances.length;
+      int[] soldBefore = new int[n];
+      int[] reservedBefore = new int[n];
+      for (int i = 0; i < n; ++i) {
+         soldBefore[i] = esql.executeQueryColumnar (SEATS_SQL, instances[i]).getInt (0, 0);
+         reservedBefore[i] = esql.executeQueryColumnar (COUNTS_SQL, instances[i]).getInt (0, 0);
+      }//end for
+      long promotedBefore = promoter.getPromoted ();
+
+      final AtomicLong clock = new AtomicLong ();
+      final List<Booked> booked = new ArrayList<Booked>();
+      // reservations of the test that may still be cancelled
+      final List<String> open = new ArrayList<String>();
+      final AtomicInteger cancelled = new AtomicInteger ();
+      final AtomicInteger errors = new AtomicInteger ();
+      final CountDownLatch start = new CountDownLatch (1);
+      final CountDownLatch done = new CountDownLatch (threads);
+
+      for (int t = 0; t < threads; ++t) {
+         final long seed = t;
+         Thread worker = new Thread (new Runnable () {
+            public void run () {
+               Random rnd = new Random (seed);
+               try {
+                  start.await ();
+                  for (int op = 0; op < perThread; ++op) {
+                     try {
+                        String victim = null;
+                        if (rnd.nextBoolean ()) {
+                           synchronized (open) {
+                              if (!open.isEmpty ())
+                                 victim = open.remove (rnd.nextInt (open.size ()));
+                           }//end synchronized
+                        }//end if
+                        if (victim != null) {
+                           if (engine.cancel (victim))
+                              cancelled.incrementAndGet ();
+                        } else {
+                           int instance = instances[rnd.nextInt (instances.length)];
+                           long started = clock.incrementAndGet ();
+                           BookingEngine.Booking b = engine.book (1 + rnd.nextInt (Math.max (1, customers)), instance);
+                           long finished = clock.incrementAndGet ();
+                           synchronized (open) {
+                              booked.add (new Booked (b.reservationID, instance, !b.isReserved (), started, finished));
+                              open.add (b.reservationID);
+                           }//end synchronized
+                        }//end if
+                     }catch (Exception e) {
+                        errors.incrementAndGet ();
+                     }//end try
+                  }//end for
+               }catch (InterruptedException e) {
+                  Thread.currentThread ().interrupt ();
+               }finally {
+                  done.countDown ();
+               }//end try
+            }
+         });
+         worker.start ();
+      }//end for
+
+      long t0 = System.nanoTime ();
+      start.countDown ();
+      done.await ();
+      double seconds = (System.nanoTime () - t0) / 1e9;
+      quiesce (promoter);
+
+      boolean ok = true;
+      System.out.println ("Instance\tSeatsSold\tSeatsTotal\tReserved\tWaitlisted\tPromoted\tOut of order\tCheck");
+      for (int i = 0; i < n; ++i) {
+         ColumnarResult seats = esql.executeQueryColumnar (SEATS_SQL, instances[i]);
+         int sold = seats.getInt (0, 0);
+         int total = seats.getInt (0, 1);
+         ColumnarResult counts = esql.executeQueryColumnar (COUNTS_SQL, instances[i]);
+         int reserved = counts.getInt (0, 0);
+         int waiting = counts.getInt (0, 1);
+
+         Map<String, String> status = new HashMap<String, String>();
+         for (Rows.Reservation r : esql.executeQueryForList (RESERVATIONS_SQL, Rows.Reservation.mapper (), instances[i]))
+            status.put (r.reservationID (), r.status ());
+         List<Booked> promoted = new ArrayList<Booked>();
+         List<Booked> stillWaiting = new ArrayList<Booked>();
+         for (Booked b : booked) {
+            if (b.instance != instances[i] || !b.waitlisted)
+               continue;
+            String now = status.get (b.reservationID);
+            if ("reserved".equals (now))
+               promoted.add (b);
+            else if ("waitlist".equals (now))
+               stillWaiting.add (b);
+         }//end for
+         int outOfOrder = 0;
+         for (Booked w : stillWaiting)
+            for (Booked p : promoted)
+               if (w.finished < p.started)
+                  ++outOfOrder;
+
+         String check = "OK";
+         if (sold > total)
+            check = "OVERSOLD";
+         else if (sold - soldBefore[i] != reserved - reservedBefore[i])
+            check = "SEAT COUNT MISMATCH";
+         else if (waiting > 0 && sold < total)
+            check = "SEATS FREE WITH WAITLIST";
+         else if (outOfOrder > 0)
+            check = "OUT OF ORDER";
+         ok &= check.equals ("OK");
+
+         System.out.println (instances[i] + "\t" + sold + "\t" + total + "\t" + reserved + "\t" + waiting + "\t" +
+                             promoted.size () + "\t" + outOfOrder + "\t" + check);
+      }//end for
+
+      LatencyHistogram lag = promoter.getLag ();
+      System.out.println ("Bookings: " + booked.size () + ", cancellations: " + cancelled.get () +
+                          ", promotions: " + (promoter.getPromoted () - promotedBefore) +
+                          ", errors: " + errors.get () + ", elapsed " + seconds + " s");
+      System.out.println ("Promotion lag: p50 " + QueryBenchmark.micros (lag.percentile (50)) +
+                          " us, p99 " + QueryBenchmark.micros (lag.percentile (99)) +
+                          " us, max " + QueryBenchmark.micros (lag.max ()) + " us");
+      return ok && errors.get () == 0;
+   }//end run
+
+   /*
+    * Waits until the promoter has been idle, with no promotions, for
+    * QUIET_MILLIS, so notifications still on their way are served too.
+    */
+   private static void quiesce (WaitlistPromoter promoter) throws InterruptedException {
+      long deadline = System.currentTimeMillis () + IDLE_TIMEOUT_MILLIS;
+      long promoted = -1;
+      while (System.currentTimeMillis () < deadline) {
+         if (promoter.awaitIdle (IDLE_TIMEOUT_MILLIS) && promoter.getPromoted () == promoted)
+            return;
+         promoted = promoter.getPromoted ();
+         Thread.sleep (QUIET_MILLIS);
+      }//end while
+      throw new IllegalStateException ("waitlist promoter did not go idle");
+   }//end quiesce
+
+}//end PromotionStress
@@ -0,0 +1,466 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micro-benchmarks for the query layer of AirlineManagement, run against a
+ * database loaded with java/scripts/generate_data.sh and bulk_load.sh.
+ *
+ * Each benchmark runs the query of one menu feature, one way of
+ * materializing a result, one representation of bulk-read rows, or LogIn,
+ * with parameters drawn at random from rows sampled out of the database, so
+ * the run touches the whole dataset rather than one cached key.  Every
+ * benchmark is run once per thread count: a warmup period, then a measured
+ * period in which each call's latency is recorded.
+ *
+ * Results are appended to the output file as JSON lines, one object per
+ * benchmark and thread count, tagged with the dataset label, JDBC driver
+ * and table sizes, so runs of different builds can be compared.
+ *
+ */
+public class QueryBenchmark {
+
+   /**
+    * One benchmarked operation.
+    */
+   interface Op {
+      void run (Random rnd) throws SQLException;
+   }//end Op
+
+   static final int SAMPLE_SIZE = 1000;
+   static final int DEFAULT_SECONDS = 10;
+
+   static final String SAMPLE_INSTANCES_SQL =
+      "SELECT FlightNumber, to_char(FlightDate, 'YYYY-MM-DD') FROM FlightInstance " +
+      "ORDER BY random() LIMIT " + SAMPLE_SIZE;
+   static final String SAMPLE_RESERVATIONS_SQL =
+      "SELECT ReservationID FROM Reservation ORDER BY random() LIMIT " + SAMPLE_SIZE;
+   static final String SAMPLE_PLANES_SQL =
+      "SELECT PlaneID FROM Plane ORDER BY random() LIMIT " + SAMPLE_SIZE;
+   static final String SAMPLE_TECHNICIANS_SQL =
+      "SELECT TechnicianID FROM Technician ORDER BY random() LIMIT " + SAMPLE_SIZE;
+   static final String SAMPLE_USERS_SQL =
+      "SELECT Username, Password FROM UserAccount ORDER BY random() LIMIT " + SAMPLE_SIZE;
+   static final String DATE_RANGE_SQL =
+      "SELECT to_char(MIN(FlightDate), 'YYYY-MM-DD'), to_char(MAX(FlightDate), 'YYYY-MM-DD') " +
+      "FROM FlightInstance";
+   // the bulk read the row representations are compared on
+   static final String INSTANCES_OF_DAY_SQL =
+      "SELECT * FROM FlightInstance WHERE FlightDate = CAST(? AS DATE)";
+   static final String TABLE_SIZES_SQL =
+      "SELECT relname, reltuples::bigint FROM pg_class " +
+      "WHERE relkind = 'r' AND relname IN ('flightinstance', 'reservation', 'customer', 'repair') " +
+      "ORDER BY relname";
+
+   // reports the bytes a thread allocated, where the JVM supports it.
+   static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean ();
+
+   private final AirlineManagement _esql;
+   private final List<List<String>> _instances;
+   private final List<List<String>> _reservations;
+   private final List<List<String>> _planes;
+   private final List<List<String>> _technicians;
+   private final List<List<String>> _users;
+   private final String _firstDate;
+   private final String _lastDate;
+   // feature5's query for the schema, partitioned or not
+   private final String _manifestSql;
+
+   public static void main (String[] args) {
+      if (args.length < 6) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            QueryBenchmark.class.getName () +
+            " <dbname> <port> <user> <dataset label> <threads,...> <output file>" +
+            " [seconds] [benchmark,...]");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      try {
+         String dataset = args[3];
+         String[] counts = args[4].split (",");
+         int[] threads = new int[counts.length];
+         int maxThreads = 1;
+         for (int i = 0; i < counts.length; ++i) {
+            threads[i] = Integer.parseInt (counts[i].trim ());
+            maxThreads = Math.max (maxThreads, threads[i]);
+         }//end for
+         String output = args[5];
+         int seconds = args.length > 6 ? Integer.parseInt (args[6]) : DEFAULT_SECONDS;
+
+         esql = new AirlineManagement (args[0], args[1], args[2], "", maxThreads);
+         QueryBenchmark bench = new QueryBenchmark (esql);
+         Map<String, Op> ops = bench.benchmarks ();
+         if (args.length > 7) {
+            Map<String, Op> selected = new LinkedHashMap<String, Op>();
+            for (String name : args[7].split (",")) {
+               Op op = ops.get (name.trim ());
+               if (op == null)
+                  throw new IllegalArgumentException ("unknown benchmark " + name + ", expected one of " + ops.keySet ());
+               selected.put (name.trim (), op);
+            }//end for
+            ops = selected;
+         }//end if
+
+         String sizes = bench.tableSizes ();
+         String driver = bench.driver ();
+         System.out.println ("Driver: " + driver);
+         Writer out = new BufferedWriter (new OutputStreamWriter (
+            new FileOutputStream (output, true), StandardCharsets.UTF_8));
+         try {
+            System.out.println ("Benchmark\tThreads\tOps/s\tp50 us\tp99 us\tmax us\tBytes/op\tErrors");
+            for (Map.Entry<String, Op> op : ops.entrySet ()) {
+               for (int t : threads) {
+                  Result r = measure (op.getValue (), t, seconds);
+                  System.out.println (op.getKey () + "\t" + t + "\t" + Math.round (r.opsPerSecond ()) + "\t" +
+                                      micros (r.latency.percentile (50)) + "\t" +
+                                      micros (r.latency.percentile (99)) + "\t" +
+                                      micros (r.latency.max ()) + "\t" + r.bytesPerOp () + "\t" + r.errors);
+                  out.write (r.toJson (dataset, driver, sizes, op.getKey (), t));
+                  out.write ('\n');
+                  out.flush ();
+               }//end for
+            }//end for
+         }finally {
+            out.close ();
+         }//end try
+         System.out.println (esql.getReferenceCache ().stats ());
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+   }//end main
+
+   /**
+    * Samples the parameters the benchmarks draw from.
+    *
+    * @param esql the database
+    * @throws java.sql.SQLException when the samples cannot be read or a
+    *         table the benchmarks need is empty
+    */
+   public QueryBenchmark (AirlineManagement esql) throws SQLException {
+      this._esql = esql;
+      this._instances = sample (SAMPLE_INSTANCES_SQL);
+      this._reservations = sample (SAMPLE_RESERVATIONS_SQL);
+      this._planes = sample (SAMPLE_PLANES_SQL);
+      this._technicians = sample (SAMPLE_TECHNICIANS_SQL);
+      // LogIn's account lookup is benchmarked with an unknown user when
+      // there are no users; password hashing is CPU bound and not measured
+      List<List<String>> users = esql.executeQueryAndReturnResult (SAMPLE_USERS_SQL);
+      if (users.isEmpty ()) {
+         List<String> nobody = new ArrayList<String>();
+         nobody.add ("benchmark");
+         nobody.add ("benchmark");
+         users.add (nobody);
+      }//end if
+      this._users = users;
+      List<String> range = esql.executeQueryAndReturnResult (DATE_RANGE_SQL).get (0);
+      this._firstDate = range.get (0);
+      this._lastDate = range.get (1);
+      this._manifestSql = esql.flightManifestSql ();
+   }//end QueryBenchmark
+
+   /**
+    * @return the benchmarks by name, in the order they are run
+    */
+   public Map<String, Op> benchmarks () {
+      final AirlineManagement esql = this._esql;
+      Map<String, Op> ops = new LinkedHashMap<String, Op>();
+      ops.put ("login", new Op () {
+         public void run (Random rnd) throws SQLException {
+            List<String> user = pick (_users, rnd);
+            esql.executeQueryAndReturnResult (Authenticator.ACCOUNT_SQL, user.get (0));
+         }
+      });
+      ops.put ("feature1", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryAndReturnResult (AirlineManagement.FLIGHT_SCHEDULE_SQL, pick (_instances, rnd).get (0));
+         }
+      });
+      ops.put ("feature1.cached", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.getReferenceCache ().schedule (pick (_instances, rnd).get (0));
+         }
+      });
+      ops.put ("feature2", instanceOp (AirlineManagement.FLIGHT_SEATS_SQL));
+      ops.put ("feature3", instanceOp (AirlineManagement.FLIGHT_STATUS_SQL));
+      ops.put ("feature4", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryAndReturnResult (AirlineManagement.FLIGHTS_OF_DAY_SQL, pick (_instances, rnd).get (1));
+         }
+      });
+      ops.put ("feature5", instanceOp (this._manifestSql));
+      ops.put ("feature5.cached", new Op () {
+         public void run (Random rnd) throws SQLException {
+            List<String> instance = pick (_instances, rnd);
+            esql.getManifestCache ().manifest (instance.get (0), instance.get (1));
+         }
+      });
+      ops.put ("feature6", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryAndReturnResult (AirlineManagement.TRAVELER_INFO_SQL, pick (_reservations, rnd).get (0));
+         }
+      });
+      ops.put ("feature7", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryAndReturnResult (AirlineManagement.PLANE_INFO_SQL, pick (_planes, rnd).get (0));
+         }
+      });
+      ops.put ("feature7.cached", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.getReferenceCache ().planeInfo (pick (_planes, rnd).get (0));
+         }
+      });
+      ops.put ("feature8", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryAndReturnResult (AirlineManagement.TECHNICIAN_REPAIRS_SQL, pick (_technicians, rnd).get (0));
+         }
+      });
+      ops.put ("feature9", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryAndReturnResult (AirlineManagement.PLANE_REPAIRS_SQL,
+                                              pick (_planes, rnd).get (0), _firstDate, _lastDate);
+         }
+      });
+      ops.put ("feature10", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryAndReturnResult (AirlineManagement.FLIGHT_STATISTICS_SQL,
+                                              pick (_instances, rnd).get (0), _firstDate, _lastDate);
+         }
+      });
+
+      // the same result, the feature4 day listing, materialized three ways
+      ops.put ("materialize.returnResult", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryAndReturnResult (AirlineManagement.FLIGHTS_OF_DAY_SQL, pick (_instances, rnd).get (1));
+         }
+      });
+      ops.put ("materialize.print", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.exportQuery (new NullWriter (), AirlineManagement.FLIGHTS_OF_DAY_SQL, pick (_instances, rnd).get (1));
+         }
+      });
+      ops.put ("materialize.stream", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryStreaming (AirlineManagement.FLIGHTS_OF_DAY_SQL, new RowHandler () {
+               public void start (ResultSetMetaData rsmd) {
+               }
+               public void row (ResultSet rs) throws SQLException {
+                  rs.getString (1);
+               }
+            }, pick (_instances, rnd).get (1));
+         }
+      });
+
+      // one day's FlightInstance rows as lists of strings, as typed records
+      // and as primitive columns; bytesPerOp shows what each allocates
+      ops.put ("rows.strings", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryAndReturnResult (INSTANCES_OF_DAY_SQL, pick (_instances, rnd).get (1));
+         }
+      });
+      ops.put ("rows.typed", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryForList (INSTANCES_OF_DAY_SQL, Rows.FlightInstance.mapper (),
+                                      pick (_instances, rnd).get (1));
+         }
+      });
+      ops.put ("rows.columnar", new Op () {
+         public void run (Random rnd) throws SQLException {
+            esql.executeQueryColumnar (INSTANCES_OF_DAY_SQL, pick (_instances, rnd).get (1));
+         }
+      });
+      return ops;
+   }//end benchmarks
+
+   private Op instanceOp (final String sql) {
+      return new Op () {
+         public void run (Random rnd) throws SQLException {
+            List<String> instance = pick (_instances, rnd);
+            _esql.executeQueryAndReturnResult (sql, instance.get (0), instance.get (1));
+         }
+      };
+   }//end instanceOp
+
+   /**
+    * The measurements of one benchmark at one thread count.
+    */
+   static class Result {
+      final LatencyHistogram latency = new LatencyHistogram ();
+      final AtomicLong allocated = new AtomicLong ();
+      final AtomicLong errors = new AtomicLong ();
+      double seconds;
+
+      double opsPerSecond () {
+         return this.seconds == 0 ? 0 : this.latency.count () / this.seconds;
+      }
+
+      long bytesPerOp () {
+         long n = this.latency.count ();
+         return n == 0 ? 0 : this.allocated.get () / n;
+      }
+
+      String toJson (String dataset, String driver, String sizes, String benchmark, int threads) {
+         return "{\"dataset\":" + quote (dataset) +
+                ",\"driver\":" + quote (driver) +
+                ",\"tables\":" + sizes +
+                ",\"benchmark\":" + quote (benchmark) +
+                ",\"threads\":" + threads +
+                ",\"seconds\":" + this.seconds +
+                ",\"ops\":" + this.latency.count () +
+                ",\"opsPerSecond\":" + opsPerSecond () +
+                ",\"meanMicros\":" + this.latency.mean () / 1000 +
+                ",\"p50Micros\":" + micros (this.latency.percentile (50)) +
+                ",\"p90Micros\":" + micros (this.latency.percentile (90)) +
+                ",\"p99Micros\":" + micros (this.latency.percentile (99)) +
+                ",\"p999Micros\":" + micros (this.latency.percentile (99.9)) +
+                ",\"maxMicros\":" + micros (this.latency.max ()) +
+                ",\"bytesPerOp\":" + bytesPerOp () +
+                ",\"errors\":" + this.errors.get () + "}";
+      }
+   }//end Result
+
+   /**
+    * Runs an operation from the given number of threads: first for half the
+    * period as warmup, then for the full period measured.
+    *
+    * @return the measurements of the measured period
+    * @throws java.lang.InterruptedException when interrupted while waiting
+    */
+   static Result measure (final Op op, int threads, int seconds) throws InterruptedException {
+      run (op, threads, seconds * 500L, new Result ());
+      Result result = new Result ();
+      long t0 = System.nanoTime ();
+      run (op, threads, seconds * 1000L, result);
+      result.seconds = (System.nanoTime () - t0) / 1e9;
+      return result;
+   }//end measure
+
+   private static void run (final Op op, int threads, final long millis,
+                            final Result result) throws InterruptedException {
+      final CountDownLatch start = new CountDownLatch (1);
+      final CountDownLatch done = new CountDownLatch (threads);
+      final long[] deadline = new long[1];
+      for (int t = 0; t < threads; ++t) {
+         final long seed = t;
+         Thread worker = new Thread (new Runnable () {
+            public void run () {
+               Random rnd = new Random (seed);
+               long before = allocatedBytes ();
+               try {
+                  start.await ();
+                  while (System.nanoTime () < deadline[0]) {
+                     long t0 = System.nanoTime ();
+                     try {
+                        op.run (rnd);
+                        result.latency.record (System.nanoTime () - t0);
+                     }catch (SQLException e) {
+                        result.errors.incrementAndGet ();
+                     }//end try
+                  }//end while
+               }catch (InterruptedException e) {
+                  Thread.currentThread ().interrupt ();
+               }finally {
+                  result.allocated.addAndGet (allocatedBytes () - before);
+                  done.countDown ();
+               }//end try
+            }
+         });
+         worker.start ();
+      }//end for
+      deadline[0] = System.nanoTime () + millis * 1000000L;
+      start.countDown ();
+      done.await ();
+   }//end run
+
+   private static long allocatedBytes () {
+      if (THREADS instanceof com.sun.management.ThreadMXBean)
+         return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes ();
+      return 0;
+   }//end allocatedBytes
+
+   /*
+    * Row counts of the large tables, as a JSON object.
+    */
+   private String tableSizes () throws SQLException {
+      StringBuilder json = new StringBuilder ("{");
+      for (List<String> row : this._esql.executeQueryAndReturnResult (TABLE_SIZES_SQL)) {
+         if (json.length () > 1)
+            json.append (',');
+         json.append (quote (row.get (0))).append (':').append (row.get (1));
+      }//end for
+      return json.append ('}').toString ();
+   }//end tableSizes
+
+   /*
+    * Name and version of the JDBC driver in use, so runs with different
+    * drivers can be told apart.
+    */
+   private String driver () throws SQLException {
+      return this._esql.withConnection (new AirlineManagement.ConnectionWork<String>() {
+         public String run (PooledConnection conn) throws SQLException {
+            DatabaseMetaData meta = conn.getConnection ().getMetaData ();
+            return meta.getDriverName () + " " + meta.getDriverVersion ();
+         }
+      });
+   }//end driver
+
+   private List<List<String>> sample (String sql) throws SQLException {
+      List<List<String>> rows = this._esql.executeQueryAndReturnResult (sql);
+      if (rows.isEmpty ())
+         throw new SQLException ("no rows to sample: " + sql);
+      return rows;
+   }//end sample
+
+   static List<String> pick (List<List<String>> rows, Random rnd) {
+      return rows.get (rnd.nextInt (rows.size ()));
+   }//end pick
+
+   static double micros (long nanos) {
+      return nanos / 1000.0;
+   }//end micros
+
+   static String quote (String s) {
+      StringBuilder out = new StringBuilder ("\"");
+      for (int i = 0; i < s.length (); ++i) {
+         char c = s.charAt (i);
+         if (c == '"' || c == '\\')
+            out.append ('\\').append (c);
+         else if (c < ' ')
+            out.append (String.format ("\\u%04x", (int) c));
+         else
+            out.append (c);
+      }//end for
+      return out.append ('"').toString ();
+   }//end quote
+
+}//end QueryBenchmark
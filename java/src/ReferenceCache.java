@@ -0,0 +1,197 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for the reference tables Flight, Plane, Schedule,
+ * Technician and Pilot, which change rarely but are read on every feature1
+ * and feature7 call.
+ *
+ * Entries are bounded in number (LRU) and expire after a time to live.  They
+ * are also invalidated as soon as a row changes: the triggers in
+ * sql/src/create_triggers.sql send NOTIFY reference_changed with a payload
+ * of the form "table:key", where key is the FlightNumber, PlaneID,
+ * TechnicianID or PilotID of the changed row.
+ *
+ * Hits and misses of every cache are exported with the other metrics, and
+ * printed by QueryBenchmark after its runs.
+ *
+ */
+public class ReferenceCache {
+
+   static final String CHANNEL = "reference_changed";
+
+   static final int MAX_ENTRIES = 10000;
+   static final long TTL_MILLIS = 10 * 60 * 1000;
+
+   static final String FLIGHT_SQL =
+      "SELECT * FROM Flight WHERE FlightNumber = ?";
+   static final String PLANE_SQL =
+      "SELECT * FROM Plane WHERE PlaneID = ?";
+   static final String TECHNICIAN_SQL =
+      "SELECT * FROM Technician WHERE TechnicianID = ?";
+   static final String PILOT_SQL =
+      "SELECT * FROM Pilot WHERE PilotID = ?";
+
+   private final AirlineManagement _esql;
+
+   // bumped on every invalidation, so a lookup that raced with a change
+   // does not store what it read.
+   private final AtomicLong _generation = new AtomicLong ();
+
+   // feature1: weekly schedule by FlightNumber
+   private final LruCache<String, CachedResult> _schedules =
+      new LruCache<String, CachedResult>("schedule", MAX_ENTRIES, TTL_MILLIS);
+   // feature7: plane information by PlaneID
+   private final LruCache<String, CachedResult> _planeInfo =
+      new LruCache<String, CachedResult>("planeInfo", MAX_ENTRIES, TTL_MILLIS);
+   private final LruCache<String, CachedResult> _flights =
+      new LruCache<String, CachedResult>("flight", MAX_ENTRIES, TTL_MILLIS);
+   private final LruCache<String, CachedResult> _planes =
+      new LruCache<String, CachedResult>("plane", MAX_ENTRIES, TTL_MILLIS);
+   private final LruCache<String, CachedResult> _technicians =
+      new LruCache<String, CachedResult>("technician", MAX_ENTRIES, TTL_MILLIS);
+   private final LruCache<String, CachedResult> _pilots =
+      new LruCache<String, CachedResult>("pilot", MAX_ENTRIES, TTL_MILLIS);
+
+   /**
+    * Creates the cache and subscribes it to change notifications.  LISTEN
+    * is active when the constructor returns, before any lookup.
+    *
+    * @param esql the database
+    * @param listener the listener delivering reference_changed events
+    */
+   public ReferenceCache (AirlineManagement esql, NotificationListener listener) {
+      this._esql = esql;
+      listener.listen (CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            invalidate (payload);
+         }
+      });
+      Metrics metrics = esql.getMetrics ();
+      metrics.cache (this._schedules);
+      metrics.cache (this._planeInfo);
+      metrics.cache (this._flights);
+      metrics.cache (this._planes);
+      metrics.cache (this._technicians);
+      metrics.cache (this._pilots);
+   }//end ReferenceCache
+
+   /**
+    * @param flightNumber the flight
+    * @return the flight's weekly schedule, as printed by feature1
+    * @throws java.sql.SQLException when the schedule cannot be read
+    */
+   public CachedResult schedule (String flightNumber) throws SQLException {
+      return lookup (this._schedules, AirlineManagement.FLIGHT_SCHEDULE_SQL, flightNumber);
+   }//end schedule
+
+   /**
+    * @param planeID the plane
+    * @return make, model, age and last repair date, as printed by feature7
+    * @throws java.sql.SQLException when the plane cannot be read
+    */
+   public CachedResult planeInfo (String planeID) throws SQLException {
+      return lookup (this._planeInfo, AirlineManagement.PLANE_INFO_SQL, planeID);
+   }//end planeInfo
+
+   public CachedResult flight (String flightNumber) throws SQLException {
+      return lookup (this._flights, FLIGHT_SQL, flightNumber);
+   }//end flight
+
+   public CachedResult plane (String planeID) throws SQLException {
+      return lookup (this._planes, PLANE_SQL, planeID);
+   }//end plane
+
+   public CachedResult technician (String technicianID) throws SQLException {
+      return lookup (this._technicians, TECHNICIAN_SQL, technicianID);
+   }//end technician
+
+   public CachedResult pilot (String pilotID) throws SQLException {
+      return lookup (this._pilots, PILOT_SQL, pilotID);
+   }//end pilot
+
+   /**
+    * Applies a reference_changed payload.  A null payload, or one without
+    * a key, drops every entry that could depend on the table.
+    *
+    * @param payload "table:key", "table:" or null
+    */
+   void invalidate (String payload) {
+      this._generation.incrementAndGet ();
+      if (payload == null) {
+         invalidateAll ();
+         return;
+      }//end if
+      int colon = payload.indexOf (':');
+      String table = colon < 0 ? payload : payload.substring (0, colon);
+      String key = colon < 0 ? "" : payload.substring (colon + 1);
+      boolean all = key.isEmpty ();
+
+      if (table.equals ("flight")) {
+         drop (this._flights, key, all);
+      } else if (table.equals ("schedule")) {
+         drop (this._schedules, key, all);
+      } else if (table.equals ("plane") || table.equals ("repair")) {
+         // feature7 reads MAX(RepairDate), so repairs change plane info
+         drop (this._planeInfo, key, all);
+         if (table.equals ("plane"))
+            drop (this._planes, key, all);
+      } else if (table.equals ("technician")) {
+         drop (this._technicians, key, all);
+      } else if (table.equals ("pilot")) {
+         drop (this._pilots, key, all);
+      } else {
+         invalidateAll ();
+      }//end if
+   }//end invalidate
+
+   /**
+    * Drops every cached entry.
+    */
+   public void invalidateAll () {
+      this._generation.incrementAndGet ();
+      this._schedules.invalidateAll ();
+      this._planeInfo.invalidateAll ();
+      this._flights.invalidateAll ();
+      this._planes.invalidateAll ();
+      this._technicians.invalidateAll ();
+      this._pilots.invalidateAll ();
+   }//end invalidateAll
+
+   /**
+    * @return one line of hit/miss statistics per cache
+    */
+   public String stats () {
+      return this._schedules + "\n" + this._planeInfo + "\n" + this._flights + "\n" +
+             this._planes + "\n" + this._technicians + "\n" + this._pilots;
+   }//end stats
+
+   private CachedResult lookup (LruCache<String, CachedResult> cache, String sql, String key) throws SQLException {
+      CachedResult result = cache.get (key);
+      if (result == null) {
+         long generation = this._generation.get ();
+         result = CachedResult.load (this._esql, sql, key);
+         if (generation == this._generation.get ())
+            cache.put (key, result);
+      }//end if
+      return result;
+   }//end lookup
+
+   private static void drop (LruCache<String, CachedResult> cache, String key, boolean all) {
+      if (all)
+         cache.invalidateAll ();
+      else
+         cache.invalidate (key);
+   }//end drop
+
+}//end ReferenceCache
@@ -0,0 +1,39 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Callback that receives the rows of a streamed query one at a time, so a
+ * result of any size can be processed without holding it in memory.
+ *
+ */
+public interface RowHandler {
+
+   /**
+    * Called once, before the first row.
+    *
+    * @param rsmd the metadata of the result set
+    * @throws java.sql.SQLException when the metadata cannot be read
+    */
+   void start (ResultSetMetaData rsmd) throws SQLException;
+
+   /**
+    * Called once per row, with the result set positioned on that row.  The
+    * result set must not be advanced or kept after the call returns.
+    *
+    * @param rs the result set
+    * @throws java.sql.SQLException when a column cannot be read
+    */
+   void row (ResultSet rs) throws SQLException;
+
+}//end RowHandler
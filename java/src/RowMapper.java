@@ -0,0 +1,50 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Turns the rows of a query into objects.  The mapper looks up the columns
+ * it reads once, in start, and then reads each row with the primitive
+ * getters of the result set, so no String is made for a numeric, boolean or
+ * date cell.
+ *
+ * A mapper keeps the column positions of the query it is reading, so one
+ * instance serves one query at a time; Rows hands out a new one per call.
+ *
+ */
+public interface RowMapper<T> {
+
+   /**
+    * Called once, before the first row, to resolve the columns read.
+    *
+    * @param rsmd the metadata of the result set
+    * @throws java.sql.SQLException when the metadata cannot be read
+    */
+   void start (ResultSetMetaData rsmd) throws SQLException;
+
+   /**
+    * Called once per row, with the result set positioned on that row.
+    *
+    * @param rs the result set
+    * @return the row's object
+    * @throws java.sql.SQLException when a column cannot be read
+    */
+   T map (ResultSet rs) throws SQLException;
+
+   /**
+    * Called once after the last row.
+    */
+   default void finish () {
+   }//end finish
+
+}//end RowMapper
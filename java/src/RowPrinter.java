@@ -0,0 +1,146 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * RowHandler that writes rows as tab separated text, preceded by a header
+ * line with the column names once the first row arrives.  Output goes
+ * through a buffered writer rather than one print call per cell.
+ *
+ * A printer for standard out holds its rows in memory until flush, which
+ * prints them under the lock of System.out.  The console is thus never held
+ * while a query runs or waits for a connection, and concurrent printers do
+ * not interleave their rows.
+ *
+ */
+public class RowPrinter implements RowHandler {
+
+   static final int BUFFER_SIZE = 1 << 16;
+
+   private final Writer _out;
+   // the rows not printed yet, for a printer of standard out; else null
+   private final StringWriter _console;
+   private ResultSetMetaData _rsmd;
+   private int _numCol;
+   private int _rowCount = 0;
+
+   /**
+    * Creates a printer that writes to standard out when flushed.
+    */
+   public RowPrinter () {
+      this._console = new StringWriter (BUFFER_SIZE);
+      this._out = this._console;
+   }//end RowPrinter
+
+   /**
+    * Creates a printer that writes to the given writer.
+    *
+    * @param out the destination; it is flushed but never closed
+    */
+   public RowPrinter (Writer out) {
+      this._out = new BufferedWriter (out, BUFFER_SIZE);
+      this._console = null;
+   }//end RowPrinter
+
+   public void start (ResultSetMetaData rsmd) throws SQLException {
+      this._rsmd = rsmd;
+      this._numCol = rsmd.getColumnCount ();
+   }//end start
+
+   public void row (ResultSet rs) throws SQLException {
+      try {
+         if (this._rowCount == 0) {
+            for (int i = 1; i <= this._numCol; ++i) {
+               this._out.write (this._rsmd.getColumnName (i));
+               this._out.write ('\t');
+            }//end for
+            this._out.write ('\n');
+         }//end if
+         long bytes = 0;
+         for (int i = 1; i <= this._numCol; ++i) {
+            String value = String.valueOf (rs.getString (i));
+            bytes += Metrics.utf8Length (value);
+            this._out.write (value);
+            this._out.write ('\t');
+         }//end for
+         Metrics.fetched (bytes);
+         this._out.write ('\n');
+         ++this._rowCount;
+      }catch (IOException e) {
+         throw new SQLException ("cannot write row: " + e.getMessage ());
+      }//end try
+   }//end row
+
+   /**
+    * Writes a row that is already held in memory, preceded by the header
+    * line if it is the first row.
+    *
+    * @param columns the column names
+    * @param values the row values; null is written as "null"
+    * @throws java.sql.SQLException when the output cannot be written
+    */
+   public void row (String[] columns, String[] values) throws SQLException {
+      try {
+         if (this._rowCount == 0) {
+            for (String name : columns) {
+               this._out.write (name);
+               this._out.write ('\t');
+            }//end for
+            this._out.write ('\n');
+         }//end if
+         for (String value : values) {
+            this._out.write (String.valueOf (value));
+            this._out.write ('\t');
+         }//end for
+         this._out.write ('\n');
+         ++this._rowCount;
+      }catch (IOException e) {
+         throw new SQLException ("cannot write row: " + e.getMessage ());
+      }//end try
+   }//end row
+
+   /**
+    * @return the number of rows written so far
+    */
+   public int getRowCount () {
+      return this._rowCount;
+   }//end getRowCount
+
+   /**
+    * Writes out any buffered output; a printer of standard out prints its
+    * rows, holding the lock of System.out only while printing.
+    *
+    * @throws java.sql.SQLException when the output cannot be written
+    */
+   public void flush () throws SQLException {
+      if (this._console != null) {
+         StringBuffer rows = this._console.getBuffer ();
+         synchronized (System.out) {
+            System.out.print (rows);
+            System.out.flush ();
+         }//end synchronized
+         rows.setLength (0);
+         return;
+      }//end if
+      try {
+         this._out.flush ();
+      }catch (IOException e) {
+         throw new SQLException ("cannot write rows: " + e.getMessage ());
+      }//end try
+   }//end flush
+
+}//end RowPrinter
@@ -0,0 +1,284 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Typed rows of the airline tables and the mappers that read them.
+ *
+ * Each record has one component per column of its table.  Its mapper finds
+ * the columns by name, so it reads "SELECT *" as well as a query that
+ * selects some of the columns in any order; a column the query lacks reads
+ * as if it were NULL.  Integers are read with getInt and NULL reads as 0,
+ * like the COALESCE(SeatsSold, 0) of the queries.  Booleans that may be
+ * NULL are Boolean.TRUE, Boolean.FALSE or null, fares are whole cents, and
+ * dates and times are java.time values read without a String in between.
+ *
+ */
+public class Rows {
+
+   /**
+    * A RowMapper that resolves the columns it reads by name and counts the
+    * bytes it reads in the statement metrics.
+    */
+   public abstract static class Mapper<T> implements RowMapper<T> {
+      private final String[] _names;
+      // result set position of each name, or 0 when the query lacks it
+      private int[] _index;
+      private long _bytes;
+
+      protected Mapper (String... names) {
+         this._names = names;
+      }
+
+      public void start (ResultSetMetaData rsmd) throws SQLException {
+         this._index = resolve (rsmd, this._names);
+         this._bytes = 0;
+      }//end start
+
+      public void finish () {
+         Metrics.fetched (this._bytes);
+         this._bytes = 0;
+      }//end finish
+
+      /**
+       * @return whether the query has the k-th column
+       */
+      protected boolean has (int k) {
+         return this._index[k] != 0;
+      }//end has
+
+      protected int getInt (ResultSet rs, int k) throws SQLException {
+         this._bytes += 4;
+         return this._index[k] == 0 ? 0 : rs.getInt (this._index[k]);
+      }//end getInt
+
+      protected String getString (ResultSet rs, int k) throws SQLException {
+         if (this._index[k] == 0)
+            return null;
+         String value = rs.getString (this._index[k]);
+         if (value != null)
+            this._bytes += Metrics.utf8Length (value);
+         return value;
+      }//end getString
+
+      protected Boolean getBoolean (ResultSet rs, int k) throws SQLException {
+         if (this._index[k] == 0)
+            return null;
+         ++this._bytes;
+         boolean value = rs.getBoolean (this._index[k]);
+         return rs.wasNull () ? null : Boolean.valueOf (value);
+      }//end getBoolean
+
+      /*
+       * A DECIMAL(10,2) amount in cents.  A double holds every such value
+       * to well within half a cent.
+       */
+      protected long getCents (ResultSet rs, int k) throws SQLException {
+         this._bytes += 8;
+         return this._index[k] == 0 ? 0 : Math.round (rs.getDouble (this._index[k]) * 100);
+      }//end getCents
+
+      protected LocalDate getDate (ResultSet rs, int k) throws SQLException {
+         this._bytes += 4;
+         return this._index[k] == 0 ? null : rs.getObject (this._index[k], LocalDate.class);
+      }//end getDate
+
+      protected LocalTime getTime (ResultSet rs, int k) throws SQLException {
+         this._bytes += 8;
+         return this._index[k] == 0 ? null : rs.getObject (this._index[k], LocalTime.class);
+      }//end getTime
+   }//end Mapper
+
+   /**
+    * Finds each name among the columns of a result.
+    *
+    * @param rsmd the metadata of the result
+    * @param names the column names, in any case
+    * @return the 1-based position of each name, 0 for one that is missing
+    * @throws java.sql.SQLException when the metadata cannot be read
+    */
+   static int[] resolve (ResultSetMetaData rsmd, String[] names) throws SQLException {
+      int numCol = rsmd.getColumnCount ();
+      String[] labels = new String[numCol];
+      for (int i = 0; i < numCol; ++i)
+         labels[i] = rsmd.getColumnLabel (i + 1);
+      int[] index = new int[names.length];
+      for (int k = 0; k < names.length; ++k) {
+         for (int i = 0; i < numCol; ++i) {
+            if (labels[i].equalsIgnoreCase (names[k])) {
+               index[k] = i + 1;
+               break;
+            }//end if
+         }//end for
+      }//end for
+      return index;
+   }//end resolve
+
+   public record Plane (String planeID, String make, String model, int year,
+                        LocalDate lastRepairDate) {
+      public static RowMapper<Plane> mapper () {
+         return new Mapper<Plane>("PlaneID", "Make", "Model", "Year", "LastRepairDate") {
+            public Plane map (ResultSet rs) throws SQLException {
+               return new Plane (getString (rs, 0), getString (rs, 1), getString (rs, 2),
+                                 getInt (rs, 3), getDate (rs, 4));
+            }
+         };
+      }//end mapper
+   }//end Plane
+
+   public record Flight (String flightNumber, String planeID, String departureCity,
+                         String arrivalCity) {
+      public static RowMapper<Flight> mapper () {
+         return new Mapper<Flight>("FlightNumber", "PlaneID", "DepartureCity", "ArrivalCity") {
+            public Flight map (ResultSet rs) throws SQLException {
+               return new Flight (getString (rs, 0), getString (rs, 1), getString (rs, 2),
+                                  getString (rs, 3));
+            }
+         };
+      }//end mapper
+   }//end Flight
+
+   public record Schedule (int scheduleID, String flightNumber, String dayOfWeek,
+                           LocalTime departureTime, LocalTime arrivalTime) {
+      public static RowMapper<Schedule> mapper () {
+         return new Mapper<Schedule>("ScheduleID", "FlightNumber", "DayOfWeek",
+                                     "DepartureTime", "ArrivalTime") {
+            public Schedule map (ResultSet rs) throws SQLException {
+               return new Schedule (getInt (rs, 0), getString (rs, 1), getString (rs, 2),
+                                    getTime (rs, 3), getTime (rs, 4));
+            }
+         };
+      }//end mapper
+   }//end Schedule
+
+   public record FlightInstance (int flightInstanceID, String flightNumber, LocalDate flightDate,
+                                 Boolean departedOnTime, Boolean arrivedOnTime, int seatsTotal,
+                                 int seatsSold, int numOfStops, long ticketCents) {
+      public int seatsAvailable () {
+         return this.seatsTotal - this.seatsSold;
+      }//end seatsAvailable
+
+      public static RowMapper<FlightInstance> mapper () {
+         return new Mapper<FlightInstance>("FlightInstanceID", "FlightNumber", "FlightDate",
+                                           "DepartedOnTime", "ArrivedOnTime", "SeatsTotal",
+                                           "SeatsSold", "NumOfStops", "TicketCost") {
+            public FlightInstance map (ResultSet rs) throws SQLException {
+               return new FlightInstance (getInt (rs, 0), getString (rs, 1), getDate (rs, 2),
+                                          getBoolean (rs, 3), getBoolean (rs, 4), getInt (rs, 5),
+                                          getInt (rs, 6), getInt (rs, 7), getCents (rs, 8));
+            }
+         };
+      }//end mapper
+   }//end FlightInstance
+
+   public record Customer (int customerID, String firstName, String lastName, String gender,
+                           LocalDate dob, String address, String phone, String zip) {
+      public static RowMapper<Customer> mapper () {
+         return new Mapper<Customer>("CustomerID", "FirstName", "LastName", "Gender",
+                                     "DOB", "Address", "Phone", "Zip") {
+            public Customer map (ResultSet rs) throws SQLException {
+               return new Customer (getInt (rs, 0), getString (rs, 1), getString (rs, 2),
+                                    getString (rs, 3), getDate (rs, 4), getString (rs, 5),
+                                    getString (rs, 6), getString (rs, 7));
+            }
+         };
+      }//end mapper
+   }//end Customer
+
+   public record Reservation (String reservationID, int customerID, int flightInstanceID,
+                              String status) {
+      public static RowMapper<Reservation> mapper () {
+         return new Mapper<Reservation>("ReservationID", "CustomerID", "FlightInstanceID", "Status") {
+            public Reservation map (ResultSet rs) throws SQLException {
+               return new Reservation (getString (rs, 0), getInt (rs, 1), getInt (rs, 2),
+                                       getString (rs, 3));
+            }
+         };
+      }//end mapper
+   }//end Reservation
+
+   public record Technician (String technicianID, String name) {
+      public static RowMapper<Technician> mapper () {
+         return new Mapper<Technician>("TechnicianID", "Name") {
+            public Technician map (ResultSet rs) throws SQLException {
+               return new Technician (getString (rs, 0), getString (rs, 1));
+            }
+         };
+      }//end mapper
+   }//end Technician
+
+   public record Pilot (String pilotID, String name) {
+      public static RowMapper<Pilot> mapper () {
+         return new Mapper<Pilot>("PilotID", "Name") {
+            public Pilot map (ResultSet rs) throws SQLException {
+               return new Pilot (getString (rs, 0), getString (rs, 1));
+            }
+         };
+      }//end mapper
+   }//end Pilot
+
+   public record Repair (int repairID, String planeID, String repairCode, LocalDate repairDate,
+                         String technicianID) {
+      public static RowMapper<Repair> mapper () {
+         return new Mapper<Repair>("RepairID", "PlaneID", "RepairCode", "RepairDate", "TechnicianID") {
+            public Repair map (ResultSet rs) throws SQLException {
+               return new Repair (getInt (rs, 0), getString (rs, 1), getString (rs, 2),
+                                  getDate (rs, 3), getString (rs, 4));
+            }
+         };
+      }//end mapper
+   }//end Repair
+
+   public record MaintenanceRequest (int requestID, String planeID, String repairCode,
+                                     LocalDate requestDate, String pilotID) {
+      public static RowMapper<MaintenanceRequest> mapper () {
+         return new Mapper<MaintenanceRequest>("RequestID", "PlaneID", "RepairCode",
+                                               "RequestDate", "PilotID") {
+            public MaintenanceRequest map (ResultSet rs) throws SQLException {
+               return new MaintenanceRequest (getInt (rs, 0), getString (rs, 1), getString (rs, 2),
+                                              getDate (rs, 3), getString (rs, 4));
+            }
+         };
+      }//end mapper
+   }//end MaintenanceRequest
+
+   public record UserAccount (int userID, String username, String password, String role) {
+      public static RowMapper<UserAccount> mapper () {
+         return new Mapper<UserAccount>("UserID", "Username", "Password", "Role") {
+            public UserAccount map (ResultSet rs) throws SQLException {
+               return new UserAccount (getInt (rs, 0), getString (rs, 1), getString (rs, 2),
+                                       getString (rs, 3));
+            }
+         };
+      }//end mapper
+   }//end UserAccount
+
+   /**
+    * Reads the first column as an int, for counts and IDs.
+    *
+    * @return a mapper that boxes only values outside the Integer cache
+    */
+   public static RowMapper<Integer> intColumn () {
+      return new RowMapper<Integer>() {
+         public void start (ResultSetMetaData rsmd) {
+         }
+         public Integer map (ResultSet rs) throws SQLException {
+            int value = rs.getInt (1);
+            return rs.wasNull () ? null : Integer.valueOf (value);
+         }
+      };
+   }//end intColumn
+
+}//end Rows
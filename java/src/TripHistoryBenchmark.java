@@ -0,0 +1,154 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of the Customer menu's trip history under concurrent load.  Each
+ * thread plays customers opening "my trips": it picks a random customer,
+ * reads their summary and then follows up to the given number of pages of
+ * their history, until the time is up.  The p50, p99 and maximum latency
+ * of summaries, pages and whole views are reported per operation.
+ *
+ * The benchmark only reads; summaries are served from the cache after the
+ * first view of a customer, as they would be in use.
+ *
+ */
+public class TripHistoryBenchmark {
+
+   static final int DEFAULT_PAGES = 3;
+
+   public static void main (String[] args) {
+      if (args.length < 5) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            TripHistoryBenchmark.class.getName () +
+            " <dbname> <port> <user> <threads> <seconds> [pages per view]");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      boolean ok = false;
+      try {
+         int threads = Integer.parseInt (args[3]);
+         int seconds = Integer.parseInt (args[4]);
+         int pages = args.length > 5 ? Integer.parseInt (args[5]) : DEFAULT_PAGES;
+
+         // the notification listener holds a connection of its own
+         esql = new AirlineManagement (args[0], args[1], args[2], "", threads + 1);
+         ok = run (esql, threads, seconds, pages);
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+      System.exit (ok ? 0 : 1);
+   }//end main
+
+   /**
+    * Runs the benchmark and prints the results.
+    *
+    * @return true when no operation failed
+    * @throws java.lang.Exception when the database cannot be read
+    */
+   public static boolean run (AirlineManagement esql, int threads, int seconds,
+                              final int pages) throws Exception {
+      final CustomerHistory history = esql.getCustomerHistory ();
+      final int maxCustomer = esql.executeQueryForObject (
+         "SELECT COALESCE(MAX(CustomerID), 0) FROM Customer", Rows.intColumn ()).intValue ();
+      if (maxCustomer <= 0)
+         throw new IllegalStateException ("no customers");
+
+      final LatencyHistogram[] summaries = new LatencyHistogram[threads];
+      final LatencyHistogram[] pageReads = new LatencyHistogram[threads];
+      final LatencyHistogram[] views = new LatencyHistogram[threads];
+      final AtomicInteger errors = new AtomicInteger ();
+      final CountDownLatch start = new CountDownLatch (1);
+      final CountDownLatch done = new CountDownLatch (threads);
+      final long[] deadline = new long[1];
+
+      for (int t = 0; t < threads; ++t) {
+         final long seed = t;
+         final LatencyHistogram summary = summaries[t] = new LatencyHistogram ();
+         final LatencyHistogram page = pageReads[t] = new LatencyHistogram ();
+         final LatencyHistogram view = views[t] = new LatencyHistogram ();
+         Thread worker = new Thread (new Runnable () {
+            public void run () {
+               Random rnd = new Random (seed);
+               try {
+                  start.await ();
+                  while (System.nanoTime () < deadline[0]) {
+                     int customer = 1 + rnd.nextInt (maxCustomer);
+                     try {
+                        long t0 = System.nanoTime ();
+                        history.summary (customer);
+                        long t1 = System.nanoTime ();
+                        summary.record (t1 - t0);
+                        CustomerHistory.Cursor after = null;
+                        for (int p = 0; p < pages; ++p) {
+                           long p0 = System.nanoTime ();
+                           CustomerHistory.Page trips = history.trips (customer, after, CustomerHistory.DEFAULT_PAGE_SIZE);
+                           page.record (System.nanoTime () - p0);
+                           after = trips.next;
+                           if (after == null)
+                              break;
+                        }//end for
+                        view.record (System.nanoTime () - t0);
+                     }catch (Exception e) {
+                        errors.incrementAndGet ();
+                     }//end try
+                  }//end while
+               }catch (InterruptedException e) {
+                  Thread.currentThread ().interrupt ();
+               }finally {
+                  done.countDown ();
+               }//end try
+            }
+         });
+         worker.start ();
+      }//end for
+
+      long t0 = System.nanoTime ();
+      deadline[0] = t0 + seconds * 1000000000L;
+      start.countDown ();
+      done.await ();
+      double elapsed = (System.nanoTime () - t0) / 1e9;
+
+      LatencyHistogram summary = merge (summaries);
+      LatencyHistogram page = merge (pageReads);
+      LatencyHistogram view = merge (views);
+      System.out.println ("Operation\tCount\tOps/s\tp50 us\tp99 us\tmax us");
+      print ("summary", summary, elapsed);
+      print ("page", page, elapsed);
+      print ("view", view, elapsed);
+      System.out.println (history.stats ());
+      System.out.println (threads + " threads, errors: " + errors.get () + ", elapsed " + elapsed + " s");
+      return errors.get () == 0;
+   }//end run
+
+   private static LatencyHistogram merge (LatencyHistogram[] histograms) {
+      LatencyHistogram merged = new LatencyHistogram ();
+      for (LatencyHistogram h : histograms)
+         merged.add (h);
+      return merged;
+   }//end merge
+
+   private static void print (String operation, LatencyHistogram h, double elapsed) {
+      System.out.println (operation + "\t" + h.count () + "\t" + Math.round (h.count () / elapsed) + "\t" +
+                          QueryBenchmark.micros (h.percentile (50)) + "\t" +
+                          QueryBenchmark.micros (h.percentile (99)) + "\t" +
+                          QueryBenchmark.micros (h.max ()));
+   }//end print
+
+}//end TripHistoryBenchmark
@@ -0,0 +1,646 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Promotes waitlisted reservations to reserved, first come first served,
+ * as soon as their flight instance has a seat free.
+ *
+ * The waitlist of every FlightInstance is held in memory, ordered by
+ * ReservationID, which the booking sequence hands out in booking order.  It
+ * is read from Reservation when the promoter starts and then kept current by
+ * the triggers in sql/src/create_triggers.sql: reservation_changed adds
+ * reservations entering the waitlist and removes those leaving it, and
+ * instance_changed reports the seats free of every instance written, e.g.
+ * after a cancellation gave a seat back.
+ *
+ * A promoter thread serves the instances that have both a seat free and a
+ * waitlist.  It takes up to MAX_INSTANCES_PER_BATCH of them, in ascending
+ * order so concurrent promoters cannot deadlock, and promotes in one
+ * transaction: each instance's row is locked, its free seats are read, as
+ * many passengers as fit are moved from the head of its waitlist to
+ * reserved and SeatsSold grows by their number.  The row lock is the one
+ * BookingEngine's seat claim takes, so a promotion never oversells an
+ * instance; a reservation that left the waitlist meanwhile is skipped.
+ *
+ * On the partitioned schema an instance is its ID and date.  Each waitlist
+ * keeps its instance's date, from the waitlist read or instance_changed,
+ * and every statement matches on both; a waitlist whose date is not known
+ * yet locks the instance through its candidates' reservations.
+ *
+ * The time from a seat release reaching the promoter to the promotion's
+ * commit is recorded as the promotionLag feature of the metrics.
+ *
+ */
+public class WaitlistPromoter {
+
+   static final int MAX_INSTANCES_PER_BATCH = 32;
+
+   // waitlisted reservations of one instance tried per transaction
+   static final int MAX_CANDIDATES = 256;
+
+   static final long RETRY_MILLIS = 1000;
+   static final long IDLE_WAIT_MILLIS = 1000;
+
+   static final String WAITLIST_SQL =
+      "SELECT R.FlightInstanceID, R.ReservationID, " +
+      "COALESCE(FI.SeatsTotal, 0) - COALESCE(FI.SeatsSold, 0), to_char(FI.FlightDate, 'YYYY-MM-DD') " +
+      "FROM Reservation R " +
+      "JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID " +
+      "WHERE R.Status = 'waitlist'";
+
+   static final String PARTITIONED_WAITLIST_SQL =
+      WAITLIST_SQL + " AND R.FlightDate = FI.FlightDate";
+
+   static final String LOCK_INSTANCE_SQL =
+      "SELECT COALESCE(SeatsTotal, 0) - COALESCE(SeatsSold, 0), to_char(FlightDate, 'YYYY-MM-DD') " +
+      "FROM FlightInstance WHERE FlightInstanceID = ? FOR UPDATE";
+
+   // returns the reservations it promoted; the others left the waitlist
+   static final String PROMOTE_SQL =
+      "UPDATE Reservation SET Status = 'reserved' " +
+      "WHERE ReservationID = ANY (CAST(? AS TEXT[])) AND FlightInstanceID = ? AND Status = 'waitlist' " +
+      "RETURNING ReservationID";
+
+   static final String TAKE_SEATS_SQL =
+      "UPDATE FlightInstance SET SeatsSold = COALESCE(SeatsSold, 0) + ? " +
+      "WHERE FlightInstanceID = ?";
+
+   // on the partitioned schema an instance is its ID and date, and the date
+   // picks the partition
+   static final String PARTITIONED_LOCK_INSTANCE_SQL =
+      "SELECT COALESCE(SeatsTotal, 0) - COALESCE(SeatsSold, 0), to_char(FlightDate, 'YYYY-MM-DD') " +
+      "FROM FlightInstance WHERE FlightInstanceID = ? AND FlightDate = CAST(? AS DATE) FOR UPDATE";
+   // a waitlist whose date is not known yet locks the instance of its
+   // first candidate still waiting, whose date routes it
+   static final String PARTITIONED_LOCK_INSTANCE_OF_SQL =
+      "SELECT COALESCE(FI.SeatsTotal, 0) - COALESCE(FI.SeatsSold, 0), to_char(FI.FlightDate, 'YYYY-MM-DD') " +
+      "FROM Reservation R " +
+      "JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID AND FI.FlightDate = R.FlightDate " +
+      "WHERE R.ReservationID = ANY (CAST(? AS TEXT[])) AND R.FlightInstanceID = ? " +
+      "AND R.Status = 'waitlist' LIMIT 1 FOR UPDATE OF FI";
+   static final String PARTITIONED_PROMOTE_SQL =
+      "UPDATE Reservation SET Status = 'reserved' " +
+      "WHERE ReservationID = ANY (CAST(? AS TEXT[])) AND FlightInstanceID = ? AND Status = 'waitlist' " +
+      "AND FlightDate = CAST(? AS DATE) " +
+      "RETURNING ReservationID";
+   static final String PARTITIONED_TAKE_SEATS_SQL =
+      TAKE_SEATS_SQL + " AND FlightDate = CAST(? AS DATE)";
+
+   // ReservationIDs are 'R' and a number of at least 4 digits, so the
+   // shorter one is older and equal lengths compare as text
+   static final Comparator<String> FIFO = new Comparator<String>() {
+      public int compare (String a, String b) {
+         return a.length () != b.length () ? a.length () - b.length () : a.compareTo (b);
+      }
+   };
+
+   /*
+    * The waitlist of one flight instance.
+    */
+   private static class Waitlist {
+      final TreeSet<String> waiting = new TreeSet<String>(FIFO);
+      // seats free as last reported, or -1 when unknown
+      int free = -1;
+      // the instance's date, YYYY-MM-DD, or null when unknown
+      String date = null;
+      // System.nanoTime of the first seat release not yet served, or 0
+      long releasedAt = 0;
+   }//end Waitlist
+
+   /*
+    * What one transaction did to one instance.
+    */
+   private static class Outcome {
+      final int instanceID;
+      final List<String> promoted = new ArrayList<String>();
+      // no longer on the waitlist
+      final List<String> gone = new ArrayList<String>();
+      int free;
+      String date;
+      boolean exhausted;
+
+      Outcome (int instanceID) {
+         this.instanceID = instanceID;
+      }
+   }//end Outcome
+
+   private final AirlineManagement _esql;
+   private final LatencyHistogram _lag = new LatencyHistogram ();
+   private final Thread _thread;
+
+   // guarded by this
+   private Map<Integer, Waitlist> _waitlists = new HashMap<Integer, Waitlist>();
+   // instances to serve, in ascending order
+   private final TreeSet<Integer> _due = new TreeSet<Integer>();
+   // events that arrived while the waitlists were being read, or null
+   private List<String[]> _replay = null;
+   private boolean _rebuild = true;
+   private boolean _busy = true;
+   private long _promoted = 0;
+   private long _transactions = 0;
+   private volatile boolean _closed = false;
+
+   /**
+    * Creates the promoter, subscribes it to reservation and instance
+    * changes and starts its thread, which first reads every waitlist.
+    *
+    * @param esql the database
+    * @param listener the listener delivering reservation_changed and
+    *        instance_changed events
+    */
+   public WaitlistPromoter (AirlineManagement esql, NotificationListener listener) {
+      this._esql = esql;
+      listener.listen (ManifestCache.CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            event (channel, payload);
+         }
+      });
+      listener.listen (FlightSearch.CHANNEL, new NotificationListener.Handler () {
+         public void notified (String channel, String payload) {
+            event (channel, payload);
+         }
+      });
+      this._thread = new Thread (new Runnable () {
+         public void run () { loop (); }
+      }, "waitlist-promoter");
+      this._thread.setDaemon (true);
+      this._thread.start ();
+   }//end WaitlistPromoter
+
+   /**
+    * Runs a promoter until the process is killed, printing its statistics
+    * every interval.
+    *
+    * @param args dbname, port, user and optionally the interval in seconds
+    */
+   public static void main (String[] args) {
+      if (args.length < 3) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            WaitlistPromoter.class.getName () +
+            " <dbname> <port> <user> [report interval seconds]");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      try {
+         long seconds = args.length > 3 ? Long.parseLong (args[3]) : 10;
+         esql = new AirlineManagement (args[0], args[1], args[2], "");
+         WaitlistPromoter promoter = esql.getWaitlistPromoter ();
+         while (true) {
+            Thread.sleep (seconds * 1000);
+            System.out.println (promoter.stats ());
+         }//end while
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+   }//end main
+
+   /**
+    * Stops the promoter thread, letting a running transaction finish.
+    */
+   public void close () {
+      synchronized (this) {
+         this._closed = true;
+         notifyAll ();
+      }//end synchronized
+      try {
+         this._thread.join (RETRY_MILLIS);
+      }catch (InterruptedException e) {
+         Thread.currentThread ().interrupt ();
+      }//end try
+   }//end close
+
+   /**
+    * Waits until every known seat release has been served.  Releases whose
+    * notification is still on its way are not waited for.
+    *
+    * @param millis the longest time to wait
+    * @return whether the promoter went idle in time
+    * @throws java.lang.InterruptedException when interrupted while waiting
+    */
+   public synchronized boolean awaitIdle (long millis) throws InterruptedException {
+      long deadline = System.currentTimeMillis () + millis;
+      while (this._busy || this._rebuild || !this._due.isEmpty ()) {
+         long left = deadline - System.currentTimeMillis ();
+         if (left <= 0)
+            return false;
+         wait (left);
+      }//end while
+      return true;
+   }//end awaitIdle
+
+   /**
+    * @return the time from seat releases to the commit of their promotions
+    */
+   public LatencyHistogram getLag () {
+      return this._lag;
+   }//end getLag
+
+   /**
+    * @return the number of reservations promoted so far
+    */
+   public synchronized long getPromoted () {
+      return this._promoted;
+   }//end getPromoted
+
+   /**
+    * @param flightInstanceID the flight instance
+    * @return the number of reservations on its waitlist
+    */
+   public synchronized int waiting (int flightInstanceID) {
+      Waitlist w = this._waitlists.get (flightInstanceID);
+      return w == null ? 0 : w.waiting.size ();
+   }//end waiting
+
+   /**
+    * @return one line of statistics
+    */
+   public synchronized String stats () {
+      long waiting = 0;
+      for (Waitlist w : this._waitlists.values ())
+         waiting += w.waiting.size ();
+      return "waitlist: " + this._waitlists.size () + " instances, " + waiting + " waiting, " +
+             this._promoted + " promoted in " + this._transactions + " transactions, lag p50 " +
+             this._lag.percentile (50) / 1000 + " us, p99 " + this._lag.percentile (99) / 1000 +
+             " us, max " + this._lag.max () / 1000 + " us";
+   }//end stats
+
+   /*
+    * Applies a notification, or keeps it for after the waitlists are read.
+    */
+   synchronized void event (String channel, String payload) {
+      if (this._replay != null)
+         this._replay.add (new String[] { channel, payload });
+      else if (channel.equals (ManifestCache.CHANNEL))
+         reservationChanged (payload);
+      else
+         instanceChanged (payload);
+   }//end event
+
+   /*
+    * Applies a reservation_changed payload, "instance:status:reservation".
+    * An unreadable or missing payload rereads every waitlist.
+    */
+   private void reservationChanged (String payload) {
+      int first = payload == null ? -1 : payload.indexOf (':');
+      int second = first < 0 ? -1 : payload.indexOf (':', first + 1);
+      Integer id = second < 0 ? null : parse (payload.substring (0, first));
+      if (id == null) {
+         rebuildLater ();
+         return;
+      }//end if
+      String status = payload.substring (first + 1, second);
+      String reservationID = payload.substring (second + 1);
+
+      Waitlist w = this._waitlists.get (id);
+      if (status.equals ("waitlist")) {
+         if (w == null)
+            this._waitlists.put (id, w = new Waitlist ());
+         w.waiting.add (reservationID);
+         // a seat that came free while the instance was full, or seats
+         // not known yet: check now
+         if (w.free != 0)
+            due (id);
+      } else if (w != null) {
+         w.waiting.remove (reservationID);
+         if (w.waiting.isEmpty () && !this._due.contains (id))
+            this._waitlists.remove (id);
+      }//end if
+   }//end reservationChanged
+
+   /*
+    * Applies an instance_changed payload, "id:date:seats:cents:flight" for
+    * an instance written; other forms do not change any seats.
+    */
+   private void instanceChanged (String payload) {
+      if (payload == null || payload.isEmpty ()) {
+         rebuildLater ();
+         return;
+      }//end if
+      String[] fields = payload.split (":", 5);
+      if (fields.length < 5)
+         return;
+      Integer id = parse (fields[0]);
+      Integer free = parse (fields[2]);
+      if (id == null || free == null) {
+         rebuildLater ();
+         return;
+      }//end if
+      Waitlist w = this._waitlists.get (id);
+      if (w == null)
+         return;
+      w.free = free.intValue ();
+      w.date = fields[1];
+      if (w.free > 0 && !w.waiting.isEmpty ()) {
+         if (w.releasedAt == 0)
+            w.releasedAt = System.nanoTime ();
+         due (id);
+      }//end if
+   }//end instanceChanged
+
+   private void due (Integer id) {
+      this._due.add (id);
+      notifyAll ();
+   }//end due
+
+   private void rebuildLater () {
+      this._rebuild = true;
+      notifyAll ();
+   }//end rebuildLater
+
+   private void loop () {
+      while (!this._closed) {
+         List<Integer> ids = new ArrayList<Integer>();
+         List<String> dates = new ArrayList<String>();
+         List<String[]> candidates = new ArrayList<String[]>();
+         boolean rebuild;
+         try {
+            synchronized (this) {
+               while (this._due.isEmpty () && !this._rebuild && !this._closed) {
+                  this._busy = false;
+                  notifyAll ();
+                  wait (IDLE_WAIT_MILLIS);
+               }//end while
+               if (this._closed)
+                  break;
+               this._busy = true;
+               rebuild = this._rebuild;
+               if (!rebuild) {
+                  while (!this._due.isEmpty () && ids.size () < MAX_INSTANCES_PER_BATCH) {
+                     Integer id = this._due.pollFirst ();
+                     Waitlist w = this._waitlists.get (id);
+                     if (w == null || w.waiting.isEmpty ())
+                        continue;
+                     String[] heads = new String[Math.min (MAX_CANDIDATES, w.waiting.size ())];
+                     Iterator<String> it = w.waiting.iterator ();
+                     for (int i = 0; i < heads.length; ++i)
+                        heads[i] = it.next ();
+                     ids.add (id);
+                     dates.add (w.date);
+                     candidates.add (heads);
+                  }//end while
+               }//end if
+            }//end synchronized
+            if (rebuild)
+               rebuild ();
+            else if (!ids.isEmpty ())
+               promote (ids, dates, candidates);
+         }catch (InterruptedException e) {
+            break;
+         }catch (SQLException e) {
+            if (this._closed)
+               break;
+            System.err.println ("Waitlist promoter: " + e.getMessage ());
+            synchronized (this) {
+               this._due.addAll (ids);
+            }//end synchronized
+            try {
+               Thread.sleep (RETRY_MILLIS);
+            }catch (InterruptedException ie) {
+               break;
+            }//end try
+         }//end try
+      }//end while
+      synchronized (this) {
+         this._busy = false;
+         notifyAll ();
+      }//end synchronized
+   }//end loop
+
+   /*
+    * Reads every waitlist, then applies the events that arrived meanwhile.
+    * Every instance with seats free is served, without counting the lag.
+    */
+   private void rebuild () throws SQLException {
+      synchronized (this) {
+         this._rebuild = false;
+         this._replay = new ArrayList<String[]>();
+      }//end synchronized
+      final Map<Integer, Waitlist> waitlists = new HashMap<Integer, Waitlist>();
+      boolean loaded = false;
+      try {
+         this._esql.executeQueryStreaming (this._esql.isPartitioned () ? PARTITIONED_WAITLIST_SQL : WAITLIST_SQL,
+                                           new RowHandler () {
+            public void start (ResultSetMetaData rsmd) {
+            }
+            public void row (ResultSet rs) throws SQLException {
+               Integer id = rs.getInt (1);
+               Waitlist w = waitlists.get (id);
+               if (w == null) {
+                  waitlists.put (id, w = new Waitlist ());
+                  w.free = rs.getInt (3);
+                  w.date = rs.getString (4);
+               }//end if
+               w.waiting.add (rs.getString (2));
+            }
+         });
+         loaded = true;
+      }finally {
+         synchronized (this) {
+            List<String[]> replay = this._replay;
+            this._replay = null;
+            if (loaded) {
+               this._waitlists = waitlists;
+               this._due.clear ();
+               for (Map.Entry<Integer, Waitlist> e : waitlists.entrySet ())
+                  if (e.getValue ().free > 0)
+                     this._due.add (e.getKey ());
+               for (String[] event : replay)
+                  event (event[0], event[1]);
+            } else {
+               this._rebuild = true;
+            }//end if
+         }//end synchronized
+      }//end try
+   }//end rebuild
+
+   /*
+    * Promotes the heads of the given waitlists in one transaction, retried
+    * after serialization failures and deadlocks, then applies the outcome.
+    */
+   private void promote (final List<Integer> ids, final List<String> dates, final List<String[]> candidates)
+         throws SQLException {
+      final boolean partitioned = this._esql.isPartitioned ();
+      long t0 = System.nanoTime ();
+      List<Outcome> outcomes;
+      try {
+         outcomes = this._esql.withConnection (new AirlineManagement.ConnectionWork<List<Outcome>>() {
+            public List<Outcome> run (PooledConnection conn) throws SQLException {
+               for (int attempt = 1; ; ++attempt) {
+                  try {
+                     return promote (conn, partitioned, ids, dates, candidates);
+                  }catch (SQLException e) {
+                     if (attempt >= BookingEngine.MAX_ATTEMPTS || !BookingEngine.isRetryable (e))
+                        throw e;
+                     BookingEngine.backoff (attempt);
+                  }//end try
+               }//end for
+            }
+         });
+      }catch (SQLException e) {
+         this._esql.getMetrics ().featureFailed ("promote");
+         throw e;
+      }//end try
+      long now = System.nanoTime ();
+
+      int promoted = 0;
+      synchronized (this) {
+         for (Outcome o : outcomes) {
+            promoted += o.promoted.size ();
+            Waitlist w = this._waitlists.get (o.instanceID);
+            if (w == null)
+               continue;
+            w.waiting.removeAll (o.promoted);
+            w.waiting.removeAll (o.gone);
+            w.free = o.free;
+            if (o.date != null)
+               w.date = o.date;
+            if (!o.promoted.isEmpty () && w.releasedAt != 0) {
+               this._lag.record (now - w.releasedAt);
+               this._esql.getMetrics ().feature ("promotionLag", now - w.releasedAt, o.promoted.size ());
+            }//end if
+            if (w.waiting.isEmpty ()) {
+               this._waitlists.remove (o.instanceID);
+            } else if (o.free > 0 && o.exhausted) {
+               // more seats than the candidates taken: serve the rest next
+               this._due.add (o.instanceID);
+            } else {
+               w.releasedAt = 0;
+            }//end if
+         }//end for
+         this._promoted += promoted;
+         ++this._transactions;
+      }//end synchronized
+      this._esql.getMetrics ().feature ("promote", now - t0, promoted);
+   }//end promote
+
+   /*
+    * One promotion transaction.
+    */
+   private static List<Outcome> promote (PooledConnection conn, boolean partitioned, List<Integer> ids,
+                                         List<String> dates, List<String[]> candidates) throws SQLException {
+      Connection c = conn.getConnection ();
+      c.setAutoCommit (false);
+      try {
+         List<Outcome> outcomes = new ArrayList<Outcome>();
+         for (int k = 0; k < ids.size (); ++k) {
+            int id = ids.get (k).intValue ();
+            String[] heads = candidates.get (k);
+            Outcome o = new Outcome (id);
+            outcomes.add (o);
+
+            String date = dates.get (k);
+            PreparedStatement lock;
+            if (!partitioned) {
+               lock = conn.prepare (LOCK_INSTANCE_SQL);
+               AirlineManagement.bind (lock, id);
+            } else if (date != null) {
+               lock = conn.prepare (PARTITIONED_LOCK_INSTANCE_SQL);
+               AirlineManagement.bind (lock, id, date);
+            } else {
+               lock = conn.prepare (PARTITIONED_LOCK_INSTANCE_OF_SQL);
+               AirlineManagement.bind (lock, c.createArrayOf ("text", heads), id);
+            }//end if
+            ResultSet rs = lock.executeQuery ();
+            try {
+               if (!rs.next ()) {
+                  // the instance is gone, and its reservations with it, or
+                  // none of the candidates is waiting any more
+                  o.gone.addAll (Arrays.asList (heads));
+                  continue;
+               }//end if
+               o.free = rs.getInt (1);
+               o.date = date = rs.getString (2);
+            }finally {
+               rs.close ();
+            }//end try
+
+            PreparedStatement promote = conn.prepare (partitioned ? PARTITIONED_PROMOTE_SQL : PROMOTE_SQL);
+            int next = 0;
+            while (o.promoted.size () < o.free && next < heads.length) {
+               int n = Math.min (o.free - o.promoted.size (), heads.length - next);
+               String[] chunk = Arrays.copyOfRange (heads, next, next + n);
+               // bound as an array, not a literal: ReservationID is free text
+               Array array = c.createArrayOf ("text", chunk);
+               if (partitioned)
+                  AirlineManagement.bind (promote, array, id, date);
+               else
+                  AirlineManagement.bind (promote, array, id);
+               // only the rows the update returns count as promoted; no
+               // update count is taken on trust
+               Set<String> done = new HashSet<String>();
+               rs = promote.executeQuery ();
+               try {
+                  while (rs.next ())
+                     done.add (rs.getString (1));
+               }finally {
+                  rs.close ();
+               }//end try
+               for (String reservationID : chunk) {
+                  if (done.contains (reservationID))
+                     o.promoted.add (reservationID);
+                  else
+                     o.gone.add (reservationID);
+               }//end for
+               next += n;
+            }//end while
+            o.exhausted = next == heads.length;
+
+            if (!o.promoted.isEmpty ()) {
+               PreparedStatement take = conn.prepare (partitioned ? PARTITIONED_TAKE_SEATS_SQL : TAKE_SEATS_SQL);
+               if (partitioned)
+                  AirlineManagement.bind (take, o.promoted.size (), id, date);
+               else
+                  AirlineManagement.bind (take, o.promoted.size (), id);
+               take.executeUpdate ();
+               o.free -= o.promoted.size ();
+            }//end if
+         }//end for
+         c.commit ();
+         return outcomes;
+      }catch (SQLException e) {
+         c.rollback ();
+         throw e;
+      }finally {
+         c.setAutoCommit (true);
+      }//end try
+   }//end promote
+
+   private static Integer parse (String number) {
+      try {
+         return Integer.valueOf (number);
+      }catch (NumberFormatException e) {
+         return null;
+      }//end try
+   }//end parse
+
+}//end WaitlistPromoter
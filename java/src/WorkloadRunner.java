@@ -0,0 +1,400 @@
+/*
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless mode: replays a workload file through the same query logic the
+ * interactive menu uses, from a number of worker threads, and reports the
+ * throughput and latency of each operation at the end.
+ *
+ * A workload file holds one operation per line, either as CSV
+ *
+ *    feature2,1234,2025-05-06
+ *
+ * or, when the file name ends in .jsonl or .json, as JSON
+ *
+ *    {"op": "feature2", "params": ["1234", "2025-05-06"]}
+ *
+ * The operations are feature1 to feature10, taking the values the feature
+ * prompts for in prompt order, login (username, password), search
+ * (departure city, arrival city, date), book (customer ID, flight number,
+ * date), and maintenance and repair (plane ID, repair code, date, pilot or
+ * technician ID).  Blank lines and lines starting with '#' are skipped.
+ * Query output is formatted as the menu would print it and then discarded.
+ * Maintenance requests and repairs are queued to the MaintenanceIngestor
+ * and waited for, so their latency includes the batch that wrote them, and
+ * a record the ingestor could not write counts as an error.
+ *
+ */
+public class WorkloadRunner {
+
+   /**
+    * One line of the workload.
+    */
+   static class Request {
+      final String op;
+      final String[] params;
+
+      Request (String op, String[] params) {
+         this.op = op;
+         this.params = params;
+      }
+   }//end Request
+
+   // tells a worker that the workload is exhausted.
+   static final Request END = new Request (null, null);
+
+   static final int QUEUE_PER_THREAD = 64;
+
+   private final AirlineManagement _esql;
+   private final BookingEngine _booking;
+   private final Map<String, LatencyHistogram> _latency = new ConcurrentHashMap<String, LatencyHistogram>();
+   private final Map<String, AtomicLong> _errors = new ConcurrentHashMap<String, AtomicLong>();
+
+   public static void main (String[] args) {
+      if (args.length < 5) {
+         System.err.println (
+            "Usage: " +
+            "java [-classpath <classpath>] " +
+            WorkloadRunner.class.getName () +
+            " <dbname> <port> <user> <workload file> <threads> [repeat]");
+         return;
+      }//end if
+
+      AirlineManagement esql = null;
+      try {
+         int threads = Integer.parseInt (args[4]);
+         int repeat = args.length > 5 ? Integer.parseInt (args[5]) : 1;
+         esql = new AirlineManagement (args[0], args[1], args[2], "", threads);
+         WorkloadRunner runner = new WorkloadRunner (esql);
+         long t0 = System.nanoTime ();
+         runner.run (args[3], threads, repeat);
+         runner.report ((System.nanoTime () - t0) / 1e9);
+      }catch (Exception e) {
+         System.err.println (e.getMessage ());
+      }finally {
+         if (esql != null)
+            esql.cleanup ();
+      }//end try
+   }//end main
+
+   public WorkloadRunner (AirlineManagement esql) {
+      this._esql = esql;
+      this._booking = new BookingEngine (esql);
+   }//end WorkloadRunner
+
+   /**
+    * Replays a workload file.  The file is read as the workers consume it,
+    * so its size is not limited by memory.
+    *
+    * @param file the workload file
+    * @param threads the number of worker threads
+    * @param repeat how many times to replay the file
+    * @throws java.io.IOException when the file cannot be read or parsed
+    * @throws java.lang.InterruptedException when interrupted while waiting
+    */
+   public void run (String file, int threads, int repeat) throws IOException, InterruptedException {
+      final BlockingQueue<Request> queue = new ArrayBlockingQueue<Request>(threads * QUEUE_PER_THREAD);
+      List<Thread> workers = new ArrayList<Thread>();
+      for (int t = 0; t < threads; ++t) {
+         Thread worker = new Thread (new Runnable () {
+            public void run () {
+               try {
+                  Request request;
+                  while ((request = queue.take ()) != END)
+                     execute (request);
+               }catch (InterruptedException e) {
+                  Thread.currentThread ().interrupt ();
+               }//end try
+            }
+         });
+         worker.start ();
+         workers.add (worker);
+      }//end for
+
+      boolean json = file.endsWith (".jsonl") || file.endsWith (".json");
+      try {
+         for (int r = 0; r < repeat; ++r) {
+            BufferedReader reader = new BufferedReader (new InputStreamReader (
+               new FileInputStream (file), StandardCharsets.UTF_8));
+            try {
+               String line;
+               int lineNo = 0;
+               while ((line = reader.readLine ()) != null) {
+                  ++lineNo;
+                  String trimmed = line.trim ();
+                  if (trimmed.isEmpty () || trimmed.startsWith ("#"))
+                     continue;
+                  try {
+                     queue.put (json ? parseJson (trimmed) : parseCsv (line, reader));
+                  }catch (IllegalArgumentException e) {
+                     throw new IOException (file + ":" + lineNo + ": " + e.getMessage ());
+                  }//end try
+               }//end while
+            }finally {
+               reader.close ();
+            }//end try
+         }//end for
+      }finally {
+         for (int t = 0; t < threads; ++t)
+            queue.put (END);
+         for (Thread worker : workers)
+            worker.join ();
+      }//end try
+   }//end run
+
+   /*
+    * Runs one request and records its latency, or counts its failure.
+    */
+   void execute (Request request) {
+      long t0 = System.nanoTime ();
+      try {
+         dispatch (request.op, request.params);
+         histogram (request.op).record (System.nanoTime () - t0);
+      }catch (Exception e) {
+         AtomicLong errors = this._errors.get (request.op);
+         if (errors == null) {
+            this._errors.putIfAbsent (request.op, new AtomicLong ());
+            errors = this._errors.get (request.op);
+         }//end if
+         errors.incrementAndGet ();
+      }//end try
+   }//end execute
+
+   private void dispatch (String op, String[] params) throws SQLException {
+      if (op.startsWith ("feature")) {
+         int feature;
+         try {
+            feature = Integer.parseInt (op.substring ("feature".length ()));
+         }catch (NumberFormatException e) {
+            throw new SQLException ("Unknown operation " + op);
+         }//end try
+         this._esql.runFeature (feature, new RowPrinter (new NullWriter ()), params);
+      } else if (op.equals ("login")) {
+         if (params.length != 2)
+            throw new SQLException ("login expects username and password");
+         Authenticator.Session session = this._esql.authenticate (params[0], params[1]);
+         // replayed logins do not keep their sessions
+         if (session != null)
+            this._esql.getAuthenticator ().logout (session.token);
+      } else if (op.equals ("search")) {
+         if (params.length != 3)
+            throw new SQLException ("search expects departure city, arrival city and date");
+         this._esql.getFlightSearch ().search (params[0], params[1], params[2], FlightSearch.DEFAULT_MAX_RESULTS);
+      } else if (op.equals ("maintenance") || op.equals ("repair")) {
+         if (params.length != 4)
+            throw new SQLException (op + " expects plane ID, repair code, date and " +
+                                    (op.equals ("repair") ? "technician ID" : "pilot ID"));
+         // wait for the write, so the latency and errors are those of the
+         // batch that carried the record
+         boolean written;
+         try {
+            written = this._esql.getMaintenanceIngestor ().submit (op.equals ("repair")
+               ? MaintenanceIngestor.Record.repair (params[0], params[1], params[2], params[3])
+               : MaintenanceIngestor.Record.maintenanceRequest (params[0], params[1], params[2], params[3])).join ();
+         }catch (InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            throw new SQLException ("interrupted while queueing " + op);
+         }//end try
+         if (!written)
+            throw new SQLException (op + " for plane " + params[0] + " was not written");
+      } else if (op.equals ("book")) {
+         if (params.length != 3)
+            throw new SQLException ("book expects customer ID, flight number and date");
+         this._booking.book (Integer.parseInt (params[0].trim ()), params[1], params[2]);
+      } else {
+         throw new SQLException ("Unknown operation " + op);
+      }//end if
+   }//end dispatch
+
+   private LatencyHistogram histogram (String op) {
+      LatencyHistogram histogram = this._latency.get (op);
+      if (histogram == null) {
+         this._latency.putIfAbsent (op, new LatencyHistogram ());
+         histogram = this._latency.get (op);
+      }//end if
+      return histogram;
+   }//end histogram
+
+   /**
+    * Prints the throughput, latency percentiles and errors of each operation
+    * and of the whole workload.
+    *
+    * @param seconds the wall clock time the workload took
+    */
+   public void report (double seconds) {
+      Map<String, LatencyHistogram> ops = new TreeMap<String, LatencyHistogram>(this._latency);
+      for (String op : this._errors.keySet ())
+         if (!ops.containsKey (op))
+            ops.put (op, new LatencyHistogram ());
+
+      LatencyHistogram all = new LatencyHistogram ();
+      long allErrors = 0;
+      System.out.println ("Operation\tCount\tOps/s\tp50 ms\tp99 ms\tmax ms\tErrors");
+      for (Map.Entry<String, LatencyHistogram> op : ops.entrySet ()) {
+         AtomicLong errors = this._errors.get (op.getKey ());
+         long e = errors == null ? 0 : errors.get ();
+         printRow (op.getKey (), op.getValue (), e, seconds);
+         all.add (op.getValue ());
+         allErrors += e;
+      }//end for
+      printRow ("total", all, allErrors, seconds);
+      System.out.println ("Elapsed " + seconds + " s");
+   }//end report
+
+   private static void printRow (String name, LatencyHistogram h, long errors, double seconds) {
+      System.out.println (name + "\t" + h.count () + "\t" + Math.round (h.count () / seconds) + "\t" +
+                          millis (h.percentile (50)) + "\t" + millis (h.percentile (99)) + "\t" +
+                          millis (h.max ()) + "\t" + errors);
+   }//end printRow
+
+   static String millis (long nanos) {
+      return String.format ("%.3f", nanos / 1e6);
+   }//end millis
+
+   /*
+    * op,param,param,... with the quoting rules of the data files.
+    */
+   static Request parseCsv (String line, BufferedReader reader) throws IOException {
+      List<String> fields = BulkLoader.parseCsv (line, reader);
+      String[] params = new String[fields.size () - 1];
+      for (int i = 0; i < params.length; ++i) {
+         String field = fields.get (i + 1);
+         params[i] = field == null ? "" : field;
+      }//end for
+      return new Request (fields.get (0).trim (), params);
+   }//end parseCsv
+
+   /*
+    * {"op": "...", "params": [...]}.  Only the two keys are understood;
+    * parameters may be strings, numbers or null.
+    */
+   static Request parseJson (String line) {
+      JsonCursor in = new JsonCursor (line);
+      String op = null;
+      List<String> params = new ArrayList<String>();
+      in.expect ('{');
+      while (!in.consume ('}')) {
+         if (in.consume (','))
+            continue;
+         String key = in.string ();
+         in.expect (':');
+         if (key.equals ("op")) {
+            op = in.string ();
+         } else if (key.equals ("params")) {
+            in.expect ('[');
+            while (!in.consume (']')) {
+               if (!in.consume (','))
+                  params.add (in.value ());
+            }//end while
+         } else {
+            in.value ();
+         }//end if
+      }//end while
+      if (op == null)
+         throw new IllegalArgumentException ("missing \"op\"");
+      return new Request (op, params.toArray (new String[params.size ()]));
+   }//end parseJson
+
+   /**
+    * Reads the flat JSON of a workload line.
+    */
+   static class JsonCursor {
+      private final String _s;
+      private int _pos = 0;
+
+      JsonCursor (String s) {
+         this._s = s;
+      }
+
+      private void skipSpace () {
+         while (this._pos < this._s.length () && Character.isWhitespace (this._s.charAt (this._pos)))
+            ++this._pos;
+      }
+
+      boolean consume (char c) {
+         skipSpace ();
+         if (this._pos < this._s.length () && this._s.charAt (this._pos) == c) {
+            ++this._pos;
+            return true;
+         }//end if
+         if (this._pos >= this._s.length ())
+            throw new IllegalArgumentException ("unexpected end of line");
+         return false;
+      }
+
+      void expect (char c) {
+         if (!consume (c))
+            throw new IllegalArgumentException ("expected '" + c + "' at column " + (this._pos + 1));
+      }
+
+      // a string, or a bare number, true, false or null, as text
+      String value () {
+         skipSpace ();
+         if (this._pos < this._s.length () && this._s.charAt (this._pos) == '"')
+            return string ();
+         int start = this._pos;
+         while (this._pos < this._s.length () && ",]} \t".indexOf (this._s.charAt (this._pos)) < 0)
+            ++this._pos;
+         String bare = this._s.substring (start, this._pos);
+         if (bare.isEmpty ())
+            throw new IllegalArgumentException ("expected a value at column " + (start + 1));
+         return bare.equals ("null") ? "" : bare;
+      }
+
+      String string () {
+         expect ('"');
+         StringBuilder out = new StringBuilder ();
+         while (true) {
+            if (this._pos >= this._s.length ())
+               throw new IllegalArgumentException ("unterminated string");
+            char c = this._s.charAt (this._pos++);
+            if (c == '"')
+               return out.toString ();
+            if (c != '\\') {
+               out.append (c);
+               continue;
+            }//end if
+            if (this._pos >= this._s.length ())
+               throw new IllegalArgumentException ("unterminated string");
+            char e = this._s.charAt (this._pos++);
+            switch (e) {
+               case 'n': out.append ('\n'); break;
+               case 't': out.append ('\t'); break;
+               case 'r': out.append ('\r'); break;
+               case 'b': out.append ('\b'); break;
+               case 'f': out.append ('\f'); break;
+               case 'u':
+                  if (this._pos + 4 > this._s.length ())
+                     throw new IllegalArgumentException ("bad \\u escape");
+                  out.append ((char) Integer.parseInt (this._s.substring (this._pos, this._pos + 4), 16));
+                  this._pos += 4;
+                  break;
+               default: out.append (e); break;
+            }//end switch
+         }//end while
+      }
+   }//end JsonCursor
+
+}//end WorkloadRunner
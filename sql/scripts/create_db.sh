@@ -6,6 +6,16 @@ DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
 echo $DIR 
 cs166_createdb $USER"_project_phase_3_DB"
 cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/create_tables.sql
+# "partitioned" partitions FlightInstance, Reservation and FlightDailyStats
+# by month of FlightDate
+if [ "$1" == "partitioned" ]; then
+  cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/create_tables_partitioned.sql
+fi
 cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/create_indexes.sql
-cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/load_data.sql
+if [ "$1" == "partitioned" ]; then
+  cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/load_data_partitioned.sql
+else
+  cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/load_data.sql
+fi
 
+cs166_psql -p $PGPORT $USER"_project_phase_3_DB" < $DIR/../src/create_triggers.sql
@@ -0,0 +1,7 @@
+#!/bin/bash
+#create the partitions of the coming months and archive the old ones of the
+#partitioned schema; run daily, e.g. from cron
+#Usage: maintain_partitions.sh [months ahead] [months retained]
+AHEAD=${1:-12}
+RETAIN=${2:-NULL}
+cs166_psql -p $PGPORT $USER"_project_phase_3_DB" -c "SELECT maintain_flight_partitions($AHEAD, $RETAIN)"
@@ -1,4 +1,5 @@
 -- Drop existing tables
+DROP TABLE IF EXISTS FlightDailyStats;
 DROP TABLE IF EXISTS MaintenanceRequest;
 DROP TABLE IF EXISTS Repair;
 DROP TABLE IF EXISTS Technician;
@@ -12,6 +13,10 @@ DROP TABLE IF EXISTS Pilot;
 
 DROP TABLE IF EXISTS UserAccount;
 
+DROP SEQUENCE IF EXISTS ReservationID_seq;
+DROP SEQUENCE IF EXISTS RepairID_seq;
+DROP SEQUENCE IF EXISTS MaintenanceRequestID_seq;
+
 --User Account Table
 CREATE TABLE UserAccount (
     UserID SERIAL PRIMARY KEY,
@@ -62,6 +67,21 @@ CREATE TABLE FlightInstance (
     FOREIGN KEY (FlightNumber) REFERENCES Flight(FlightNumber)
 );
 
+-- Per flight and day totals of FlightInstance, kept up to date by the
+-- triggers in create_triggers.sql and read by feature10
+CREATE TABLE FlightDailyStats (
+    FlightNumber TEXT,
+    FlightDate DATE,
+    NumInstances INTEGER NOT NULL DEFAULT 0,
+    NumDepartedOnTime INTEGER NOT NULL DEFAULT 0,
+    NumDepartedDelayed INTEGER NOT NULL DEFAULT 0,
+    NumArrivedOnTime INTEGER NOT NULL DEFAULT 0,
+    NumArrivedDelayed INTEGER NOT NULL DEFAULT 0,
+    SeatsSold BIGINT NOT NULL DEFAULT 0,
+    SeatsUnsold BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (FlightNumber, FlightDate)
+);
+
 -- Customer Table
 CREATE TABLE Customer (
     CustomerID INTEGER PRIMARY KEY,
@@ -84,6 +104,9 @@ CREATE TABLE Reservation (
     FOREIGN KEY (FlightInstanceID) REFERENCES FlightInstance(FlightInstanceID)
 );
 
+-- Numeric part of new ReservationIDs ('R' followed by at least 4 digits)
+CREATE SEQUENCE ReservationID_seq;
+
 -- Technician Table
 CREATE TABLE Technician (
     TechnicianID TEXT PRIMARY KEY,
@@ -101,6 +124,9 @@ CREATE TABLE Repair (
     FOREIGN KEY (TechnicianID) REFERENCES Technician(TechnicianID)
 );
 
+-- RepairIDs of ingested repairs
+CREATE SEQUENCE RepairID_seq;
+
 -- Pilot Table
 CREATE TABLE Pilot (
     PilotID TEXT PRIMARY KEY,
@@ -116,4 +142,7 @@ CREATE TABLE MaintenanceRequest (
     PilotID TEXT,
     FOREIGN KEY (PlaneID) REFERENCES Plane(PlaneID),
     FOREIGN KEY (PilotID) REFERENCES Pilot(PilotID)
-);
\ No newline at end of file
+);
+
+-- RequestIDs of ingested maintenance requests
+CREATE SEQUENCE MaintenanceRequestID_seq;
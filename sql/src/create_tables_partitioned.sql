@@ -0,0 +1,156 @@
+-- Date-partitioned variant of the flight history tables.  Run after
+-- create_tables.sql: it replaces FlightInstance, Reservation and
+-- FlightDailyStats by tables range partitioned on FlightDate, one partition
+-- per month, so date-filtered queries read only the months they ask for and
+-- old months can be detached instead of deleted row by row.
+--
+-- Reservation carries the FlightDate of its flight instance, so it is
+-- partitioned along with it; the foreign key on (FlightInstanceID,
+-- FlightDate) keeps the copy right and cascades date changes.  The keys
+-- include FlightDate, as keys of partitioned tables must, so
+-- FlightInstanceID and ReservationID are only unique per date.
+--
+-- Requires PostgreSQL 12 or later (foreign keys to partitioned tables).
+
+DROP TABLE IF EXISTS FlightDailyStats;
+DROP TABLE IF EXISTS Reservation;
+DROP TABLE IF EXISTS FlightInstance;
+
+-- FlightInstance Table
+CREATE TABLE FlightInstance (
+    FlightInstanceID INTEGER,
+    FlightNumber TEXT,
+    FlightDate DATE NOT NULL,
+    DepartedOnTime BOOLEAN,
+    ArrivedOnTime BOOLEAN,
+    SeatsTotal INTEGER,
+    SeatsSold INTEGER,
+    NumOfStops INTEGER,
+    TicketCost DECIMAL(10,2),
+    PRIMARY KEY (FlightInstanceID, FlightDate),
+    FOREIGN KEY (FlightNumber) REFERENCES Flight(FlightNumber)
+) PARTITION BY RANGE (FlightDate);
+
+-- Per flight and day totals of FlightInstance, kept up to date by the
+-- triggers in create_triggers.sql and read by feature10
+CREATE TABLE FlightDailyStats (
+    FlightNumber TEXT,
+    FlightDate DATE,
+    NumInstances INTEGER NOT NULL DEFAULT 0,
+    NumDepartedOnTime INTEGER NOT NULL DEFAULT 0,
+    NumDepartedDelayed INTEGER NOT NULL DEFAULT 0,
+    NumArrivedOnTime INTEGER NOT NULL DEFAULT 0,
+    NumArrivedDelayed INTEGER NOT NULL DEFAULT 0,
+    SeatsSold BIGINT NOT NULL DEFAULT 0,
+    SeatsUnsold BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (FlightNumber, FlightDate)
+) PARTITION BY RANGE (FlightDate);
+
+-- Reservation Table
+CREATE TABLE Reservation (
+    ReservationID TEXT,
+    CustomerID INTEGER,
+    FlightInstanceID INTEGER,
+    Status TEXT CHECK(Status IN ('reserved', 'waitlist', 'flown')),
+    FlightDate DATE NOT NULL,
+    PRIMARY KEY (ReservationID, FlightDate),
+    FOREIGN KEY (CustomerID) REFERENCES Customer(CustomerID),
+    FOREIGN KEY (FlightInstanceID, FlightDate)
+        REFERENCES FlightInstance(FlightInstanceID, FlightDate) ON UPDATE CASCADE
+) PARTITION BY RANGE (FlightDate);
+
+-- Creates the monthly partitions, named <table>_pYYYY_MM, of the three
+-- tables for every month from first_day to last_day that has none yet, and
+-- returns how many were created.
+CREATE OR REPLACE FUNCTION create_flight_partitions(first_day DATE, last_day DATE) RETURNS INTEGER AS $$
+DECLARE
+    first_of_month DATE;
+    tbl TEXT;
+    part TEXT;
+    created INTEGER := 0;
+BEGIN
+    IF first_day IS NULL OR last_day IS NULL THEN
+        RETURN 0;
+    END IF;
+    first_of_month := date_trunc('month', first_day)::DATE;
+    WHILE first_of_month <= last_day LOOP
+        FOREACH tbl IN ARRAY ARRAY['flightinstance', 'reservation', 'flightdailystats'] LOOP
+            part := tbl || to_char(first_of_month, '"_p"YYYY_MM');
+            IF to_regclass(part) IS NULL THEN
+                EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                               part, tbl, first_of_month, (first_of_month + INTERVAL '1 month')::DATE);
+                created := created + 1;
+            END IF;
+        END LOOP;
+        first_of_month := (first_of_month + INTERVAL '1 month')::DATE;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Detaches the partitions of the months that end on or before before_day
+-- and moves them to the schema archive, where they can be dumped and
+-- dropped without touching the live tables.  Returns how many were
+-- archived.  Detaching fires no row triggers, so the in-process caches are
+-- told that every instance and manifest may have changed.
+CREATE OR REPLACE FUNCTION archive_flight_partitions(before_day DATE) RETURNS INTEGER AS $$
+DECLARE
+    p RECORD;
+    fk RECORD;
+    archived INTEGER := 0;
+BEGIN
+    CREATE SCHEMA IF NOT EXISTS archive;
+    -- reservations first: their foreign key pins the instances of their month
+    FOR p IN
+        SELECT parent.relname AS tbl, c.relname AS part
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        JOIN pg_class parent ON parent.oid = i.inhparent
+        WHERE parent.oid IN (to_regclass('flightinstance'), to_regclass('reservation'),
+                             to_regclass('flightdailystats'))
+          AND c.relname ~ '_p[0-9]{4}_[0-9]{2}$'
+          AND (to_date(right(c.relname, 7), 'YYYY_MM') + INTERVAL '1 month')::DATE <= before_day
+        ORDER BY parent.relname = 'flightinstance', c.relname
+    LOOP
+        EXECUTE format('ALTER TABLE %I DETACH PARTITION %I', p.tbl, p.part);
+        -- a detached partition keeps its foreign keys, which would pin the
+        -- instances it references
+        FOR fk IN
+            SELECT conname FROM pg_constraint
+            WHERE conrelid = to_regclass(p.part) AND contype = 'f'
+        LOOP
+            EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', p.part, fk.conname);
+        END LOOP;
+        EXECUTE format('ALTER TABLE %I SET SCHEMA archive', p.part);
+        archived := archived + 1;
+    END LOOP;
+    IF archived > 0 THEN
+        PERFORM pg_notify('instance_changed', '');
+        PERFORM pg_notify('reservation_changed', '');
+    END IF;
+    RETURN archived;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Run daily (see sql/scripts/maintain_partitions.sh): creates the
+-- partitions of the next months_ahead months, so bookings never find their
+-- month missing, and archives the months older than retain_months, unless
+-- retain_months is NULL.
+CREATE OR REPLACE FUNCTION maintain_flight_partitions(months_ahead INTEGER,
+                                                      retain_months INTEGER) RETURNS TEXT AS $$
+DECLARE
+    this_month DATE := date_trunc('month', CURRENT_DATE)::DATE;
+    created INTEGER;
+    archived INTEGER := 0;
+BEGIN
+    created := create_flight_partitions(this_month,
+                                        (this_month + make_interval(months => months_ahead))::DATE);
+    IF retain_months IS NOT NULL THEN
+        archived := archive_flight_partitions(
+                        (this_month - make_interval(months => retain_months))::DATE);
+    END IF;
+    RETURN created || ' partitions created, ' || archived || ' archived';
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT create_flight_partitions(CURRENT_DATE, (CURRENT_DATE + INTERVAL '12 months')::DATE);
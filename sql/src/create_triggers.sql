@@ -0,0 +1,413 @@
+-- Change notification triggers for the in-process caches of the Java
+-- application.  Run after load_data.sql so the initial load does not fire
+-- them.
+
+-- Reference tables: NOTIFY reference_changed '<table>:<key>', where key is
+-- the value of the column named by the trigger argument.  TRUNCATE sends an
+-- empty key, meaning every row of the table.
+CREATE OR REPLACE FUNCTION notify_reference_changed() RETURNS trigger AS $$
+DECLARE
+    new_key TEXT;
+    old_key TEXT;
+BEGIN
+    IF TG_LEVEL = 'STATEMENT' THEN
+        PERFORM pg_notify('reference_changed', lower(TG_TABLE_NAME) || ':');
+        RETURN NULL;
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        new_key := to_jsonb(NEW) ->> TG_ARGV[0];
+        PERFORM pg_notify('reference_changed', lower(TG_TABLE_NAME) || ':' || coalesce(new_key, ''));
+    END IF;
+    IF TG_OP <> 'INSERT' THEN
+        old_key := to_jsonb(OLD) ->> TG_ARGV[0];
+        IF old_key IS DISTINCT FROM new_key THEN
+            PERFORM pg_notify('reference_changed', lower(TG_TABLE_NAME) || ':' || coalesce(old_key, ''));
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS Flight_reference_changed ON Flight;
+CREATE TRIGGER Flight_reference_changed
+    AFTER INSERT OR UPDATE OR DELETE ON Flight
+    FOR EACH ROW EXECUTE PROCEDURE notify_reference_changed('flightnumber');
+DROP TRIGGER IF EXISTS Flight_reference_truncated ON Flight;
+CREATE TRIGGER Flight_reference_truncated
+    AFTER TRUNCATE ON Flight
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_changed();
+
+DROP TRIGGER IF EXISTS Plane_reference_changed ON Plane;
+CREATE TRIGGER Plane_reference_changed
+    AFTER INSERT OR UPDATE OR DELETE ON Plane
+    FOR EACH ROW EXECUTE PROCEDURE notify_reference_changed('planeid');
+DROP TRIGGER IF EXISTS Plane_reference_truncated ON Plane;
+CREATE TRIGGER Plane_reference_truncated
+    AFTER TRUNCATE ON Plane
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_changed();
+
+DROP TRIGGER IF EXISTS Schedule_reference_changed ON Schedule;
+CREATE TRIGGER Schedule_reference_changed
+    AFTER INSERT OR UPDATE OR DELETE ON Schedule
+    FOR EACH ROW EXECUTE PROCEDURE notify_reference_changed('flightnumber');
+DROP TRIGGER IF EXISTS Schedule_reference_truncated ON Schedule;
+CREATE TRIGGER Schedule_reference_truncated
+    AFTER TRUNCATE ON Schedule
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_changed();
+
+DROP TRIGGER IF EXISTS Technician_reference_changed ON Technician;
+CREATE TRIGGER Technician_reference_changed
+    AFTER INSERT OR UPDATE OR DELETE ON Technician
+    FOR EACH ROW EXECUTE PROCEDURE notify_reference_changed('technicianid');
+DROP TRIGGER IF EXISTS Technician_reference_truncated ON Technician;
+CREATE TRIGGER Technician_reference_truncated
+    AFTER TRUNCATE ON Technician
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_changed();
+
+DROP TRIGGER IF EXISTS Pilot_reference_changed ON Pilot;
+CREATE TRIGGER Pilot_reference_changed
+    AFTER INSERT OR UPDATE OR DELETE ON Pilot
+    FOR EACH ROW EXECUTE PROCEDURE notify_reference_changed('pilotid');
+DROP TRIGGER IF EXISTS Pilot_reference_truncated ON Pilot;
+CREATE TRIGGER Pilot_reference_truncated
+    AFTER TRUNCATE ON Pilot
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_changed();
+
+-- feature7 shows the latest repair as plane information, so repairs notify
+-- with the PlaneID they belong to.
+DROP TRIGGER IF EXISTS Repair_reference_changed ON Repair;
+CREATE TRIGGER Repair_reference_changed
+    AFTER INSERT OR UPDATE OR DELETE ON Repair
+    FOR EACH ROW EXECUTE PROCEDURE notify_reference_changed('planeid');
+DROP TRIGGER IF EXISTS Repair_reference_truncated ON Repair;
+CREATE TRIGGER Repair_reference_truncated
+    AFTER TRUNCATE ON Repair
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_reference_changed();
+
+-- FlightDailyStats: every FlightInstance insert, update and delete adds or
+-- subtracts the row's contribution to its (FlightNumber, FlightDate) bucket.
+CREATE OR REPLACE FUNCTION maintain_flight_daily_stats() RETURNS trigger AS $$
+BEGIN
+    IF TG_LEVEL = 'STATEMENT' THEN
+        TRUNCATE FlightDailyStats;
+        RETURN NULL;
+    END IF;
+    IF TG_OP <> 'INSERT' AND OLD.FlightNumber IS NOT NULL AND OLD.FlightDate IS NOT NULL THEN
+        UPDATE FlightDailyStats SET
+            NumInstances       = NumInstances - 1,
+            NumDepartedOnTime  = NumDepartedOnTime  - (OLD.DepartedOnTime IS TRUE)::INTEGER,
+            NumDepartedDelayed = NumDepartedDelayed - (OLD.DepartedOnTime IS FALSE)::INTEGER,
+            NumArrivedOnTime   = NumArrivedOnTime   - (OLD.ArrivedOnTime IS TRUE)::INTEGER,
+            NumArrivedDelayed  = NumArrivedDelayed  - (OLD.ArrivedOnTime IS FALSE)::INTEGER,
+            SeatsSold          = SeatsSold   - COALESCE(OLD.SeatsSold, 0),
+            SeatsUnsold        = SeatsUnsold - (COALESCE(OLD.SeatsTotal, 0) - COALESCE(OLD.SeatsSold, 0))
+        WHERE FlightNumber = OLD.FlightNumber AND FlightDate = OLD.FlightDate;
+        DELETE FROM FlightDailyStats
+        WHERE FlightNumber = OLD.FlightNumber AND FlightDate = OLD.FlightDate AND NumInstances = 0;
+    END IF;
+    IF TG_OP <> 'DELETE' AND NEW.FlightNumber IS NOT NULL AND NEW.FlightDate IS NOT NULL THEN
+        INSERT INTO FlightDailyStats AS S VALUES (
+            NEW.FlightNumber, NEW.FlightDate, 1,
+            (NEW.DepartedOnTime IS TRUE)::INTEGER,
+            (NEW.DepartedOnTime IS FALSE)::INTEGER,
+            (NEW.ArrivedOnTime IS TRUE)::INTEGER,
+            (NEW.ArrivedOnTime IS FALSE)::INTEGER,
+            COALESCE(NEW.SeatsSold, 0),
+            COALESCE(NEW.SeatsTotal, 0) - COALESCE(NEW.SeatsSold, 0))
+        ON CONFLICT (FlightNumber, FlightDate) DO UPDATE SET
+            NumInstances       = S.NumInstances       + EXCLUDED.NumInstances,
+            NumDepartedOnTime  = S.NumDepartedOnTime  + EXCLUDED.NumDepartedOnTime,
+            NumDepartedDelayed = S.NumDepartedDelayed + EXCLUDED.NumDepartedDelayed,
+            NumArrivedOnTime   = S.NumArrivedOnTime   + EXCLUDED.NumArrivedOnTime,
+            NumArrivedDelayed  = S.NumArrivedDelayed  + EXCLUDED.NumArrivedDelayed,
+            SeatsSold          = S.SeatsSold          + EXCLUDED.SeatsSold,
+            SeatsUnsold        = S.SeatsUnsold        + EXCLUDED.SeatsUnsold;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recomputes FlightDailyStats from scratch, e.g. after a bulk load with
+-- triggers disabled.
+CREATE OR REPLACE FUNCTION rebuild_flight_daily_stats() RETURNS void AS $$
+BEGIN
+    TRUNCATE FlightDailyStats;
+    INSERT INTO FlightDailyStats
+    SELECT FlightNumber, FlightDate, COUNT(*),
+           COUNT(*) FILTER (WHERE DepartedOnTime = TRUE),
+           COUNT(*) FILTER (WHERE DepartedOnTime = FALSE),
+           COUNT(*) FILTER (WHERE ArrivedOnTime = TRUE),
+           COUNT(*) FILTER (WHERE ArrivedOnTime = FALSE),
+           SUM(COALESCE(SeatsSold, 0)),
+           SUM(COALESCE(SeatsTotal, 0) - COALESCE(SeatsSold, 0))
+    FROM FlightInstance
+    WHERE FlightNumber IS NOT NULL AND FlightDate IS NOT NULL
+    GROUP BY FlightNumber, FlightDate;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS FlightInstance_daily_stats ON FlightInstance;
+CREATE TRIGGER FlightInstance_daily_stats
+    AFTER INSERT OR DELETE
+       OR UPDATE OF FlightNumber, FlightDate, DepartedOnTime, ArrivedOnTime, SeatsTotal, SeatsSold
+    ON FlightInstance
+    FOR EACH ROW EXECUTE PROCEDURE maintain_flight_daily_stats();
+DROP TRIGGER IF EXISTS FlightInstance_daily_stats_truncated ON FlightInstance;
+CREATE TRIGGER FlightInstance_daily_stats_truncated
+    AFTER TRUNCATE ON FlightInstance
+    FOR EACH STATEMENT EXECUTE PROCEDURE maintain_flight_daily_stats();
+
+-- Flight search: NOTIFY instance_changed '<id>:<date>:<seats free>:<fare in
+-- cents>:<flight>' for every inserted or updated FlightInstance, and
+-- '<id>:<date>' for the date a row left (deleted, or moved to another date
+-- or flight).  TRUNCATE sends an empty payload, meaning every instance.
+CREATE OR REPLACE FUNCTION notify_instance_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_LEVEL = 'STATEMENT' THEN
+        PERFORM pg_notify('instance_changed', '');
+        RETURN NULL;
+    END IF;
+    IF TG_OP <> 'INSERT' AND OLD.FlightDate IS NOT NULL
+       AND (TG_OP = 'DELETE'
+            OR OLD.FlightDate IS DISTINCT FROM NEW.FlightDate
+            OR OLD.FlightNumber IS DISTINCT FROM NEW.FlightNumber) THEN
+        PERFORM pg_notify('instance_changed',
+                          OLD.FlightInstanceID || ':' || to_char(OLD.FlightDate, 'YYYY-MM-DD'));
+    END IF;
+    IF TG_OP <> 'DELETE' AND NEW.FlightDate IS NOT NULL THEN
+        PERFORM pg_notify('instance_changed',
+                          NEW.FlightInstanceID || ':' || to_char(NEW.FlightDate, 'YYYY-MM-DD') || ':' ||
+                          (COALESCE(NEW.SeatsTotal, 0) - COALESCE(NEW.SeatsSold, 0)) || ':' ||
+                          coalesce(CAST(NEW.TicketCost * 100 AS BIGINT)::TEXT, '') || ':' ||
+                          coalesce(NEW.FlightNumber, ''));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS FlightInstance_instance_changed ON FlightInstance;
+CREATE TRIGGER FlightInstance_instance_changed
+    AFTER INSERT OR DELETE
+       OR UPDATE OF FlightNumber, FlightDate, SeatsTotal, SeatsSold, TicketCost
+    ON FlightInstance
+    FOR EACH ROW EXECUTE PROCEDURE notify_instance_changed();
+DROP TRIGGER IF EXISTS FlightInstance_instance_truncated ON FlightInstance;
+CREATE TRIGGER FlightInstance_instance_truncated
+    AFTER TRUNCATE ON FlightInstance
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_instance_changed();
+
+-- Departures board (feature4): NOTIFY operations_changed
+-- '<id>:<date>:<departed>:<arrived>:<seats sold>:<seats total>' for every
+-- inserted or updated FlightInstance, with t, f or nothing for the on-time
+-- flags, and '<id>:<date>' for the date a row left (deleted, or moved to
+-- another date or flight).  TRUNCATE sends an empty payload, meaning every
+-- instance.
+CREATE OR REPLACE FUNCTION notify_operations_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_LEVEL = 'STATEMENT' THEN
+        PERFORM pg_notify('operations_changed', '');
+        RETURN NULL;
+    END IF;
+    IF TG_OP <> 'INSERT' AND OLD.FlightDate IS NOT NULL
+       AND (TG_OP = 'DELETE'
+            OR OLD.FlightDate IS DISTINCT FROM NEW.FlightDate
+            OR OLD.FlightNumber IS DISTINCT FROM NEW.FlightNumber) THEN
+        PERFORM pg_notify('operations_changed',
+                          OLD.FlightInstanceID || ':' || to_char(OLD.FlightDate, 'YYYY-MM-DD'));
+    END IF;
+    IF TG_OP <> 'DELETE' AND NEW.FlightDate IS NOT NULL THEN
+        PERFORM pg_notify('operations_changed',
+                          NEW.FlightInstanceID || ':' || to_char(NEW.FlightDate, 'YYYY-MM-DD') || ':' ||
+                          CASE WHEN NEW.DepartedOnTime IS NULL THEN '' WHEN NEW.DepartedOnTime THEN 't' ELSE 'f' END || ':' ||
+                          CASE WHEN NEW.ArrivedOnTime IS NULL THEN '' WHEN NEW.ArrivedOnTime THEN 't' ELSE 'f' END || ':' ||
+                          coalesce(NEW.SeatsSold::TEXT, '') || ':' ||
+                          coalesce(NEW.SeatsTotal::TEXT, ''));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS FlightInstance_operations_changed ON FlightInstance;
+CREATE TRIGGER FlightInstance_operations_changed
+    AFTER INSERT OR DELETE
+       OR UPDATE OF FlightNumber, FlightDate, DepartedOnTime, ArrivedOnTime, SeatsTotal, SeatsSold
+    ON FlightInstance
+    FOR EACH ROW EXECUTE PROCEDURE notify_operations_changed();
+DROP TRIGGER IF EXISTS FlightInstance_operations_truncated ON FlightInstance;
+CREATE TRIGGER FlightInstance_operations_truncated
+    AFTER TRUNCATE ON FlightInstance
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_operations_changed();
+
+-- Manifest cache (feature5): NOTIFY reservation_changed
+-- '<instance>:<status>:<reservation>' for every inserted or updated
+-- Reservation, and '<instance>:deleted:<reservation>' for a reservation that
+-- left an instance (deleted, or given another instance, customer or ID).
+-- TRUNCATE, and renaming customers, send an empty payload, meaning every
+-- manifest.
+CREATE OR REPLACE FUNCTION notify_reservation_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_LEVEL = 'STATEMENT' THEN
+        PERFORM pg_notify('reservation_changed', '');
+        RETURN NULL;
+    END IF;
+    IF TG_OP <> 'INSERT' AND OLD.FlightInstanceID IS NOT NULL
+       AND (TG_OP = 'DELETE'
+            OR OLD.ReservationID IS DISTINCT FROM NEW.ReservationID
+            OR OLD.FlightInstanceID IS DISTINCT FROM NEW.FlightInstanceID
+            OR OLD.CustomerID IS DISTINCT FROM NEW.CustomerID) THEN
+        PERFORM pg_notify('reservation_changed',
+                          OLD.FlightInstanceID || ':deleted:' || OLD.ReservationID);
+    END IF;
+    IF TG_OP <> 'DELETE' AND NEW.FlightInstanceID IS NOT NULL THEN
+        PERFORM pg_notify('reservation_changed',
+                          NEW.FlightInstanceID || ':' || coalesce(NEW.Status, '') || ':' || NEW.ReservationID);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS Reservation_reservation_changed ON Reservation;
+CREATE TRIGGER Reservation_reservation_changed
+    AFTER INSERT OR DELETE
+       OR UPDATE OF ReservationID, CustomerID, FlightInstanceID, Status
+    ON Reservation
+    FOR EACH ROW EXECUTE PROCEDURE notify_reservation_changed();
+DROP TRIGGER IF EXISTS Reservation_reservation_truncated ON Reservation;
+CREATE TRIGGER Reservation_reservation_truncated
+    AFTER TRUNCATE ON Reservation
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_reservation_changed();
+DROP TRIGGER IF EXISTS Customer_reservation_changed ON Customer;
+CREATE TRIGGER Customer_reservation_changed
+    AFTER UPDATE OF FirstName, LastName ON Customer
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_reservation_changed();
+
+-- Plane.LastRepairDate is kept at the plane's latest RepairDate, so feature7
+-- reads it from the Plane row.  Inserts can only move it forward; updates
+-- and deletes recompute it for the planes they touched, one index probe of
+-- Repair_PlaneID_RepairDate_idx each.  The triggers are per statement and
+-- read the transition tables, so a batch of repairs updates each plane once.
+CREATE OR REPLACE FUNCTION maintain_last_repair_date() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE Plane P SET LastRepairDate = m.RepairDate
+        FROM (SELECT PlaneID, MAX(RepairDate) AS RepairDate FROM new_repairs GROUP BY PlaneID) m
+        WHERE P.PlaneID = m.PlaneID
+          AND (P.LastRepairDate IS NULL OR P.LastRepairDate < m.RepairDate);
+    ELSIF TG_OP = 'TRUNCATE' THEN
+        UPDATE Plane SET LastRepairDate = NULL WHERE LastRepairDate IS NOT NULL;
+    ELSIF TG_OP = 'UPDATE' THEN
+        UPDATE Plane P SET LastRepairDate = m.RepairDate
+        FROM (SELECT t.PlaneID, (SELECT MAX(R.RepairDate) FROM Repair R WHERE R.PlaneID = t.PlaneID) AS RepairDate
+              FROM (SELECT PlaneID FROM old_repairs UNION SELECT PlaneID FROM new_repairs) t) m
+        WHERE P.PlaneID = m.PlaneID
+          AND P.LastRepairDate IS DISTINCT FROM m.RepairDate;
+    ELSE
+        UPDATE Plane P SET LastRepairDate = m.RepairDate
+        FROM (SELECT t.PlaneID, (SELECT MAX(R.RepairDate) FROM Repair R WHERE R.PlaneID = t.PlaneID) AS RepairDate
+              FROM (SELECT DISTINCT PlaneID FROM old_repairs) t) m
+        WHERE P.PlaneID = m.PlaneID
+          AND P.LastRepairDate IS DISTINCT FROM m.RepairDate;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Recomputes Plane.LastRepairDate from scratch, e.g. after a bulk load with
+-- triggers disabled.
+CREATE OR REPLACE FUNCTION rebuild_last_repair_dates() RETURNS void AS $$
+BEGIN
+    UPDATE Plane P SET LastRepairDate = m.RepairDate
+    FROM (SELECT P2.PlaneID, MAX(R.RepairDate) AS RepairDate
+          FROM Plane P2 LEFT JOIN Repair R ON R.PlaneID = P2.PlaneID
+          GROUP BY P2.PlaneID) m
+    WHERE P.PlaneID = m.PlaneID
+      AND P.LastRepairDate IS DISTINCT FROM m.RepairDate;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS Repair_last_repair_inserted ON Repair;
+CREATE TRIGGER Repair_last_repair_inserted
+    AFTER INSERT ON Repair
+    REFERENCING NEW TABLE AS new_repairs
+    FOR EACH STATEMENT EXECUTE PROCEDURE maintain_last_repair_date();
+DROP TRIGGER IF EXISTS Repair_last_repair_updated ON Repair;
+CREATE TRIGGER Repair_last_repair_updated
+    AFTER UPDATE ON Repair
+    REFERENCING OLD TABLE AS old_repairs NEW TABLE AS new_repairs
+    FOR EACH STATEMENT EXECUTE PROCEDURE maintain_last_repair_date();
+DROP TRIGGER IF EXISTS Repair_last_repair_deleted ON Repair;
+CREATE TRIGGER Repair_last_repair_deleted
+    AFTER DELETE ON Repair
+    REFERENCING OLD TABLE AS old_repairs
+    FOR EACH STATEMENT EXECUTE PROCEDURE maintain_last_repair_date();
+DROP TRIGGER IF EXISTS Repair_last_repair_truncated ON Repair;
+CREATE TRIGGER Repair_last_repair_truncated
+    AFTER TRUNCATE ON Repair
+    FOR EACH STATEMENT EXECUTE PROCEDURE maintain_last_repair_date();
+
+-- Fleet health: NOTIFY fleet_changed 'repair:<RepairID>' or
+-- 'request:<RequestID>' for every inserted row, which the application then
+-- reads by ID.  Updates, deletes and TRUNCATE send an empty payload once per
+-- statement, meaning the aggregates must be recomputed.
+CREATE OR REPLACE FUNCTION notify_fleet_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_LEVEL = 'STATEMENT' THEN
+        PERFORM pg_notify('fleet_changed', '');
+    ELSE
+        PERFORM pg_notify('fleet_changed', TG_ARGV[0] || ':' || (to_jsonb(NEW) ->> TG_ARGV[1]));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS Repair_fleet_inserted ON Repair;
+CREATE TRIGGER Repair_fleet_inserted
+    AFTER INSERT ON Repair
+    FOR EACH ROW EXECUTE PROCEDURE notify_fleet_changed('repair', 'repairid');
+DROP TRIGGER IF EXISTS Repair_fleet_changed ON Repair;
+CREATE TRIGGER Repair_fleet_changed
+    AFTER UPDATE OR DELETE OR TRUNCATE ON Repair
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_fleet_changed();
+DROP TRIGGER IF EXISTS MaintenanceRequest_fleet_inserted ON MaintenanceRequest;
+CREATE TRIGGER MaintenanceRequest_fleet_inserted
+    AFTER INSERT ON MaintenanceRequest
+    FOR EACH ROW EXECUTE PROCEDURE notify_fleet_changed('request', 'requestid');
+DROP TRIGGER IF EXISTS MaintenanceRequest_fleet_changed ON MaintenanceRequest;
+CREATE TRIGGER MaintenanceRequest_fleet_changed
+    AFTER UPDATE OR DELETE OR TRUNCATE ON MaintenanceRequest
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_fleet_changed();
+
+-- Trip summaries (Customer menu): NOTIFY trips_changed '<CustomerID>' for
+-- the customer of every inserted, updated or deleted Reservation, and for
+-- the former customer of one given to another.  TRUNCATE sends an empty
+-- payload, meaning every customer.
+CREATE OR REPLACE FUNCTION notify_trips_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_LEVEL = 'STATEMENT' THEN
+        PERFORM pg_notify('trips_changed', '');
+        RETURN NULL;
+    END IF;
+    IF TG_OP <> 'INSERT' AND OLD.CustomerID IS NOT NULL THEN
+        PERFORM pg_notify('trips_changed', OLD.CustomerID::TEXT);
+    END IF;
+    IF TG_OP <> 'DELETE' AND NEW.CustomerID IS NOT NULL THEN
+        PERFORM pg_notify('trips_changed', NEW.CustomerID::TEXT);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS Reservation_trips_changed ON Reservation;
+CREATE TRIGGER Reservation_trips_changed
+    AFTER INSERT OR DELETE
+       OR UPDATE OF CustomerID, FlightInstanceID, Status
+    ON Reservation
+    FOR EACH ROW EXECUTE PROCEDURE notify_trips_changed();
+DROP TRIGGER IF EXISTS Reservation_trips_truncated ON Reservation;
+CREATE TRIGGER Reservation_trips_truncated
+    AFTER TRUNCATE ON Reservation
+    FOR EACH STATEMENT EXECUTE PROCEDURE notify_trips_changed();
+
+-- the triggers are created after the initial load, so fill the tables now
+SELECT rebuild_flight_daily_stats();
+SELECT rebuild_last_repair_dates();
@@ -20,3 +20,18 @@
 
 \copy MaintenanceRequest FROM 'data/MaintenanceRequest.csv' WITH DELIMITER ',' CSV HEADER; 
 
+
+
+-- continue ReservationID numbering after the loaded reservations
+SELECT setval('ReservationID_seq',
+              COALESCE((SELECT MAX(substring(ReservationID FROM 2)::BIGINT)
+                        FROM Reservation WHERE ReservationID ~ '^R[0-9]+$'), 0) + 1,
+              false);
+
+-- continue RepairID and RequestID numbering after the loaded rows
+SELECT setval('RepairID_seq', COALESCE((SELECT MAX(RepairID) FROM Repair), 0) + 1, false);
+SELECT setval('MaintenanceRequestID_seq',
+              COALESCE((SELECT MAX(RequestID) FROM MaintenanceRequest), 0) + 1, false);
+
+-- refresh planner statistics for the freshly loaded tables
+ANALYZE;
@@ -0,0 +1,53 @@
+/* Replace the location to where you saved the data files*/
+
+-- load_data.sql for the partitioned schema (create_tables_partitioned.sql)
+
+\copy Plane FROM 'data/Plane.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy Flight FROM 'data/Flight.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy Schedule FROM 'data/Schedule.csv' WITH DELIMITER ',' CSV HEADER; 
+
+-- FlightInstance and Reservation go through staging tables: the partitions
+-- of the months in the data are created first, and each reservation takes
+-- the FlightDate of its instance
+CREATE TEMP TABLE FlightInstance_load AS SELECT * FROM FlightInstance WITH NO DATA;
+CREATE TEMP TABLE Reservation_load AS
+    SELECT ReservationID, CustomerID, FlightInstanceID, Status FROM Reservation WITH NO DATA;
+
+\copy FlightInstance_load FROM 'data/FlightInstance.csv' WITH DELIMITER ',' CSV HEADER; 
+
+SELECT create_flight_partitions(MIN(FlightDate), MAX(FlightDate)) FROM FlightInstance_load;
+INSERT INTO FlightInstance SELECT * FROM FlightInstance_load;
+
+\copy Customer FROM 'data/Customer.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy Reservation_load FROM 'data/Reservation.csv' WITH DELIMITER ',' CSV HEADER; 
+
+INSERT INTO Reservation (ReservationID, CustomerID, FlightInstanceID, Status, FlightDate)
+SELECT R.ReservationID, R.CustomerID, R.FlightInstanceID, R.Status, FI.FlightDate
+FROM Reservation_load R LEFT JOIN FlightInstance FI ON FI.FlightInstanceID = R.FlightInstanceID;
+
+\copy Technician FROM 'data/Technician.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy Repair FROM 'data/Repair.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy Pilot FROM 'data/Pilot.csv' WITH DELIMITER ',' CSV HEADER; 
+
+\copy MaintenanceRequest FROM 'data/MaintenanceRequest.csv' WITH DELIMITER ',' CSV HEADER; 
+
+
+
+-- continue ReservationID numbering after the loaded reservations
+SELECT setval('ReservationID_seq',
+              COALESCE((SELECT MAX(substring(ReservationID FROM 2)::BIGINT)
+                        FROM Reservation WHERE ReservationID ~ '^R[0-9]+$'), 0) + 1,
+              false);
+
+-- continue RepairID and RequestID numbering after the loaded rows
+SELECT setval('RepairID_seq', COALESCE((SELECT MAX(RepairID) FROM Repair), 0) + 1, false);
+SELECT setval('MaintenanceRequestID_seq',
+              COALESCE((SELECT MAX(RequestID) FROM MaintenanceRequest), 0) + 1, false);
+
+-- refresh planner statistics for the freshly loaded tables
+ANALYZE;